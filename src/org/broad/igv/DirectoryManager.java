@@ -229,6 +229,19 @@ public class DirectoryManager {
 
     }
 
+    /**
+     * Directory for persisted summaries and indexes of data files, see {@link org.broad.igv.data.SummaryFile}
+     */
+    public static synchronized File getSummaryDirectory() {
+
+        File summaryDir = new File(DirectoryManager.getIgvDirectory(), "summaries");
+        if (!summaryDir.exists()) {
+            summaryDir.mkdir();
+        }
+        return summaryDir;
+
+    }
+
     public static synchronized File getLogFile() throws IOException {
 
         File logFile = new File(getIgvDirectory(), "igv.log");
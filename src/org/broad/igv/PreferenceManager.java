@@ -135,6 +135,8 @@ public class PreferenceManager implements PropertyManager {
     public static final String EXPAND_FEAUTRE_TRACKS = "EXPAND_FEATURE_TRACKS";
     public static final String PORT_ENABLED = "PORT_ENABLED";
     public static final String PORT_NUMBER = "PORT_NUMBER";
+    public static final String PORT_MAX_CLIENTS = "PORT_MAX_CLIENTS";
+    public static final String VCF_LAZY_DECODING = "VCF.LAZY_DECODING";
     public static final String COLOR_SCALE_KEY = "COLOR_SCALE_";
     public static final String FRAME_BOUNDS_KEY = "IGV.Bounds";
     public static final String FRAME_STATE_KEY = "IGV.Frame.ExtendedState";
@@ -142,6 +144,7 @@ public class PreferenceManager implements PropertyManager {
     public static final String TRACK_HEIGHT_KEY = "IGV.track.height";
     public static final String CHART_TRACK_HEIGHT_KEY = "IGV.chart.track.height";
     public static final String CHART_SHOW_ALL_HEATMAP = "CHART.SHOW_ALL_HEATMAP";
+    public static final String CHART_HEATMAP_RASTER = "CHART.HEATMAP_RASTER";
     public static final String SHOW_MISSING_DATA_KEY = "IGV.track.show.missing.data";
     public static final String SHOW_ATTRIBUTE_VIEWS_KEY = "IGV.track.show.attribute.views";
     public static final String SHOW_SINGLE_TRACK_PANE_KEY = "IGV.single.track.pane";
@@ -245,6 +248,17 @@ public class PreferenceManager implements PropertyManager {
     public static final String DB_HOST = "DB_HOST";
     public static final String DB_NAME = "DB_NAME";
     public static final String DB_PORT = "DB_PORT";
+    public static final String DB_MAX_CONNECTIONS = "DB_MAX_CONNECTIONS";
+    public static final String DB_FETCH_SIZE = "DB_FETCH_SIZE";
+
+    public static final String MEMORY_MAP_LOCAL_FILES = "MEMORY_MAP_LOCAL_FILES";
+    public static final String BGZF_CACHE_SIZE = "BGZF_CACHE_SIZE";
+    public static final String PERSIST_GENOME_SUMMARIES = "PERSIST_GENOME_SUMMARIES";
+    public static final String SUMMARY_DIRECTORY_SIZE = "SUMMARY_DIRECTORY_SIZE";
+    public static final String CACHE_EXPRESSION_DATA = "CACHE_EXPRESSION_DATA";
+    public static final String LOAD_THREADS_LOCAL = "LOAD_THREADS_LOCAL";
+    public static final String LOAD_THREADS_REMOTE = "LOAD_THREADS_REMOTE";
+
     public static final String DEFAULT_GENOME_URL = "http://igv.broadinstitute.org/genomes/genomes.txt";
     public static final String DEFAULT_DATA_URL = "http://www.broadinstitute.org/igvdata/$$_dataServerRegistry.txt";
 
@@ -970,6 +984,7 @@ public class PreferenceManager implements PropertyManager {
         defaultValues.put(CHART_COLOR_TRACK_NAME, "true");
         defaultValues.put(CHART_TRACK_HEIGHT_KEY, "40");
         defaultValues.put(CHART_SHOW_ALL_HEATMAP, "false");
+        defaultValues.put(CHART_HEATMAP_RASTER, "true");
         defaultValues.put(UNLOAD_ON_GENOME_CHANGE, "false");
 
         defaultValues.put(SAM_SHOW_DUPLICATES, "false");
@@ -1030,6 +1045,8 @@ public class PreferenceManager implements PropertyManager {
         defaultValues.put(USE_PROXY, "false");
         defaultValues.put(PROXY_AUTHENTICATE, "false");
         defaultValues.put(PORT_NUMBER, "60151");
+        defaultValues.put(PORT_MAX_CLIENTS, "16");
+        defaultValues.put(VCF_LAZY_DECODING, "true");
         defaultValues.put(TRACK_HEIGHT_KEY, "15");
         defaultValues.put(FLANKING_REGION, "2000");
 
@@ -1071,6 +1088,17 @@ public class PreferenceManager implements PropertyManager {
         defaultValues.put(DB_HOST, "");
         defaultValues.put(DB_NAME, "");
         defaultValues.put(DB_PORT, "-1");
+        defaultValues.put(DB_MAX_CONNECTIONS, "4");
+        defaultValues.put(DB_FETCH_SIZE, "1000");
+
+        // Mapped files cannot be deleted or replaced on Windows until the mapping is garbage collected
+        defaultValues.put(MEMORY_MAP_LOCAL_FILES, String.valueOf(!Globals.IS_WINDOWS));
+        defaultValues.put(BGZF_CACHE_SIZE, "64");   // MB
+        defaultValues.put(PERSIST_GENOME_SUMMARIES, "true");
+        defaultValues.put(SUMMARY_DIRECTORY_SIZE, "1000");   // MB
+        defaultValues.put(CACHE_EXPRESSION_DATA, "true");
+        defaultValues.put(LOAD_THREADS_LOCAL, "4");
+        defaultValues.put(LOAD_THREADS_REMOTE, "4");     // per host
 
         String defaultDataURL = DEFAULT_DATA_URL;
         Properties properties = new Properties();
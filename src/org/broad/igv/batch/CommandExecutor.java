@@ -34,10 +34,12 @@ import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.event.DataLoadedEvent;
 import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.util.MessageUtils;
+import org.broad.igv.ui.util.SnapshotRenderer;
 import org.broad.igv.ui.util.SnapshotUtilities;
 import org.broad.igv.util.*;
 
 import java.awt.*;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
@@ -125,6 +127,8 @@ public class CommandExecutor {
                 } else if (cmd.equalsIgnoreCase("snapshot")) {
                     String filename = param1;
                     result = createSnapshot(filename, param2);
+                } else if (cmd.equalsIgnoreCase("snapshots")) {
+                    result = createSnapshots(param1, param2);
                 } else if ((cmd.equalsIgnoreCase("loadfile") || cmd.equalsIgnoreCase("load")) && param1 != null) {
                     result = load(param1, param2, param3);
                 } else if (cmd.equalsIgnoreCase("genome") && args.size() > 1) {
@@ -837,6 +841,66 @@ public class CommandExecutor {
     }
 
 
+    /**
+     * Snapshot every locus listed in {@code lociFile} using the tracks of the current session.  Each line holds a
+     * locus and, optionally, a tab-separated file name; the default name is derived from the locus.  Loci are loaded
+     * and rendered concurrently on {@code threadsString} threads (default 4) without moving the main view.
+     */
+    private String createSnapshots(String lociFile, String threadsString) {
+
+        if (lociFile == null) {
+            return "ERROR: missing loci file parameter";
+        }
+        int nThreads = 4;
+        if (threadsString != null) {
+            try {
+                nThreads = Integer.parseInt(threadsString.trim());
+            } catch (NumberFormatException e) {
+                return "ERROR - thread count ('" + threadsString + "') must be an integer number";
+            }
+        }
+
+        List<String> loci = new ArrayList<String>();
+        List<File> files = new ArrayList<File>();
+        BufferedReader reader = null;
+        try {
+            reader = ParsingUtils.openBufferedReader(StringUtils.stripQuotes(lociFile));
+            String nextLine;
+            while ((nextLine = reader.readLine()) != null) {
+                if (nextLine.trim().length() == 0 || nextLine.startsWith("#")) continue;
+                String[] tokens = Globals.tabPattern.split(nextLine.trim());
+                String locus = tokens[0];
+                String filename = tokens.length > 1 ? tokens[1] :
+                        locus.replaceAll(":", "_").replace("-", "_") + ".png";
+                File file = snapshotDirectory == null ? new File(filename) : new File(snapshotDirectory, filename);
+                if (file.getAbsoluteFile().getParentFile() != null && !file.getAbsoluteFile().getParentFile().exists()) {
+                    createParents(file.getAbsoluteFile());
+                }
+                loci.add(locus);
+                files.add(file);
+            }
+        } catch (IOException e) {
+            log.error("Error reading loci file: " + lociFile, e);
+            return "Error reading loci file: " + e.getMessage();
+        } finally {
+            if (reader != null) try {
+                reader.close();
+            } catch (IOException e) {
+                log.error("Error closing loci file", e);
+            }
+        }
+
+        List<String> results = SnapshotRenderer.forCurrentSession(nThreads).render(loci, files);
+        int errorCount = 0;
+        for (int i = 0; i < results.size(); i++) {
+            if (!"OK".equals(results.get(i))) {
+                log.error(loci.get(i) + ": " + results.get(i));
+                errorCount++;
+            }
+        }
+        return errorCount == 0 ? "OK" : "Error: " + errorCount + " of " + loci.size() + " snapshots failed";
+    }
+
     private static void createParents(File outputFile) {
         File parent = outputFile.getParentFile();
         if (!parent.exists()) {
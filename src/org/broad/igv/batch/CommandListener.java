@@ -16,6 +16,7 @@ import org.broad.igv.Globals;
 import org.broad.igv.PreferenceManager;
 import org.broad.igv.ga4gh.OAuthUtils;
 import org.broad.igv.ui.IGV;
+import org.broad.igv.util.NamedThreadFactory;
 import org.broad.igv.util.StringUtils;
 
 import java.awt.*;
@@ -26,6 +27,9 @@ import java.net.URLDecoder;
 import java.nio.channels.ClosedByInterruptException;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CommandListener implements Runnable {
 
@@ -35,12 +39,29 @@ public class CommandListener implements Runnable {
     private static CommandListener listener;
     private static final String CRNL = "\r\n";
 
+    /**
+     * Session directive to switch the response format, e.g. "responseFormat json".  Not forwarded to the executor.
+     */
+    static final String RESPONSE_FORMAT = "responseformat";
+
     private int port = -1;
     private ServerSocket serverSocket = null;
-    private Socket clientSocket = null;
     private Thread listenerThread;
     boolean halt = false;
 
+    /**
+     * Client sessions, one thread each, bounded by the PORT_MAX_CLIENTS preference.
+     */
+    private ThreadPoolExecutor sessionExecutor;
+
+    /**
+     * IGV state is global, so commands from all sessions are executed one batch at a time, in arrival order, here.
+     */
+    private ExecutorService commandExecutor;
+
+    private final Set<ClientSession> sessions = Collections.synchronizedSet(new HashSet<ClientSession>());
+    private final AtomicInteger sessionCounter = new AtomicInteger();
+
 
     /**
      * Different keys which can be used to specify a file to load
@@ -77,26 +98,30 @@ public class CommandListener implements Runnable {
     }
 
     /**
-     * Loop forever, processing client requests synchronously.  The server is single threaded.
+     * Loop forever, accepting client connections.  Each client is served on its own session thread; the commands
+     * it sends are queued on a single command thread shared by all sessions.
      */
     public void run() {
 
-        CommandExecutor cmdExe = new CommandExecutor();
+        int maxClients = PreferenceManager.getInstance().getAsInt(PreferenceManager.PORT_MAX_CLIENTS);
+        sessionExecutor = new ThreadPoolExecutor(0, Math.max(1, maxClients), 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new NamedThreadFactory("IGV port session"));
+        commandExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("IGV port command"));
 
         try {
             serverSocket = new ServerSocket(port);
             log.info("Listening on port " + port);
 
             while (!halt) {
-                clientSocket = serverSocket.accept();
-                processClientSession(cmdExe);
-                if (clientSocket != null) {
-                    try {
-                        clientSocket.close();
-                        clientSocket = null;
-                    } catch (IOException e) {
-                        log.error("Error in client socket loop", e);
-                    }
+                Socket clientSocket = serverSocket.accept();
+                ClientSession session = new ClientSession(sessionCounter.incrementAndGet(), clientSocket);
+                try {
+                    sessionExecutor.execute(session);
+                } catch (RejectedExecutionException e) {
+                    log.error("Rejecting client, maximum number of sessions (" + maxClients + ") reached");
+                    PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
+                    out.println("ERROR too many clients");
+                    session.close();
                 }
             }
 
@@ -110,117 +135,222 @@ public class CommandListener implements Runnable {
             if (!halt) {
                 log.error("IO Error on port socket ", e);
             }
+        } finally {
+            sessionExecutor.shutdownNow();
+            commandExecutor.shutdownNow();
         }
     }
 
     /**
-     * Process a client session.  Loop continuously until client sends the "halt" message, or closes the connection.
-     *
-     * @param cmdExe
-     * @throws IOException
+     * A single client connection.  Lines that arrive together (a pipelined batch) are executed as one unit on the
+     * command thread, so they are not interleaved with commands from other sessions, and the responses are
+     * written back in order, one line per command.
      */
-    private void processClientSession(CommandExecutor cmdExe) throws IOException {
-        PrintWriter out = null;
-        BufferedReader in = null;
-        try {
-            out = new PrintWriter(clientSocket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-            String inputLine;
+    class ClientSession implements Runnable {
+
+        final int id;
+        final Socket clientSocket;
+        final CommandExecutor cmdExe;
+        int sequence = 0;
+        boolean json = false;
+
+        ClientSession(int id, Socket clientSocket) {
+            this.id = id;
+            this.clientSocket = clientSocket;
+            this.cmdExe = new CommandExecutor();
+        }
 
+        public void run() {
+            sessions.add(this);
+            try {
+                processClientSession();
+            } catch (IOException e) {
+                log.error("Error in client socket loop", e);
+            } finally {
+                sessions.remove(this);
+                close();
+            }
+        }
 
-            while (!halt && (inputLine = in.readLine()) != null) {
+        /**
+         * Process a client session.  Loop continuously until client sends the "halt" message, or closes the connection.
+         *
+         * @throws IOException
+         */
+        private void processClientSession() throws IOException {
+            PrintWriter out = null;
+            BufferedReader in = null;
+            try {
+                out = new PrintWriter(clientSocket.getOutputStream(), true);
+                in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+                String inputLine;
 
-                String cmd = inputLine;
-                if (cmd.startsWith("GET")) {
 
-                    // Consume the remainder of the request, if any.   This is important to free the connection.
-                    Map<String, String> headers = new HashMap<String, String>();
-                    String nextLine = in.readLine();
-                    while (nextLine != null && nextLine.length() > 0) {
-                        nextLine = in.readLine();
-                        String[] tokens = Globals.colonPattern.split(nextLine, 2);
-                        if (tokens.length == 2) {
-                            headers.put(tokens[0].trim(), tokens[1].trim());
-                        }
-                    }
+                while (!halt && (inputLine = in.readLine()) != null) {
 
-                    log.info(cmd);
+                    String cmd = inputLine;
+                    if (cmd.startsWith("GET")) {
 
-                    String command = null;
-                    Map<String, String> params = null;
-                    String[] tokens = inputLine.split(" ");
-                    if (tokens.length < 2) {
-                        sendHTTPResponse(out, "ERROR unexpected command line: " + inputLine);
-                        return;
-                    } else {
-                        String[] parts = tokens[1].split("\\?");
-                        command = parts[0];
-                        params = parts.length < 2 ? new HashMap() : parseParameters(parts[1]);
-                    }
-
-                    // Detect google oauth callback
-                    if (command.equals("/oauthCallback")) {
-                        if (params.containsKey("code")) {
-                            OAuthUtils.getInstance().setAuthorizationCode(params.get("code"));
-                        } else if (params.containsKey("token")) {
-                            OAuthUtils.getInstance().setAccessToken(params.get("token"));
+                        // Consume the remainder of the request, if any.   This is important to free the connection.
+                        Map<String, String> headers = new HashMap<String, String>();
+                        String nextLine = in.readLine();
+                        while (nextLine != null && nextLine.length() > 0) {
+                            nextLine = in.readLine();
+                            String[] tokens = Globals.colonPattern.split(nextLine, 2);
+                            if (tokens.length == 2) {
+                                headers.put(tokens[0].trim(), tokens[1].trim());
+                            }
                         }
-                        sendHTTPResponse(out, "OK");
-                    } else {
 
-                        // If a callback (javascript) function is specified write it back immediately.  This function
-                        // is used to cancel a timeout handler
-                        String callback = params.get("callback");
-                        if (callback != null) {
-                            sendHTTPResponse(out, callback);
+                        log.info(cmd);
+
+                        String command = null;
+                        Map<String, String> params = null;
+                        String[] tokens = inputLine.split(" ");
+                        if (tokens.length < 2) {
+                            sendHTTPResponse(out, "ERROR unexpected command line: " + inputLine);
+                            return;
+                        } else {
+                            String[] parts = tokens[1].split("\\?");
+                            command = parts[0];
+                            params = parts.length < 2 ? new HashMap() : parseParameters(parts[1]);
                         }
 
-                        // Process the request.
-
+                        // Detect google oauth callback
+                        if (command.equals("/oauthCallback")) {
+                            if (params.containsKey("code")) {
+                                OAuthUtils.getInstance().setAuthorizationCode(params.get("code"));
+                            } else if (params.containsKey("token")) {
+                                OAuthUtils.getInstance().setAccessToken(params.get("token"));
+                            }
+                            sendHTTPResponse(out, "OK");
+                        } else {
+
+                            // If a callback (javascript) function is specified write it back immediately.  This function
+                            // is used to cancel a timeout handler
+                            String callback = params.get("callback");
+                            if (callback != null) {
+                                sendHTTPResponse(out, callback);
+                            }
+
+                            // Process the request.
+
+
+                            String result = processGet(command, params);
+
+                            // If no callback was specified write back response now
+                            if (callback == null) {
+                                // We send no response if result is "ok".
+                                if (result.equals(OK)) result = null;
+                                sendHTTPResponse(out, result);
+                            }
+                        }
 
-                        String result = processGet(command, params, cmdExe);
+                        // http sockets are used for one request only
+                        return;
+                        // }
 
-                        // If no callback was specified write back response now
-                        if (callback == null) {
-                            // We send no response if result is "ok".
-                            if (result.equals(OK)) result = null;
-                            sendHTTPResponse(out, result);
+                    } else {
+                        // Port command.  Gather any further lines the client has already sent and execute them
+                        // together.
+                        List<String> batch = new ArrayList<String>();
+                        batch.add(inputLine);
+                        while (in.ready() && (inputLine = in.readLine()) != null) {
+                            batch.add(inputLine);
                         }
+                        for (CommandResult result : executeBatch(batch)) {
+                            out.println(json ? result.toJson() : result.getResponse());
+                        }
+                        out.flush();
                     }
+                }
+            } finally {
+                if (out != null) out.close();
+                if (in != null) in.close();
+            }
+        }
 
-                    // http sockets are used for one request only
-                    return;
-                    // }
+        /**
+         * Queue a list of port commands for execution and wait for the results.  Commands are numbered in the
+         * order received by this session.
+         */
+        List<CommandResult> executeBatch(final List<String> commands) throws IOException {
 
-                } else {
-                    // Port command
+            final int firstSequence = sequence + 1;
+            sequence += commands.size();
+
+            Callable<List<CommandResult>> task = new Callable<List<CommandResult>>() {
+                public List<CommandResult> call() throws Exception {
+                    List<CommandResult> results = new ArrayList<CommandResult>(commands.size());
                     Globals.setBatch(true);
                     Globals.setSuppressMessages(true);
-                    final String response = cmdExe.execute(inputLine);
-                    out.println(response);
-                    out.flush();
+                    try {
+                        int seq = firstSequence;
+                        for (String command : commands) {
+                            long t0 = System.currentTimeMillis();
+                            String response = command.trim().toLowerCase().startsWith(RESPONSE_FORMAT) ?
+                                    setResponseFormat(command) :
+                                    cmdExe.execute(command);
+                            results.add(new CommandResult(id, seq++, command, response, System.currentTimeMillis() - t0));
+                        }
+                    } finally {
+                        Globals.setSuppressMessages(false);
+                        Globals.setBatch(false);
+                    }
+                    return results;
                 }
+            };
+            return waitFor(commandExecutor.submit(task));
+        }
+
+        private String setResponseFormat(String command) {
+            String[] tokens = Globals.whitespacePattern.split(command.trim());
+            if (tokens.length < 2) {
+                return "ERROR: responseFormat requires an argument (json or text)";
             }
-        } catch (IOException e) {
-            log.error("Error processing client session", e);
-        } finally {
-            Globals.setSuppressMessages(false);
-            Globals.setBatch(false);
-            if (out != null) out.close();
-            if (in != null) in.close();
+            json = tokens[1].equalsIgnoreCase("json");
+            return OK;
         }
-    }
 
+        /**
+         * Process an http get request on the command thread.
+         */
+        private String processGet(final String command, final Map<String, String> params) throws IOException {
+            return waitFor(commandExecutor.submit(new Callable<String>() {
+                public String call() throws Exception {
+                    return CommandListener.this.processGet(command, params, cmdExe);
+                }
+            }));
+        }
 
-    private void closeSockets() {
-        if (clientSocket != null) {
+        void close() {
             try {
                 clientSocket.close();
-                clientSocket = null;
             } catch (IOException e) {
                 log.error("Error closing clientSocket", e);
             }
         }
+    }
+
+    private static <T> T waitFor(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw new InterruptedIOException("Interrupted waiting for command");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private void closeSockets() {
+        synchronized (sessions) {
+            for (ClientSession session : sessions) {
+                session.close();
+            }
+        }
 
         if (serverSocket != null) {
             try {
@@ -264,7 +394,8 @@ public class CommandListener implements Runnable {
     }
 
     /**
-     * Process an http get request.
+     * Process an http get request.  The "command" parameter of /execute may hold several newline-separated
+     * commands, which are executed in order; the response is one line per command.
      */
 
     private String processGet(String command, Map<String, String> params, CommandExecutor cmdExe) throws IOException {
@@ -339,7 +470,16 @@ public class CommandListener implements Runnable {
             IGV.getInstance().goToLocus(locus);
         } else if (command.equals("/execute")) {
             String param = StringUtils.decodeURL(params.get("command"));
-            return cmdExe.execute(param);
+            if (param == null) {
+                return ("ERROR Parameter \"command\" is required");
+            }
+            StringBuffer buffer = new StringBuffer();
+            for (String line : param.split("\\r?\\n")) {
+                if (line.trim().length() == 0) continue;
+                if (buffer.length() > 0) buffer.append(CRNL);
+                buffer.append(cmdExe.execute(line));
+            }
+            return buffer.toString();
         } else {
             return ("ERROR Unknown command: " + command);
         }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.batch;
+
+import com.google.gson.Gson;
+
+/**
+ * Outcome of a single command executed on behalf of a port client.  The plain response is what
+ * {@link CommandExecutor#execute(String)} returned; the structured form adds the session id, the
+ * position of the command within the session, a status and the execution time.
+ */
+public class CommandResult {
+
+    public enum Status {OK, ERROR}
+
+    private static final Gson gson = new Gson();
+
+    private final int session;
+    private final int sequence;
+    private final String command;
+    private final Status status;
+    private final String response;
+    private final long time;
+
+    public CommandResult(int session, int sequence, String command, String response, long time) {
+        this.session = session;
+        this.sequence = sequence;
+        this.command = command;
+        this.response = response;
+        this.time = time;
+        this.status = isError(response) ? Status.ERROR : Status.OK;
+    }
+
+    public int getSession() {
+        return session;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return this result as a single line of JSON
+     */
+    public String toJson() {
+        return gson.toJson(this);
+    }
+
+    /**
+     * CommandExecutor does not distinguish errors from other responses, so we recognize its error prefixes.
+     */
+    static boolean isError(String response) {
+        if (response == null) return false;
+        String r = response.toLowerCase();
+        return r.startsWith("error") || r.startsWith("unkown command") || r.startsWith("unknown command") ||
+                r.startsWith("empty command");
+    }
+}
@@ -13,7 +13,6 @@ package org.broad.igv.bbfile;
 
 import htsjdk.samtools.seekablestream.SeekableStream;
 import org.apache.log4j.Logger;
-import org.broad.igv.util.stream.IGVSeekableBufferedStream;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
 
 import java.io.ByteArrayOutputStream;
@@ -112,7 +111,8 @@ public class BBFileReader {
 
         log.debug("Opening BBFile source  " + path);
 
-        fis = new IGVSeekableBufferedStream(IGVSeekableStreamFactory.getInstance().getStreamFor(path), 128000);
+        IGVSeekableStreamFactory streamFactory = IGVSeekableStreamFactory.getInstance();
+        fis = streamFactory.getBufferedStream(streamFactory.getStreamFor(path), 128000);
 
         // read in file header
         fileOffset = BBFILE_HEADER_OFFSET;
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.cli_plugin;
+
+import htsjdk.tribble.Feature;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Decoded results of plugin runs, keyed by an argument signature, chromosome and zoom.  A query whose region is
+ * contained in the region of a cached or running result is answered from that result, so repaints and panning
+ * within a loaded region do not start a new process.  Concurrent requests for the same region share one run.
+ */
+class PluginResultCache<D extends Feature> {
+
+    interface Loader<D> {
+        List<D> load(String chr, int start, int end, int zoom) throws IOException;
+    }
+
+    private final int maxEntries;
+
+    /**
+     * Most recently used first
+     */
+    private final LinkedList<Entry<D>> entries = new LinkedList<Entry<D>>();
+
+    PluginResultCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Return the features overlapping chr:start-end, running {@code loader} on the calling thread if no cached or
+     * running result contains the region.
+     */
+    List<D> getFeatures(String signature, String chr, int start, int end, int zoom, Loader<D> loader)
+            throws IOException {
+
+        Entry<D> entry;
+        boolean run = false;
+        synchronized (this) {
+            entry = find(signature, chr, start, end, zoom);
+            if (entry == null) {
+                entry = add(signature, chr, start, end, zoom, loader);
+                run = true;
+            }
+        }
+        if (run) {
+            entry.task.run();
+        }
+
+        List<D> features = get(entry);
+        if (entry.start == start && entry.end == end) {
+            return features;
+        }
+        List<D> overlapping = new ArrayList<D>();
+        for (D f : features) {
+            if (f.getEnd() >= start && f.getStart() <= end) {
+                overlapping.add(f);
+            }
+        }
+        return overlapping;
+    }
+
+    /**
+     * Load chr:start-end on {@code executor} unless a cached or running result already contains it.
+     *
+     * @return true if a load was started
+     */
+    synchronized boolean prefetch(String signature, String chr, int start, int end, int zoom, Loader<D> loader,
+                                  Executor executor) {
+        if (find(signature, chr, start, end, zoom) != null) {
+            return false;
+        }
+        Entry<D> entry = add(signature, chr, start, end, zoom, loader);
+        try {
+            executor.execute(entry.task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Pool saturated, the region will be loaded on demand
+            entries.remove(entry);
+            return false;
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private Entry<D> find(String signature, String chr, int start, int end, int zoom) {
+        Iterator<Entry<D>> iter = entries.iterator();
+        while (iter.hasNext()) {
+            Entry<D> e = iter.next();
+            if (e.contains(signature, chr, start, end, zoom)) {
+                iter.remove();
+                entries.addFirst(e);
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private Entry<D> add(String signature, final String chr, final int start, final int end, final int zoom,
+                         final Loader<D> loader) {
+        FutureTask<List<D>> task = new FutureTask<List<D>>(new Callable<List<D>>() {
+            public List<D> call() throws Exception {
+                return loader.load(chr, start, end, zoom);
+            }
+        });
+        Entry<D> entry = new Entry<D>(signature, chr, start, end, zoom, task);
+        entries.addFirst(entry);
+        while (entries.size() > maxEntries) {
+            entries.removeLast();
+        }
+        return entry;
+    }
+
+    private List<D> get(Entry<D> entry) throws IOException {
+        try {
+            return entry.task.get();
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while waiting for plugin output", e);
+        } catch (ExecutionException e) {
+            // Don't cache failures, the next query reruns the plugin
+            synchronized (this) {
+                entries.remove(entry);
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private static class Entry<D> {
+
+        final String signature;
+        final String chr;
+        final int start;
+        final int end;
+        final int zoom;
+        final FutureTask<List<D>> task;
+
+        Entry(String signature, String chr, int start, int end, int zoom, FutureTask<List<D>> task) {
+            this.signature = signature;
+            this.chr = chr;
+            this.start = start;
+            this.end = end;
+            this.zoom = zoom;
+            this.task = task;
+        }
+
+        boolean contains(String signature, String chr, int start, int end, int zoom) {
+            return this.zoom == zoom && this.start <= start && this.end >= end &&
+                    this.chr.equals(chr) && this.signature.equals(signature);
+        }
+    }
+}
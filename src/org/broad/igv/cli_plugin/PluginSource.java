@@ -12,6 +12,8 @@
 package org.broad.igv.cli_plugin;
 
 import org.apache.log4j.Logger;
+import org.broad.igv.feature.Chromosome;
+import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.feature.tribble.CodecFactory;
 import org.broad.igv.feature.tribble.IGVBEDCodec;
@@ -23,6 +25,7 @@ import org.broad.igv.session.SubtlyImportant;
 import org.broad.igv.track.FeatureTrack;
 import org.broad.igv.track.Track;
 import org.broad.igv.util.FileUtils;
+import org.broad.igv.util.NamedThreadFactory;
 import org.broad.igv.util.RuntimeUtils;
 import htsjdk.tribble.AsciiFeatureCodec;
 import htsjdk.tribble.Feature;
@@ -39,10 +42,16 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A feature source which derives its information
  * from a command line cli_plugin
+ * <p/>
+ * Decoded results are cached per argument values, region and zoom, see {@link PluginResultCache}.  Plugins which
+ * write to stdout also have the tiles adjacent to each query loaded in the background.  All plugin processes,
+ * foreground and background, share a bounded pool of {@link #PROCESS_POOL_SIZE} slots.
  * User: jacob
  * Date: 2012/05/01
  */
@@ -89,7 +98,38 @@ public abstract class PluginSource<E extends Feature, D extends Feature> {
     protected String lastRunId;
     private static final String RUN_ID_ATTR = "RUN_ID";
 
-    //private QueryTracker queryTracker = new QueryTracker();
+    /**
+     * Maximum number of plugin processes running at once, across all sources
+     */
+    static final int PROCESS_POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
+    private static final int MAX_CACHED_RESULTS = 20;
+
+    private static final Semaphore processPermits = new Semaphore(PROCESS_POOL_SIZE);
+
+    private static ThreadPoolExecutor prefetchExecutor;
+
+    /**
+     * Parser source as specified, before variable replacement
+     */
+    private String sourceTemplate;
+
+    /**
+     * Guards command generation, which writes the input files and per run attributes
+     */
+    private final Object runLock = new Object();
+
+    private final PluginResultCache<D> resultCache = new PluginResultCache<D>(MAX_CACHED_RESULTS);
+
+    private final PluginResultCache.Loader<D> loader = new PluginResultCache.Loader<D>() {
+        public List<D> load(String chr, int start, int end, int zoom) throws IOException {
+            return runQuery(chr, start, end, zoom);
+        }
+    };
+
+    private boolean prefetchAdjacent = true;
+
+    private final AtomicInteger runCount = new AtomicInteger();
 
     @SubtlyImportant
     protected PluginSource() {
@@ -210,7 +250,10 @@ public abstract class PluginSource<E extends Feature, D extends Feature> {
             }
         }
 
-        parser.source = replaceStringsFromIds(parser.source, idVariables);
+        if (sourceTemplate == null) {
+            sourceTemplate = parser.source;
+        }
+        parser.source = replaceStringsFromIds(sourceTemplate, idVariables);
 
         return fullCmd.toArray(new String[0]);
     }
@@ -337,52 +380,150 @@ public abstract class PluginSource<E extends Feature, D extends Feature> {
             throw new IllegalStateException("Null value for source");
         }
 
-        boolean rerun = true;
-        //synchronized (this.queryTracker){
-        //    rerun = !this.queryTracker.isQuerySame(chr, start, end, zoom);
-        //}
+        String signature = getArgumentSignature();
+        List<D> features = resultCache.getFeatures(signature, chr, start, end, zoom, loader);
 
-        /**
-         * A process might generate multiple output files, we only want to run it once.
-         * e.g. Cufflinks generates transcripts.gtf, genes.fpkm_tracking, isoforms.fpkm_tracking
-         * If the file exists we just read from it
-         */
+        if (prefetchAdjacent && isStdout()) {
+            prefetchAdjacent(signature, chr, start, end, zoom);
+        }
+        return features.iterator();
+    }
 
-        InputStream dataStream = null;
-        if (!rerun) {
-            File inFile = new File(parser.source);
-            if (inFile.canRead()) {
-                //Use the existing file
-                dataStream = new FileInputStream(parser.source);
+    /**
+     * Start background loads of the tiles of the same width on either side of chr:start-end
+     */
+    private void prefetchAdjacent(String signature, String chr, int start, int end, int zoom) {
+        int width = end - start;
+        if (width <= 0) return;
+
+        int chrLength = Integer.MAX_VALUE;
+        Genome genome = GenomeManager.getInstance().getCurrentGenome();
+        Chromosome chromosome = genome == null ? null : genome.getChromosome(chr);
+        if (chromosome != null) {
+            chrLength = chromosome.getLength();
+        }
+
+        Executor executor = getPrefetchExecutor();
+        if (end < chrLength && end <= Integer.MAX_VALUE - width) {
+            resultCache.prefetch(signature, chr, end, end + width, zoom, loader, executor);
+        }
+        if (start > 0) {
+            resultCache.prefetch(signature, chr, Math.max(0, start - width), start, zoom, loader, executor);
+        }
+    }
+
+    private static synchronized Executor getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            // Bounded queue, prefetches beyond it are dropped rather than run long after the user moved on
+            prefetchExecutor = new ThreadPoolExecutor(PROCESS_POOL_SIZE, PROCESS_POOL_SIZE, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(4 * PROCESS_POOL_SIZE), new NamedThreadFactory("IGV plugin"));
+            prefetchExecutor.allowCoreThreadTimeOut(true);
+        }
+        return prefetchExecutor;
+    }
+
+    /**
+     * Run the plugin for chr:start-end and decode its output.
+     */
+    private List<D> runQuery(String chr, int start, int end, int zoom) throws IOException {
+        String[] fullCmd;
+        String source;
+        List<Map<String, Object>> runAttributes;
+        synchronized (runLock) {
+            fullCmd = genFullCommand(chr, start, end, zoom);
+            source = parser.source;
+            runAttributes = new ArrayList<Map<String, Object>>(attributes);
+            if (!isStdout()) {
+                // A process might generate multiple output files, e.g. Cufflinks generates transcripts.gtf,
+                // genes.fpkm_tracking, isoforms.fpkm_tracking.  Named outputs are overwritten by each run,
+                // so these run one at a time.
+                return execute(fullCmd, source, runAttributes);
             }
         }
+        return execute(fullCmd, source, runAttributes);
+    }
 
-        if (dataStream == null) {
-            //synchronized (this.queryTracker){
-            String[] fullCmd = genFullCommand(chr, start, end, zoom);
-            //log.debug("interval: " + Locus.getFormattedLocusString(chr, start, end));
-            //log.debug(StringUtils.join(fullCmd, " "));
+    private List<D> execute(String[] fullCmd, String source, List<Map<String, Object>> runAttributes)
+            throws IOException {
 
-            //Start cli_plugin process
+        processPermits.acquireUninterruptibly();
+        InputStream dataStream = null;
+        try {
+            runCount.incrementAndGet();
             Process pr = RuntimeUtils.startExternalProcess(fullCmd, null, null);
 
-            if (parser.source.equals(PluginSpecReader.Parser.SOURCE_STDOUT)) {
+            if (source.equals(PluginSpecReader.Parser.SOURCE_STDOUT)) {
+                // Decoded as the process writes it
                 dataStream = pr.getInputStream();
             } else {
                 try {
                     pr.waitFor();
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    throw new IOException("Interrupted while waiting for " + fullCmd[0], e);
                 }
-                dataStream = new FileInputStream(parser.source);
+                dataStream = new FileInputStream(source);
+            }
+
+            //Read back in the data which cli_plugin output
+            FeatureDecoder<D> codec = getDecodingCodec(runAttributes);
+            Iterator<D> iter = codec.decodeAll(dataStream, parser.strict);
+            List<D> features = new ArrayList<D>();
+            while (iter.hasNext()) {
+                features.add(iter.next());
+            }
+            return features;
+        } finally {
+            if (dataStream != null) {
+                dataStream.close();
             }
-            //this.queryTracker.setLastQuery(chr, start, end, zoom);
-            //}
+            processPermits.release();
         }
-        //Read back in the data which cli_plugin output
-        FeatureDecoder<D> codec = getDecodingCodec();
+    }
 
-        return codec.decodeAll(dataStream, parser.strict);
+    private boolean isStdout() {
+        String source = sourceTemplate != null ? sourceTemplate : parser.source;
+        return PluginSpecReader.Parser.SOURCE_STDOUT.equals(source);
+    }
+
+    /**
+     * @return a string identifying the command and argument values, tracks by id
+     */
+    private String getArgumentSignature() {
+        StringBuilder sb = new StringBuilder();
+        for (String cmd : commands) {
+            sb.append(cmd).append('\t');
+        }
+        for (Map.Entry<Argument, Object> entry : arguments.entrySet()) {
+            sb.append(entry.getKey().getName()).append('=');
+            Object value = entry.getValue();
+            if (value instanceof List) {
+                for (Object v : (List) value) {
+                    sb.append(v instanceof Track ? ((Track) v).getId() : v).append(',');
+                }
+            } else {
+                sb.append(value instanceof Track ? ((Track) value).getId() : value);
+            }
+            sb.append('\t');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Discard cached results, e.g. after the data of an input track changed
+     */
+    public void clearResultCache() {
+        resultCache.clear();
+    }
+
+    void setPrefetchAdjacent(boolean prefetchAdjacent) {
+        this.prefetchAdjacent = prefetchAdjacent;
+    }
+
+    /**
+     * @return number of plugin processes started by this source
+     */
+    int getRunCount() {
+        return runCount.get();
     }
 
     /**
@@ -460,9 +601,13 @@ public abstract class PluginSource<E extends Feature, D extends Feature> {
      * @return
      */
     protected final FeatureDecoder<D> getDecodingCodec() {
+        return getDecodingCodec(attributes);
+    }
+
+    private FeatureDecoder<D> getDecodingCodec(List<Map<String, Object>> runAttributes) {
         FeatureDecoder<D> codec = instantiateDecodingCodec(parser.decodingCodec, decodingLibURLs);
         codec.setInputs(Collections.unmodifiableList(commands), Collections.unmodifiableMap(arguments));
-        codec.setAttributes(Collections.unmodifiableList(attributes));
+        codec.setAttributes(Collections.unmodifiableList(runAttributes));
         return codec;
     }
 
@@ -592,12 +737,9 @@ public abstract class PluginSource<E extends Feature, D extends Feature> {
 
     public void updateTrackReferences(List<Track> allTracks) {
         MyMapAdapter.updateTrackReferences(arguments, allTracks);
+        resultCache.clear();
     }
 
-//    public void setQueryTracker(QueryTracker queryTracker){
-//        this.queryTracker = queryTracker;
-//    }
-
     static class XmlMap {
         public List<Argument> arg =
                 new ArrayList<Argument>();
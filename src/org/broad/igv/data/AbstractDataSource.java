@@ -118,12 +118,13 @@ public abstract class AbstractDataSource implements DataSource {
 
         List<SummaryTile> tiles = getSummaryTilesForRange(chr, startLocation, endLocation, zoom);
 
-        scores = new ArrayList(tiles.size() * 700);
+        LocusScoreList tileScores = new LocusScoreList(tiles.size() * 700, true);
 
         for (SummaryTile tile : tiles) {
-            scores.addAll(tile.getScores());
+            tileScores.addAll(tile.getScores());
 
         }
+        scores = tileScores;
         //FeatureUtils.sortFeatureList(summaryScores);
         return scores;
 
@@ -229,15 +230,14 @@ public abstract class AbstractDataSource implements DataSource {
                     String probeName = features == null ? null : features[i];
                     float v = values[i];
 
-                    BasicScore score = new NamedScore(s, e, v, probeName);
-                    tile.addScore(score);
+                    tile.addScore(s, e, v, probeName);
 
                 }
 
 
             } else {
                 float normalizationFactor = 1.0f;
-                List<LocusScore> scores = new ArrayList(nBins);
+                LocusScoreList scores = new LocusScoreList(nBins, true);
                 double scale = (double) (endLocation - startLocation) / nBins;
 
                 Accumulator accumulator = new Accumulator(windowFunction, 5);
@@ -273,13 +273,13 @@ public abstract class AbstractDataSource implements DataSource {
                     // If this feature spans multiple bins, or extends beyond last end bin, record
                     if (endBin > lastEndBin || endBin > startBin) {
                         if (accumulator.hasData()) {
-                            scores.add(getCompositeScore(accumulator, accumulatedStart, accumulatedEnd));
+                            addCompositeScore(scores, accumulator, accumulatedStart, accumulatedEnd);
                             accumulator = new Accumulator(windowFunction, 5);
                         }
                     }
 
                     if (endBin > startBin) {
-                        scores.add(new NamedScore(s, e, v, probeName));
+                        scores.add(s, e, v, probeName);
                     } else {
                         if (!accumulator.hasData()) accumulatedStart = s;
                         accumulatedEnd = e;
@@ -291,7 +291,7 @@ public abstract class AbstractDataSource implements DataSource {
 
                 // Cleanup
                 if (accumulator.hasData()) {
-                    scores.add(getCompositeScore(accumulator, accumulatedStart, accumulatedEnd));
+                    addCompositeScore(scores, accumulator, accumulatedStart, accumulatedEnd);
                 }
 
                 tile.addAllScores(scores);
@@ -303,17 +303,14 @@ public abstract class AbstractDataSource implements DataSource {
         return tile;
     }
 
-    private LocusScore getCompositeScore(Accumulator accumulator, int accumulatedStart, int accumulatedEnd) {
-        LocusScore ls;
+    private void addCompositeScore(LocusScoreList scores, Accumulator accumulator, int accumulatedStart, int accumulatedEnd) {
         if (accumulator.getNpts() == 1) {
-            ls = new NamedScore(accumulatedStart, accumulatedEnd, accumulator.getRepData()[0], accumulator.getRepProbes()[0]);
+            scores.add(accumulatedStart, accumulatedEnd, accumulator.getRepData()[0], accumulator.getRepProbes()[0]);
         } else {
             float value = accumulator.getValue();
-            ls = new CompositeScore(accumulatedStart, accumulatedEnd, value, accumulator.getRepData(),
-                    accumulator.getRepProbes(), windowFunction);
+            scores.add(new CompositeScore(accumulatedStart, accumulatedEnd, value, accumulator.getRepData(),
+                    accumulator.getRepProbes(), windowFunction));
         }
-        return ls;
-
     }
 
 
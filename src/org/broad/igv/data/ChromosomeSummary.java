@@ -42,6 +42,11 @@ public class ChromosomeSummary {
      */
     private long startPosition;
 
+    /**
+     * The position following the last row of this chromosome, or -1 if not known.
+     */
+    private long endPosition = -1;
+
     /**
      * Creates a new instance of ChromsomeSummary
      */
@@ -60,6 +65,14 @@ public class ChromosomeSummary {
         return startPosition;
     }
 
+    public long getEndPosition() {
+        return endPosition;
+    }
+
+    public void setEndPosition(long endPosition) {
+        this.endPosition = endPosition;
+    }
+
     public int getNDataPts() {
         return nDataPoints;
     }
@@ -20,11 +20,12 @@ package org.broad.igv.data;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
-import org.broad.igv.feature.Chromosome;
+import org.broad.igv.data.expression.ExpressionDataset;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackType;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +40,7 @@ public class DatasetDataSource extends AbstractDataSource {
     String trackId;
     Dataset dataset;
     GenomeSummaryData genomeSummaryData;
+    WholeGenomeSummaryService.Summary<Boolean> genomeSummary;
 
     /**
      *
@@ -46,25 +48,36 @@ public class DatasetDataSource extends AbstractDataSource {
      * @param dataset
      * @param genome
      */
-    public DatasetDataSource(String trackId, Dataset dataset, Genome genome) {
+    public DatasetDataSource(final String trackId, final Dataset dataset, Genome genome) {
         super(genome);
         this.trackId = trackId;
         this.dataset = dataset;
 
         // TODO -- remove this "instanceof" hack
         if (genome.getHomeChromosome().equals(Globals.CHR_ALL)) {
+            GenomeSummaryData cachedSummary = dataset instanceof ExpressionDataset ?
+                    ((ExpressionDataset) dataset).getGenomeSummary(trackId) : null;
             if (dataset instanceof IGVDataset) {
                 genomeSummaryData = ((IGVDataset) dataset).getGenomeSummary();
+            } else if (cachedSummary != null) {
+                genomeSummaryData = cachedSummary;
             } else {
-                genomeSummaryData = new GenomeSummaryData(genome, new String[]{trackId});
-                for (Chromosome chr : genome.getChromosomes()) {
-                    int[] startLocations = dataset.getStartLocations(chr.getName());
-                    if (!chr.getName().equals(Globals.CHR_ALL) && (startLocations != null) && (startLocations.length > 0)) {
-                        Map<String, float[]> dMap = new HashMap<String, float[]>();
-                        dMap.put(trackId, dataset.getData(trackId, chr.getName()));
-                        genomeSummaryData.addData(chr.getName(), startLocations, dMap);
-                    }
-                }
+                // Summarize chromosomes in parallel, the whole genome view is empty until all are complete
+                final GenomeSummaryData summaryData = new GenomeSummaryData(genome, new String[]{trackId});
+                genomeSummaryData = summaryData;
+                genomeSummary = WholeGenomeSummaryService.getInstance().getSummary(this, trackId, genome,
+                        new WholeGenomeSummaryService.ChromosomeSummarizer<Boolean>() {
+                            public Boolean summarize(String chr) {
+                                int[] startLocations = dataset.getStartLocations(chr);
+                                if ((startLocations == null) || (startLocations.length == 0)) {
+                                    return false;
+                                }
+                                Map<String, float[]> dMap = new HashMap<String, float[]>();
+                                dMap.put(trackId, dataset.getData(trackId, chr));
+                                summaryData.addData(chr, startLocations, dMap);
+                                return true;
+                            }
+                        });
             }
         }
     }
@@ -74,6 +87,9 @@ public class DatasetDataSource extends AbstractDataSource {
     protected DataTile getRawData(String chr, int startLocation, int endLocation) {
 
         if (chr.equals(Globals.CHR_ALL) && genomeSummaryData != null) {
+            if (!isGenomeSummaryComplete()) {
+                return null;
+            }
             int[] startLocs = genomeSummaryData.getLocations();
             int[] endLocs = null;
             float[] data = genomeSummaryData.getData(trackId);
@@ -94,9 +110,18 @@ public class DatasetDataSource extends AbstractDataSource {
 
     @Override
     protected List<LocusScore> getPrecomputedSummaryScores(String chr, int startLocation, int endLocation, int zoom) {
+        // Don't block painting while the whole genome summary is computed, or cache empty tiles.  Data panels are
+        // repainted when it completes.
+        if (chr.equals(Globals.CHR_ALL) && !isGenomeSummaryComplete()) {
+            return Collections.emptyList();
+        }
         return null;
     }
 
+    private boolean isGenomeSummaryComplete() {
+        return genomeSummary == null || genomeSummary.isComplete();
+    }
+
 
     public TrackType getTrackType() {
         try {
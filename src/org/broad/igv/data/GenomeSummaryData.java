@@ -68,7 +68,7 @@ public class GenomeSummaryData {
 
     int nDataPts = 0;
 
-    Set<String> skippedChromosomes = new HashSet<String>();
+    Set<String> skippedChromosomes = Collections.synchronizedSet(new HashSet<String>());
 
 
     /**
@@ -106,7 +106,8 @@ public class GenomeSummaryData {
 
 
     /**
-     * Add data to be condensed for the whole genome view
+     * Add data to be condensed for the whole genome view.  Data for different chromosomes can be added
+     * concurrently, data for a given chromosome must be added by one thread in order.
      *
      * @param chr
      * @param locs Genomic positions
@@ -116,13 +117,14 @@ public class GenomeSummaryData {
 
         IntArrayList locations = locationMap.get(chr);
         if (locations == null) {
-            if (!skippedChromosomes.contains(chr)) {
-                skippedChromosomes.add(chr);
+            if (skippedChromosomes.add(chr)) {
                 log.info("Skipping data for: " + chr);
             }
             return;
         }
 
+        Map<String, FloatArrayList> chrData = dataMap.get(chr);
+        int nLocations = 0;
         int lastPixel = -1;
         int lastGenomeLocation = -1;
         Map<String, Accumulator> dataPoints = new HashMap<String, Accumulator>();
@@ -133,7 +135,8 @@ public class GenomeSummaryData {
             int pixel = (int) (genomeLocation / scale);
             if (lastPixel >= 0 && pixel != lastPixel) {
                 locations.add(lastGenomeLocation);
-                finishLastLocation(chr, dataPoints);
+                finishLastLocation(chrData, dataPoints);
+                nLocations++;
             }
 
             for (String s : samples) {
@@ -155,25 +158,71 @@ public class GenomeSummaryData {
         }
 
         locations.add(lastGenomeLocation);
-        finishLastLocation(chr, dataPoints);
+        finishLastLocation(chrData, dataPoints);
+        nLocations++;
+
+        synchronized (this) {
+            nDataPts += nLocations;
+        }
     }
 
     /**
      * Mark the previous genomic location as having been completely summarized
-     * @param chr
+     * @param chrData  Map sample -> summarized data of the chromosome
      * @param dataPoints  Map sample -> accumulator, which stored data temporarily being accumulated at a given genome location
      */
-    private void finishLastLocation(String chr, Map<String, Accumulator> dataPoints) {
-        nDataPts++;
-
-        for (String s : dataMap.get(chr).keySet()) {
-            Accumulator dp = dataPoints.get(s);
+    private void finishLastLocation(Map<String, FloatArrayList> chrData, Map<String, Accumulator> dataPoints) {
+        for (Map.Entry<String, FloatArrayList> entry : chrData.entrySet()) {
+            Accumulator dp = dataPoints.get(entry.getKey());
             dp.finish();
-            dataMap.get(chr).get(s).add(dp.getValue());
+            entry.getValue().add(dp.getValue());
         }
         dataPoints.clear();
     }
 
+    /**
+     * Chromosomes for which summarized data has been added.  Together with {@link #getChromosomeLocations(String)} and
+     * {@link #getChromosomeData(String, String)} this allows the summary to be persisted, it is only valid until
+     * the whole genome arrays have been created.
+     */
+    public synchronized List<String> getSummarizedChromosomes() {
+        List<String> chrs = new ArrayList<String>();
+        for (String chr : genome.getLongChromosomeNames()) {
+            IntArrayList locs = locationMap.get(chr);
+            if (locs != null && locs.size() > 0) {
+                chrs.add(chr);
+            }
+        }
+        return chrs;
+    }
+
+    public int[] getChromosomeLocations(String chr) {
+        return locationMap.get(chr).toArray();
+    }
+
+    public float[] getChromosomeData(String chr, String sample) {
+        return dataMap.get(chr).get(sample).toArray();
+    }
+
+    /**
+     * Restore previously summarized data of a chromosome, as returned by {@link #getChromosomeLocations(String)}
+     * and {@link #getChromosomeData(String, String)}.
+     */
+    public void setChromosomeData(String chr, int[] locs, Map<String, float[]> sampleData) {
+        IntArrayList locations = locationMap.get(chr);
+        if (locations == null) {
+            return;
+        }
+        locations.addAll(locs);
+        Map<String, FloatArrayList> chrData = dataMap.get(chr);
+        for (String s : samples) {
+            chrData.get(s).addAll(sampleData.get(s));
+        }
+        synchronized (this) {
+            nDataPts += locs.length;
+        }
+    }
+
     public int[] getLocations() {
         if (locations == null) {
             createDataArrays();
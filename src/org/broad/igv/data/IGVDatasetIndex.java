@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.PreferenceManager;
+import org.broad.igv.feature.genome.Genome;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Persists the results of {@link IGVDatasetParser#scan(IGVDataset)} for a local .igv or .cn file, so the file is
+ * not read in full when it is reopened.  The index records the byte range and row count of each chromosome, the
+ * data range, the longest feature of each chromosome, and the whole genome summary.
+ * <p/>
+ * The index is a {@link SummaryFile}, valid for one genome.
+ */
+public class IGVDatasetIndex {
+
+    private static Logger log = Logger.getLogger(IGVDatasetIndex.class);
+
+    private static final int MAGIC = 0x49474458;   // "IGDX"
+    private static final int VERSION = 2;
+
+    private final SummaryFile indexFile;
+
+    IGVDatasetIndex(File dataFile, String genomeId, File directory) {
+        this.indexFile = new SummaryFile(dataFile, directory, ".igvidx", MAGIC, VERSION, genomeId);
+    }
+
+    /**
+     * Return the index for the local, uncompressed file {@code path}, or null if the file is remote or compressed,
+     * or summaries are not to be persisted.
+     */
+    public static IGVDatasetIndex forPath(String path, Genome genome) {
+        if (path == null || genome == null || path.endsWith(".gz") ||
+                !PreferenceManager.getInstance().getAsBoolean(PreferenceManager.PERSIST_GENOME_SUMMARIES)) {
+            return null;
+        }
+        File dataFile = new File(path);
+        if (!dataFile.isFile()) {
+            return null;
+        }
+        File directory = DirectoryManager.getSummaryDirectory();
+        return directory == null ? null : new IGVDatasetIndex(dataFile, genome.getId(), directory);
+    }
+
+    File getFile() {
+        return indexFile.getFile();
+    }
+
+    /**
+     * Read the index into {@code dataset}.  The header of the data file has already been parsed, the data headings
+     * of the index must match those of {@code dataset}.
+     *
+     * @return the chromosome summaries, in file order, or null if there is no valid index
+     */
+    public List<ChromosomeSummary> read(IGVDataset dataset, Genome genome) {
+        if (!indexFile.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile.getFile())));
+            if (!indexFile.readHeader(in)) {
+                return null;
+            }
+
+            String[] headings = new String[in.readInt()];
+            for (int i = 0; i < headings.length; i++) {
+                headings[i] = in.readUTF();
+            }
+            if (!Arrays.equals(headings, dataset.getTrackNames())) {
+                return null;
+            }
+
+            float dataMin = in.readFloat();
+            float dataMax = in.readFloat();
+            boolean logNormalized = in.readBoolean();
+
+            int nChromosomes = in.readInt();
+            List<ChromosomeSummary> summaries = new ArrayList<ChromosomeSummary>(nChromosomes);
+            for (int i = 0; i < nChromosomes; i++) {
+                ChromosomeSummary summary = new ChromosomeSummary(in.readUTF(), in.readLong());
+                summary.setEndPosition(in.readLong());
+                summary.setNDataPoints(in.readInt());
+                summaries.add(summary);
+            }
+
+            int nLongest = in.readInt();
+            Map<String, Integer> longestFeatureMap = new HashMap<String, Integer>(nLongest * 2);
+            for (int i = 0; i < nLongest; i++) {
+                longestFeatureMap.put(in.readUTF(), in.readInt());
+            }
+
+            GenomeSummaryData genomeSummary = null;
+            int nSummaryChromosomes = in.readInt();
+            if (nSummaryChromosomes >= 0) {
+                genomeSummary = new GenomeSummaryData(genome, headings);
+                for (int i = 0; i < nSummaryChromosomes; i++) {
+                    String chr = in.readUTF();
+                    int[] locations = new int[in.readInt()];
+                    for (int j = 0; j < locations.length; j++) {
+                        locations[j] = in.readInt();
+                    }
+                    Map<String, float[]> data = new HashMap<String, float[]>(headings.length * 2);
+                    for (String h : headings) {
+                        float[] values = new float[locations.length];
+                        for (int j = 0; j < values.length; j++) {
+                            values[j] = in.readFloat();
+                        }
+                        data.put(h, values);
+                    }
+                    genomeSummary.setChromosomeData(chr, locations, data);
+                }
+            }
+
+            dataset.setDataMin(dataMin);
+            dataset.setDataMax(dataMax);
+            dataset.setLogNormalized(logNormalized);
+            dataset.setLongestFeatureMap(longestFeatureMap);
+            if (genomeSummary != null) {
+                dataset.setGenomeSummary(genomeSummary);
+            }
+            return summaries;
+
+        } catch (IOException e) {
+            log.info("Ignoring unreadable index " + getFile().getAbsolutePath(), e);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Write the index.  The genome summary of {@code dataset}, if any, must not have been accessed yet.
+     */
+    public void write(final IGVDataset dataset, final List<ChromosomeSummary> summaries,
+                      final Map<String, Integer> longestFeatureMap) {
+        indexFile.write(new SummaryFile.Body() {
+            public void write(DataOutputStream out) throws IOException {
+                String[] headings = dataset.getTrackNames();
+                out.writeInt(headings.length);
+                for (String h : headings) {
+                    out.writeUTF(h);
+                }
+
+                out.writeFloat(dataset.getDataMin());
+                out.writeFloat(dataset.getDataMax());
+                out.writeBoolean(dataset.isLogNormalized());
+
+                out.writeInt(summaries.size());
+                for (ChromosomeSummary summary : summaries) {
+                    out.writeUTF(summary.getName());
+                    out.writeLong(summary.getStartPosition());
+                    out.writeLong(summary.getEndPosition());
+                    out.writeInt(summary.getNDataPts());
+                }
+
+                out.writeInt(longestFeatureMap.size());
+                for (Map.Entry<String, Integer> entry : longestFeatureMap.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue());
+                }
+
+                GenomeSummaryData genomeSummary = dataset.getGenomeSummary();
+                if (genomeSummary == null) {
+                    out.writeInt(-1);
+                } else {
+                    List<String> chrs = genomeSummary.getSummarizedChromosomes();
+                    out.writeInt(chrs.size());
+                    for (String chr : chrs) {
+                        out.writeUTF(chr);
+                        int[] locations = genomeSummary.getChromosomeLocations(chr);
+                        out.writeInt(locations.length);
+                        for (int loc : locations) {
+                            out.writeInt(loc);
+                        }
+                        for (String h : headings) {
+                            for (float v : genomeSummary.getChromosomeData(chr, h)) {
+                                out.writeFloat(v);
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+}
@@ -21,12 +21,14 @@ import org.broad.igv.track.TrackType;
 import org.broad.igv.track.WindowFunction;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.util.MessageUtils;
+import org.broad.igv.util.NamedThreadFactory;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.collections.FloatArrayList;
 import org.broad.igv.util.collections.IntArrayList;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
 import htsjdk.tribble.readers.AsciiLineReader;
+import org.broad.igv.util.LineTokenizer;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -35,6 +37,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
 
 
 /**
@@ -46,6 +49,19 @@ import java.util.Map;
 public class IGVDatasetParser {
 
     private static Logger log = Logger.getLogger(IGVDatasetParser.class);
+
+    /**
+     * Minimum size, in bytes, of the pieces of a chromosome loaded concurrently
+     */
+    static long minChunkSize = 1 << 20;
+
+    /**
+     * Maximum number of pieces a chromosome is split into
+     */
+    static int maxChunks = Runtime.getRuntime().availableProcessors();
+
+    private static ExecutorService loadExecutor;
+
     private ResourceLocator dataResourceLocator;
     private int chrColumn = -1;
     private int startColumn = -1;
@@ -148,14 +164,14 @@ public class IGVDatasetParser {
      */
     public List<ChromosomeSummary> scan(IGVDataset dataset) {
 
-        int estLineCount = ParsingUtils.estimateLineCount(dataResourceLocator.getPath());
         Map<String, Integer> longestFeatureMap = new HashMap();
+        IGVDatasetIndex index = IGVDatasetIndex.forPath(dataResourceLocator.getPath(), genome);
 
         float dataMin = 0;
         float dataMax = 0;
 
         InputStream is = null;
-        AsciiLineReader reader = null;
+        LineTokenizer reader = null;
         String nextLine = null;
         ChromosomeSummary chrSummary = null;
         List<ChromosomeSummary> chrSummaries = new ArrayList();
@@ -173,7 +189,7 @@ public class IGVDatasetParser {
 
             // BufferedReader reader = ParsingUtils.openBufferedReader(dataResourceLocator);
             is = ParsingUtils.openInputStreamGZ(dataResourceLocator);
-            reader = new AsciiLineReader(is);
+            reader = new LineTokenizer(is);
 
             // Infer datatype from extension.  This can be overriden in the
             // comment section
@@ -215,6 +231,17 @@ public class IGVDatasetParser {
 
             dataset.setDataHeadings(headings);
 
+            // Use the index from a previous scan, if it is still valid
+            if (index != null) {
+                List<ChromosomeSummary> indexedSummaries = index.read(dataset, genome);
+                if (indexedSummaries != null) {
+                    log.info("Loaded chromosome index " + index.getFile().getAbsolutePath());
+                    return indexedSummaries;
+                }
+            }
+
+            int estLineCount = ParsingUtils.estimateLineCount(dataResourceLocator.getPath());
+
             // Infer if the data is logNormalized by looking for negative data values.
             // Assume it is not until proven otherwise
             logNormalized = false;
@@ -223,26 +250,42 @@ public class IGVDatasetParser {
 
             int chrRowCount = 0;
 
+            // Data columns, and the value lists they are accumulated in
+            int[] dataColumns = new int[headings.length];
+            for (int idx = 0; idx < headings.length; idx++) {
+                dataColumns[idx] = firstDataColumn + idx * skipColumns;
+            }
+            float[] values = new float[headings.length];
+            FloatArrayList[] wgLists = getDataLists(wgData, headings);
+
+            // Chromosome name as it appears in the file, and its alias
+            String lastChr = null;
+            String thisChr = null;
+
             // Update
             int updateCount = 5000;
-            long lastPosition = 0;
-            while ((nextLine = reader.readLine()) != null) {
+            long lastPosition = reader.getPosition();
+            nextLine = null;
+            while (reader.nextLine()) {
 
                 if (igv != null && ++count % updateCount == 0) {
                     igv.setStatusBarMessage("Loaded: " + count + " / " + estLineCount + " (est)");
                 }
                 // Distance since last sample
 
-                String[] tokens = Globals.tabPattern.split(nextLine, -1);
-                int nTokens = tokens.length;
+                int nTokens = reader.getTokenCount();
                 if (nTokens > 0) {
-                    String thisChr = genome.getChromosomeAlias(tokens[chrColumn]);
+                    if (!reader.tokenEquals(chrColumn, lastChr)) {
+                        lastChr = reader.getString(chrColumn);
+                        thisChr = genome.getChromosomeAlias(lastChr);
+                    }
                     if (chrSummary == null || !thisChr.equals(chrSummary.getName())) {
                         // Update whole genome and previous chromosome summary, unless this is
                         // the first chromosome
                         if (chrSummary != null) {
                             updateWholeGenome(chrSummary.getName(), dataset, headings, wgData);
                             chrSummary.setNDataPoints(nRows);
+                            chrSummary.setEndPosition(lastPosition);
                         }
 
                         // Shart the next chromosome
@@ -250,6 +293,7 @@ public class IGVDatasetParser {
                         chrSummaries.add(chrSummary);
                         nRows = 0;
                         wgData = new WholeGenomeData(headings);
+                        wgLists = getDataLists(wgData, headings);
                         chrRowCount = 0;
 
                     }
@@ -257,25 +301,25 @@ public class IGVDatasetParser {
 
                     int location = -1;
                     try {
-                        location = ParsingUtils.parseInt(tokens[startColumn]) - startBase;
+                        location = reader.getInt(startColumn) - startBase;
 
                     } catch (NumberFormatException numberFormatException) {
-                        log.error("Column " + tokens[startColumn] + " is not a number");
+                        log.error("Column " + reader.getString(startColumn) + " is not a number");
                         throw new ParserException("Column " + (startColumn + 1) +
-                                " must contain an integer value." + " Found: " + tokens[startColumn],
-                                count + headerRows, nextLine);
+                                " must contain an integer value." + " Found: " + reader.getString(startColumn),
+                                count + headerRows, reader.getLine());
                     }
 
                     int length = 1;
                     if (hasEndLocations) {
                         try {
-                            length = ParsingUtils.parseInt(tokens[endColumn].trim()) - location + 1;
+                            length = reader.getInt(endColumn) - location + 1;
 
                         } catch (NumberFormatException numberFormatException) {
-                            log.error("Column " + tokens[endColumn] + " is not a number");
+                            log.error("Column " + reader.getString(endColumn) + " is not a number");
                             throw new ParserException("Column " + (endColumn + 1) +
-                                    " must contain an integer value." + " Found: " + tokens[endColumn],
-                                    count + headerRows, nextLine);
+                                    " must contain an integer value." + " Found: " + reader.getString(endColumn),
+                                    count + headerRows, reader.getLine());
                         }
                     }
 
@@ -288,11 +332,9 @@ public class IGVDatasetParser {
 
                     wgData.locations.add(location);
 
+                    reader.getFloats(dataColumns, values, Float.NaN);
                     for (int idx = 0; idx < headings.length; idx++) {
-                        int i = firstDataColumn + idx * skipColumns;
-
-                        float copyNo = i < tokens.length ? readFloat(tokens[i]) : Float.NaN;
-
+                        float copyNo = values[idx];
                         if (!Float.isNaN(copyNo)) {
                             dataMin = Math.min(dataMin, copyNo);
                             dataMax = Math.max(dataMax, copyNo);
@@ -300,8 +342,7 @@ public class IGVDatasetParser {
                         if (copyNo < 0) {
                             logNormalized = true;
                         }
-                        String heading = headings[idx];
-                        wgData.data.get(heading).add(copyNo);
+                        wgLists[idx].add(copyNo);
                     }
 
                     nRows++;
@@ -310,6 +351,10 @@ public class IGVDatasetParser {
                 chrRowCount++;
             }
 
+            if (chrSummary != null) {
+                chrSummary.setEndPosition(lastPosition);
+            }
+
             dataset.setLongestFeatureMap(longestFeatureMap);
 
         } catch (ParserException pe) {
@@ -320,6 +365,9 @@ public class IGVDatasetParser {
             throw new RuntimeException(e);
         } catch (Exception e) {
             log.error("Exception when loading: " + dataResourceLocator.getPath(), e);
+            if (nextLine == null && count > 0) {
+                nextLine = reader.getLine();
+            }
             if (nextLine != null && (count + headerRows != 0)) {
                 throw new ParserException(e.getMessage(), e, count + headerRows, nextLine);
             } else {
@@ -345,6 +393,10 @@ public class IGVDatasetParser {
         dataset.setDataMin(dataMin);
         dataset.setDataMax(dataMax);
 
+        if (index != null && chrSummaries.size() > 0) {
+            index.write(dataset, chrSummaries, longestFeatureMap);
+        }
+
         return chrSummaries;
     }
 
@@ -356,22 +408,17 @@ public class IGVDatasetParser {
         }
     }
 
-    private float readFloat(String token) {
-        float copyNo = Float.NaN;
-        try {
-            if (token != null) {
-                copyNo = Float.parseFloat(token);
-            }
-
-        } catch (NumberFormatException e) {
-            // This is an expected condition.
+    private static FloatArrayList[] getDataLists(WholeGenomeData wgData, String[] headings) {
+        FloatArrayList[] lists = new FloatArrayList[headings.length];
+        for (int idx = 0; idx < headings.length; idx++) {
+            lists[idx] = wgData.data.get(headings[idx]);
         }
-        return copyNo;
-
+        return lists;
     }
 
     /**
-     * Load data for a single chromosome.
+     * Load data for a single chromosome.  If the byte range of the chromosome is known, from the scan or the index,
+     * large ranges are split at line boundaries and the pieces parsed concurrently.
      *
      * @param chrSummary
      * @param dataHeaders
@@ -379,103 +426,223 @@ public class IGVDatasetParser {
      */
     public ChromosomeData loadChromosomeData(ChromosomeSummary chrSummary, String[] dataHeaders) {
 
-        // InputStream is = null;
         try {
-            int skipColumns = hasCalls ? 2 : 1;
+            long start = chrSummary.getStartPosition();
+            long end = chrSummary.getEndPosition();
 
             // Get an estimate of the number of snps (rows).  THIS IS ONLY AN ESTIMATE
             int nRowsEst = chrSummary.getNDataPts();
 
-            SeekableStream is = IGVSeekableStreamFactory.getInstance().getStreamFor(dataResourceLocator.getPath());
-            is.seek(chrSummary.getStartPosition());
-            AsciiLineReader reader = new AsciiLineReader(is);
+            int nChunks = 1;
+            if (end > start && !dataResourceLocator.getPath().endsWith(".gz")) {
+                nChunks = (int) Math.min(maxChunks, (end - start) / minChunkSize);
+            }
 
+            Rows rows;
+            if (nChunks <= 1) {
+                rows = loadRows(chrSummary.getName(), start, end, false, dataHeaders, nRowsEst);
+            } else {
+                rows = loadRows(chrSummary.getName(), start, end, nChunks, dataHeaders, nRowsEst);
+            }
 
-            // Create containers to hold data
-            IntArrayList startLocations = new IntArrayList(nRowsEst);
-            IntArrayList endLocations = (hasEndLocations ? new IntArrayList(nRowsEst) : null);
-            List<String> probes = new ArrayList(nRowsEst);
+            // Loop complete
+            ChromosomeData cd = new ChromosomeData(chrSummary.getName());
+            cd.setProbes(rows.probes.toArray(new String[rows.probes.size()]));
+            cd.setStartLocations(rows.startLocations.toArray());
+            if (hasEndLocations) {
+                cd.setEndLocations(rows.endLocations.toArray());
+            }
 
-            Map<String, FloatArrayList> dataMap = new HashMap();
-            for (String h : dataHeaders) {
-                dataMap.put(h, new FloatArrayList(nRowsEst));
+            for (int idx = 0; idx < dataHeaders.length; idx++) {
+                cd.setData(dataHeaders[idx], rows.data[idx].toArray());
+            }
+
+            return cd;
+
+        } catch (IOException ex) {
+            log.error("Error parsing cn file", ex);
+            throw new RuntimeException("Error parsing cn file", ex);
+        }
+
+    }
+
+    /**
+     * Split the range [start, end) into {@code nChunks} pieces, load them concurrently, and concatenate the results.
+     */
+    private Rows loadRows(final String chromosome, long start, long end, int nChunks,
+                          final String[] dataHeaders, int nRowsEst) throws IOException {
+
+        final int chunkRowsEst = nRowsEst / nChunks + 1;
+        long chunkSize = (end - start) / nChunks;
+        List<Future<Rows>> futures = new ArrayList<Future<Rows>>(nChunks);
+        for (int i = 0; i < nChunks; i++) {
+            final long chunkStart = start + i * chunkSize;
+            final long chunkEnd = (i == nChunks - 1) ? end : chunkStart + chunkSize;
+            final boolean partialLine = i > 0;
+            futures.add(getLoadExecutor().submit(new Callable<Rows>() {
+                public Rows call() throws Exception {
+                    return loadRows(chromosome, chunkStart, chunkEnd, partialLine, dataHeaders, chunkRowsEst);
+                }
+            }));
+        }
+
+        try {
+            Rows rows = futures.get(0).get();
+            for (int i = 1; i < nChunks; i++) {
+                rows.addAll(futures.get(i).get());
+            }
+            return rows;
+        } catch (InterruptedException e) {
+            for (Future<Rows> f : futures) {
+                f.cancel(true);
+            }
+            throw new RuntimeException("Interrupted while loading " + chromosome, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Load the rows of {@code chromosome} which start in the byte range [start, end).  If {@code end} is unknown (< 0)
+     * rows are read until the chromosome changes.
+     *
+     * @param partialLine true if {@code start} is not known to be the start of a line.  Rows are then read from the
+     *                    first line starting at or after {@code start}.
+     */
+    private Rows loadRows(String chromosome, long start, long end, boolean partialLine,
+                          String[] dataHeaders, int nRowsEst) throws IOException {
+
+        int skipColumns = hasCalls ? 2 : 1;
+
+        // Create containers to hold data
+        Rows rows = new Rows(nRowsEst, dataHeaders.length);
+
+        int[] dataColumns = new int[dataHeaders.length];
+        for (int idx = 0; idx < dataHeaders.length; idx++) {
+            int i = firstDataColumn + idx * skipColumns;
+            dataColumns[idx] = i <= lastDataColumn ? i : Integer.MAX_VALUE;
+        }
+        float[] values = new float[dataHeaders.length];
+
+        SeekableStream is = IGVSeekableStreamFactory.getInstance().getStreamFor(dataResourceLocator.getPath());
+        try {
+            // Back up one byte, so a line starting exactly at start is not skipped as partial
+            long streamStart = partialLine ? start - 1 : start;
+            is.seek(streamStart);
+            LineTokenizer reader = new LineTokenizer(is);
+            if (partialLine) {
+                reader.nextLine();
             }
 
             // Begin loop through rows
-            String chromosome = chrSummary.getName();
             boolean chromosomeStarted = false;
-            String nextLine = reader.readLine();
+            String lastChr = null;
+            String thisChromosome = null;
+
+            while (reader.nextLine()) {
 
-            while ((nextLine != null) && (nextLine.trim().length() > 0)) {
+                if (end >= 0 && streamStart + reader.getLineStartPosition() >= end) {
+                    break;
+                }
+                if (reader.isBlank()) {
+                    if (end < 0) break;
+                    continue;
+                }
 
-                if (!nextLine.startsWith("#")) {
+                if (!reader.startsWith("#")) {
                     try {
-                        String[] tokens = Globals.tabPattern.split(nextLine, -1);
+                        int nTokens = reader.getTokenCount();
 
-                        String thisChromosome = genome.getChromosomeAlias(tokens[chrColumn].trim());
+                        if (!reader.tokenEquals(chrColumn, lastChr)) {
+                            lastChr = reader.getString(chrColumn);
+                            thisChromosome = genome.getChromosomeAlias(lastChr.trim());
+                        }
                         if (thisChromosome.equals(chromosome)) {
                             chromosomeStarted = true;
 
-                            // chromosomeData.setMarkerId(nRows, tokens[0]);
+                            // The probe
+                            rows.probes.add(reader.getString(probeColumn));
 
-                            // The probe.  A new string is created to prevent holding on to the entire row through a substring reference
-                            String probe = new String(tokens[probeColumn]);
-                            probes.add(probe);
-
-                            int start = ParsingUtils.parseInt(tokens[startColumn].trim()) - startBase;
+                            int rowStart = reader.getInt(startColumn) - startBase;
                             if (hasEndLocations) {
-                                endLocations.add(ParsingUtils.parseInt(tokens[endColumn].trim()));
+                                rows.endLocations.add(reader.getInt(endColumn));
                             }
 
-                            startLocations.add(start);
+                            rows.startLocations.add(rowStart);
 
-                            if(tokens.length <= firstDataColumn + (dataHeaders.length - 1)*skipColumns){
-                                String msg = "Line has too few data columns: " + nextLine;
+                            if (nTokens <= firstDataColumn + (dataHeaders.length - 1) * skipColumns) {
+                                String msg = "Line has too few data columns: " + reader.getLine();
                                 log.error(msg);
                                 throw new RuntimeException(msg);
                             }
 
+                            reader.getFloats(dataColumns, values, Float.NaN);
                             for (int idx = 0; idx < dataHeaders.length; idx++) {
-                                int i = firstDataColumn + idx * skipColumns;
-                                float copyNo = i <= lastDataColumn ? readFloat(tokens[i]) : Float.NaN;
-                                String heading = dataHeaders[idx];
-                                dataMap.get(heading).add(copyNo);
+                                rows.data[idx].add(values[idx]);
                             }
 
-
-                        } else if (chromosomeStarted) {
+                        } else if (chromosomeStarted && end < 0) {
                             break;
                         }
 
                     } catch (NumberFormatException numberFormatException) {
 
                         // Skip line
-                        log.info("Skipping line (NumberFormatException) " + nextLine);
+                        log.info("Skipping line (NumberFormatException) " + reader.getLine());
                     }
                 }
-
-                nextLine = reader.readLine();
             }
+        } finally {
+            is.close();
+        }
+        return rows;
+    }
 
-            // Loop complete
-            ChromosomeData cd = new ChromosomeData(chrSummary.getName());
-            cd.setProbes(probes.toArray(new String[]{}));
-            cd.setStartLocations(startLocations.toArray());
-            if (hasEndLocations) {
-                cd.setEndLocations(endLocations.toArray());
-            }
+    private static synchronized ExecutorService getLoadExecutor() {
+        if (loadExecutor == null) {
+            int nThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+            loadExecutor = Executors.newFixedThreadPool(nThreads, new NamedThreadFactory("IGV dataset loader"));
+        }
+        return loadExecutor;
+    }
 
-            for (String h : dataHeaders) {
-                cd.setData(h, dataMap.get(h).toArray());
+    /**
+     * Rows of a chromosome, or of part of a chromosome
+     */
+    private class Rows {
+
+        IntArrayList startLocations;
+        IntArrayList endLocations;
+        List<String> probes;
+        FloatArrayList[] data;
+
+        Rows(int nRowsEst, int nColumns) {
+            nRowsEst = Math.max(nRowsEst, 100);
+            startLocations = new IntArrayList(nRowsEst);
+            endLocations = (hasEndLocations ? new IntArrayList(nRowsEst) : null);
+            probes = new ArrayList<String>(nRowsEst);
+            data = new FloatArrayList[nColumns];
+            for (int idx = 0; idx < nColumns; idx++) {
+                data[idx] = new FloatArrayList(nRowsEst);
             }
-
-            return cd;
-
-        } catch (IOException ex) {
-            log.error("Error parsing cn file", ex);
-            throw new RuntimeException("Error parsing cn file", ex);
         }
 
+        void addAll(Rows other) {
+            startLocations.addAll(other.startLocations);
+            if (endLocations != null) {
+                endLocations.addAll(other.endLocations);
+            }
+            probes.addAll(other.probes);
+            for (int idx = 0; idx < data.length; idx++) {
+                data[idx].addAll(other.data[idx]);
+            }
+        }
     }
 
     /**
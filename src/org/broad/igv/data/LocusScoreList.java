@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.feature.LocusScore;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A list of scores stored as columns of starts, ends, values and optional names, rather than as one object per
+ * score.  Renderers and tracks read the columns directly, see {@link #getStart(int)} etc.  Other code sees an
+ * ordinary list, {@link #get(int)} creates a {@link NamedScore} for lists created as named, otherwise a
+ * {@link BasicScore}, on each call.
+ * <p/>
+ * Scores which carry more than position, value and name, for example composite scores with representative data,
+ * can be added as objects with {@link #add(LocusScore)}.  Their position and value are also stored in the
+ * columns, and {@link #get(int)} returns the object itself.
+ * <p/>
+ * Lists are not thread safe while being built.  Sub lists share the columns of their parent and are read only.
+ */
+public class LocusScoreList extends AbstractList<LocusScore> implements RandomAccess {
+
+    private int[] starts;
+    private int[] ends;
+    private float[] values;
+    private String[] names;
+    private LocusScore[] objects;
+    private final boolean named;
+    private final boolean readOnly;
+    private int offset;
+    private int size;
+
+    public LocusScoreList(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * @param capacity initial capacity
+     * @param named    true if {@link #get(int)} should create NamedScores
+     */
+    public LocusScoreList(int capacity, boolean named) {
+        this.named = named;
+        this.readOnly = false;
+        capacity = Math.max(1, capacity);
+        starts = new int[capacity];
+        ends = new int[capacity];
+        values = new float[capacity];
+    }
+
+    private LocusScoreList(LocusScoreList parent, int offset, int size) {
+        this.starts = parent.starts;
+        this.ends = parent.ends;
+        this.values = parent.values;
+        this.names = parent.names;
+        this.objects = parent.objects;
+        this.named = parent.named;
+        this.readOnly = true;
+        this.offset = parent.offset + offset;
+        this.size = size;
+    }
+
+    /**
+     * Return {@code scores} as a LocusScoreList, copying them into one if necessary.  Copied scores are kept as
+     * objects, so {@link #get(int)} returns the original scores.
+     */
+    public static LocusScoreList asLocusScoreList(List<? extends LocusScore> scores) {
+        if (scores instanceof LocusScoreList) {
+            return (LocusScoreList) scores;
+        }
+        LocusScoreList list = new LocusScoreList(scores.size());
+        for (LocusScore score : scores) {
+            list.add(score);
+        }
+        return list;
+    }
+
+    public void add(int start, int end, float value) {
+        add(start, end, value, null);
+    }
+
+    public void add(int start, int end, float value, String name) {
+        checkWritable();
+        ensureCapacity(size + 1);
+        int idx = offset + size;
+        starts[idx] = start;
+        ends[idx] = end;
+        values[idx] = value;
+        if (name != null) {
+            if (names == null) names = new String[starts.length];
+            names[idx] = name;
+        }
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public boolean add(LocusScore score) {
+        checkWritable();
+        int idx = offset + size;
+        add(score.getStart(), score.getEnd(), score.getScore(), null);
+        if (objects == null) objects = new LocusScore[starts.length];
+        objects[idx] = score;
+        return true;
+    }
+
+    /**
+     * Append score {@code i} of {@code other}
+     */
+    public void add(LocusScoreList other, int i) {
+        LocusScore object = other.getObject(i);
+        if (object != null || other.named != named) {
+            add(object != null ? object : other.get(i));
+        } else {
+            add(other.getStart(i), other.getEnd(i), other.getScore(i), other.getName(i));
+        }
+    }
+
+    /**
+     * Append all scores of {@code scores}, copying columns if it is a LocusScoreList
+     */
+    public void addAll(List<? extends LocusScore> scores) {
+        checkWritable();
+        if (!(scores instanceof LocusScoreList)) {
+            for (LocusScore score : scores) {
+                add(score);
+            }
+            return;
+        }
+        LocusScoreList other = (LocusScoreList) scores;
+        int n = other.size;
+        if (other.named != named) {
+            // Keep the score type of the other list
+            for (int i = 0; i < n; i++) {
+                add(other.get(i));
+            }
+            return;
+        }
+        if (n == 0) return;
+        ensureCapacity(size + n);
+        int idx = offset + size;
+        System.arraycopy(other.starts, other.offset, starts, idx, n);
+        System.arraycopy(other.ends, other.offset, ends, idx, n);
+        System.arraycopy(other.values, other.offset, values, idx, n);
+        if (other.names != null) {
+            if (names == null) names = new String[starts.length];
+            System.arraycopy(other.names, other.offset, names, idx, n);
+        }
+        if (other.objects != null) {
+            if (objects == null) objects = new LocusScore[starts.length];
+            System.arraycopy(other.objects, other.offset, objects, idx, n);
+        }
+        size += n;
+        modCount++;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Cannot add to a sub list");
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (offset + capacity <= starts.length) return;
+        int newCapacity = Math.max(capacity, starts.length * 3 / 2 + 1);
+        starts = Arrays.copyOf(starts, newCapacity);
+        ends = Arrays.copyOf(ends, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+        if (names != null) names = Arrays.copyOf(names, newCapacity);
+        if (objects != null) objects = Arrays.copyOf(objects, newCapacity);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean isNamed() {
+        return named;
+    }
+
+    public int getStart(int i) {
+        return starts[offset + i];
+    }
+
+    public int getEnd(int i) {
+        return ends[offset + i];
+    }
+
+    public float getScore(int i) {
+        return values[offset + i];
+    }
+
+    /**
+     * @return the name (probe) of score i, or null
+     */
+    public String getName(int i) {
+        return names == null ? null : names[offset + i];
+    }
+
+    /**
+     * @return the score object added at i, or null if score i is stored only in columns
+     */
+    public LocusScore getObject(int i) {
+        return objects == null ? null : objects[offset + i];
+    }
+
+    @Override
+    public LocusScore get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+        int idx = offset + i;
+        if (objects != null && objects[idx] != null) {
+            return objects[idx];
+        }
+        return named ? new NamedScore(starts[idx], ends[idx], values[idx], names == null ? null : names[idx]) :
+                new BasicScore(starts[idx], ends[idx], values[idx]);
+    }
+
+    @Override
+    public LocusScoreList subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex);
+        }
+        return new LocusScoreList(this, fromIndex, toIndex - fromIndex);
+    }
+}
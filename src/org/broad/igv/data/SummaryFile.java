@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.broad.igv.PreferenceManager;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A file in the IGV summary directory holding data derived from a local data file, such as a whole genome summary
+ * or an index, so the data need not be recomputed when the data file is reopened.
+ * <p/>
+ * The header identifies the data file and records its size and modification time.  The file is valid as long as
+ * these, and the additional keys such as the genome id, are unchanged.  Files are written to a temporary file and
+ * renamed, so readers never see a partial file.  After each write the least recently used files are deleted to keep
+ * the directory within {@link PreferenceManager#SUMMARY_DIRECTORY_SIZE} MB.
+ */
+public class SummaryFile {
+
+    private static Logger log = Logger.getLogger(SummaryFile.class);
+
+    /**
+     * Writes the contents following the header
+     */
+    public interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private final File dataFile;
+    private final int magic;
+    private final int version;
+    private final String[] keys;
+    private final File file;
+
+    /**
+     * @param dataFile  the local data file
+     * @param directory the summary directory
+     * @param extension file extension, identifying the kind of summary
+     * @param magic     first int of the file, identifying the kind of summary
+     * @param version   format version
+     * @param keys      additional values the contents depend on, e.g. the genome id
+     */
+    public SummaryFile(File dataFile, File directory, String extension, int magic, int version, String... keys) {
+        this.dataFile = dataFile;
+        this.magic = magic;
+        this.version = version;
+        this.keys = keys;
+        StringBuilder id = new StringBuilder(dataFile.getAbsolutePath());
+        for (String key : keys) {
+            id.append('_').append(key);
+        }
+        this.file = new File(directory, dataFile.getName() + "_" + Integer.toHexString(id.toString().hashCode()) +
+                extension);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * Read and check the header.  A valid file is marked as recently used.
+     *
+     * @return true if the header matches the data file and keys
+     */
+    public boolean readHeader(DataInput in) throws IOException {
+        if (in.readInt() != magic || in.readInt() != version || !in.readUTF().equals(dataFile.getAbsolutePath())) {
+            return false;
+        }
+        for (String key : keys) {
+            if (!in.readUTF().equals(key)) {
+                return false;
+            }
+        }
+        if (in.readLong() != dataFile.length() || in.readLong() != dataFile.lastModified()) {
+            return false;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    private void writeHeader(DataOutput out) throws IOException {
+        out.writeInt(magic);
+        out.writeInt(version);
+        out.writeUTF(dataFile.getAbsolutePath());
+        for (String key : keys) {
+            out.writeUTF(key);
+        }
+        out.writeLong(dataFile.length());
+        out.writeLong(dataFile.lastModified());
+    }
+
+    /**
+     * Write the header and {@code body}, replacing the current file.  Errors are logged.
+     */
+    public void write(Body body) {
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16));
+            writeHeader(out);
+            body.write(out);
+            out.close();
+            out = null;
+            if (file.exists() && !file.delete()) {
+                log.info("Cannot replace summary file " + file.getAbsolutePath());
+            } else if (!tmpFile.renameTo(file)) {
+                log.info("Cannot write summary file " + file.getAbsolutePath());
+            }
+        } catch (IOException e) {
+            log.error("Error writing summary file " + file.getAbsolutePath(), e);
+        } finally {
+            IOUtils.closeQuietly(out);
+            tmpFile.delete();
+        }
+
+        int maxMB = PreferenceManager.getInstance().getAsInt(PreferenceManager.SUMMARY_DIRECTORY_SIZE);
+        prune(file.getParentFile(), maxMB * 1024L * 1024L, file);
+    }
+
+    /**
+     * Delete the least recently used files of {@code directory}, other than {@code keep}, until their total size is
+     * at most {@code maxBytes}
+     */
+    static void prune(File directory, long maxBytes, File keep) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        // Modification times are read once, they change as files are used
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer i1, Integer i2) {
+                long t1 = lastModified[i1];
+                long t2 = lastModified[i2];
+                return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+            }
+        });
+        for (int i : order) {
+            if (total <= maxBytes) {
+                break;
+            }
+            File f = files[i];
+            long length = f.length();
+            if (f.isFile() && !f.equals(keep) && f.delete()) {
+                log.debug("Deleted summary file " + f.getAbsolutePath());
+                total -= length;
+            }
+        }
+    }
+}
@@ -23,8 +23,6 @@ package org.broad.igv.data;
 
 import org.broad.igv.feature.LocusScore;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 
 /**
@@ -37,15 +35,19 @@ public class SummaryTile {
 
      private int startLocation;
 
-    List<LocusScore> summaryScores;
+    LocusScoreList summaryScores;
 
 
     public SummaryTile() {
-        summaryScores = new ArrayList(1000);
+        summaryScores = new LocusScoreList(1000, true);
     }
 
     public SummaryTile(List<LocusScore> summaryScores) {
-        this.summaryScores = summaryScores;
+        this.summaryScores = LocusScoreList.asLocusScoreList(summaryScores);
+    }
+
+    public void addScore(int start, int end, float value, String name) {
+        summaryScores.add(start, end, value, name);
     }
 
     public void addScore(LocusScore score) {
@@ -53,12 +55,12 @@ public class SummaryTile {
     }
 
 
-    public void addAllScores(Collection<? extends LocusScore> scores) {
+    public void addAllScores(List<? extends LocusScore> scores) {
         summaryScores.addAll(scores);
     }
 
 
-    public List<LocusScore> getScores() {
+    public LocusScoreList getScores() {
         return summaryScores;
     }
 
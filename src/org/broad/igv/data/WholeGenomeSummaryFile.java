@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.PreferenceManager;
+import org.broad.igv.feature.genome.Genome;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persists the per chromosome results of the whole genome summaries of a local file, so the summaries are not
+ * recomputed when the file is reopened.  All summaries of a data file, e.g. one per sample of a SEG file, are stored
+ * in one {@link SummaryFile}, each in a section named by its key.
+ */
+public class WholeGenomeSummaryFile<T> {
+
+    private static Logger log = Logger.getLogger(WholeGenomeSummaryFile.class);
+
+    private static final int MAGIC = 0x49575353;   // "IWSS"
+    private static final int VERSION = 2;
+
+    /**
+     * Sections of a file are replaced by reading and rewriting the whole file
+     */
+    private static final Object writeLock = new Object();
+
+    /**
+     * Reads and writes the summary of a single chromosome
+     */
+    public interface Codec<T> {
+        void write(T value, DataOutputStream out) throws IOException;
+
+        T read(DataInputStream in) throws IOException;
+    }
+
+    public static final Codec<float[]> FLOAT_ARRAY_CODEC = new Codec<float[]>() {
+        public void write(float[] value, DataOutputStream out) throws IOException {
+            out.writeInt(value.length);
+            for (float v : value) {
+                out.writeFloat(v);
+            }
+        }
+
+        public float[] read(DataInputStream in) throws IOException {
+            float[] value = new float[in.readInt()];
+            for (int i = 0; i < value.length; i++) {
+                value[i] = in.readFloat();
+            }
+            return value;
+        }
+    };
+
+    private final String key;
+    private final Codec<T> codec;
+    private final SummaryFile summaryFile;
+
+    WholeGenomeSummaryFile(File dataFile, String key, String genomeId, Codec<T> codec, File directory) {
+        this.key = key;
+        this.codec = codec;
+        this.summaryFile = new SummaryFile(dataFile, directory, ".wgs", MAGIC, VERSION, genomeId);
+    }
+
+    /**
+     * Return the summary file for the local file {@code path}, or null if the file is remote or summaries are not
+     * to be persisted.
+     *
+     * @param key identifies the summary among those of the file
+     */
+    public static <T> WholeGenomeSummaryFile<T> forPath(String path, String key, Genome genome, Codec<T> codec) {
+        if (path == null || genome == null ||
+                !PreferenceManager.getInstance().getAsBoolean(PreferenceManager.PERSIST_GENOME_SUMMARIES)) {
+            return null;
+        }
+        File dataFile = new File(path);
+        if (!dataFile.isFile()) {
+            return null;
+        }
+        File directory = DirectoryManager.getSummaryDirectory();
+        return directory == null ? null : new WholeGenomeSummaryFile<T>(dataFile, key, genome.getId(), codec, directory);
+    }
+
+    File getFile() {
+        return summaryFile.getFile();
+    }
+
+    /**
+     * @return chromosome name -> summary, or null if there is no valid summary for this key.  Chromosomes with no
+     * summary map to null.
+     */
+    public Map<String, T> read() {
+        Map<String, byte[]> sections = readSections();
+        byte[] section = sections == null ? null : sections.get(key);
+        if (section == null) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(section));
+            int nChromosomes = in.readInt();
+            Map<String, T> results = new HashMap<String, T>(nChromosomes * 2);
+            for (int i = 0; i < nChromosomes; i++) {
+                String chr = in.readUTF();
+                results.put(chr, in.readBoolean() ? codec.read(in) : null);
+            }
+            return results;
+        } catch (IOException e) {
+            log.info("Ignoring unreadable summary " + key + " in " + getFile().getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the encoded summaries by key, or null if there is no valid summary file
+     */
+    private Map<String, byte[]> readSections() {
+        if (!summaryFile.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(summaryFile.getFile())));
+            if (!summaryFile.readHeader(in)) {
+                return null;
+            }
+            int nSections = in.readInt();
+            Map<String, byte[]> sections = new LinkedHashMap<String, byte[]>(nSections * 2);
+            for (int i = 0; i < nSections; i++) {
+                String sectionKey = in.readUTF();
+                byte[] section = new byte[in.readInt()];
+                in.readFully(section);
+                sections.put(sectionKey, section);
+            }
+            return sections;
+        } catch (IOException e) {
+            log.info("Ignoring unreadable summary file " + getFile().getAbsolutePath(), e);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Write the summary, keeping the summaries of other keys.
+     *
+     * @param chromosomes chromosome names
+     * @param results     summary of each chromosome, in the order of {@code chromosomes}.  May contain nulls.
+     */
+    public void write(List<String> chromosomes, List<T> results) {
+        final byte[] section;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(chromosomes.size());
+            for (int i = 0; i < chromosomes.size(); i++) {
+                T value = results.get(i);
+                out.writeUTF(chromosomes.get(i));
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    codec.write(value, out);
+                }
+            }
+            out.close();
+            section = bytes.toByteArray();
+        } catch (IOException e) {
+            log.error("Error encoding summary " + key, e);
+            return;
+        }
+
+        synchronized (writeLock) {
+            Map<String, byte[]> sections = readSections();
+            if (sections == null) {
+                sections = new LinkedHashMap<String, byte[]>();
+            }
+            sections.put(key, section);
+            final Map<String, byte[]> allSections = sections;
+            summaryFile.write(new SummaryFile.Body() {
+                public void write(DataOutputStream out) throws IOException {
+                    out.writeInt(allSections.size());
+                    for (Map.Entry<String, byte[]> entry : allSections.entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        out.writeInt(entry.getValue().length);
+                        out.write(entry.getValue());
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.ui.IGV;
+import org.broad.igv.ui.util.UIUtilities;
+import org.broad.igv.util.NamedThreadFactory;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Computes whole genome ({@link org.broad.igv.Globals#CHR_ALL}) summaries one chromosome per task on a shared
+ * pool, so the summaries of many tracks are built concurrently rather than track by track.  Summaries are cached
+ * by owner (typically a data source or dataset), key and genome.
+ * <p/>
+ * Results are available as chromosomes complete, and data panels are repainted as they finish.  Callers must not
+ * block on a summary from the paint path, and should not cache whole genome data of an owner while its summaries
+ * are being computed, see {@link #isComputing(Object)}.
+ */
+public class WholeGenomeSummaryService {
+
+    private static Logger log = Logger.getLogger(WholeGenomeSummaryService.class);
+
+    private static WholeGenomeSummaryService instance;
+
+    /**
+     * Computes the summary of a single chromosome.  Called concurrently for different chromosomes.
+     */
+    public interface ChromosomeSummarizer<T> {
+        T summarize(String chr) throws Exception;
+    }
+
+    private final ExecutorService executor;
+
+    /**
+     * Owner -> (key + genome id -> summary).  Owners are weakly referenced, the cache goes with the track.
+     */
+    private final Map<Object, Map<String, Summary<?>>> summaries = new WeakHashMap<Object, Map<String, Summary<?>>>();
+
+    private final AtomicBoolean repaintScheduled = new AtomicBoolean();
+
+    public static synchronized WholeGenomeSummaryService getInstance() {
+        if (instance == null) {
+            instance = new WholeGenomeSummaryService(Runtime.getRuntime().availableProcessors());
+        }
+        return instance;
+    }
+
+    WholeGenomeSummaryService(int nThreads) {
+        executor = Executors.newFixedThreadPool(Math.max(1, nThreads), new NamedThreadFactory("IGV genome summary"));
+    }
+
+    /**
+     * Return the summary of {@code owner} for {@code key} and {@code genome}, starting its computation if it is
+     * not cached.  Chromosomes are those of {@link Genome#getLongChromosomeNames()}, in order.
+     *
+     * @param owner      object the summary belongs to, the cache entry is dropped when it is garbage collected
+     * @param key        distinguishes summaries of the same owner, e.g. a sample name.  May be null.
+     * @param genome
+     * @param summarizer computes the summary of a chromosome
+     */
+    public <T> Summary<T> getSummary(Object owner, String key, Genome genome, ChromosomeSummarizer<T> summarizer) {
+        return getSummary(owner, key, genome, summarizer, null);
+    }
+
+    /**
+     * Return the summary of {@code owner}, as above.  If {@code summaryFile} is not null the summary is read from
+     * it when valid, and otherwise written to it once computed.
+     */
+    public <T> Summary<T> getSummary(final Object owner, String key, Genome genome,
+                                     final ChromosomeSummarizer<T> summarizer,
+                                     final WholeGenomeSummaryFile<T> summaryFile) {
+
+        final String cacheKey = key + "_" + genome.getId();
+        final Summary<T> summary;
+        synchronized (summaries) {
+            Map<String, Summary<?>> ownerSummaries = summaries.get(owner);
+            if (ownerSummaries == null) {
+                ownerSummaries = new HashMap<String, Summary<?>>();
+                summaries.put(owner, ownerSummaries);
+            }
+            // An owner computes the summary of a key with summarizers of a single result type
+            @SuppressWarnings("unchecked")
+            Summary<T> cached = (Summary<T>) ownerSummaries.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+            summary = new Summary<T>(genome.getLongChromosomeNames());
+            ownerSummaries.put(cacheKey, summary);
+        }
+
+        Map<String, T> stored = summaryFile == null ? null : summaryFile.read();
+        if (stored != null && stored.keySet().containsAll(summary.chromosomes)) {
+            for (int i = 0; i < summary.chromosomes.size(); i++) {
+                complete(summary, i, stored.get(summary.chromosomes.get(i)));
+            }
+            return summary;
+        }
+
+        for (int i = 0; i < summary.chromosomes.size(); i++) {
+            final int index = i;
+            executor.execute(new Runnable() {
+                public void run() {
+                    String chr = summary.chromosomes.get(index);
+                    T result = null;
+                    try {
+                        result = summarizer.summarize(chr);
+                    } catch (Exception e) {
+                        log.error("Error computing whole genome summary for " + chr, e);
+                        summary.failed = true;
+                        remove(owner, cacheKey, summary);
+                    } finally {
+                        // A failure is not persisted as "no data", the summary is recomputed next time
+                        if (complete(summary, index, result) && summaryFile != null && !summary.failed) {
+                            summaryFile.write(summary.chromosomes, summary.getAllResults());
+                        }
+                    }
+                }
+            });
+        }
+        return summary;
+    }
+
+    /**
+     * Drop {@code summary} from the cache, unless it has been replaced
+     */
+    private void remove(Object owner, String cacheKey, Summary<?> summary) {
+        synchronized (summaries) {
+            Map<String, Summary<?>> ownerSummaries = summaries.get(owner);
+            if (ownerSummaries != null && ownerSummaries.get(cacheKey) == summary) {
+                ownerSummaries.remove(cacheKey);
+            }
+        }
+    }
+
+    /**
+     * @return true if this completed the summary
+     */
+    private <T> boolean complete(Summary<T> summary, int index, T result) {
+        boolean complete = summary.set(index, result);
+        scheduleRepaint();
+        return complete;
+    }
+
+    /**
+     * @return true if any summary of {@code owner} is still being computed.  Whole genome results obtained from the
+     * owner while this is true may be partial.
+     */
+    public boolean isComputing(Object owner) {
+        synchronized (summaries) {
+            Map<String, Summary<?>> ownerSummaries = summaries.get(owner);
+            if (ownerSummaries != null) {
+                for (Summary<?> summary : ownerSummaries.values()) {
+                    if (!summary.isComplete()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private void scheduleRepaint() {
+        if (IGV.hasInstance() && repaintScheduled.compareAndSet(false, true)) {
+            UIUtilities.invokeOnEventThread(new Runnable() {
+                public void run() {
+                    repaintScheduled.set(false);
+                    IGV.getInstance().repaintDataPanels();
+                }
+            });
+        }
+    }
+
+    /**
+     * Concatenate per chromosome results which are lists, in order
+     */
+    public static <E> List<E> concatenate(List<? extends List<E>> results) {
+        int size = 0;
+        for (List<E> l : results) {
+            size += l.size();
+        }
+        List<E> all = new ArrayList<E>(size);
+        for (List<E> l : results) {
+            all.addAll(l);
+        }
+        return all;
+    }
+
+
+    /**
+     * Per chromosome results of a whole genome summary
+     */
+    public static class Summary<T> {
+
+        private final List<String> chromosomes;
+        private final List<T> results;
+        private final CountDownLatch remaining;
+
+        /**
+         * True if computing any chromosome failed
+         */
+        private volatile boolean failed;
+
+        Summary(List<String> chromosomes) {
+            this.chromosomes = new ArrayList<String>(chromosomes);
+            this.results = new ArrayList<T>(Collections.<T>nCopies(chromosomes.size(), null));
+            this.remaining = new CountDownLatch(chromosomes.size());
+        }
+
+        private synchronized boolean set(int index, T result) {
+            results.set(index, result);
+            remaining.countDown();
+            return remaining.getCount() == 0;
+        }
+
+        public boolean isComplete() {
+            return remaining.getCount() == 0;
+        }
+
+        /**
+         * @return the results of the chromosomes completed so far, in genome order.  Null results are skipped.
+         */
+        public synchronized List<T> getResults() {
+            List<T> list = new ArrayList<T>(results.size());
+            for (T result : results) {
+                if (result != null) {
+                    list.add(result);
+                }
+            }
+            return list;
+        }
+
+        /**
+         * @return the result of each chromosome, in genome order, null for chromosomes with no result
+         */
+        synchronized List<T> getAllResults() {
+            return new ArrayList<T>(results);
+        }
+
+        /**
+         * Wait for all chromosomes to complete and return their results.  If interrupted the results completed so
+         * far are returned.
+         */
+        public List<T> waitForResults() {
+            try {
+                remaining.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return getResults();
+        }
+    }
+}
@@ -12,17 +12,16 @@ package org.broad.igv.data;
 
 import org.apache.commons.math.stat.StatUtils;
 import org.apache.log4j.Logger;
-import org.broad.igv.Globals;
 import org.broad.igv.exceptions.ParserException;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackProperties;
 import org.broad.igv.track.TrackType;
+import org.broad.igv.util.LineTokenizer;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.collections.DownsampledDoubleArrayList;
 import org.broad.igv.util.collections.FloatArrayList;
 import org.broad.igv.util.collections.IntArrayList;
-import htsjdk.tribble.readers.AsciiLineReader;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -135,63 +134,63 @@ public class WiggleParser {
         initializeDataHolders();
         unsortedChromosomes = new HashSet();
 
-        AsciiLineReader reader = null;
+        LineTokenizer reader = null;
         String nextLine = null;
         int lineNumber = 0;
         float[] dataArray = null;
 
         try {
-            reader = ParsingUtils.openAsciiReader(locator);
+            reader = new LineTokenizer(ParsingUtils.openInputStreamGZ(locator), true);
 
             if (type == Type.EXPR) {
-                reader.readLine(); // Skip header line
+                reader.nextLine(); // Skip header line
             }
 
             int position = -1;
 
-            while ((nextLine = reader.readLine()) != null) {
+            while (reader.nextLine()) {
                 lineNumber++;
 
-                if (nextLine.startsWith("#") || nextLine.startsWith("data") || nextLine.startsWith("browser") || nextLine.trim().length() == 0) {
+                if (reader.startsWith("#") || reader.startsWith("data") || reader.startsWith("browser") || reader.isBlank()) {
                     continue;
                     // Skip
                 }
 
 
-                if (nextLine.startsWith("track") && type != Type.CPG) {
+                if (reader.startsWith("track") && type != Type.CPG) {
                     type = Type.BED_GRAPH;
-                    ParsingUtils.parseTrackLine(nextLine, dataset.getTrackProperties());
+                    ParsingUtils.parseTrackLine(reader.getLine(), dataset.getTrackProperties());
                     if (dataset.getTrackProperties().getBaseCoord() == TrackProperties.BaseCoord.ZERO) {
                         this.startBase = 0;
                     }
 
-                } else if (nextLine.startsWith("fixedStep")) {
+                } else if (reader.startsWith("fixedStep")) {
                     type = Type.FIXED;
-                    parseStepLine(nextLine);
+                    parseStepLine(reader.getLine());
                     position = start;
                     if (start < lastPosition) {
                         unsortedChromosomes.add(chr);
                     }
 
-                } else if (nextLine.startsWith("variableStep")) {
+                } else if (reader.startsWith("variableStep")) {
                     type = Type.VARIABLE;
-                    parseStepLine(nextLine);
+                    parseStepLine(reader.getLine());
                     if (start < lastPosition) {
                         unsortedChromosomes.add(chr);
                     }
 
                 } else {
                     // Must be data
-                    String[] tokens = Globals.singleTabMultiSpacePattern.split(nextLine);
-                    int nTokens = tokens.length;
-                    if (nTokens == 0) {
-                        continue;
-                    }
+                    int nTokens = reader.getTokenCount();
                     try {
                         if (type.equals(Type.CPG)) {
 
                             if (nTokens > 3) {
-                                chr = tokens[1].trim();
+                                if (reader.tokenEquals(1, lastChr)) {
+                                    chr = lastChr;
+                                } else {
+                                    chr = reader.getString(1).trim();
+                                }
                                 if (!chr.equals(lastChr)) {
                                     changedChromosome(dataset, lastChr);
                                 }
@@ -199,12 +198,12 @@ public class WiggleParser {
 
                                 int endPosition = -1;
                                 try {
-                                    endPosition = Integer.parseInt(tokens[2].trim());
+                                    endPosition = reader.getInt(2);
                                 } catch (NumberFormatException numberFormatException) {
                                     log.error("Column 2 is not a number");
 
-                                    throw new ParserException("Column 2 must be numeric." + " Found: " + tokens[1],
-                                            lineNumber, nextLine);
+                                    throw new ParserException("Column 2 must be numeric." + " Found: " + reader.getString(1),
+                                            lineNumber, reader.getLine());
                                 }
                                 int startPosition = endPosition - 1;
 
@@ -213,8 +212,8 @@ public class WiggleParser {
                                 }
                                 lastPosition = startPosition;
 
-                                float value = Float.parseFloat(tokens[4].trim());
-                                if (tokens[3].trim().equals("R")) {
+                                float value = reader.getFloat(4);
+                                if (reader.getString(3).trim().equals("R")) {
                                     value = -value;
                                 }
 
@@ -223,7 +222,11 @@ public class WiggleParser {
                         } else if (type.equals(Type.BED_GRAPH) || type.equals(Type.EXPR)) {
 
                             if (nTokens > 3) {
-                                chr = tokens[chrColumn].trim();
+                                if (reader.tokenEquals(chrColumn, lastChr)) {
+                                    chr = lastChr;
+                                } else {
+                                    chr = reader.getString(chrColumn).trim();
+                                }
                                 if (!chr.equals(lastChr)) {
                                     changedChromosome(dataset, lastChr);
                                     //If we are seeing this chromosome again with something
@@ -237,13 +240,13 @@ public class WiggleParser {
 
                                 int startPosition = -1;
                                 try {
-                                    startPosition = Integer.parseInt(tokens[startColumn].trim());
+                                    startPosition = reader.getInt(startColumn);
                                 } catch (NumberFormatException numberFormatException) {
                                     log.error("Column " + (startColumn + 1) + "  is not a number");
 
                                     throw new ParserException("Column (startColumn + 1) must be numeric." + " Found: " +
-                                            tokens[startColumn],
-                                            lineNumber, nextLine);
+                                            reader.getString(startColumn),
+                                            lineNumber, reader.getLine());
                                 }
 
                                 if (startPosition < lastPosition) {
@@ -254,32 +257,32 @@ public class WiggleParser {
 
                                 int endPosition = -1;
                                 try {
-                                    endPosition = Integer.parseInt(tokens[endColumn].trim());
+                                    endPosition = reader.getInt(endColumn);
                                     int length = endPosition - startPosition;
                                     updateLongestFeature(length);
                                 } catch (NumberFormatException numberFormatException) {
                                     log.error("Column " + (endColumn + 1) + " is not a number");
 
                                     throw new ParserException("Column " + (endColumn + 1) +
-                                            " must be numeric." + " Found: " + tokens[endColumn],
-                                            lineNumber, nextLine);
+                                            " must be numeric." + " Found: " + reader.getString(endColumn),
+                                            lineNumber, reader.getLine());
                                 }
 
-                                addData(chr, startPosition, endPosition, Float.parseFloat(tokens[dataColumn].trim()));
+                                addData(chr, startPosition, endPosition, reader.getFloat(dataColumn));
                             }
                         } else if (type.equals(Type.VARIABLE)) {
                             if (nTokens > 1) {
 
                                 // Per UCSC specification variable and fixed step coordinates are "1" based.
                                 // We need to subtract 1 to convert to the internal "zero" based coordinates.
-                                int startPosition = Integer.parseInt(tokens[0]) - 1;
+                                int startPosition = reader.getInt(0) - 1;
                                 if (startPosition < lastPosition) {
                                     unsortedChromosomes.add(chr);
                                 }
                                 lastPosition = startPosition;
 
                                 int endPosition = startPosition + windowSpan;
-                                addData(chr, startPosition, endPosition, Float.parseFloat(tokens[1]));
+                                addData(chr, startPosition, endPosition, reader.getFloat(1));
                             }
                         } else {    // Fixed step -- sorting is checked when step line is parsed
                             if (position >= 0) {
@@ -287,7 +290,7 @@ public class WiggleParser {
                                     dataArray = new float[nTokens];
                                 }
                                 for (int ii = 0; ii < dataArray.length; ii++) {
-                                    dataArray[ii] = Float.parseFloat(tokens[ii].trim());
+                                    dataArray[ii] = reader.getFloat(ii);
                                 }
                                 int endPosition = position + windowSpan;
                                 addData(chr, position, endPosition, dataArray);
@@ -298,7 +301,7 @@ public class WiggleParser {
 
                     } catch (NumberFormatException e) {
                         log.error(e);
-                        throw new ParserException(e.getMessage(), lineNumber, nextLine);
+                        throw new ParserException(e.getMessage(), lineNumber, reader.getLine());
                     }
 
 
@@ -312,6 +315,9 @@ public class WiggleParser {
         } catch (ParserException pe) {
             throw (pe);
         } catch (Exception e) {
+            if (reader != null && lineNumber != 0) {
+                nextLine = reader.getLine();
+            }
             if (nextLine != null && lineNumber != 0) {
                 throw new ParserException(e.getMessage(), e, lineNumber, nextLine);
             } else {
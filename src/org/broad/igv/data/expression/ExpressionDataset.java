@@ -28,6 +28,7 @@ package org.broad.igv.data.expression;
 
 import org.broad.igv.Globals;
 import org.broad.igv.data.Dataset;
+import org.broad.igv.data.GenomeSummaryData;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackProperties;
 import org.broad.igv.track.TrackType;
@@ -205,4 +206,11 @@ public class ExpressionDataset implements Dataset {
     public void setLongestFeatureMap(Map<String, Integer> longestFeatureMap) {
         this.longestFeatureMap = longestFeatureMap;
     }
+
+    /**
+     * Return a precomputed whole genome summary of a sample, or null if it must be computed from the chromosome data.
+     */
+    public GenomeSummaryData getGenomeSummary(String sample) {
+        return null;
+    }
 }
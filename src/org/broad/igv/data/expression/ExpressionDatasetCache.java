@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data.expression;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.Globals;
+import org.broad.igv.PreferenceManager;
+import org.broad.igv.data.GenomeSummaryData;
+import org.broad.igv.data.SummaryFile;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.track.TrackType;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Binary, column oriented copy of a parsed expression file (GCT, RES, TAB, ...), so that reopening the file requires
+ * neither parsing it nor mapping its probes to loci.  For each chromosome the cache holds the sorted probe loci, an
+ * index into a dictionary of probe names, and the values of each sample stored contiguously.  The whole genome
+ * summary of every sample, the one zoomed out view which needs all of the data, is stored as well.
+ * <p/>
+ * Chromosome sections are memory mapped if {@link PreferenceManager#MEMORY_MAP_LOCAL_FILES} is set, and sample
+ * values are only read when a track asks for them.  The cache is a {@link SummaryFile}, valid for one genome and
+ * one set of probe mapping files.
+ */
+public class ExpressionDatasetCache {
+
+    private static Logger log = Logger.getLogger(ExpressionDatasetCache.class);
+
+    private static final int MAGIC = 0x49475843;   // "IGXC"
+    private static final int VERSION = 2;
+
+    /**
+     * Each chromosome section is mapped as a single buffer
+     */
+    private static final long MAX_SECTION_SIZE = Integer.MAX_VALUE;
+
+    private final File dataFile;
+    private final SummaryFile cacheFile;
+
+    ExpressionDatasetCache(File dataFile, String genomeId, String mappingKey, File directory) {
+        this.dataFile = dataFile;
+        this.cacheFile = new SummaryFile(dataFile, directory, ".igvexp", MAGIC, VERSION, genomeId, mappingKey);
+    }
+
+    /**
+     * Return the cache for the local file {@code path}, or null if the file is remote or caching is disabled.
+     *
+     * @param probeResource probe mapping file used to parse the file, can be null
+     */
+    public static ExpressionDatasetCache forPath(String path, Genome genome, String probeResource) {
+        if (path == null || genome == null ||
+                !PreferenceManager.getInstance().getAsBoolean(PreferenceManager.CACHE_EXPRESSION_DATA)) {
+            return null;
+        }
+        File dataFile = new File(path);
+        if (!dataFile.isFile()) {
+            return null;
+        }
+        File directory = DirectoryManager.getSummaryDirectory();
+        return directory == null ? null : new ExpressionDatasetCache(dataFile, genome.getId(),
+                GeneToLocusHelper.getMappingKey(probeResource), directory);
+    }
+
+    File getFile() {
+        return cacheFile.getFile();
+    }
+
+    /**
+     * Open the cache.  The returned dataset has its type, column headings and data, properties defined in the
+     * header of the data file (name, track line) are not stored.
+     *
+     * @return the cached dataset, or null if there is no valid cache
+     */
+    public ExpressionDataset read(Genome genome) {
+        if (!cacheFile.exists()) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(cacheFile.getFile(), "r");
+            if (!cacheFile.readHeader(raf)) {
+                return null;
+            }
+            byte[] header = new byte[raf.readInt()];
+            raf.readFully(header);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+
+            TrackType type = TrackType.valueOf(in.readUTF());
+            String[] headings = readStrings(in);
+            String[] names = readStrings(in);
+            boolean hasGenomeSummary = in.readBoolean();
+
+            boolean map = PreferenceManager.getInstance().getAsBoolean(PreferenceManager.MEMORY_MAP_LOCAL_FILES);
+            FileChannel channel = raf.getChannel();
+            long position = raf.getFilePointer();
+            int nChromosomes = in.readInt();
+            Map<String, Section> sections = new LinkedHashMap<String, Section>(nChromosomes * 2);
+            Map<String, Integer> longestFeatureMap = new HashMap<String, Integer>(nChromosomes * 2);
+            for (int i = 0; i < nChromosomes; i++) {
+                String chr = in.readUTF();
+                int nRows = in.readInt();
+                int nSummaryPoints = in.readInt();
+                longestFeatureMap.put(chr, in.readInt());
+
+                long size = Section.getSize(nRows, nSummaryPoints, headings.length);
+                if (position + size > channel.size()) {
+                    return null;
+                }
+                ByteBuffer buffer;
+                if (map) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                } else {
+                    buffer = ByteBuffer.allocate((int) size);
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, position + buffer.position()) < 0) {
+                            throw new EOFException();
+                        }
+                    }
+                }
+                sections.put(chr, new Section(buffer, nRows, nSummaryPoints, headings.length));
+                position += size;
+            }
+
+            CachedDataset dataset = new CachedDataset(genome, headings, names, sections, hasGenomeSummary);
+            dataset.setType(type);
+            dataset.setLongestFeatureMap(longestFeatureMap);
+            return dataset;
+
+        } catch (Exception e) {
+            log.info("Ignoring unreadable cache " + cacheFile.getFile().getAbsolutePath(), e);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * Write the cache for a parsed dataset.
+     */
+    public void write(final ExpressionDataset dataset, Genome genome) {
+
+        final String[] headings = dataset.getTrackNames();
+        final String[] chromosomes = dataset.getChromosomes();
+
+        // Summarize each sample for the whole genome view.  Summary locations depend only on the probe loci.
+        boolean hasGenomeSummary = genome.getHomeChromosome().equals(Globals.CHR_ALL);
+        final Map<String, int[]> summaryLocations = new HashMap<String, int[]>();
+        final Map<String, float[][]> summaryData = new HashMap<String, float[][]>();
+        if (hasGenomeSummary) {
+            for (int s = 0; s < headings.length; s++) {
+                GenomeSummaryData summary = new GenomeSummaryData(genome, new String[]{headings[s]});
+                for (String chr : chromosomes) {
+                    int[] starts = dataset.getStartLocations(chr);
+                    if (starts != null && starts.length > 0) {
+                        summary.addData(chr, starts, Collections.singletonMap(headings[s], getData(dataset, headings[s], chr)));
+                    }
+                }
+                for (String chr : summary.getSummarizedChromosomes()) {
+                    if (s == 0) {
+                        summaryLocations.put(chr, summary.getChromosomeLocations(chr));
+                        summaryData.put(chr, new float[headings.length][]);
+                    }
+                    summaryData.get(chr)[s] = summary.getChromosomeData(chr, headings[s]);
+                }
+            }
+        }
+
+        Map<String, Integer> nameIndexMap = new HashMap<String, Integer>();
+        List<String> names = new ArrayList<String>();
+        final Map<String, int[]> nameIndexes = new HashMap<String, int[]>(chromosomes.length * 2);
+        for (String chr : chromosomes) {
+            int nRows = dataset.getStartLocations(chr).length;
+            int nSummaryPoints = summaryLocations.containsKey(chr) ? summaryLocations.get(chr).length : 0;
+            if (Section.getSize(nRows, nSummaryPoints, headings.length) > MAX_SECTION_SIZE) {
+                log.info("Dataset is too large to cache: " + dataFile.getAbsolutePath());
+                return;
+            }
+            String[] featureNames = dataset.getFeatureNames(chr);
+            int[] indexes = new int[nRows];
+            for (int i = 0; i < nRows; i++) {
+                String name = featureNames == null || featureNames[i] == null ? "" : featureNames[i];
+                Integer index = nameIndexMap.get(name);
+                if (index == null) {
+                    index = names.size();
+                    nameIndexMap.put(name, index);
+                    names.add(name);
+                }
+                indexes[i] = index;
+            }
+            nameIndexes.put(chr, indexes);
+        }
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        try {
+            DataOutputStream header = new DataOutputStream(headerBytes);
+            header.writeUTF(dataset.getType().name());
+            writeStrings(header, headings);
+            writeStrings(header, names.toArray(new String[names.size()]));
+            header.writeBoolean(hasGenomeSummary);
+            header.writeInt(chromosomes.length);
+            for (String chr : chromosomes) {
+                header.writeUTF(chr);
+                header.writeInt(dataset.getStartLocations(chr).length);
+                header.writeInt(summaryLocations.containsKey(chr) ? summaryLocations.get(chr).length : 0);
+                header.writeInt(dataset.getLongestFeature(chr));
+            }
+            header.close();
+        } catch (IOException e) {
+            // Not thrown by a ByteArrayOutputStream
+            throw new RuntimeException(e);
+        }
+
+        final byte[] headerArray = headerBytes.toByteArray();
+        cacheFile.write(new SummaryFile.Body() {
+            public void write(DataOutputStream out) throws IOException {
+                out.writeInt(headerArray.length);
+                out.write(headerArray);
+                for (String chr : chromosomes) {
+                    int[] starts = dataset.getStartLocations(chr);
+                    int[] ends = dataset.getEndLocations(chr);
+                    writeInts(out, starts);
+                    writeInts(out, ends == null ? starts : ends);
+                    writeInts(out, nameIndexes.get(chr));
+                    for (String h : headings) {
+                        writeFloats(out, getData(dataset, h, chr));
+                    }
+                    int[] locations = summaryLocations.get(chr);
+                    if (locations != null) {
+                        writeInts(out, locations);
+                        for (float[] values : summaryData.get(chr)) {
+                            writeFloats(out, values);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the data of a sample on a chromosome, all NaN if the sample has no data there
+     */
+    private static float[] getData(ExpressionDataset dataset, String heading, String chr) {
+        float[] data = dataset.getData(heading, chr);
+        if (data == null) {
+            data = new float[dataset.getStartLocations(chr).length];
+            Arrays.fill(data, Float.NaN);
+        }
+        return data;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        out.writeInt(strings.length);
+        for (String s : strings) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        return strings;
+    }
+
+    private static void writeInts(OutputStream out, int[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        buffer.asIntBuffer().put(values);
+        out.write(buffer.array());
+    }
+
+    private static void writeFloats(OutputStream out, float[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        buffer.asFloatBuffer().put(values);
+        out.write(buffer.array());
+    }
+
+    /**
+     * The data of one chromosome: start locations, end locations and name indexes of the rows, the values of each
+     * sample, then the whole genome summary locations and the summary values of each sample.
+     */
+    private static class Section {
+
+        final ByteBuffer buffer;
+        final int nRows;
+        final int nSummaryPoints;
+        final int nSamples;
+
+        Section(ByteBuffer buffer, int nRows, int nSummaryPoints, int nSamples) {
+            this.buffer = buffer;
+            this.nRows = nRows;
+            this.nSummaryPoints = nSummaryPoints;
+            this.nSamples = nSamples;
+        }
+
+        static long getSize(int nRows, int nSummaryPoints, int nSamples) {
+            return 4L * (3L * nRows + (long) nRows * nSamples + nSummaryPoints + (long) nSummaryPoints * nSamples);
+        }
+
+        int[] getStartLocations() {
+            return getInts(0, nRows);
+        }
+
+        int[] getEndLocations() {
+            return getInts(4 * nRows, nRows);
+        }
+
+        int[] getNameIndexes() {
+            return getInts(8 * nRows, nRows);
+        }
+
+        float[] getData(int sample) {
+            return getFloats(4 * (3 * nRows + sample * nRows), nRows);
+        }
+
+        int[] getSummaryLocations() {
+            return getInts(4 * (3 * nRows + nSamples * nRows), nSummaryPoints);
+        }
+
+        float[] getSummaryData(int sample) {
+            return getFloats(4 * (3 * nRows + nSamples * nRows + nSummaryPoints + sample * nSummaryPoints), nSummaryPoints);
+        }
+
+        // Buffers are shared by tracks loading concurrently, read through a duplicate
+        private int[] getInts(int offset, int n) {
+            ByteBuffer b = buffer.duplicate();
+            b.position(offset);
+            int[] values = new int[n];
+            b.asIntBuffer().get(values);
+            return values;
+        }
+
+        private float[] getFloats(int offset, int n) {
+            ByteBuffer b = buffer.duplicate();
+            b.position(offset);
+            float[] values = new float[n];
+            b.asFloatBuffer().get(values);
+            return values;
+        }
+    }
+
+    /**
+     * Dataset backed by the cache.  Loci and probe names of a chromosome are kept once read, sample values are read
+     * from the cache on each request.
+     */
+    private static class CachedDataset extends ExpressionDataset {
+
+        private final Genome genome;
+        private final String[] names;
+        private final Map<String, Section> sections;
+        private final Map<String, Integer> headingIndexes;
+        private final boolean hasGenomeSummary;
+
+        CachedDataset(Genome genome, String[] headings, String[] names, Map<String, Section> sections,
+                      boolean hasGenomeSummary) {
+            super(genome);
+            this.genome = genome;
+            this.names = names;
+            this.sections = sections;
+            this.hasGenomeSummary = hasGenomeSummary;
+            setColumnHeadings(headings);
+            headingIndexes = new HashMap<String, Integer>(headings.length * 2);
+            for (int i = 0; i < headings.length; i++) {
+                headingIndexes.put(headings[i], i);
+            }
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return sections.isEmpty();
+        }
+
+        @Override
+        public String[] getChromosomes() {
+            return sections.keySet().toArray(new String[sections.size()]);
+        }
+
+        @Override
+        public synchronized int[] getStartLocations(String chr) {
+            int[] locations = startLocationMap.get(chr);
+            Section section = sections.get(chr);
+            if (locations == null && section != null) {
+                locations = section.getStartLocations();
+                startLocationMap.put(chr, locations);
+            }
+            return locations;
+        }
+
+        @Override
+        public synchronized int[] getEndLocations(String chr) {
+            if (chr.equals(Globals.CHR_ALL)) {
+                return null;
+            }
+            int[] locations = endLocationMap.get(chr);
+            Section section = sections.get(chr);
+            if (locations == null && section != null) {
+                locations = section.getEndLocations();
+                endLocationMap.put(chr, locations);
+            }
+            return locations;
+        }
+
+        @Override
+        public synchronized String[] getFeatureNames(String chr) {
+            String[] featureNames = featureNameMap.get(chr);
+            Section section = sections.get(chr);
+            if (featureNames == null && section != null) {
+                int[] indexes = section.getNameIndexes();
+                featureNames = new String[indexes.length];
+                for (int i = 0; i < indexes.length; i++) {
+                    featureNames[i] = names[indexes[i]];
+                }
+                featureNameMap.put(chr, featureNames);
+            }
+            return featureNames;
+        }
+
+        @Override
+        public float[] getData(String heading, String chr) {
+            Integer index = headingIndexes.get(heading);
+            Section section = sections.get(chr);
+            return index == null || section == null ? null : section.getData(index);
+        }
+
+        @Override
+        public GenomeSummaryData getGenomeSummary(String sample) {
+            Integer index = headingIndexes.get(sample);
+            if (!hasGenomeSummary || index == null) {
+                return null;
+            }
+            GenomeSummaryData summary = new GenomeSummaryData(genome, new String[]{sample});
+            for (Map.Entry<String, Section> entry : sections.entrySet()) {
+                Section section = entry.getValue();
+                if (section.nSummaryPoints > 0) {
+                    summary.setChromosomeData(entry.getKey(), section.getSummaryLocations(),
+                            Collections.singletonMap(sample, section.getSummaryData(index)));
+                }
+            }
+            return summary;
+        }
+    }
+}
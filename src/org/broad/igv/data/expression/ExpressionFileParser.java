@@ -42,6 +42,8 @@ import org.broad.igv.ui.util.MagetabSignalDialog;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import htsjdk.tribble.readers.AsciiLineReader;
+import htsjdk.tribble.readers.LineReader;
+import org.broad.igv.util.LineTokenizer;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -76,6 +78,7 @@ public class ExpressionFileParser {
 
     Map<String, List<Row>> rowMap = new HashMap();
     StatusMonitor statusMonitor;
+    String probeFile;
     GeneToLocusHelper locusHelper;
 
     // For effecient lookup, data column name -> index
@@ -109,7 +112,7 @@ public class ExpressionFileParser {
         this.type = determineType(resFile);
         this.genome = genome;
         longestProbeMap = new HashMap();
-        locusHelper = new GeneToLocusHelper(probeFile);
+        this.probeFile = probeFile;
 
     }
 
@@ -146,9 +149,59 @@ public class ExpressionFileParser {
         return false;
     }
 
+    /**
+     * Create the dataset, from the binary cache of the file if there is a valid one.  Otherwise the file is parsed,
+     * and the cache written for the next load if every probe was mapped explicitly (see
+     * {@link GeneToLocusHelper#isExplicitlyMapped()}).
+     *
+     * @return the dataset
+     */
     public ExpressionDataset createDataset() {
+        ExpressionDatasetCache cache = dataFileLocator.isLocal() ?
+                ExpressionDatasetCache.forPath(dataFileLocator.getPath(), genome, probeFile) : null;
+        if (cache != null) {
+            ExpressionDataset dataset = readCache(cache);
+            if (dataset != null) {
+                return dataset;
+            }
+        }
+
         ExpressionDataset dataset = new ExpressionDataset(genome);
         parse(dataset);
+        if (cache != null && !dataset.isEmpty() && locusHelper.isExplicitlyMapped()) {
+            cache.write(dataset, genome);
+        }
+        return dataset;
+    }
+
+    /**
+     * Open the cached dataset, and parse the header of the file for the properties which are not cached.
+     *
+     * @return the dataset, or null if the cache is invalid
+     */
+    private ExpressionDataset readCache(ExpressionDatasetCache cache) {
+        ExpressionDataset dataset = cache.read(genome);
+        if (dataset == null) {
+            return null;
+        }
+        TrackType cachedType = dataset.getType();
+        LineTokenizer reader = null;
+        try {
+            reader = new LineTokenizer(ParsingUtils.openInputStreamGZ(dataFileLocator));
+            FormatDescriptor formatDescriptor = parseHeader(reader, type, dataset);
+            if (!Arrays.equals(formatDescriptor.dataHeaders, dataset.getTrackNames())) {
+                return null;
+            }
+        } catch (IOException e) {
+            log.info("Error reading header of " + dataFileLocator.getPath(), e);
+            return null;
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+        // The type may have been derived from the data rows
+        dataset.setType(cachedType);
         return dataset;
     }
 
@@ -199,13 +252,17 @@ public class ExpressionFileParser {
 
         dataset.setType(TrackType.GENE_EXPRESSION);
 
-        BufferedReader reader = null;
+        LineTokenizer reader = null;
         String nextLine = null;
         int lineCount = 0;
         //String[] columnHeadings = null;
         try {
 
-            reader = ParsingUtils.openBufferedReader(dataFileLocator);
+            if (locusHelper == null) {
+                locusHelper = new GeneToLocusHelper(probeFile);
+            }
+
+            reader = new LineTokenizer(ParsingUtils.openInputStreamGZ(dataFileLocator));
 
             // Parse the header(s) to determine the precise format.
             FormatDescriptor formatDescriptor = parseHeader(reader, type, dataset);
@@ -222,39 +279,22 @@ public class ExpressionFileParser {
 
             // Loop through the data rows
 
-            while ((nextLine = reader.readLine()) != null) {
+            while (reader.nextLine()) {
 
-                String[] tokens = Globals.tabPattern.split(nextLine, -1);
-                int nTokens = tokens.length;
-                String probeId = new String(tokens[probeColumn]);
+                String probeId = reader.getString(probeColumn);
                 float[] values = new float[nDataColumns];
 
-                String description = (descriptionColumn >= 0) ? tokens[descriptionColumn] : null;
+                String description = (descriptionColumn >= 0) ? reader.getString(descriptionColumn) : null;
 
                 if (type == FileType.MAGE_TAB && probeId.startsWith("cg")) {
                     // TODO -- this is a very ugly and fragile method to determine data type! Change this!
                     dataset.setType(TrackType.DNA_METHYLATION);
                 }
 
-                for (int i = 0; i < nDataColumns; i++) {
-                    try {
-                        int dataIndex = formatDescriptor.dataColumns[i];
-
-                        // If we are out of value tokens, or the cell is blank, assign NAN to the cell.
-                        if ((dataIndex >= nTokens) || (tokens[dataIndex].length() == 0)) {
-                            values[i] = Float.NaN;
-                        } else {
-                            values[i] = Float.parseFloat(tokens[dataIndex]);
-                        }
-
-                    } catch (NumberFormatException numberFormatException) {
+                // Missing, blank, and non-numeric cells are assigned NaN, which IGV uses to indicate
+                // missing data values
+                reader.getFloats(formatDescriptor.dataColumns, values, Float.NaN);
 
-                        // This s an expected condition.  IGV uses NaN to
-                        // indicate non numbers (missing data values)
-                        values[i] = Float.NaN;
-                    }
-
-                }
                 addRow(probeId, description, values);
                 lineCount++;
 
@@ -293,6 +333,9 @@ public class ExpressionFileParser {
             throw new RuntimeException("Operation cancelled");
         } catch (Exception e) {
             e.printStackTrace();
+            if (reader != null && lineCount != 0) {
+                nextLine = reader.getLine();
+            }
             if (nextLine != null && lineCount != 0) {
                 throw new ParserException(e.getMessage(), e, lineCount, nextLine);
             } else {
@@ -300,11 +343,7 @@ public class ExpressionFileParser {
             }
         } finally {
             if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-
-                }
+                reader.close();
             }
         }
 
@@ -448,7 +487,23 @@ public class ExpressionFileParser {
         Thread.sleep(1);    // <- check for interrupted thread
     }
 
-    public static FormatDescriptor parseHeader(BufferedReader reader, FileType type, ExpressionDataset dataset) throws IOException {
+    public static FormatDescriptor parseHeader(final BufferedReader reader, FileType type, ExpressionDataset dataset) throws IOException {
+        return parseHeader(new LineReader() {
+            public String readLine() throws IOException {
+                return reader.readLine();
+            }
+
+            public void close() {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }, type, dataset);
+    }
+
+    public static FormatDescriptor parseHeader(LineReader reader, FileType type, ExpressionDataset dataset) throws IOException {
 
 
         int descriptionColumn = -1;    // Default - no description column
@@ -542,7 +597,7 @@ public class ExpressionFileParser {
         return new FormatDescriptor(probeColumn, descriptionColumn, dataColumns, dataHeaders, firstHeaderRowTokens.length);
     }
 
-    private static String findHeaderLine(BufferedReader reader, FileType type, ExpressionDataset dataset) throws IOException {
+    private static String findHeaderLine(LineReader reader, FileType type, ExpressionDataset dataset) throws IOException {
         String nextLine;
         String headerLine;
         if (type == FileType.GCT) {
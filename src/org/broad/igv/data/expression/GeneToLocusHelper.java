@@ -22,6 +22,7 @@ import org.broad.igv.util.ParsingUtils;
 import htsjdk.tribble.Feature;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
@@ -38,6 +39,11 @@ public class GeneToLocusHelper {
 
     Map<String, List<Locus>> probeLocusMap;
 
+    /**
+     * True once a probe has been looked up in the loaded gene annotations ({@link FeatureDB}, {@link ProbeToLocusMap})
+     */
+    private boolean annotationLookup = false;
+
     /**
      * Create an instance and loaded the supplied probe mapping file.
      *
@@ -52,6 +58,17 @@ public class GeneToLocusHelper {
 
         // If a probe file is supplied,  see if there is a user default.  Only do this if the custom file option
         // is set and a probe mapping file has been supplied.
+        String userMappingFile = getUserMappingFile();
+        if (userMappingFile != null) {
+            loadProbeMap(userMappingFile);
+        }
+
+    }
+
+    /**
+     * @return the user's probe mapping file, or null if none is set or the custom file option is off
+     */
+    private static String getUserMappingFile() {
         boolean use_probe_mf;
         String userMappingFile;
         if (!Globals.isHeadless()){
@@ -62,15 +79,39 @@ public class GeneToLocusHelper {
             use_probe_mf = PreferenceManager.getInstance().getAsBoolean(PreferenceManager.USE_PROBE_MAPPING_FILE);
             userMappingFile = PreferenceManager.getInstance().get(PreferenceManager.PROBE_MAPPING_FILE);
         }
-        
-        if (use_probe_mf) {
-            if (userMappingFile != null && userMappingFile.trim().length() > 0) {
-                loadProbeMap(userMappingFile);
+        return use_probe_mf && userMappingFile != null && userMappingFile.trim().length() > 0 ? userMappingFile : null;
+    }
+
+    /**
+     * Return a key identifying the probe mappings an instance created with {@code probeResource} would load,
+     * without loading them.  Loci mapped with an equal key are the same, for a given genome, so long as the
+     * mapping files are unchanged.  The modification time of local mapping files is included for this reason.
+     *
+     * @param probeResource - file path or URL to a bed file containing the probe mappings.  CAN BE NULL.
+     */
+    public static String getMappingKey(String probeResource) {
+        StringBuilder key = new StringBuilder();
+        for (String resource : new String[]{probeResource, getUserMappingFile()}) {
+            if (resource != null && resource.trim().length() > 0) {
+                File file = new File(resource);
+                key.append(resource).append('@').append(file.isFile() ? file.lastModified() : 0);
             }
+            key.append('|');
         }
+        return key.toString();
+    }
+
 
+    /**
+     * Return true if every probe passed to {@link #getLoci} so far was mapped by a locus string or a probe mapping
+     * file, rather than looked up in the gene annotations loaded for the current session.  Only such mappings are
+     * determined by the {@link #getMappingKey(String) mapping key}.
+     */
+    public boolean isExplicitlyMapped() {
+        return !annotationLookup;
     }
 
+
     /**
      * Return a list of loci mapping to the given probe.
      *
@@ -112,6 +153,7 @@ public class GeneToLocusHelper {
 
 
         // See if the probes can be mapped to genes
+        annotationLookup = true;
         String[] genes = ProbeToLocusMap.getInstance().getLociForProbe(probeId, genomeId);
         if (genes != null) {
             List<Locus> loci = new ArrayList(genes.length);
@@ -171,6 +213,7 @@ public class GeneToLocusHelper {
             return locus;
         } else {
             // Maybe its a gene or feature
+            annotationLookup = true;
             Feature gene = FeatureDB.getFeature(geneOrLocusString);
             if (gene != null) {
                 return new Locus(gene.getChr(), gene.getStart(), gene.getEnd());
@@ -70,7 +70,7 @@ public class SegmentFileParser implements SegFileParser {
      */
     public SegmentedAsciiDataSet loadSegments(ResourceLocator locator, Genome genome) {
 
-        SegmentedAsciiDataSet dataset = new SegmentedAsciiDataSet(genome);
+        SegmentedAsciiDataSet dataset = new SegmentedAsciiDataSet(locator, genome);
 
         if (birdsuite) {
             dataset.setTrackType(TrackType.CNV);
@@ -18,6 +18,8 @@ package org.broad.igv.data.seg;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import org.broad.igv.data.WholeGenomeSummaryFile;
+import org.broad.igv.data.WholeGenomeSummaryService;
 import org.broad.igv.feature.FeatureUtils;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
@@ -25,6 +27,9 @@ import org.broad.igv.track.TrackProperties;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.util.ResourceLocator;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.*;
 
 
@@ -52,10 +57,15 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
      */
     private Set<String> chromosomes = new HashSet();
     private List<String> headings = new ArrayList();
-    private Map<String, List<LocusScore>> wholeGenomeScoresCache = new HashMap();
+    private Map<String, List<LocusScore>> wholeGenomeScoresCache =
+            Collections.synchronizedMap(new HashMap<String, List<LocusScore>>());
     private long lastRefreshTime = 0;
     private TrackProperties trackProperties;
     Genome genome;
+    /**
+     * Path of the local source file, if any.  Whole genome scores of local files are persisted.
+     */
+    String path;
 
     public SegmentedAsciiDataSet(Genome genome) {
         this.genome = genome;
@@ -66,6 +76,7 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
         //        new GBenchFileParser(locator) :
         //        new SegmentFileParser(locator);
         this.genome = genome;
+        this.path = locator.isLocal() ? locator.getPath() : null;
         sortLists();
 
 
@@ -182,40 +193,80 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
      * @param heading
      * @return
      */
-    public List<LocusScore> getWholeGenomeScores(String heading) {
-
+    public List<LocusScore> getWholeGenomeScores(final String heading) {
 
         List<LocusScore> wholeGenomeScores = wholeGenomeScoresCache.get(heading);
-        if ((wholeGenomeScores == null) || wholeGenomeScores.isEmpty()) {
-
-            // Compute the smallest concievable feature that could be viewed on the
-            // largest screen.  Be conservative.   The smallest feature is one at
-            // the screen resolution scale in <chr units> / <pixel>
-            double minFeatureSize = 0; // ((double) genome.getLength()) / (maxScreenSize * locationUnit);
-
-            long offset = 0;
-            wholeGenomeScores = new ArrayList(1000);
-            for (String chr : genome.getLongChromosomeNames()) {
-                List<LocusScore> chrSegments = getSegments(heading, chr);
-                if (chrSegments != null) {
-                    int lastgEnd = -1;
-                    for (LocusScore score : chrSegments) {
+        if (wholeGenomeScores == null) {
+
+            // Chromosomes are summarized in parallel, return what is available until all are complete
+            WholeGenomeSummaryService.Summary<List<LocusScore>> summary =
+                    WholeGenomeSummaryService.getInstance().getSummary(this, heading, genome,
+                            new WholeGenomeSummaryService.ChromosomeSummarizer<List<LocusScore>>() {
+                                public List<LocusScore> summarize(String chr) {
+                                    return computeWholeGenomeScores(heading, chr);
+                                }
+                            },
+                            WholeGenomeSummaryFile.forPath(path, heading, genome, SEGMENT_CODEC));
+            wholeGenomeScores = WholeGenomeSummaryService.concatenate(summary.getResults());
+            if (summary.isComplete()) {
+                wholeGenomeScoresCache.put(heading, wholeGenomeScores);
+            }
+        }
+        return wholeGenomeScores;
+
+    }
+
+    private static final WholeGenomeSummaryFile.Codec<List<LocusScore>> SEGMENT_CODEC =
+            new WholeGenomeSummaryFile.Codec<List<LocusScore>>() {
+                public void write(List<LocusScore> segments, DataOutputStream out) throws IOException {
+                    out.writeInt(segments.size());
+                    for (LocusScore score : segments) {
                         Segment seg = (Segment) score;
-                        int gStart = genome.getGenomeCoordinate(chr, seg.getStart());
-                        int gEnd = genome.getGenomeCoordinate(chr, seg.getEnd());
-                         if ((gEnd - gStart) > minFeatureSize) {
-                            wholeGenomeScores.add(new Segment(gStart, gStart, gEnd,
-                                    gEnd, seg.getScore(), seg.getDescription()));
-                        }
+                        out.writeInt(seg.getStart());
+                        out.writeInt(seg.getEnd());
+                        out.writeFloat(seg.getScore());
+                        String desc = seg.getDescription();
+                        out.writeBoolean(desc != null);
+                        if (desc != null) out.writeUTF(desc);
                     }
+                }
 
+                public List<LocusScore> read(DataInputStream in) throws IOException {
+                    int n = in.readInt();
+                    List<LocusScore> segments = new ArrayList<LocusScore>(n);
+                    for (int i = 0; i < n; i++) {
+                        int start = in.readInt();
+                        int end = in.readInt();
+                        float score = in.readFloat();
+                        String desc = in.readBoolean() ? in.readUTF() : null;
+                        segments.add(new Segment(start, start, end, end, score, desc));
+                    }
+                    return segments;
                 }
-                offset += genome.getChromosome(chr).getLength();
+            };
+
+    private List<LocusScore> computeWholeGenomeScores(String heading, String chr) {
+
+        // Compute the smallest concievable feature that could be viewed on the
+        // largest screen.  Be conservative.   The smallest feature is one at
+        // the screen resolution scale in <chr units> / <pixel>
+        double minFeatureSize = 0; // ((double) genome.getLength()) / (maxScreenSize * locationUnit);
+
+        List<LocusScore> chrSegments = getSegments(heading, chr);
+        if (chrSegments == null) {
+            return Collections.emptyList();
+        }
+        List<LocusScore> scores = new ArrayList<LocusScore>(chrSegments.size());
+        for (LocusScore score : chrSegments) {
+            Segment seg = (Segment) score;
+            int gStart = genome.getGenomeCoordinate(chr, seg.getStart());
+            int gEnd = genome.getGenomeCoordinate(chr, seg.getEnd());
+            if ((gEnd - gStart) > minFeatureSize) {
+                scores.add(new Segment(gStart, gStart, gEnd,
+                        gEnd, seg.getScore(), seg.getDescription()));
             }
-            wholeGenomeScoresCache.put(heading, wholeGenomeScores);
         }
-        return wholeGenomeScores;
-
+        return scores;
     }
 
     /**
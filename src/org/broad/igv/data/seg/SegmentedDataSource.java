@@ -114,6 +114,10 @@ public class SegmentedDataSource implements DataSource {
         return null;
     }
 
+    public SegmentedDataSet getDataset() {
+        return dataset;
+    }
+
     public String getTrackIdentifier() {
         return trackIdentifier;
     }
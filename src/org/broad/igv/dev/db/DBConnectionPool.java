@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.dev.db;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.util.ResourceLocator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small pool of connections to one database.  Each connection keeps the prepared statements created on it, so
+ * repeated queries of the same form are prepared once per connection.
+ * <p/>
+ * Callers must return connections with {@link #release(PooledConnection)}, typically in a finally block.
+ * Connections which had an error should be invalidated first, they are then closed rather than reused.
+ */
+public class DBConnectionPool {
+
+    private static Logger log = Logger.getLogger(DBConnectionPool.class);
+
+    private final ResourceLocator locator;
+    private final Semaphore permits;
+    private final LinkedList<PooledConnection> idle = new LinkedList<PooledConnection>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger prepareCount = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    /**
+     * @param locator        database locator, as for {@link DBManager#getConnection(org.broad.igv.util.ResourceLocator)}
+     * @param maxConnections maximum number of connections open at once
+     */
+    public DBConnectionPool(ResourceLocator locator, int maxConnections) {
+        this.locator = locator;
+        this.permits = new Semaphore(Math.max(1, maxConnections), true);
+    }
+
+    /**
+     * Take a connection from the pool, connecting if none is idle.  Blocks while the maximum number of connections
+     * is in use.
+     */
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed: " + locator.getPath());
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a connection to " + locator.getPath());
+        }
+
+        try {
+            PooledConnection pc;
+            while ((pc = pollIdle()) != null) {
+                if (pc.isUsable()) return pc;
+                pc.close();
+            }
+
+            Connection conn = DBManager.connect(locator);
+            if (conn == null) {
+                throw new SQLException("Unable to connect to " + locator.getPath());
+            }
+            connectionCount.incrementAndGet();
+            return new PooledConnection(conn);
+        } catch (SQLException e) {
+            permits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Return a connection taken with {@link #acquire()}.
+     */
+    public void release(PooledConnection pc) {
+        try {
+            if (closed || pc.invalid || !pc.isUsable()) {
+                pc.close();
+            } else {
+                synchronized (idle) {
+                    idle.addFirst(pc);
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PooledConnection pollIdle() {
+        synchronized (idle) {
+            return idle.pollFirst();
+        }
+    }
+
+    /**
+     * Close idle connections.  Connections in use are closed when released.
+     */
+    public void close() {
+        closed = true;
+        PooledConnection pc;
+        while ((pc = pollIdle()) != null) {
+            pc.close();
+        }
+    }
+
+    /**
+     * @return the number of connections opened by this pool
+     */
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * @return the number of statements prepared by this pool
+     */
+    public int getPrepareCount() {
+        return prepareCount.get();
+    }
+
+
+    public class PooledConnection {
+
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+        private boolean invalid = false;
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Return a prepared statement for {@code sql}, prepared on first use.  Parameters are cleared.
+         */
+        public PreparedStatement prepareStatement(String sql) throws SQLException {
+            PreparedStatement st = statements.get(sql);
+            if (st == null) {
+                st = connection.prepareStatement(sql);
+                statements.put(sql, st);
+                prepareCount.incrementAndGet();
+            } else {
+                st.clearParameters();
+            }
+            return st;
+        }
+
+        /**
+         * Mark this connection as broken, it will be closed when released.
+         */
+        public void invalidate() {
+            invalid = true;
+        }
+
+        boolean isUsable() {
+            try {
+                return !connection.isClosed();
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void close() {
+            for (PreparedStatement st : statements.values()) {
+                try {
+                    st.close();
+                } catch (SQLException e) {
+                    log.error("Error closing statement", e);
+                }
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.error("Error closing connection", e);
+            }
+        }
+    }
+}
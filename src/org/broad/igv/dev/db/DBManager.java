@@ -13,6 +13,7 @@ package org.broad.igv.dev.db;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
+import org.broad.igv.PreferenceManager;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.util.MessageUtils;
 import org.broad.igv.util.LoginDialog;
@@ -37,6 +38,9 @@ public class DBManager {
     static Map<String, Connection> connectionPool =
             Collections.synchronizedMap(new HashMap<String, Connection>());
 
+    private static Map<String, DBConnectionPool> pools =
+            Collections.synchronizedMap(new HashMap<String, DBConnectionPool>());
+
     private static Map<String, String> driverMap;
 
     static {
@@ -73,6 +77,23 @@ public class DBManager {
 
     }
 
+    /**
+     * Return the connection pool for {@code locator}'s database, creating it on first use.  Pooled connections
+     * are separate from the shared connection returned by {@link #getConnection(ResourceLocator)}.
+     */
+    public static DBConnectionPool getPool(ResourceLocator locator) {
+        String url = locator.getPath();
+        synchronized (pools) {
+            DBConnectionPool pool = pools.get(url);
+            if (pool == null) {
+                int maxConnections = PreferenceManager.getInstance().getAsInt(PreferenceManager.DB_MAX_CONNECTIONS);
+                pool = new DBConnectionPool(locator, maxConnections);
+                pools.put(url, pool);
+            }
+            return pool;
+        }
+    }
+
     public static void closeConnection(ResourceLocator locator) {
         String url = locator.getPath();
         if (connectionPool.containsKey(url)) {
@@ -93,7 +114,7 @@ public class DBManager {
         return tokens[1];
     }
 
-    private static Connection connect(ResourceLocator locator) {
+    static Connection connect(ResourceLocator locator) {
         createDriver(getSubprotocol(locator.getPath()));
         try {
             return DriverManager.getConnection(locator.getPath(),
@@ -132,6 +153,12 @@ public class DBManager {
             }
         }
         connectionPool.clear();
+        synchronized (pools) {
+            for (DBConnectionPool pool : pools.values()) {
+                pool.close();
+            }
+            pools.clear();
+        }
     }
 
     public static java.lang.Class<?> createDriver(String subprotocol) {
@@ -300,6 +327,57 @@ public class DBManager {
         return tokens;
     }
 
+    /**
+     * Column layout of a result set, resolved once so that rows can be converted to strings without metadata
+     * lookups.  Valid for any result set with the same select list.
+     */
+    public static class RowReader {
+
+        // 1-based sql column of each token, 0 for none
+        private final int[] sqlCols;
+        private final boolean[] blob;
+
+        /**
+         * @param columnIndexMap map from array indexes -> sql column labels, or null to use
+         *                       {@code startColIndex} to {@code endColIndex}
+         */
+        public RowReader(ResultSet rs, Map<Integer, String> columnIndexMap, int startColIndex, int endColIndex) throws SQLException {
+            ResultSetMetaData md = rs.getMetaData();
+            if (columnIndexMap != null) {
+                String[] colNames = DBProfile.DBTable.columnMapToArray(columnIndexMap);
+                sqlCols = new int[colNames.length];
+                for (int cc = 0; cc < colNames.length; cc++) {
+                    sqlCols[cc] = colNames[cc] == null ? 0 : rs.findColumn(colNames[cc]);
+                }
+            } else {
+                int colCount = Math.min(md.getColumnCount(), endColIndex) - startColIndex + 1;
+                sqlCols = new int[colCount];
+                for (int cc = 0; cc < colCount; cc++) {
+                    sqlCols[cc] = cc + startColIndex;
+                }
+            }
+            blob = new boolean[sqlCols.length];
+            for (int cc = 0; cc < sqlCols.length; cc++) {
+                blob[cc] = sqlCols[cc] > 0 && blobTypes.contains(md.getColumnType(sqlCols[cc]));
+            }
+        }
+
+        public String[] read(ResultSet rs) throws SQLException {
+            String[] tokens = new String[sqlCols.length];
+            for (int cc = 0; cc < sqlCols.length; cc++) {
+                int sqlCol = sqlCols[cc];
+                if (sqlCol == 0) continue;
+                if (blob[cc]) {
+                    Blob b = rs.getBlob(sqlCol);
+                    tokens[cc] = new String(b.getBytes(1l, (int) b.length()));
+                } else {
+                    tokens[cc] = rs.getString(sqlCol);
+                }
+            }
+            return tokens;
+        }
+    }
+
     private static String getStringFromResultSet(ResultSet rs, String columnLabel) throws SQLException {
         return getStringFromResultSet(rs, rs.findColumn(columnLabel));
     }
@@ -12,6 +12,7 @@
 package org.broad.igv.dev.db;
 
 import org.apache.log4j.Logger;
+import org.broad.igv.PreferenceManager;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.feature.tribble.CodecFactory;
@@ -30,7 +31,6 @@ import java.io.InputStream;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Types;
 import java.util.*;
 
 
@@ -91,7 +91,21 @@ public class SQLCodecSource extends DBQueryReader<Feature> implements FeatureSou
     protected int endColIndex = Integer.MAX_VALUE;
     private int featureWindowSize = (int) 1e6;
 
-    private static final int MAX_BINS = 20;
+    /**
+     * Number of rows fetched from the database per round trip
+     */
+    private int fetchSize = PreferenceManager.getInstance().getAsInt(PreferenceManager.DB_FETCH_SIZE);
+
+    /**
+     * Range query strings, built once so prepared statements can be reused
+     */
+    private String rangeQueryString;
+    private String binnedRangeQueryString;
+
+    /**
+     * Column layout of query results, resolved from the first result set
+     */
+    private volatile DBManager.RowReader rowReader;
 
     SQLCodecSource(DBProfile.DBTable table, AsciiFeatureCodec codec) {
         super(table);
@@ -104,6 +118,7 @@ public class SQLCodecSource extends DBQueryReader<Feature> implements FeatureSou
         this.endColIndex = table.getEndColIndex();
 
         readHeader();
+        buildQueryStrings();
     }
 
     /**
@@ -205,14 +220,12 @@ public class SQLCodecSource extends DBQueryReader<Feature> implements FeatureSou
     //TODO We already know how to parse strings, so just turn everything to strings
     //TODO See IParser for better, type-safe way of handling different data sources
     private String[] rowToStringArray(ResultSet rs) throws SQLException {
-
-        String[] tokens;
-        if (table.getColumnLabelMap() != null) {
-            tokens = DBManager.lineToArray(rs, table.getColumnLabelMap());
-        } else {
-            tokens = DBManager.lineToArray(rs, startColIndex, endColIndex, false);
+        DBManager.RowReader reader = rowReader;
+        if (reader == null) {
+            reader = new DBManager.RowReader(rs, table.getColumnLabelMap(), startColIndex, endColIndex);
+            rowReader = reader;
         }
-        return tokens;
+        return reader.read(rs);
     }
 
     @Override
@@ -222,12 +235,10 @@ public class SQLCodecSource extends DBQueryReader<Feature> implements FeatureSou
     }
 
     /**
-     * @param useBinning Whether to query using bin column, for efficiency
-     * @throws IOException
+     * Build the range query strings.  The binned form restricts each level of the UCSC binning scheme to the
+     * range of bins overlapping the window, so it has a fixed number of parameters for any window.
      */
-    private PreparedStatement generateQueryStatement(boolean useBinning) throws IOException {
-        PreparedStatement queryStatement;
-
+    private void buildQueryStrings() {
         String prependWord = baseQueryString.contains("WHERE") ? " AND " : " WHERE ";
         String queryString = baseQueryString + prependWord + String.format("%s = ? AND ( (%s >= ? AND %s < ?)",
                 chromoColName, posStartColName, posStartColName);
@@ -237,95 +248,97 @@ public class SQLCodecSource extends DBQueryReader<Feature> implements FeatureSou
         }
         queryString += " )";
 
-        String orderClause = "ORDER BY " + posStartColName;
+        String orderClause = " ORDER BY " + posStartColName;
 
-        try {
-            if (useBinning) {
-                String[] qs = new String[MAX_BINS];
-                Arrays.fill(qs, "?");
-                String binnedQueryString = queryString + String.format(" AND %s IN (%s) %s", binColName, StringUtils.join(qs, ","), orderClause);
-                queryStatement = DBManager.getConnection(locator).prepareStatement(binnedQueryString);
-            } else {
-                queryStatement = DBManager.getConnection(locator).prepareStatement(queryString + " " + orderClause);
-            }
-            return queryStatement;
-        } catch (SQLException e) {
-            log.error("Error initializing query statement", e);
-            throw new IOException(e);
+        rangeQueryString = queryString + orderClause;
+        if (binColName != null) {
+            String[] levels = new String[BIN_OFFSETS.length];
+            Arrays.fill(levels, String.format("%s BETWEEN ? AND ?", binColName));
+            binnedRangeQueryString = queryString + " AND (" + StringUtils.join(levels, " OR ") + ")" + orderClause;
         }
-
     }
 
     private Iterator query(String chr, int start, int end) throws IOException {
 
-        Set<Integer> bins = null;
-        boolean useBinning = false;
-        if (binColName != null) {
-            bins = calculateBins(start, end);
-            useBinning = bins.size() < MAX_BINS;
-        }
-        PreparedStatement statement = generateQueryStatement(useBinning);
+        // Bins are only used for the standard scheme, positions below 512 Mb
+        boolean useBinning = binnedRangeQueryString != null && end <= BINRANGE_MAXEND_512M;
 
-        try {
-            statement.clearParameters();
-            statement.setString(1, chr);
-            statement.setInt(3, end);
-
-            int[] startCols = new int[]{2};
-            if (this.posEndColName != null) {
-                startCols = new int[]{2, 4, 5};
+        List<Object> params = new ArrayList<Object>();
+        params.add(chr);
+        params.add(start);
+        params.add(end);
+        if (this.posEndColName != null) {
+            params.add(start);
+            params.add(start);
+        }
+        if (useBinning) {
+            int binEnd = Math.max(start + 1, end) - 1;
+            for (int level = 0; level < BIN_OFFSETS.length; level++) {
+                int shift = BIN_FIRST_SHIFT + level * BIN_NEXT_SHIFT;
+                params.add(BIN_OFFSETS[level] + (start >> shift));
+                params.add(BIN_OFFSETS[level] + (binEnd >> shift));
             }
+        }
 
-            for (Integer cc : startCols) {
-                statement.setInt(cc, start);
-            }
+        return executePooled(useBinning ? binnedRangeQueryString : rangeQueryString, params);
+    }
 
-            if (useBinning) {
-                int qnum = 6;
-                for (Integer bin : bins) {
-                    statement.setInt(qnum, bin);
-                    qnum++;
-                }
+    /**
+     * Run a query on a pooled connection, reusing its prepared statement, and decode all rows.  Only the result
+     * set is closed, the statement and connection are kept for later queries.
+     */
+    private Iterator executePooled(String queryString, List<Object> params) throws IOException {
 
-                for (; qnum <= statement.getParameterMetaData().getParameterCount(); qnum++) {
-                    statement.setNull(qnum, Types.INTEGER);
+        DBConnectionPool pool = DBManager.getPool(locator);
+        DBConnectionPool.PooledConnection pc = null;
+        ResultSet rs = null;
+        try {
+            pc = pool.acquire();
+            PreparedStatement statement = pc.prepareStatement(queryString);
+            for (int i = 0; i < params.size(); i++) {
+                Object p = params.get(i);
+                if (p instanceof Integer) {
+                    statement.setInt(i + 1, (Integer) p);
+                } else {
+                    statement.setString(i + 1, (String) p);
                 }
             }
+            if (fetchSize > 0) {
+                statement.setFetchSize(fetchSize);
+            }
 
+            rs = statement.executeQuery();
+            List<Feature> results = new ArrayList<Feature>();
+            while (rs.next()) {
+                results.add(processResult(rs));
+            }
+            return results.iterator();
         } catch (SQLException e) {
-            log.error(e.getMessage(), e);
+            if (pc != null) pc.invalidate();
+            log.error("Database error", e);
             throw new IOException(e);
-        }
-
-        return loadIterator(statement);
-    }
-
-
-    private static final int SMALLEST_BIN_SIZE = 128 * 1024;
-
-    private Set<Integer> calculateBins(int start, int end) {
-        int length = end - start;
-        int sweepLength = SMALLEST_BIN_SIZE;
-        Set<Integer> bins = new HashSet<Integer>(2 * (length) / SMALLEST_BIN_SIZE);
-
-        while (sweepLength < BINRANGE_MAXEND_512M) {
-            int tstStart = Math.max(start - sweepLength / 2, 0);
-            while (tstStart < end) {
-                bins.add(binFromRange(tstStart, tstStart += sweepLength));
-                if (tstStart < 0) {
-                    throw new IllegalArgumentException("Overflow while calculating bins");
+        } finally {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    log.error("Error closing resultset", e);
                 }
             }
-            sweepLength *= 2;
+            if (pc != null) pool.release(pc);
         }
-        bins.add(binFromRange(start, end));
-
-        return bins;
     }
 
     private static final int BINRANGE_MAXEND_512M = 512 * 1024 * 1024;
     private static final int _binOffsetOldToExtended = 4681;
 
+    /**
+     * Standard UCSC bin levels, smallest (128 kb) first
+     */
+    private static final int[] BIN_OFFSETS = {512 + 64 + 8 + 1, 64 + 8 + 1, 8 + 1, 1, 0};
+    private static final int BIN_FIRST_SHIFT = 17;
+    private static final int BIN_NEXT_SHIFT = 3;
+
     /**
      * From http://genomewiki.ucsc.edu/index.php/Bin_indexing_system
      */
@@ -383,7 +396,7 @@ public class SQLCodecSource extends DBQueryReader<Feature> implements FeatureSou
 
     Iterator iterator() throws IOException {
         String queryString = String.format("%s ORDER BY %s LIMIT %s", baseQueryString, posStartColName, featureWindowSize);
-        return loadIterator(executeQuery(queryString));
+        return executePooled(queryString, Collections.emptyList());
     }
 
     public List<String> getSequenceNames() {
@@ -418,6 +431,17 @@ public class SQLCodecSource extends DBQueryReader<Feature> implements FeatureSou
         return null; //TODO
     }
 
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Set the number of rows fetched per round trip, 0 to use the driver default
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
     @Override
     public int getFeatureWindowSize() {
         return featureWindowSize;
@@ -157,6 +157,17 @@ public class SpliceJunctionFeature extends BasicFeature {
         return endFlankingRegionDepthArray;
     }
 
+    /**
+     * Set the depth of coverage of the flanking regions, and extend the feature to cover them.  Either array
+     * may be null.
+     */
+    public void setFlankingRegionDepthArrays(int[] startArray, int[] endArray) {
+        startFlankingRegionDepthArray = startArray;
+        endFlankingRegionDepthArray = endArray;
+        start = junctionStart - (startArray == null ? 0 : startArray.length);
+        end = junctionEnd + (endArray == null ? 0 : endArray.length);
+    }
+
     public boolean hasFlankingRegionDepthArrays() {
         return ((startFlankingRegionDepthArray != null) && (endFlankingRegionDepthArray != null));
     }
@@ -12,6 +12,7 @@
 package org.broad.igv.feature.tribble;
 
 import org.apache.log4j.Logger;
+import org.broad.igv.PreferenceManager;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.variant.Variant;
 import org.broad.igv.variant.vcf.VCFVariant;
@@ -30,13 +31,25 @@ public class VCFWrapperCodec extends AsciiFeatureCodec<VCFVariant> {
 
     private static Logger log = Logger.getLogger(Variant.class);
 
+    private static final int INFO_COLUMN = 7;
+
     AsciiFeatureCodec wrappedCodec;
     Genome genome;
+    boolean lazy;
 
     public VCFWrapperCodec(AsciiFeatureCodec wrappedCodec, Genome genome) {
+        this(wrappedCodec, genome, PreferenceManager.getInstance().getAsBoolean(PreferenceManager.VCF_LAZY_DECODING));
+    }
+
+    /**
+     * @param lazy if true only the site columns are decoded when a line is read.  INFO attributes and genotypes
+     *             are decoded when first requested from the variant.
+     */
+    public VCFWrapperCodec(AsciiFeatureCodec wrappedCodec, Genome genome, boolean lazy) {
         super(VCFVariant.class);
         this.wrappedCodec = wrappedCodec;
         this.genome = genome;
+        this.lazy = lazy;
     }
 
     @Override
@@ -46,6 +59,46 @@ public class VCFWrapperCodec extends AsciiFeatureCodec<VCFVariant> {
 
     @Override
     public VCFVariant decode(String line) {
+        return lazy ? decodeLazy(line) : decodeEager(line);
+    }
+
+    /**
+     * Decode the site columns only.  The INFO column is blanked before handing the line to the wrapped codec and
+     * kept raw on the variant, genotypes are left to htsjdk's lazy genotype parsing.
+     */
+    private VCFVariant decodeLazy(String line) {
+
+        int infoStart = columnStart(line, INFO_COLUMN);
+        if (infoStart < 0) {
+            return decodeEager(line);
+        }
+        int infoEnd = line.indexOf('\t', infoStart);
+        if (infoEnd < 0) infoEnd = line.length();
+
+        // Genotypes are no longer parsed here, so we can't wait for a NumberFormatException to repair them
+        String info = line.substring(infoStart, infoEnd);
+        String genotypes = repairMissingListValues(line.substring(infoEnd));
+
+        String siteLine;
+        String deferredInfo;
+        if (info.equals(".") || hasEndKey(info)) {
+            // END determines the extent of the feature, it must be decoded now
+            siteLine = line.substring(0, infoEnd) + genotypes;
+            deferredInfo = null;
+        } else {
+            siteLine = line.substring(0, infoStart) + "." + genotypes;
+            deferredInfo = info;
+        }
+
+        VariantContext vc = (VariantContext) wrappedCodec.decode(siteLine);
+        if (vc == null) {
+            return null;
+        }
+        String chr = genome == null ? vc.getChr() : genome.getChromosomeAlias(vc.getChr());
+        return new VCFVariant(vc, chr, deferredInfo);
+    }
+
+    private VCFVariant decodeEager(String line) {
         // VCFCodec supports completely missing fields (which would simply have a ".")
         // but does not currently support missing only certain elements of a field.
         // IGV is much more permissive.
@@ -73,6 +126,47 @@ public class VCFWrapperCodec extends AsciiFeatureCodec<VCFVariant> {
 
     }
 
+    /**
+     * @return the offset of the first character of column {@code column} (0 based), or -1 if there are fewer columns
+     */
+    static int columnStart(String line, int column) {
+        int idx = 0;
+        for (int i = 0; i < column; i++) {
+            idx = line.indexOf('\t', idx);
+            if (idx < 0) return -1;
+            idx++;
+        }
+        return idx;
+    }
+
+    static boolean hasEndKey(String info) {
+        return info.startsWith("END=") || info.contains(";END=");
+    }
+
+    /**
+     * Replace missing elements of comma separated values with 0, e.g. 63,.,0 becomes 63,0,0.  This is what
+     * decodeEager does after a NumberFormatException, applied up front and only to whole elements.
+     */
+    static String repairMissingListValues(String s) {
+        if (s.indexOf(",.") < 0 && s.indexOf(".,") < 0) {
+            return s;
+        }
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] != '.') continue;
+            char prev = i > 0 ? chars[i - 1] : '\t';
+            char next = i < chars.length - 1 ? chars[i + 1] : '\t';
+            if ((prev == ',' || next == ',') && isDelimiter(prev) && isDelimiter(next)) {
+                chars[i] = '0';
+            }
+        }
+        return new String(chars);
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == ',' || c == ':' || c == '\t';
+    }
+
     @Override
     public Object readActualHeader(LineIterator reader) {
         return wrappedCodec.readActualHeader(reader);
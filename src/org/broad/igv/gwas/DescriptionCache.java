@@ -130,20 +130,24 @@ public class DescriptionCache {
         String descriptionString = null;
 
         if (description != null) {
-            descriptionString = "";
-            int headersSize = this.getHeaderTokens().length;
-            String[] tokens = Globals.singleTabMultiSpacePattern.split(description);
-
-            for (int i = 0; i < headersSize; i++) {
-                String tmpHeaderToken = this.getHeaderTokens()[i];
-                if (tmpHeaderToken != null)
-                    descriptionString += tmpHeaderToken + ": " + tokens[i] + "<br>";
-            }
-
+            descriptionString = formatDescription(this.getHeaderTokens(), Globals.singleTabMultiSpacePattern.split(description));
         }
         return descriptionString;
 
     }
 
+    /**
+     * Format the tokens of a result row as "header: value" lines
+     */
+    static String formatDescription(String[] headerTokens, String[] tokens) {
+        String descriptionString = "";
+        for (int i = 0; i < headerTokens.length; i++) {
+            String tmpHeaderToken = headerTokens[i];
+            if (tmpHeaderToken != null)
+                descriptionString += tmpHeaderToken + ": " + tokens[i] + "<br>";
+        }
+        return descriptionString;
+    }
+
 
 }
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.gwas;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.collections.DoubleArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Random access reader for GWAS files converted by {@link GWASBinaryWriter}.  Opening a file reads only the header
+ * and the chromosome directory, which includes coarse summaries for zoomed out rendering.  Points and descriptions
+ * are read one chromosome at a time on request.
+ */
+public class GWASBinaryReader {
+
+    public static final String EXTENSION = ".gwas.bin";
+
+    static final int MAGIC = 0x47574142;   // "GWAB"
+    static final int VERSION = 1;
+
+    /**
+     * Smallest summary bin stored in the directory, 64 kb
+     */
+    static final int STORED_MIN_BIN_SIZE = GWASPyramid.BASE_BIN_SIZE << 6;
+
+    private final String path;
+    private final SeekableStream stream;
+    private final String[] headers;
+    private final int locationCol;
+    private final LinkedHashMap<String, ChrEntry> directory = new LinkedHashMap<String, ChrEntry>();
+    private final long directoryOffset;
+    private float maxValue;
+
+    // Description columns of the most recently requested chromosome
+    private String descriptionChr;
+    private String[][] dictionaries;
+    private int[][] codes;
+
+    public static boolean isBinaryGWASFile(String path) {
+        return path.toLowerCase().endsWith(EXTENSION);
+    }
+
+    /**
+     * @param genome used to map chromosome names to their canonical form, may be null
+     */
+    public GWASBinaryReader(String path, Genome genome) throws IOException {
+        this.path = path;
+        this.stream = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
+
+        ByteBuffer buffer = read(0, 8);
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a binary GWAS file: " + path);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary GWAS version " + version + ": " + path);
+        }
+
+        directoryOffset = read(stream.length() - 8, 8).getLong();
+        buffer = read(directoryOffset, (int) (stream.length() - 8 - directoryOffset));
+        int nChrs = buffer.getInt();
+        for (int c = 0; c < nChrs; c++) {
+            String chr = readString(buffer);
+            if (genome != null) chr = genome.getChromosomeAlias(chr);
+            ChrEntry entry = new ChrEntry(buffer.getInt(), buffer.getFloat(), buffer.getLong(), buffer.getLong());
+            int nLevels = buffer.getInt();
+            List<GWASPyramid.Level> levels = new ArrayList<GWASPyramid.Level>(nLevels);
+            for (int l = 0; l < nLevels; l++) {
+                int binSize = buffer.getInt();
+                int nBins = buffer.getInt();
+                int[] bins = new int[nBins];
+                float[] max = new float[nBins];
+                int[] counts = new int[nBins];
+                buffer.asIntBuffer().get(bins);
+                buffer.position(buffer.position() + 4 * nBins);
+                buffer.asFloatBuffer().get(max);
+                buffer.position(buffer.position() + 4 * nBins);
+                buffer.asIntBuffer().get(counts);
+                buffer.position(buffer.position() + 4 * nBins);
+                levels.add(new GWASPyramid.Level(binSize, bins, max, counts));
+            }
+            entry.pyramid = new GWASPyramid(levels);
+            directory.put(chr, entry);
+            maxValue = Math.max(maxValue, entry.maxValue);
+        }
+
+        // The header ends where the first chromosome's points start
+        long headerEnd = directory.isEmpty() ? directoryOffset : directory.values().iterator().next().pointsOffset;
+        buffer = read(8, (int) (headerEnd - 8));
+        headers = new String[buffer.getInt()];
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = readString(buffer);
+        }
+        locationCol = buffer.getInt();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String[] getHeaderTokens() {
+        return headers;
+    }
+
+    /**
+     * @return chromosome names, in file order
+     */
+    public List<String> getChromosomes() {
+        return new ArrayList<String>(directory.keySet());
+    }
+
+    public boolean hasChromosome(String chr) {
+        return directory.containsKey(chr);
+    }
+
+    public int getRowCount(String chr) {
+        ChrEntry entry = directory.get(chr);
+        return entry == null ? 0 : entry.nRows;
+    }
+
+    public float getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * @return the stored summary levels of {@code chr}, or null if there is no data for it.  Only levels with bins of
+     * {@link #STORED_MIN_BIN_SIZE} bp and above are present.
+     */
+    public GWASPyramid getSummary(String chr) {
+        ChrEntry entry = directory.get(chr);
+        return entry == null ? null : entry.pyramid;
+    }
+
+    /**
+     * Read the positions and -log10(p) values of {@code chr} into {@code positions} and {@code values}.
+     */
+    public synchronized void readPoints(String chr, IntArrayList positions, DoubleArrayList values) throws IOException {
+        ChrEntry entry = directory.get(chr);
+        if (entry == null) return;
+        ByteBuffer buffer = read(entry.pointsOffset, 8 * entry.nRows);
+        int[] p = new int[entry.nRows];
+        float[] v = new float[entry.nRows];
+        buffer.asIntBuffer().get(p);
+        buffer.position(4 * entry.nRows);
+        buffer.asFloatBuffer().get(v);
+        positions.addAll(p);
+        for (float f : v) {
+            values.add(f);
+        }
+    }
+
+    /**
+     * Return the original tokens of row {@code row} of {@code chr}.  The description columns of one chromosome are
+     * kept in memory, so lookups near each other read the file once.
+     *
+     * @param position the row's position, which is not stored with the descriptions
+     */
+    public synchronized String[] getRowTokens(String chr, int row, int position) throws IOException {
+        ChrEntry entry = directory.get(chr);
+        if (entry == null || row < 0 || row >= entry.nRows) return null;
+
+        if (!chr.equals(descriptionChr)) {
+            loadDescriptions(entry);
+            descriptionChr = chr;
+        }
+
+        String[] tokens = new String[headers.length];
+        for (int c = 0; c < headers.length; c++) {
+            tokens[c] = c == locationCol ? String.valueOf(position) : dictionaries[c][codes[c][row]];
+        }
+        return tokens;
+    }
+
+    private void loadDescriptions(ChrEntry entry) throws IOException {
+        ByteBuffer buffer = read(entry.descriptionsOffset, (int) (entry.descriptionsEnd() - entry.descriptionsOffset));
+        dictionaries = new String[headers.length][];
+        codes = new int[headers.length][];
+        for (int c = 0; c < headers.length; c++) {
+            if (c == locationCol) continue;
+            int size = buffer.getInt();
+            String[] dictionary = new String[size];
+            for (int i = 0; i < size; i++) {
+                dictionary[i] = readString(buffer);
+            }
+            int width = buffer.get();
+            int[] columnCodes = new int[entry.nRows];
+            for (int i = 0; i < entry.nRows; i++) {
+                if (width == 1) columnCodes[i] = buffer.get() & 0xFF;
+                else if (width == 2) columnCodes[i] = buffer.getShort() & 0xFFFF;
+                else columnCodes[i] = buffer.getInt();
+            }
+            dictionaries[c] = dictionary;
+            codes[c] = columnCodes;
+        }
+    }
+
+    /**
+     * @return the number of bytes used for codes into a dictionary of the given size
+     */
+    static int codeWidth(int dictionarySize) {
+        return dictionarySize <= 0x100 ? 1 : (dictionarySize <= 0x10000 ? 2 : 4);
+    }
+
+    public synchronized void close() throws IOException {
+        stream.close();
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        stream.seek(offset);
+        int n = 0;
+        while (n < length) {
+            int count = stream.read(bytes, n, length - n);
+            if (count < 0) break;
+            n += count;
+        }
+        return ByteBuffer.wrap(bytes, 0, n);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int len = buffer.getInt();
+        byte[] bytes = new byte[len];
+        buffer.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private class ChrEntry {
+        final int nRows;
+        final float maxValue;
+        final long pointsOffset;
+        final long descriptionsOffset;
+        GWASPyramid pyramid;
+
+        ChrEntry(int nRows, float maxValue, long pointsOffset, long descriptionsOffset) {
+            this.nRows = nRows;
+            this.maxValue = maxValue;
+            this.pointsOffset = pointsOffset;
+            this.descriptionsOffset = descriptionsOffset;
+        }
+
+        /**
+         * Descriptions are followed by the points of the next chromosome, or the directory
+         */
+        long descriptionsEnd() {
+            boolean found = false;
+            for (ChrEntry e : directory.values()) {
+                if (found) return e.pointsOffset;
+                if (e == this) found = true;
+            }
+            return directoryOffset;
+        }
+    }
+}
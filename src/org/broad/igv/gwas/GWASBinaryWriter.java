@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.gwas;
+
+import htsjdk.tribble.readers.AsciiLineReader;
+import org.apache.log4j.Logger;
+import org.broad.igv.Globals;
+import org.broad.igv.exceptions.ParserException;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.ParsingUtils;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.collections.DoubleArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Converts a GWAS result file to the indexed binary format read by {@link GWASBinaryReader}.
+ * <p/>
+ * The input must be sorted as required by {@link GWASParser}, rows are buffered one chromosome at a time.  Layout,
+ * big endian:
+ * <pre>
+ * int magic, int version
+ * int nColumns, string[nColumns] header tokens, int location column
+ * per chromosome:
+ *     points:        int[nRows] positions, float[nRows] -log10(p)
+ *     descriptions:  per column other than the location column:
+ *                        int dictionarySize, string[dictionarySize], byte codeWidth, codes[nRows]
+ * directory:
+ *     int nChrs, per chromosome:
+ *         string chr, int nRows, float maxValue, long pointsOffset, long descriptionsOffset
+ *         int nLevels, per level: int binSize, int nBins, int[nBins] bins, float[nBins] max, int[nBins] counts
+ * long directoryOffset
+ * </pre>
+ * Strings are an int byte count followed by UTF-8 bytes.  Codes are 1, 2 or 4 byte unsigned indexes into the
+ * column dictionary.  The directory stores the summary levels with bins of at least
+ * {@link GWASBinaryReader#STORED_MIN_BIN_SIZE} bp, enough to render zoomed out views without reading points.
+ */
+public class GWASBinaryWriter {
+
+    private static Logger log = Logger.getLogger(GWASBinaryWriter.class);
+
+    private final DataOutputStream dos;
+    private final String[] headers;
+    private final int locationCol;
+    private long position;
+
+    private final List<ChrEntry> directory = new ArrayList<ChrEntry>();
+
+    // Rows of the current chromosome
+    private String chr;
+    private IntArrayList positions;
+    private DoubleArrayList values;
+    private List<Map<String, Integer>> dictionaries;
+    private List<List<String>> dictionaryValues;
+    private List<IntArrayList> codes;
+
+    private GWASBinaryWriter(OutputStream os, String[] headers, int locationCol) throws IOException {
+        this.dos = new DataOutputStream(new BufferedOutputStream(os));
+        this.headers = headers;
+        this.locationCol = locationCol;
+        writeInt(GWASBinaryReader.MAGIC);
+        writeInt(GWASBinaryReader.VERSION);
+        writeInt(headers.length);
+        for (String h : headers) writeString(h);
+        writeInt(locationCol);
+    }
+
+    /**
+     * Convert the GWAS file {@code inputPath} to {@code outputPath}.  The file is written to a temporary file and
+     * renamed once complete, so a failed conversion leaves no partial output.
+     *
+     * @param genome used to canonicalize chromosome names, may be null
+     */
+    public static void convert(String inputPath, String outputPath, Genome genome) throws IOException {
+
+        GWASParser parser = new GWASParser(new ResourceLocator(inputPath), genome);
+        AsciiLineReader reader = null;
+        OutputStream os = null;
+        File tmpFile = new File(outputPath + ".tmp");
+        String nextLine = null;
+        int rowCounter = 0;
+        try {
+            reader = ParsingUtils.openAsciiReader(new ResourceLocator(inputPath));
+            String headerLine = reader.readLine();
+            if (headerLine == null || !parser.getColumns().parseHeader(headerLine))
+                throw new ParserException("Error while parsing columns line.", 0, headerLine);
+            String[] headers = Globals.singleTabMultiSpacePattern.split(headerLine.trim());
+
+            os = new FileOutputStream(tmpFile);
+            GWASBinaryWriter writer = new GWASBinaryWriter(os, headers, parser.getColumns().locationCol);
+
+            Set<String> chromosomes = new HashSet<String>();
+            while ((nextLine = reader.readLine()) != null && (nextLine.trim().length() > 0)) {
+                nextLine = nextLine.trim();
+                rowCounter++;
+                GWASParser.GWASEntry entry = parser.parseLine(nextLine, rowCounter);
+                if (entry == null) continue;
+
+                if (!entry.chr.equals(writer.chr)) {
+                    if (!chromosomes.add(entry.chr)) {
+                        throw new ParserException("File is not sorted; chromosome repeated", rowCounter);
+                    }
+                    writer.startChromosome(entry.chr);
+                } else if (entry.start < writer.positions.get(writer.positions.size() - 1)) {
+                    throw new ParserException("File is not sorted, found start position lower than previous", rowCounter);
+                }
+                writer.add(entry.start, entry.p, Globals.singleTabMultiSpacePattern.split(nextLine));
+            }
+            writer.finish();
+            os = null;
+
+            File outputFile = new File(outputPath);
+            if (outputFile.exists() && !outputFile.delete()) {
+                throw new IOException("Cannot replace " + outputPath);
+            }
+            if (!tmpFile.renameTo(outputFile)) {
+                throw new IOException("Cannot rename " + tmpFile.getAbsolutePath() + " to " + outputPath);
+            }
+            log.info("Wrote " + rowCounter + " rows to " + outputPath);
+        } finally {
+            if (reader != null) reader.close();
+            if (os != null) os.close();
+            tmpFile.delete();
+        }
+    }
+
+    private void startChromosome(String chr) throws IOException {
+        flushChromosome();
+        this.chr = chr;
+        positions = new IntArrayList(10000);
+        values = new DoubleArrayList(10000);
+        dictionaries = new ArrayList<Map<String, Integer>>();
+        dictionaryValues = new ArrayList<List<String>>();
+        codes = new ArrayList<IntArrayList>();
+        for (int i = 0; i < headers.length; i++) {
+            dictionaries.add(new HashMap<String, Integer>());
+            dictionaryValues.add(new ArrayList<String>());
+            codes.add(new IntArrayList(10000));
+        }
+    }
+
+    private void add(int start, double value, String[] tokens) {
+        positions.add(start);
+        values.add(value);
+        for (int i = 0; i < headers.length; i++) {
+            if (i == locationCol) continue;
+            String token = i < tokens.length ? tokens[i] : "";
+            Map<String, Integer> dictionary = dictionaries.get(i);
+            Integer code = dictionary.get(token);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.put(token, code);
+                dictionaryValues.get(i).add(token);
+            }
+            codes.get(i).add(code);
+        }
+    }
+
+    private void flushChromosome() throws IOException {
+        if (chr == null) return;
+
+        int nRows = positions.size();
+        ChrEntry entry = new ChrEntry(chr, nRows);
+
+        entry.pointsOffset = position;
+        float max = 0;
+        for (int i = 0; i < nRows; i++) writeInt(positions.get(i));
+        for (int i = 0; i < nRows; i++) {
+            float v = (float) values.get(i);
+            if (v > max) max = v;
+            writeFloat(v);
+        }
+        entry.maxValue = max;
+
+        entry.descriptionsOffset = position;
+        for (int c = 0; c < headers.length; c++) {
+            if (c == locationCol) continue;
+            List<String> dictionary = dictionaryValues.get(c);
+            writeInt(dictionary.size());
+            for (String s : dictionary) writeString(s);
+            int width = GWASBinaryReader.codeWidth(dictionary.size());
+            writeByte(width);
+            IntArrayList columnCodes = codes.get(c);
+            for (int i = 0; i < nRows; i++) {
+                int code = columnCodes.get(i);
+                if (width == 1) writeByte(code);
+                else if (width == 2) writeShort(code);
+                else writeInt(code);
+            }
+        }
+
+        GWASPyramid pyramid = new GWASPyramid(positions, values);
+        for (int l = 0; l < pyramid.getLevelCount(); l++) {
+            GWASPyramid.Level level = pyramid.getLevel(l);
+            if (level.getBinSize() >= GWASBinaryReader.STORED_MIN_BIN_SIZE) entry.levels.add(level);
+        }
+
+        directory.add(entry);
+        chr = null;
+        positions = null;
+        values = null;
+        dictionaries = null;
+        dictionaryValues = null;
+        codes = null;
+    }
+
+    private void finish() throws IOException {
+        flushChromosome();
+        long directoryOffset = position;
+        writeInt(directory.size());
+        for (ChrEntry entry : directory) {
+            writeString(entry.chr);
+            writeInt(entry.nRows);
+            writeFloat(entry.maxValue);
+            writeLong(entry.pointsOffset);
+            writeLong(entry.descriptionsOffset);
+            writeInt(entry.levels.size());
+            for (GWASPyramid.Level level : entry.levels) {
+                writeInt(level.getBinSize());
+                writeInt(level.size());
+                for (int i = 0; i < level.size(); i++) writeInt(level.getStart(i) / level.getBinSize());
+                for (int i = 0; i < level.size(); i++) writeFloat(level.getMax(i));
+                for (int i = 0; i < level.size(); i++) writeInt(level.getCount(i));
+            }
+        }
+        writeLong(directoryOffset);
+        dos.close();
+    }
+
+    private void writeByte(int v) throws IOException {
+        dos.writeByte(v);
+        position += 1;
+    }
+
+    private void writeShort(int v) throws IOException {
+        dos.writeShort(v);
+        position += 2;
+    }
+
+    private void writeInt(int v) throws IOException {
+        dos.writeInt(v);
+        position += 4;
+    }
+
+    private void writeLong(long v) throws IOException {
+        dos.writeLong(v);
+        position += 8;
+    }
+
+    private void writeFloat(float v) throws IOException {
+        dos.writeFloat(v);
+        position += 4;
+    }
+
+    private void writeString(String s) throws IOException {
+        byte[] bytes = s.getBytes("UTF-8");
+        writeInt(bytes.length);
+        dos.write(bytes);
+        position += bytes.length;
+    }
+
+    private static class ChrEntry {
+        final String chr;
+        final int nRows;
+        float maxValue;
+        long pointsOffset;
+        long descriptionsOffset;
+        final List<GWASPyramid.Level> levels = new ArrayList<GWASPyramid.Level>();
+
+        ChrEntry(String chr, int nRows) {
+            this.chr = chr;
+            this.nRows = nRows;
+        }
+    }
+}
@@ -23,7 +23,12 @@ import org.broad.igv.util.collections.DoubleArrayList;
 import org.broad.igv.util.collections.FloatArrayList;
 import org.broad.igv.util.collections.IntArrayList;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -46,6 +51,22 @@ public class GWASData {
     private DescriptionCache descriptionCache = new DescriptionCache();
     private IntArrayList fileIndex = new IntArrayList(100);
     private double maxValue = 0;
+    // Per chromosome summaries used for rendering, see GWASPyramid
+    private Map<String, GWASPyramid> pyramids = new HashMap<String, GWASPyramid>();
+    // Source of indexed binary files, null for text files which are loaded completely
+    private GWASBinaryReader reader;
+
+    public GWASData() {
+    }
+
+    /**
+     * Create a data set backed by an indexed binary file.  Points are loaded one chromosome at a time as needed.
+     */
+    public GWASData(GWASBinaryReader reader) {
+        this.reader = reader;
+        this.maxValue = reader.getMaxValue();
+        this.descriptionCache.setHeaderTokens(reader.getHeaderTokens());
+    }
 
     public DescriptionCache getDescriptionCache() {
         return descriptionCache;
@@ -97,63 +118,60 @@ public class GWASData {
     public int getNearestIndexByLocation(String chr, int location, double minValue, double maxValue, int maxDistance) {
 
         int index = -1;
-        int iBefore = -1;
-        int iAfter = -1;
 
         // Check if the location chr exists in data set
-        if (this.locations.containsKey(chr)) {
-            int[] locList = this.locations.get(chr).toArray();
-            double[] valueList = this.values.get(chr).toArray();
-            int indexCounter = 0;
-
-            // Find index of the closest value before the location
-            while ((indexCounter < locList.length) && locList[indexCounter] < location) {
-                if (valueList[indexCounter] > minValue && valueList[indexCounter] < maxValue)
-                    iBefore = indexCounter;
-                indexCounter++;
+        if (hasChromosome(chr)) {
+            IntArrayList locList = getLocations(chr);
+            DoubleArrayList valueList = getValues(chr);
+            int first = findFirst(locList, location);
+
+            // Find index of the closest value before the location, within maxDistance
+            int iBefore = -1;
+            for (int i = first - 1; i >= 0 && location - locList.get(i) <= maxDistance; i--) {
+                if (valueList.get(i) > minValue && valueList.get(i) < maxValue) {
+                    iBefore = i;
+                    break;
+                }
             }
 
             // Find index of the closest value after the location
-            while (indexCounter < valueList.length) {
-                if (valueList[indexCounter] > minValue && valueList[indexCounter] < maxValue) {
-                    iAfter = indexCounter;
+            int iAfter = -1;
+            for (int i = first; i < locList.size() && locList.get(i) - location <= maxDistance; i++) {
+                if (valueList.get(i) > minValue && valueList.get(i) < maxValue) {
+                    iAfter = i;
                     break;
-
                 }
-                indexCounter++;
-
             }
 
             // Choose index of closer location
             if (iBefore >= 0 && iAfter >= 0) {
-
-                // Location of nearest data point before the location
-                int before = locList[iBefore];
-                // Location of nearest data point after the location
-                int after = locList[iAfter];
-
-                // Compare which one is closer and use it as index
-                if (Math.abs(location - before) < Math.abs(location - after))
+                if (Math.abs(location - locList.get(iBefore)) < Math.abs(location - locList.get(iAfter)))
                     index = iBefore;
                 else
                     index = iAfter;
-
+            } else if (iBefore >= 0) {
+                index = iBefore;
             } else {
-                if (iBefore >= 0)
-                    index = iBefore;
-                if (iAfter >= 0)
-                    index = iAfter;
-            }
-
-            if (index >= 0) {
-                int distance = Math.abs(location - locList[index]);
-                if (distance > maxDistance)
-                    index = -1;
+                index = iAfter;
             }
         }
         return index;
     }
 
+    /**
+     * @return index of the first location >= position, locations being sorted
+     */
+    static int findFirst(IntArrayList locations, int position) {
+        int lo = 0;
+        int hi = locations.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (locations.get(mid) < position) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
 
     public void addLocation(String chr, int location) {
         IntArrayList locList = new IntArrayList(1);
@@ -194,6 +212,99 @@ public class GWASData {
     }
 
 
+    /**
+     * Build the rendering summaries of all chromosomes.  Called once the data is loaded, points added afterwards
+     * require another call.
+     */
+    public synchronized void buildPyramids() {
+        pyramids.clear();
+        for (String chr : locations.keySet()) {
+            getPyramid(chr);
+        }
+    }
+
+    /**
+     * @return the rendering summary of {@code chr}, or null if there is no data for it
+     */
+    public synchronized GWASPyramid getPyramid(String chr) {
+        GWASPyramid pyramid = pyramids.get(chr);
+        if (pyramid == null && reader != null && !locations.containsKey(chr)) {
+            // Stored summary, without the finer levels
+            return reader.getSummary(chr);
+        }
+        if (pyramid == null && locations.containsKey(chr) && values.containsKey(chr)) {
+            pyramid = new GWASPyramid(locations.get(chr), values.get(chr));
+            pyramids.put(chr, pyramid);
+        }
+        return pyramid;
+    }
+
+
+    /**
+     * @return true if this data set is backed by an indexed binary file
+     */
+    public boolean isIndexed() {
+        return reader != null;
+    }
+
+    /**
+     * @return chromosome names, in file order
+     */
+    public List<String> getChromosomes() {
+        return reader != null ? reader.getChromosomes() : new ArrayList<String>(locations.keySet());
+    }
+
+    public boolean hasChromosome(String chr) {
+        return reader != null ? reader.hasChromosome(chr) : (locations.containsKey(chr) && values.containsKey(chr));
+    }
+
+    /**
+     * @return the sorted locations of {@code chr}, null if there is no data for it
+     */
+    public IntArrayList getLocations(String chr) {
+        loadChromosome(chr);
+        return locations.get(chr);
+    }
+
+    /**
+     * @return the values of {@code chr}, in the order of its locations, null if there is no data for it
+     */
+    public DoubleArrayList getValues(String chr) {
+        loadChromosome(chr);
+        return values.get(chr);
+    }
+
+    /**
+     * For indexed files, read the points of {@code chr} replacing the previously loaded chromosome.
+     */
+    private synchronized void loadChromosome(String chr) {
+        if (reader == null || locations.containsKey(chr) || !reader.hasChromosome(chr)) return;
+        IntArrayList locList = new IntArrayList(reader.getRowCount(chr));
+        DoubleArrayList valueList = new DoubleArrayList(reader.getRowCount(chr));
+        try {
+            reader.readPoints(chr, locList, valueList);
+        } catch (IOException e) {
+            log.error("Error reading " + chr + " from " + reader.getPath(), e);
+            return;
+        }
+        locations.clear();
+        values.clear();
+        pyramids.clear();
+        locations.put(chr, locList);
+        values.put(chr, valueList);
+    }
+
+    /**
+     * For indexed files, return the formatted description of point {@code index} of {@code chr}.
+     */
+    public String getIndexedDescriptionString(String chr, int index) throws IOException {
+        IntArrayList locList = getLocations(chr);
+        if (reader == null || locList == null || index >= locList.size()) return null;
+        String[] tokens = reader.getRowTokens(chr, index, locList.get(index));
+        return tokens == null ? null : DescriptionCache.formatDescription(reader.getHeaderTokens(), tokens);
+    }
+
+
     public LinkedHashMap<String, IntArrayList> getLocations() {
         return locations;
     }
@@ -43,7 +43,7 @@ public class GWASParser {
 
     public static boolean isGWASFile(String typeString) {
         return typeString.endsWith(".logistic") || typeString.endsWith(".linear") || typeString.endsWith(".assoc") ||
-                typeString.endsWith(".qassoc") || typeString.endsWith(".gwas");
+                typeString.endsWith(".qassoc") || typeString.endsWith(".gwas") || GWASBinaryReader.isBinaryGWASFile(typeString);
     }
 
 
@@ -53,6 +53,10 @@ public class GWASParser {
         this.columns = new GWASColumns();
     }
 
+    GWASColumns getColumns() {
+        return columns;
+    }
+
     /**
      * Parses and populates description cache from a GWAS result file. Cache will be filled with data points surrounding the given query data point.
      *
@@ -182,6 +186,7 @@ public class GWASParser {
 
                 lastEntry = entry;
             }
+            gData.buildPyramids();
             return gData;
 
         } catch (Exception e) {
@@ -203,12 +208,13 @@ public class GWASParser {
      * @throws ParserException If there is an error parsing the line
      *
      */
-    private GWASEntry parseLine(String nextLine, long lineNumber) {
+    GWASEntry parseLine(String nextLine, long lineNumber) {
         String[] tokens = Globals.singleTabMultiSpacePattern.split(nextLine);
         if (tokens.length > 1) {
 
             //String chr = ParsingUtils.convertChrString(tokens[chrCol].trim());
-            String chr = genome.getChromosomeAlias(tokens[this.columns.chrCol].trim());
+            String chr = tokens[this.columns.chrCol].trim();
+            if (genome != null) chr = genome.getChromosomeAlias(chr);
 
             int start;
 
@@ -240,12 +246,12 @@ public class GWASParser {
         return null;
     }
 
-    private static class GWASEntry{
+    static class GWASEntry{
 
-        private final String chr;
-        private final int start;
-        private final double p;
-        private final String description;
+        final String chr;
+        final int start;
+        final double p;
+        final String description;
 
     private GWASEntry(String chr, int start, double p, String description){
         this.chr = chr;
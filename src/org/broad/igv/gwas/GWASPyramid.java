@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2007-2011 by The Broad Institute of MIT and Harvard.  All Rights Reserved.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS." THE BROAD AND MIT MAKE NO REPRESENTATIONS OR
+ * WARRANTES OF ANY KIND CONCERNING THE SOFTWARE, EXPRESS OR IMPLIED, INCLUDING,
+ * WITHOUT LIMITATION, WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE, NONINFRINGEMENT, OR THE ABSENCE OF LATENT OR OTHER DEFECTS, WHETHER
+ * OR NOT DISCOVERABLE.  IN NO EVENT SHALL THE BROAD OR MIT, OR THEIR RESPECTIVE
+ * TRUSTEES, DIRECTORS, OFFICERS, EMPLOYEES, AND AFFILIATES BE LIABLE FOR ANY DAMAGES
+ * OF ANY KIND, INCLUDING, WITHOUT LIMITATION, INCIDENTAL OR CONSEQUENTIAL DAMAGES,
+ * ECONOMIC DAMAGES OR INJURY TO PROPERTY AND LOST PROFITS, REGARDLESS OF WHETHER
+ * THE BROAD OR MIT SHALL BE ADVISED, SHALL HAVE OTHER REASON TO KNOW, OR IN FACT
+ * SHALL KNOW OF THE POSSIBILITY OF THE FOREGOING.
+ */
+
+package org.broad.igv.gwas;
+
+import org.broad.igv.util.collections.DoubleArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Multi-resolution summary of the GWAS values of one chromosome.  Level 0 holds the maximum value and the number of
+ * points in each {@link #BASE_BIN_SIZE} bp bin, each following level merges pairs of bins of the previous one.  Only
+ * non-empty bins are stored.
+ * <p/>
+ * Rendering picks the coarsest level with bins no wider than a pixel, so the work per repaint is proportional
+ * to the number of pixels rather than the number of points.
+ */
+public class GWASPyramid {
+
+    public static final int BASE_BIN_SIZE = 1000;
+
+    private final List<Level> levels = new ArrayList<Level>();
+
+    /**
+     * @param locations point locations, sorted
+     * @param values    point values, NaN for none
+     */
+    public GWASPyramid(IntArrayList locations, DoubleArrayList values) {
+
+        // Level 0
+        int size = locations.size();
+        IntArrayList bins = new IntArrayList(Math.max(1, size / 10));
+        IntArrayList counts = new IntArrayList(Math.max(1, size / 10));
+        int n = 0;
+        float[] max = new float[Math.max(16, size / 10)];
+        int lastBin = -1;
+        for (int i = 0; i < size; i++) {
+            double v = values.get(i);
+            if (Double.isNaN(v)) continue;
+            int bin = locations.get(i) / BASE_BIN_SIZE;
+            if (bin != lastBin) {
+                if (n == max.length) {
+                    float[] tmp = new float[2 * n];
+                    System.arraycopy(max, 0, tmp, 0, n);
+                    max = tmp;
+                }
+                bins.add(bin);
+                counts.add(0);
+                max[n++] = (float) v;
+                lastBin = bin;
+            }
+            counts.set(n - 1, counts.get(n - 1) + 1);
+            if (v > max[n - 1]) max[n - 1] = (float) v;
+        }
+        Level level = new Level(BASE_BIN_SIZE, bins.toArray(), trim(max, n), counts.toArray());
+        levels.add(level);
+
+        // Coarser levels, until a level has a single bin
+        while (level.size() > 1) {
+            level = level.merge();
+            levels.add(level);
+        }
+    }
+
+    /**
+     * Create a pyramid from previously computed levels, finest first.  Used for the summaries stored in binary
+     * GWAS files, which omit the finer levels.
+     */
+    GWASPyramid(List<Level> levels) {
+        this.levels.addAll(levels);
+    }
+
+    private static float[] trim(float[] array, int n) {
+        if (array.length == n) return array;
+        float[] tmp = new float[n];
+        System.arraycopy(array, 0, tmp, 0, n);
+        return tmp;
+    }
+
+    public int getLevelCount() {
+        return levels.size();
+    }
+
+    public Level getLevel(int i) {
+        return levels.get(i);
+    }
+
+    /**
+     * Return the coarsest level whose bins are no wider than {@code bpPerPixel}, or null if even the finest bins
+     * are wider, in which case points should be drawn individually.
+     */
+    public Level getLevelForScale(double bpPerPixel) {
+        Level result = null;
+        for (Level level : levels) {
+            if (level.binSize <= bpPerPixel) {
+                result = level;
+            } else {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A single resolution: bin indexes, sorted, with the maximum value and point count of each bin.
+     */
+    public static class Level {
+
+        private final int binSize;
+        private final int[] bins;
+        private final float[] max;
+        private final int[] counts;
+
+        Level(int binSize, int[] bins, float[] max, int[] counts) {
+            this.binSize = binSize;
+            this.bins = bins;
+            this.max = max;
+            this.counts = counts;
+        }
+
+        Level merge() {
+            int size = bins.length;
+            int[] newBins = new int[size];
+            float[] newMax = new float[size];
+            int[] newCounts = new int[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                int bin = bins[i] / 2;
+                if (n > 0 && newBins[n - 1] == bin) {
+                    newMax[n - 1] = Math.max(newMax[n - 1], max[i]);
+                    newCounts[n - 1] += counts[i];
+                } else {
+                    newBins[n] = bin;
+                    newMax[n] = max[i];
+                    newCounts[n] = counts[i];
+                    n++;
+                }
+            }
+            int[] b = new int[n];
+            int[] c = new int[n];
+            System.arraycopy(newBins, 0, b, 0, n);
+            System.arraycopy(newCounts, 0, c, 0, n);
+            return new Level(2 * binSize, b, trim(newMax, n), c);
+        }
+
+        public int getBinSize() {
+            return binSize;
+        }
+
+        public int size() {
+            return bins.length;
+        }
+
+        /**
+         * @return the start, in bp, of the i-th non-empty bin
+         */
+        public int getStart(int i) {
+            return bins[i] * binSize;
+        }
+
+        public float getMax(int i) {
+            return max[i];
+        }
+
+        public int getCount(int i) {
+            return counts[i];
+        }
+
+        /**
+         * @return the index of the first bin ending after {@code position}
+         */
+        public int findFirst(int position) {
+            int bin = position / binSize;
+            int lo = 0;
+            int hi = bins.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (bins[mid] < bin) lo = mid + 1;
+                else hi = mid - 1;
+            }
+            return lo;
+        }
+    }
+}
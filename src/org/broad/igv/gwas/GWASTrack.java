@@ -139,11 +139,9 @@ public class GWASTrack extends AbstractTrack {
         double adjustedRectY = adjustedRect.getY();
         this.maxY = adjustedRectMaxY;
         this.scale = context.getScale();
-        int bufferX = (int) adjustedRectMaxX;
-        int bufferY = (int) adjustedRectMaxY;
-        Color[][] drawBuffer = new Color[bufferX + 1][bufferY + 1];
         double origin = context.getOrigin();
         double locScale = context.getScale();
+        Graphics2D g = context.getGraphics();
 
         // Get the Y axis definition, consisting of minimum, maximum, and base value.  Often
         // the base value is == min value which is == 0.
@@ -155,32 +153,38 @@ public class GWASTrack extends AbstractTrack {
         // Calculate the Y scale factor.
         double yScaleFactor = adjustedRect.getHeight() / (maxValue - minValue);
 
-        //int lastPx = 0;
         String chrName = context.getChr();
+        boolean wholeGenome = chrName.equals("All");
         ArrayList<String> chrList = new ArrayList();
-        if (chrName.equals("All")) {
-            for (String key : gData.getLocations().keySet()) {
-                chrList.add(key);
-            }
+        if (wholeGenome) {
+            chrList.addAll(gData.getChromosomes());
 
         } else {
             chrList.add(chrName);
 
         }
+
+        // Whole genome coordinates are in kb
+        double bpPerPixel = wholeGenome ? locScale * 1000 : locScale;
+
         double dx = Math.ceil(1 / locScale) + 1;
         double rangeMaxValue = Math.ceil(gData.getMaxValue());
 
         double pointSizeScale = rangeMaxValue / maxPointSize;
 
         Color drawColor = this.primaryColor;
-        Object[] chrs = this.gData.getLocations().keySet().toArray();
+        Object[] chrs = this.gData.getChromosomes().toArray();
+
+        // If x minimum size is smaller than point minimum size, use minimum point size
+        int xMinPointSize = Math.max((int) (1 / locScale), minPointSize);
 
-        int xMinPointSize = (int) (1 / locScale);
+        PointPainter painter = new PointPainter(g, adjustedRectMaxX, adjustedRectMaxY, adjustedRectY, maxValue,
+                yScaleFactor, pointSizeScale, xMinPointSize);
 
         // Loop through data points, chromosome by chromosome
 
         for (String chr : chrList) {
-            if (this.gData.getLocations().containsKey(chr) && this.gData.getValues().containsKey(chr)) {
+            if (this.gData.hasChromosome(chr)) {
 
 
                 // Choose a color for the chromosome
@@ -201,18 +205,40 @@ public class GWASTrack extends AbstractTrack {
                         drawColor = this.primaryColor;
 
                 }
+                g.setColor(drawColor);
+
+                // When a pixel spans at least one bin draw the bin maxima, O(pixels) points, rather than every point
+                GWASPyramid pyramid = gData.getPyramid(chr);
+                GWASPyramid.Level level = pyramid == null ? null : pyramid.getLevelForScale(bpPerPixel);
+                if (level != null) {
+                    int halfBin = level.getBinSize() / 2;
+                    int first = wholeGenome ? 0 : level.findFirst((int) Math.max(0, origin - halfBin));
+                    for (int j = first; j < level.size(); j++) {
+                        int binCenter = level.getStart(j) + halfBin;
+                        int start = wholeGenome ? genome.getGenomeCoordinate(chr, binCenter) : binCenter;
+                        double pX = ((start - origin) / locScale);
+                        if (pX + dx < 0)
+                            continue;
+                        else if (pX > adjustedRectMaxX)
+                            break;
+                        painter.paint(pX, level.getMax(j));
+                    }
+                    continue;
+                }
 
-                IntArrayList locations = this.gData.getLocations().get(chr);
-                DoubleArrayList values = this.gData.getValues().get(chr);
+                IntArrayList locations = this.gData.getLocations(chr);
+                DoubleArrayList values = this.gData.getValues(chr);
+                if (locations == null || values == null) continue;
 
                 int size = locations.size();
 
-                // Loop through data points in a chromosome
-                for (int j = 0; j < size; j++) {
+                // Loop through data points in a chromosome, starting with the first visible one
+                int first = wholeGenome ? 0 : GWASData.findFirst(locations, (int) Math.max(0, origin - dx * locScale));
+                for (int j = first; j < size; j++) {
 
                     // Get location, e.g. start for the data point
                     int start;
-                    if (chrName.equals("All"))
+                    if (wholeGenome)
                         start = genome.getGenomeCoordinate(chr, locations.get(j));
                     else
                         start = locations.get(j);
@@ -228,69 +254,76 @@ public class GWASTrack extends AbstractTrack {
                     double dataY = values.get(j);
 
                     if (!Double.isNaN(dataY)) {
+                        painter.paint(pX, dataY);
+                    }
+                }
+            }
+        }
 
-                        int xPointSize = (int) Math.ceil(dataY / pointSizeScale);
-
-                        // Scale y size based on the used range, data value and max point size
-                        int yPointSize = xPointSize;
-                        if (yPointSize < minPointSize)
-                            yPointSize = minPointSize;
+        // Draw the legend axis
+        if (showAxis) {
+            this.renderAxis(context, arect);
+        }
 
-                        // If x minimum size is smaller than point minimum size, use minimum point size
-                        if (xMinPointSize < minPointSize)
-                            xMinPointSize = minPointSize;
+    }
 
-                        if (xPointSize < xMinPointSize)
-                            xPointSize = xMinPointSize;
+    /**
+     * Draws a single data point, sized by its value and clipped to the drawing rectangle.
+     */
+    private class PointPainter {
+
+        private final Graphics2D g;
+        private final double maxX;
+        private final double maxY;
+        private final double minY;
+        private final double maxValue;
+        private final double yScaleFactor;
+        private final double pointSizeScale;
+        private final int xMinPointSize;
+
+        PointPainter(Graphics2D g, double maxX, double maxY, double minY, double maxValue, double yScaleFactor,
+                     double pointSizeScale, int xMinPointSize) {
+            this.g = g;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.minY = minY;
+            this.maxValue = maxValue;
+            this.yScaleFactor = yScaleFactor;
+            this.pointSizeScale = pointSizeScale;
+            this.xMinPointSize = xMinPointSize;
+        }
 
-                        // Point sizes divided by two to center locations of large points
-                        int x = (int) pX - (xPointSize / 2);
-                        int y = ((int) Math.min(adjustedRectMaxY, adjustedRectY + (maxValue - dataY) * yScaleFactor)) - (yPointSize / 2);
+        void paint(double pX, double dataY) {
 
-                        int maxDrawX = x + xPointSize;
-                        int maxDrawY = y + yPointSize;
-                        if (x < 0)
-                            x = 0;
-                        if (y < 0)
-                            y = 0;
+            int xPointSize = (int) Math.ceil(dataY / pointSizeScale);
 
-                        if (maxDrawX > adjustedRectMaxX)
-                            maxDrawX = (int) adjustedRectMaxX;
-                        if (maxDrawY > adjustedRectMaxY)
-                            maxDrawY = (int) adjustedRectMaxY;
+            // Scale y size based on the used range, data value and max point size
+            int yPointSize = xPointSize;
+            if (yPointSize < minPointSize)
+                yPointSize = minPointSize;
 
-                        // Loop through all the pixels of the data point and fill in drawing buffer
-                        for (int drawX = x; drawX < maxDrawX; drawX++)
-                            for (int drawY = y; drawY < maxDrawY; drawY++)
-                                drawBuffer[drawX][drawY] = drawColor;
-                    }
-                }
-            }
-        }
+            if (xPointSize < xMinPointSize)
+                xPointSize = xMinPointSize;
 
-        // Draw the pixels from the drawing buffer to the canvas
+            // Point sizes divided by two to center locations of large points
+            int x = (int) pX - (xPointSize / 2);
+            int y = ((int) Math.min(maxY, minY + (maxValue - dataY) * yScaleFactor)) - (yPointSize / 2);
 
-        Graphics2D g = context.getGraphics();
-        Color color;
-        Color prevColor = null;
+            int maxDrawX = x + xPointSize;
+            int maxDrawY = y + yPointSize;
+            if (x < 0)
+                x = 0;
+            if (y < 0)
+                y = 0;
 
-        for (int x = 0; x < bufferX; x++)
-            for (int y = 0; y < bufferY; y++) {
-                color = drawBuffer[x][y];
-                if (color != null) {
-                    if (!color.equals(prevColor)) {
-                        g.setColor(color);
-                        prevColor = color;
-                    }
-                    g.fillRect(x, y, 1, 1);
-                }
-            }
+            if (maxDrawX > maxX)
+                maxDrawX = (int) maxX;
+            if (maxDrawY > maxY)
+                maxDrawY = (int) maxY;
 
-        // Draw the legend axis
-        if (showAxis) {
-            this.renderAxis(context, arect);
+            if (maxDrawX > x && maxDrawY > y)
+                g.fillRect(x, y, maxDrawX - x, maxDrawY - y);
         }
-
     }
 
 
@@ -436,9 +469,8 @@ public class GWASTrack extends AbstractTrack {
 
         String textValue = "";
 
-        double value = this.gData.getValues().get(chr).get(index);
-        int hitLocation = this.gData.getLocations().get(chr).get(index);
-        int rowIndex = gData.getCumulativeChrLocation(chr) + index;
+        double value = this.gData.getValues(chr).get(index);
+        int hitLocation = this.gData.getLocations(chr).get(index);
 
         textValue += chr + ": " + hitLocation + "<br>";
         textValue += "Value: " + value + "<br>";
@@ -446,6 +478,13 @@ public class GWASTrack extends AbstractTrack {
 
         try {
 
+            // Indexed files look the row up directly
+            if (gData.isIndexed()) {
+                return textValue + gData.getIndexedDescriptionString(chr, index);
+            }
+
+            int rowIndex = gData.getCumulativeChrLocation(chr) + index;
+
             // Look for data point description from cache
             //String tmpDescription = gData.getDescriptionCache().getDescriptionString(chr, hitLocation);
             String tmpDescription = gData.getDescriptionCache().getDescriptionString(chr, hitLocation, value);
@@ -18,29 +18,51 @@
  */
 package org.broad.igv.maf;
 
+import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
+import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
-import org.broad.igv.util.index.Interval;
-import org.broad.igv.util.index.IntervalTree;
 import htsjdk.tribble.readers.AsciiLineReader;
 
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
 
 /**
+ * Index of a MAF file.  Each chromosome is divided into intervals of {@link #blockSize} alignment blocks, stored as
+ * primitive start, end and file offset arrays sorted by start, with a bitmap of the species present in each interval.
+ * <p/>
+ * Indexes are written in a binary format ({@link #BINARY_INDEX_EXTENSION}) which is memory mapped on load.  The
+ * original text format is still read.
+ *
  * @author jrobinso
  *         Date: 2/8/13
  *         Time: 7:23 AM
  */
 public class MAFIndex {
 
+    private static Logger log = Logger.getLogger(MAFIndex.class);
+
+    public static final String BINARY_INDEX_EXTENSION = ".index.bin";
+
+    private static final int MAGIC = 0x4D414649;   // "MAFI"
+    private static final int VERSION = 2;
+
     private List<String> species;
 
     /**
-     * Map of chromosome name -> interval tree
+     * Map of chromosome name -> interval index
      */
-    private Map<String, IntervalTree> intervalTrees;
+    private Map<String, ChrIndex> chrIndexes;
+
+    /**
+     * Intervals by chromosome, while the index is being built
+     */
+    private Map<String, ChrIndexBuilder> builders;
 
     /**
      * The # of alignments represented by an interval in the tree.
@@ -49,7 +71,7 @@ public class MAFIndex {
     public static int blockSize = 50;
 
     public MAFIndex() {
-        intervalTrees = new HashMap<String, IntervalTree>();
+        chrIndexes = new LinkedHashMap<String, ChrIndex>();
     }
 
     /**
@@ -71,44 +93,65 @@ public class MAFIndex {
     }
 
     public Collection<String> getChromosomes() {
-        return intervalTrees.keySet();
+        finish();
+        return chrIndexes.keySet();
     }
 
-    public IntervalTree getIntervalTree(String chr) {
-
-        IntervalTree iv = intervalTrees.get(chr);
-        if(iv == null) {
-            iv = intervalTrees.get("*"); // To support legacy MAF indeces, files are split by chromosome
+    public ChrIndex getChrIndex(String chr) {
+        finish();
+        ChrIndex idx = chrIndexes.get(chr);
+        if (idx == null) {
+            idx = chrIndexes.get("*"); // To support legacy MAF indeces, files are split by chromosome
         }
-        return iv;
+        return idx;
     }
 
+    public void insertInterval(String chr, int intervalStart, int intervalEnd, long value) {
+        insertInterval(chr, intervalStart, intervalEnd, value, null);
+    }
 
-    public void putIntervalTree(String s, IntervalTree iv) {
-
-        intervalTrees.put(s, iv);
+    /**
+     * @param speciesPresent indexes into {@link #getSpecies()} of species with alignments in the interval, or null
+     *                       if unknown
+     */
+    void insertInterval(String chr, int intervalStart, int intervalEnd, long value, BitSet speciesPresent) {
+        if (builders == null) {
+            builders = new LinkedHashMap<String, ChrIndexBuilder>();
+        }
+        ChrIndexBuilder builder = builders.get(chr);
+        if (builder == null) {
+            builder = new ChrIndexBuilder();
+            builders.put(chr, builder);
+        }
+        builder.add(intervalStart, intervalEnd, value, speciesPresent);
     }
 
-    public void insertInterval(String lastChr, int intervalStart, int intervalEnd, long value) {
-        IntervalTree iv = intervalTrees.get(lastChr);
-        if (iv == null) {
-            iv = new IntervalTree();
-            intervalTrees.put(lastChr, iv);
+    private void finish() {
+        if (builders != null) {
+            int nSpecies = species == null ? 0 : species.size();
+            for (Map.Entry<String, ChrIndexBuilder> entry : builders.entrySet()) {
+                chrIndexes.put(entry.getKey(), entry.getValue().build(nSpecies));
+            }
+            builders = null;
         }
-        iv.insert(new Interval(intervalStart, intervalEnd, value));
     }
 
 
     /**
+     * Load an index, binary or text.
+     *
      * @param idxFile
      * @throws java.io.IOException
      */
     public static MAFIndex loadIndex(String idxFile) throws IOException {
 
+        if (isBinaryIndex(idxFile)) {
+            return loadBinaryIndex(idxFile, null);
+        }
+
         MAFIndex index = new MAFIndex();
         index.species = new ArrayList<String>();
 
-        //index = new IntervalTree<Long>();
         BufferedReader br = null;
         try {
             br = ParsingUtils.openBufferedReader(idxFile);
@@ -124,19 +167,17 @@ public class MAFIndex {
                     index.species.add(line.trim());
                 }
 
-                IntervalTree iv = null;
+                String chr = null;
                 while ((line = br.readLine()) != null) {
                     if (line.trim().length() == 0) continue;
                     if (line.startsWith("#chr=")) {
-                        String chr = ParsingUtils.EQ_PATTERN.split(line)[1];
-                        iv = new IntervalTree();
-                        index.putIntervalTree(chr, iv);
-                    } else if (iv != null) {
+                        chr = ParsingUtils.EQ_PATTERN.split(line)[1];
+                    } else if (chr != null) {
                         String[] info = Globals.tabPattern.split(line);
                         int start = Integer.parseInt(info[0]);
                         int end = Integer.parseInt(info[1]) + start;
                         long offset = Long.parseLong(info[2]);
-                        iv.insert(new Interval(start, end, offset));
+                        index.insertInterval(chr, start, end, offset);
                     } else {
                         // log.info("Skipping line " + line);
                     }
@@ -145,7 +186,6 @@ public class MAFIndex {
             } else {
                 // A "legacy" index, created for Broad hosted files that are separated by chromosome.
                 // Every alignment is indexed, which is overkill.  Below we lump them into blocks of 50.
-                IntervalTree iv = new IntervalTree();
                 int l = 0;
                 int intervalStart = 0;
                 int intervalEnd = 0;
@@ -155,25 +195,135 @@ public class MAFIndex {
                     int start = Integer.parseInt(info[0]);
                     intervalEnd = Integer.parseInt(info[1]) + start;
                     if (l % 50 == 0) {
-                        iv.insert(new Interval(intervalStart, intervalEnd, lastOffset));
+                        index.insertInterval("*", intervalStart, intervalEnd, lastOffset);
                         intervalStart = intervalEnd;
                         lastOffset = Long.parseLong(info[2]);
                     }
                     l++;
                 }
 
-                if(intervalEnd > intervalStart) {
-                    iv.insert(new Interval(intervalStart, intervalEnd, lastOffset));
+                if (intervalEnd > intervalStart) {
+                    index.insertInterval("*", intervalStart, intervalEnd, lastOffset);
                 }
-
-                index.putIntervalTree("*", iv);
             }
         } finally {
             if (br != null) br.close();
         }
+        index.finish();
         return index;
     }
 
+    private static boolean isBinaryIndex(String idxFile) throws IOException {
+        DataInputStream dis = null;
+        try {
+            dis = new DataInputStream(new BufferedInputStream(ParsingUtils.openInputStream(idxFile), 8));
+            return dis.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        } finally {
+            if (dis != null) dis.close();
+        }
+    }
+
+    /**
+     * Load an index in the binary format.  Local files are memory mapped, the interval arrays are copied out of the
+     * mapped buffer in bulk.
+     *
+     * @param idxFile
+     * @param mafPath the indexed MAF file, or null.  If it is a local file the index must have been written for its
+     *                current length and modification time.
+     * @throws IOException if the index is invalid, truncated or stale
+     */
+    public static MAFIndex loadBinaryIndex(String idxFile, String mafPath) throws IOException {
+
+        ByteBuffer buffer;
+        if (FileUtils.isRemote(idxFile)) {
+            InputStream is = null;
+            try {
+                is = ParsingUtils.openInputStream(idxFile);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] b = new byte[64000];
+                int n;
+                while ((n = is.read(b)) > 0) {
+                    bytes.write(b, 0, n);
+                }
+                buffer = ByteBuffer.wrap(bytes.toByteArray());
+            } finally {
+                if (is != null) is.close();
+            }
+        } else {
+            RandomAccessFile raf = null;
+            try {
+                raf = new RandomAccessFile(idxFile, "r");
+                FileChannel channel = raf.getChannel();
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer = mapped;
+            } finally {
+                if (raf != null) raf.close();
+            }
+        }
+
+        try {
+            return readBinaryIndex(buffer, idxFile, mafPath);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated MAF index: " + idxFile);
+        }
+    }
+
+    private static MAFIndex readBinaryIndex(ByteBuffer buffer, String idxFile, String mafPath) throws IOException {
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a binary MAF index: " + idxFile);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported MAF index version " + version + ": " + idxFile);
+        }
+        long mafLength = buffer.getLong();
+        long mafLastModified = buffer.getLong();
+        if (mafPath != null && !FileUtils.isRemote(mafPath) && mafLength >= 0) {
+            File mafFile = new File(mafPath);
+            if (mafFile.length() != mafLength || mafFile.lastModified() != mafLastModified) {
+                throw new IOException("MAF index is out of date: " + idxFile);
+            }
+        }
+
+        MAFIndex index = new MAFIndex();
+        int nSpecies = buffer.getInt();
+        index.species = new ArrayList<String>(nSpecies);
+        for (int i = 0; i < nSpecies; i++) {
+            index.species.add(readString(buffer));
+        }
+
+        int nChrs = buffer.getInt();
+        for (int c = 0; c < nChrs; c++) {
+            String chr = readString(buffer);
+            int nIntervals = buffer.getInt();
+            int speciesWords = buffer.getInt();
+            ChrIndex chrIndex = new ChrIndex(nIntervals, speciesWords);
+            buffer.asIntBuffer().get(chrIndex.starts);
+            buffer.position(buffer.position() + 4 * nIntervals);
+            buffer.asIntBuffer().get(chrIndex.ends);
+            buffer.position(buffer.position() + 4 * nIntervals);
+            buffer.asLongBuffer().get(chrIndex.offsets);
+            buffer.position(buffer.position() + 8 * nIntervals);
+            if (chrIndex.species != null) {
+                buffer.asLongBuffer().get(chrIndex.species);
+                buffer.position(buffer.position() + 8 * chrIndex.species.length);
+            }
+            chrIndex.computeMaxEnds();
+            index.chrIndexes.put(chr, chrIndex);
+        }
+        return index;
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int len = buffer.getInt();
+        byte[] bytes = new byte[len];
+        buffer.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
 
     /**
      * Create an index for the MAF file.
@@ -206,6 +356,10 @@ public class MAFIndex {
             List<String> blockSpecies = new ArrayList<String>();
             Map<String, RunningAverage> speciesRanks = new HashMap<String, RunningAverage>();
 
+            // Species are numbered in order of appearance until the final order is known
+            Map<String, Integer> speciesIds = new HashMap<String, Integer>();
+            BitSet intervalSpecies = new BitSet();
+
             while ((line = reader.readLine()) != null) {
                 //Ignore all comment lines
                 if (line.startsWith("#") || line.trim().length() == 0) {
@@ -234,8 +388,6 @@ public class MAFIndex {
                     }
                     if (lastChr == null) lastChr = chr;
 
-                    blockSpecies.add(species);
-
                     if (newBlock) {
                         // This will be the reference sequence line (its always first after the "a")
                         int start = Integer.parseInt(tokens[2]);
@@ -245,7 +397,8 @@ public class MAFIndex {
                                 blockCount > blockSize) {
 
                             // Record previous interval and start a new one.
-                            index.insertInterval(lastChr, intervalStart, intervalEnd, lastOffset);
+                            index.insertInterval(lastChr, intervalStart, intervalEnd, lastOffset, intervalSpecies);
+                            intervalSpecies = new BitSet();
 
                             blockCount = 1;
                             lastOffset = reader.getPosition();
@@ -257,6 +410,14 @@ public class MAFIndex {
                         newBlock = false;
                     }
 
+                    blockSpecies.add(species);
+                    Integer id = speciesIds.get(species);
+                    if (id == null) {
+                        id = speciesIds.size();
+                        speciesIds.put(species, id);
+                    }
+                    intervalSpecies.set(id);
+
                 } else if (line.startsWith("i ")) {
                     //We do not handle information lines yet.
                     continue;
@@ -268,13 +429,31 @@ public class MAFIndex {
 
 
             if (blockCount > 0) {
-                index.insertInterval(lastChr, intervalStart, intervalEnd, lastOffset);
+                index.insertInterval(lastChr, intervalStart, intervalEnd, lastOffset, intervalSpecies);
             }
 
             // Merge species list, if any, from previous block and start new one
             mergeSpecies(blockSpecies, allSpecies, speciesRanks);
             index.setSpecies(sortSpecies(allSpecies, speciesRanks));
 
+            // Renumber the species bitmaps in sorted species order
+            int[] order = new int[speciesIds.size()];
+            for (Map.Entry<String, Integer> entry : speciesIds.entrySet()) {
+                order[entry.getValue()] = index.species.indexOf(entry.getKey());
+            }
+            for (ChrIndexBuilder builder : index.builders == null ?
+                    Collections.<ChrIndexBuilder>emptyList() : index.builders.values()) {
+                for (int j = 0; j < builder.size(); j++) {
+                    BitSet present = builder.speciesPresent.get(j);
+                    BitSet sorted = new BitSet(order.length);
+                    for (int k = present.nextSetBit(0); k >= 0; k = present.nextSetBit(k + 1)) {
+                        sorted.set(order[k]);
+                    }
+                    builder.speciesPresent.set(j, sorted);
+                }
+            }
+            index.finish();
+
             return index;
 
 
@@ -321,6 +500,9 @@ public class MAFIndex {
     }
 
 
+    /**
+     * Write the index in the original text format.
+     */
     public static void writeIndex(MAFIndex index, String indexFileName) throws IOException {
 
         PrintWriter pw = null;
@@ -338,14 +520,13 @@ public class MAFIndex {
             Collection<String> chrList = index.getChromosomes();
             for (String chr : chrList) {
                 pw.println("#chr=" + chr);
-                IntervalTree tree = index.getIntervalTree(chr);
-                Collection<Interval> intervals = tree.getIntervals();
-                for (Interval node : intervals) {
-                    pw.print(String.valueOf(node.getLow()));
+                ChrIndex chrIndex = index.getChrIndex(chr);
+                for (int i = 0; i < chrIndex.size(); i++) {
+                    pw.print(String.valueOf(chrIndex.starts[i]));
                     pw.print("\t");
-                    pw.print(String.valueOf(node.getHigh() - node.getLow()));
+                    pw.print(String.valueOf(chrIndex.ends[i] - chrIndex.starts[i]));
                     pw.print("\t");
-                    pw.println(String.valueOf(node.getValue()));
+                    pw.println(String.valueOf(chrIndex.offsets[i]));
                 }
             }
 
@@ -354,4 +535,234 @@ public class MAFIndex {
         }
     }
 
+    /**
+     * Write the index in the binary format read by {@link #loadBinaryIndex(String, String)}.  All values are big endian.
+     * <pre>
+     * int magic, int version
+     * long mafLength, long mafLastModified, -1 if not known
+     * int nSpecies, nSpecies x string
+     * int nChrs, per chromosome:
+     *     string chr, int nIntervals, int speciesWords
+     *     int[nIntervals] starts, int[nIntervals] ends, long[nIntervals] offsets
+     *     long[nIntervals * speciesWords] species bitmaps
+     * </pre>
+     * Strings are an int byte count followed by UTF-8 bytes.  The index is written to a temporary file which is then
+     * renamed, so a partially written index is never loaded.
+     *
+     * @param index
+     * @param indexFileName
+     * @param mafPath       the indexed MAF file.  If local its length and modification time are recorded, and checked
+     *                      on load.
+     */
+    public static void writeBinaryIndex(MAFIndex index, String indexFileName, String mafPath) throws IOException {
+
+        File indexFile = new File(indexFileName);
+        File tmpFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        DataOutputStream dos = null;
+        try {
+            dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            if (mafPath != null && !FileUtils.isRemote(mafPath)) {
+                File mafFile = new File(mafPath);
+                dos.writeLong(mafFile.length());
+                dos.writeLong(mafFile.lastModified());
+            } else {
+                dos.writeLong(-1);
+                dos.writeLong(-1);
+            }
+
+            List<String> species = index.species == null ? Collections.<String>emptyList() : index.species;
+            dos.writeInt(species.size());
+            for (String sp : species) {
+                writeString(dos, sp);
+            }
+
+            Collection<String> chrList = index.getChromosomes();
+            dos.writeInt(chrList.size());
+            for (String chr : chrList) {
+                ChrIndex chrIndex = index.chrIndexes.get(chr);
+                writeString(dos, chr);
+                dos.writeInt(chrIndex.size());
+                dos.writeInt(chrIndex.speciesWords);
+                for (int v : chrIndex.starts) dos.writeInt(v);
+                for (int v : chrIndex.ends) dos.writeInt(v);
+                for (long v : chrIndex.offsets) dos.writeLong(v);
+                if (chrIndex.species != null) {
+                    for (long v : chrIndex.species) dos.writeLong(v);
+                }
+            }
+            dos.close();
+            dos = null;
+            if (indexFile.exists() && !indexFile.delete()) {
+                throw new IOException("Cannot replace " + indexFileName);
+            } else if (!tmpFile.renameTo(indexFile)) {
+                throw new IOException("Cannot rename " + tmpFile.getAbsolutePath());
+            }
+        } finally {
+            if (dos != null) dos.close();
+            tmpFile.delete();
+        }
+    }
+
+    private static void writeString(DataOutputStream dos, String s) throws IOException {
+        byte[] bytes = s.getBytes("UTF-8");
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+    }
+
+
+    /**
+     * Index intervals for one chromosome, sorted by start.
+     */
+    public static class ChrIndex {
+
+        final int[] starts;
+        final int[] ends;
+        final long[] offsets;
+
+        /**
+         * Maximum of ends[0..i], for overlap queries
+         */
+        final int[] maxEnds;
+
+        /**
+         * Species bitmaps, speciesWords longs per interval.  Null if species presence is unknown.
+         */
+        final long[] species;
+        final int speciesWords;
+
+        ChrIndex(int size, int speciesWords) {
+            starts = new int[size];
+            ends = new int[size];
+            offsets = new long[size];
+            maxEnds = new int[size];
+            this.speciesWords = speciesWords;
+            species = speciesWords > 0 ? new long[size * speciesWords] : null;
+        }
+
+        void computeMaxEnds() {
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < ends.length; i++) {
+                max = Math.max(max, ends[i]);
+                maxEnds[i] = max;
+            }
+        }
+
+        public int size() {
+            return starts.length;
+        }
+
+        public int getStart(int i) {
+            return starts[i];
+        }
+
+        public int getEnd(int i) {
+            return ends[i];
+        }
+
+        public long getOffset(int i) {
+            return offsets[i];
+        }
+
+        /**
+         * @return true if species {@code speciesIndex} has alignments in interval {@code i}, or species
+         *         presence is unknown
+         */
+        public boolean hasSpecies(int i, int speciesIndex) {
+            if (species == null) return true;
+            int word = speciesIndex >> 6;
+            if (word >= speciesWords) return false;
+            return (species[i * speciesWords + word] & (1L << (speciesIndex & 63))) != 0;
+        }
+
+        /**
+         * @return the indexes of the intervals overlapping start - end, in start order
+         */
+        public int[] findOverlapping(int start, int end) {
+
+            // Last interval starting at or before end
+            int lo = 0;
+            int hi = starts.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] <= end) lo = mid + 1;
+                else hi = mid - 1;
+            }
+            int last = hi;
+
+            // First interval that could reach start
+            lo = 0;
+            hi = last;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (maxEnds[mid] < start) lo = mid + 1;
+                else hi = mid - 1;
+            }
+            int first = lo;
+
+            int n = 0;
+            int[] result = new int[Math.max(0, last - first + 1)];
+            for (int i = first; i <= last; i++) {
+                if (ends[i] >= start) {
+                    result[n++] = i;
+                }
+            }
+            return n == result.length ? result : Arrays.copyOf(result, n);
+        }
+    }
+
+    private static class ChrIndexBuilder {
+
+        List<int[]> intervals = new ArrayList<int[]>();
+        List<Long> offsets = new ArrayList<Long>();
+        List<BitSet> speciesPresent = new ArrayList<BitSet>();
+
+        void add(int start, int end, long offset, BitSet species) {
+            intervals.add(new int[]{start, end});
+            offsets.add(offset);
+            speciesPresent.add(species);
+        }
+
+        int size() {
+            return intervals.size();
+        }
+
+        ChrIndex build(int nSpecies) {
+
+            int size = intervals.size();
+            boolean hasSpecies = nSpecies > 0;
+            for (BitSet bs : speciesPresent) {
+                if (bs == null) hasSpecies = false;
+            }
+            int speciesWords = hasSpecies ? (nSpecies + 63) / 64 : 0;
+
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer o1, Integer o2) {
+                    int s1 = intervals.get(o1)[0];
+                    int s2 = intervals.get(o2)[0];
+                    return s1 < s2 ? -1 : (s1 == s2 ? 0 : 1);
+                }
+            });
+
+            ChrIndex chrIndex = new ChrIndex(size, speciesWords);
+            for (int i = 0; i < size; i++) {
+                int idx = order[i];
+                chrIndex.starts[i] = intervals.get(idx)[0];
+                chrIndex.ends[i] = intervals.get(idx)[1];
+                chrIndex.offsets[i] = offsets.get(idx);
+                if (speciesWords > 0) {
+                    BitSet bs = speciesPresent.get(idx);
+                    for (int k = bs.nextSetBit(0); k >= 0; k = bs.nextSetBit(k + 1)) {
+                        chrIndex.species[i * speciesWords + (k >> 6)] |= 1L << (k & 63);
+                    }
+                }
+            }
+            chrIndex.computeMaxEnds();
+            return chrIndex;
+        }
+    }
+
 }
@@ -153,6 +153,12 @@ public class MAFListReader implements MAFReader {
         return reader == null ? null : reader.loadAlignments(chr, start, end);
     }
 
+    @Override
+    public List<MultipleAlignmentBlock> loadAlignments(String chr, int start, int end, Collection<String> species) throws IOException {
+        MAFReader reader = getReader(chr);
+        return reader == null ? null : reader.loadAlignments(chr, start, end, species);
+    }
+
     private MAFParser getReader(final String chr) {
         MAFParser reader = readerMap.get(chr);
         if (reader == null) {
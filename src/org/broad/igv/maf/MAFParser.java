@@ -12,16 +12,19 @@
 package org.broad.igv.maf;
 
 import htsjdk.samtools.seekablestream.SeekableStream;
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
 import org.broad.igv.Globals;
+import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.ParsingUtils;
-import org.broad.igv.util.index.Interval;
-import org.broad.igv.util.index.IntervalTree;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -36,6 +39,10 @@ import java.util.regex.Pattern;
  */
 public class MAFParser implements MAFReader {
 
+    private static Logger log = Logger.getLogger(MAFParser.class);
+
+    private static final Charset ASCII = Charset.forName("ISO-8859-1");
+
     String path;
     MAFIndex index;
     List<String> species;
@@ -48,19 +55,66 @@ public class MAFParser implements MAFReader {
         } catch (IOException e) {
             e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
         }
+        String binaryIndexPath = path + MAFIndex.BINARY_INDEX_EXTENSION;
         String indexPath = path + ".index";
+        index = loadBinaryIndex(binaryIndexPath);
+        if (index == null && !FileUtils.isRemote(path)) {
+            index = loadBinaryIndex(getSummaryIndexPath(path));
+        }
+        if (index == null) {
+            boolean created = false;
+            try {
+                if (ParsingUtils.pathExists(indexPath)) {
+                    index = MAFIndex.loadIndex(indexPath);
+                } else {
+                    index = MAFIndex.createIndex(path);
+                    created = true;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
+            }
+            // Save the index for next time, if we can.  The binary index is recreated if the MAF file changes.
+            if (index != null && !FileUtils.isRemote(path)) {
+                try {
+                    if (new File(path).getAbsoluteFile().getParentFile().canWrite()) {
+                        if (created) {
+                            MAFIndex.writeIndex(index, indexPath);
+                        }
+                        MAFIndex.writeBinaryIndex(index, binaryIndexPath, path);
+                    } else {
+                        MAFIndex.writeBinaryIndex(index, getSummaryIndexPath(path), path);
+                    }
+                } catch (IOException e) {
+                    log.info("Could not write MAF index for " + path + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @return the binary index at {@code binaryIndexPath}, or null if there is none or it is invalid
+     */
+    private MAFIndex loadBinaryIndex(String binaryIndexPath) {
         try {
-            if (ParsingUtils.pathExists(indexPath)) {
-                index = MAFIndex.loadIndex(indexPath);
-            } else {
-                index = MAFIndex.createIndex(path);
-                MAFIndex.writeIndex(index, indexPath);
+            if (ParsingUtils.pathExists(binaryIndexPath)) {
+                return MAFIndex.loadBinaryIndex(binaryIndexPath, path);
             }
         } catch (IOException e) {
-            e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
+            log.info("Ignoring MAF index " + binaryIndexPath + ": " + e.getMessage());
         }
+        return null;
     }
 
+    /**
+     * @return path of the binary index of a local MAF file in the summary directory, used if the directory of the
+     * MAF file is not writable
+     */
+    static String getSummaryIndexPath(String path) {
+        File mafFile = new File(path).getAbsoluteFile();
+        return new File(DirectoryManager.getSummaryDirectory(), mafFile.getName() + "_" +
+                Integer.toHexString(mafFile.getPath().hashCode()) + MAFIndex.BINARY_INDEX_EXTENSION).getPath();
+    }
 
     public String getTrackName() {
         return trackName;
@@ -68,50 +122,71 @@ public class MAFParser implements MAFReader {
 
     @Override
     public List<MultipleAlignmentBlock> loadAlignments(String chr, int start, int end) throws IOException {
+        return loadAlignments(chr, start, end, null);
+    }
 
-        IntervalTree ivTree = index.getIntervalTree(chr);
-        if (ivTree == null) return null;
+    @Override
+    public List<MultipleAlignmentBlock> loadAlignments(String chr, int start, int end, Collection<String> species)
+            throws IOException {
 
-        List<Interval> intervals = ivTree.findOverlapping(start, end);
-        if (intervals.isEmpty()) {
+        MAFIndex.ChrIndex chrIndex = index.getChrIndex(chr);
+        if (chrIndex == null) return null;
+
+        int[] intervals = chrIndex.findOverlapping(start, end);
+        if (intervals.length == 0) {
             return null;
         }
 
-
         // Find the starting (left most) interval.  Alignment blocks do not overlap, so we can start at the
         // minimum file offset and just proceed until the end of the interval.
         long startPosition = Long.MAX_VALUE;
-        for (Interval iv : intervals) {
-            startPosition = Math.min(startPosition, iv.getValue());
+        for (int i : intervals) {
+            startPosition = Math.min(startPosition, chrIndex.getOffset(i));
         }
 
+        // Species to parse, in addition to the reference.  Skip those with no alignments in these intervals.
+        byte[][] speciesFilter = null;
+        if (species != null) {
+            List<String> indexSpecies = index.getSpecies();
+            List<byte[]> filter = new ArrayList<byte[]>();
+            for (String sp : species) {
+                int spIdx = indexSpecies == null ? -1 : indexSpecies.indexOf(sp);
+                boolean present = spIdx < 0;
+                for (int i = 0; i < intervals.length && !present; i++) {
+                    present = chrIndex.hasSpecies(intervals[i], spIdx);
+                }
+                if (present) filter.add(sp.getBytes(ASCII));
+            }
+            speciesFilter = filter.toArray(new byte[filter.size()][]);
+        }
 
         SeekableStream is = null;
+        try {
+            is = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
+            is.seek(startPosition);
 
+            LineBuffer line = new LineBuffer(is, 256000);
 
-        is = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
-        is.seek(startPosition);
-
-        BufferedReader reader = new BufferedReader(new InputStreamReader(is), 256000);
-
-        List<MultipleAlignmentBlock> alignments = new ArrayList<MultipleAlignmentBlock>();
+            List<MultipleAlignmentBlock> alignments = new ArrayList<MultipleAlignmentBlock>();
 
-        String line;
-        while ((line = reader.readLine()) != null) {
-            if (line.startsWith("a ")) {
-                // TODO -- parse score (optional)
-                MultipleAlignmentBlock block = parseBlock(reader);
-                if(block.getEnd() < start) {
-                    continue;
-                }
-                if (block.getStart() > end || !block.getChr().equals(chr)) {
-                    break;
-                } else {
-                    alignments.add(block);
+            while (line.next()) {
+                if (line.startsWith('a')) {
+                    // TODO -- parse score (optional)
+                    MultipleAlignmentBlock block = parseBlock(line, speciesFilter);
+                    if (block.getSequences().isEmpty() || block.getEnd() < start) {
+                        continue;
+                    }
+                    if (block.getStart() > end || !block.getChr().equals(chr)) {
+                        break;
+                    } else {
+                        alignments.add(block);
+                    }
                 }
             }
+            return alignments;
+        } finally {
+            if (is != null) is.close();
         }
-        return alignments;
     }
 
 
@@ -204,36 +279,45 @@ public class MAFParser implements MAFReader {
 
 
     /**
-     * Parse an alignment block.
+     * Parse an alignment block.  The first sequence, the reference, is always parsed.  Other sequences are parsed
+     * only if their species is in {@code speciesFilter}, or {@code speciesFilter} is null.  Sequence lines of
+     * other species are skipped without creating strings.
      *
-     * @param reader
+     * @param line          line reader, positioned after the "a" line
+     * @param speciesFilter species to parse, as ASCII bytes
      */
-    private MultipleAlignmentBlock parseBlock(BufferedReader reader) throws IOException {
+    private MultipleAlignmentBlock parseBlock(LineBuffer line, byte[][] speciesFilter) throws IOException {
 
-        String line;
         MultipleAlignmentBlock ma = new MultipleAlignmentBlock();
+        int[] fields = new int[14];
 
-        while ((line = reader.readLine()) != null) {
-            if (line.trim().length() == 0) {
+        while (line.next()) {
+            if (line.isBlank()) {
                 return ma;
             }
-            if (line.startsWith("s ")) {
+            if (line.startsWith('s')) {
+
+                // Start and end offsets of the 7 whitespace delimited fields
+                if (line.split(fields) < 7) continue;
 
-                String[] tokens = Globals.whitespacePattern.split(line);
+                byte[] buf = line.bytes;
+                int srcStart = fields[2];
+                int srcEnd = fields[3];
+                int dot = srcStart;
+                while (dot < srcEnd && buf[dot] != '.') dot++;
 
-                String src = tokens[1];
-                String species = src;
-                String chr = src;
-                if (src.contains(".")) {
-                    String[] srcTokens = ParsingUtils.PERIOD_PATTERN.split(src);
-                    species = srcTokens[0];
-                    chr = srcTokens[1];
+                if (!ma.getSequences().isEmpty() && speciesFilter != null &&
+                        !matches(buf, srcStart, dot, speciesFilter)) {
+                    continue;
                 }
-                int start = Integer.parseInt(tokens[2]);
-                int size = Integer.parseInt(tokens[3]);
-                char strand = tokens[4].charAt(0);
-                int srcSize = Integer.parseInt(tokens[5]);
-                String text = tokens[6];
+
+                String species = new String(buf, srcStart, dot - srcStart, ASCII);
+                String chr = dot < srcEnd ? new String(buf, dot + 1, srcEnd - dot - 1, ASCII) : species;
+                int start = parseInt(buf, fields[4], fields[5]);
+                int size = parseInt(buf, fields[6], fields[7]);
+                char strand = (char) buf[fields[8]];
+                int srcSize = parseInt(buf, fields[10], fields[11]);
+                String text = new String(buf, fields[12], fields[13] - fields[12], ASCII);
 
                 ma.addSequence(new MultipleAlignmentBlock.Sequence(species, chr, start, size, strand, srcSize, text));
 
@@ -245,4 +329,113 @@ public class MAFParser implements MAFReader {
         return ma;
     }
 
+    private static boolean matches(byte[] buf, int start, int end, byte[][] candidates) {
+        int len = end - start;
+        for (byte[] c : candidates) {
+            if (c.length != len) continue;
+            int i = 0;
+            while (i < len && c[i] == buf[start + i]) i++;
+            if (i == len) return true;
+        }
+        return false;
+    }
+
+    private static int parseInt(byte[] buf, int start, int end) {
+        boolean negative = start < end && buf[start] == '-';
+        int value = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) {
+                throw new NumberFormatException("Invalid integer: " + new String(buf, start, end - start, ASCII));
+            }
+            value = value * 10 + d;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Reads lines of ASCII bytes from a stream into a reusable buffer, without the line terminator.
+     */
+    static class LineBuffer {
+
+        private final InputStream in;
+        private final byte[] buffer;
+        private int bufferPos;
+        private int bufferLength;
+
+        byte[] bytes = new byte[1024];
+        int length;
+
+        LineBuffer(InputStream in, int bufferSize) {
+            this.in = in;
+            this.buffer = new byte[bufferSize];
+        }
+
+        /**
+         * Read the next line
+         *
+         * @return false at end of stream
+         */
+        boolean next() throws IOException {
+            length = 0;
+            boolean eof = true;
+            while (true) {
+                if (bufferPos == bufferLength) {
+                    bufferLength = in.read(buffer, 0, buffer.length);
+                    bufferPos = 0;
+                    if (bufferLength <= 0) {
+                        bufferLength = 0;
+                        break;
+                    }
+                }
+                eof = false;
+                int i = bufferPos;
+                while (i < bufferLength && buffer[i] != '\n') i++;
+                int n = i - bufferPos;
+                if (length + n > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + n));
+                }
+                System.arraycopy(buffer, bufferPos, bytes, length, n);
+                length += n;
+                bufferPos = i;
+                if (i < bufferLength) {
+                    bufferPos++;   // Skip the newline
+                    break;
+                }
+            }
+            if (length > 0 && bytes[length - 1] == '\r') length--;
+            return !eof;
+        }
+
+        boolean startsWith(char c) {
+            return length > 1 && bytes[0] == c && (bytes[1] == ' ' || bytes[1] == '\t');
+        }
+
+        boolean isBlank() {
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != ' ' && bytes[i] != '\t') return false;
+            }
+            return true;
+        }
+
+        /**
+         * Record the start and end offsets of whitespace delimited fields, up to fields.length / 2.
+         *
+         * @return the number of fields found
+         */
+        int split(int[] fields) {
+            int n = 0;
+            int i = 0;
+            while (i < length && n < fields.length / 2) {
+                while (i < length && (bytes[i] == ' ' || bytes[i] == '\t')) i++;
+                if (i == length) break;
+                fields[2 * n] = i;
+                while (i < length && bytes[i] != ' ' && bytes[i] != '\t') i++;
+                fields[2 * n + 1] = i;
+                n++;
+            }
+            return n;
+        }
+    }
+
 }
@@ -34,6 +34,13 @@ public interface MAFReader {
 
     List<MultipleAlignmentBlock> loadAlignments(String chr, int start, int end) throws IOException;
 
+    /**
+     * Load alignments, including sequences only for the reference and the given species.
+     *
+     * @param species species to include, or null for all
+     */
+    List<MultipleAlignmentBlock> loadAlignments(String chr, int start, int end, Collection<String> species) throws IOException;
+
     /**
      * Return the chromosome names represented in this file.   Can return null if unknown.
      *
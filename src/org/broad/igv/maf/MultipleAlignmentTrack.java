@@ -110,6 +110,8 @@ public class MultipleAlignmentTrack extends AbstractTrack {
      */
     public void setSelectedSpecies(List<String> selectedSpecies) {
         this.selectedSpecies = selectedSpecies;
+        // Only selected species are loaded
+        loadedAlignments = null;
     }
 
     public String getSpeciesName(String speciesId) {
@@ -202,7 +204,7 @@ public class MultipleAlignmentTrack extends AbstractTrack {
                 alignments = loadedAlignments.getAlignments();
             } else {
                 String mafChr = chrMappings == null ? chr : chrMappings.get(chr);
-                alignments = reader.loadAlignments(mafChr, start, end);
+                alignments = reader.loadAlignments(mafChr, start, end, getSelectedSpecies());
                 loadedAlignments = new MAFCache(chr, start, end, alignments);
             }
 
@@ -13,34 +13,70 @@
 package org.broad.igv.methyl;
 
 import org.apache.log4j.Logger;
-import org.broad.igv.util.collections.LRUCache;
+import org.broad.igv.feature.Strand;
+import org.broad.igv.util.NamedThreadFactory;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
+ * Caches methylation scores in bins of a fixed genomic size.  Bins hold the scores as primitive arrays, sorted by
+ * start as returned by the reader, and are evicted least recently used first once their total size exceeds a
+ * memory budget.
+ * <p/>
+ * After each query the bins on either side of the view are loaded in the background, so panning to an adjacent
+ * region usually finds its data decoded already.
+ *
  * @author jrobinso
  * @date Jun 24, 2010
  */
 public class CachingMethylSource implements MethylDataSource {
 
     private static Logger log = Logger.getLogger(CachingMethylSource.class);
-    private static int DEFAULT_TILE_COUNT = 4;
+
+    /**
+     * Default memory budget, a tenth of the maximum heap
+     */
+    static final long DEFAULT_MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 10;
+
+    /**
+     * Approximate bytes per cached score: start, end, percent, count and strand
+     */
+    static final int BYTES_PER_SCORE = 17;
+
+    private static final Strand[] STRANDS = Strand.values();
+
+    private static ExecutorService prefetchExecutor;
+
     private int binSize;
+    private final long memoryBudget;
+    private long memoryUsed;
+    private boolean prefetch = true;
 
     MethylDataSource reader;
-    LRUCache<String, Bin> cache;
+
+    /**
+     * Bins by chr_binNumber, in access order.  Guarded by itself, as is memoryUsed.
+     */
+    private final LinkedHashMap<String, Bin> cache = new LinkedHashMap<String, Bin>(16, 0.75f, true);
 
 
     public CachingMethylSource(MethylDataSource reader, int binSize) {
-        this(reader, DEFAULT_TILE_COUNT, binSize);
+        this(reader, DEFAULT_MEMORY_BUDGET, binSize);
     }
 
 
-    public CachingMethylSource(MethylDataSource reader, int tileCount, int binSize) {
+    /**
+     * @param reader       source of scores
+     * @param memoryBudget approximate maximum size in bytes of the cached bins
+     * @param binSize      bin size in base pairs, 0 for a single bin per chromosome
+     */
+    public CachingMethylSource(MethylDataSource reader, long memoryBudget, int binSize) {
         this.reader = reader;
-        this.cache = new LRUCache(tileCount);
+        this.memoryBudget = memoryBudget;
         this.binSize = binSize;
     }
 
@@ -51,9 +87,15 @@ public class CachingMethylSource implements MethylDataSource {
      * @param newSize
      */
     public void setBinSize(int newSize) {
-        this.binSize = newSize;
-        cache.clear();
+        synchronized (cache) {
+            this.binSize = newSize;
+            cache.clear();
+            memoryUsed = 0;
+        }
+    }
 
+    public void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
     }
 
 
@@ -66,250 +108,260 @@ public class CachingMethylSource implements MethylDataSource {
             startBin = start / binSize;
             endBin = end / binSize;    // <= inclusive
         }
-        List<Bin> tiles = getBins(chr, startBin, endBin);
 
-        if (tiles.size() == 0) {
-            return null;
+        List<Bin> bins = new ArrayList<Bin>(endBin - startBin + 1);
+        for (int b = startBin; b <= endBin; b++) {
+            Bin bin = getBin(chr, b);
+            load(chr, bin);
+            bins.add(bin);
         }
 
-        // Count total # of records
-        int recordCount = 0;
-        for (Bin t : tiles) {
-            recordCount += t.getContainedRecords().size();
+        if (prefetch && binSize > 0) {
+            if (startBin > 0) {
+                prefetch(chr, startBin - 1);
+            }
+            prefetch(chr, endBin + 1);
         }
 
-        List<MethylScore> alignments = new ArrayList(recordCount);
-        for (Bin t : tiles) {
-            alignments.addAll(t.getContainedRecords());
-        }
-        return new BinIterator(start, end, alignments);
+        return new BinIterator(chr, start, end, bins);
     }
 
 
     /**
-     * Return loaded tiles that span the query interval.
-     *
-     * @param seq
-     * @param startBin
-     * @param endBin
-     * @return
+     * Return the bin, creating an unloaded bin if it is not cached
      */
-    private List<Bin> getBins(String seq, int startBin, int endBin) {
-
-        List<Bin> tiles = new ArrayList(endBin - startBin + 1);
-        List<Bin> tilesToLoad = new ArrayList(endBin - startBin + 1);
-
-        for (int t = startBin; t <= endBin; t++) {
-            String key = seq + "_" + t;
-            Bin tile = cache.get(key);
-
-            if (tile == null) {
+    private Bin getBin(String chr, int binNumber) {
+        String key = chr + "_" + binNumber;
+        synchronized (cache) {
+            Bin bin = cache.get(key);
+            if (bin == null) {
                 if (log.isDebugEnabled()) {
-                    log.debug("Tile cache miss: " + t);
-                }
-                int start = t * binSize;
-                int end = start + binSize;
-                tile = new Bin(t, start, end);
-                cache.put(key, tile);
-            }
-
-            tiles.add(tile);
-
-            // The current tile is loaded,  load any preceding tiles we have pending
-            if (tile.isLoaded()) {
-                if (tilesToLoad.size() > 0) {
-                    if (!loadTiles(seq, tilesToLoad)) {
-                        return tiles;
-                    }
+                    log.debug("Tile cache miss: " + binNumber);
                 }
-                tilesToLoad.clear();
-            } else {
-                tilesToLoad.add(tile);
+                int start = binNumber * binSize;
+                int end = binSize > 0 ? start + binSize : Integer.MAX_VALUE;
+                bin = new Bin(binNumber, start, end);
+                cache.put(key, bin);
             }
+            return bin;
         }
+    }
 
-        if (tilesToLoad.size() > 0) {
-            loadTiles(seq, tilesToLoad);
+    private void prefetch(final String chr, int binNumber) {
+        final Bin bin;
+        synchronized (cache) {
+            if (cache.containsKey(chr + "_" + binNumber)) return;
+            bin = getBin(chr, binNumber);
         }
-
-        return tiles;
+        getPrefetchExecutor().execute(new Runnable() {
+            public void run() {
+                try {
+                    load(chr, bin);
+                } catch (Exception e) {
+                    log.error("Error prefetching methylation bin " + chr + ":" + bin.start, e);
+                }
+            }
+        });
     }
 
-    private boolean loadTiles(String seq, List<Bin> tiles) {
-
-        assert (tiles.size() > 0);
-
-        if (log.isDebugEnabled()) {
-            int first = tiles.get(0).getBinNumber();
-            int end = tiles.get(tiles.size() - 1).getBinNumber();
-            log.debug("Loading tiles: " + first + "-" + end);
+    private static synchronized ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("IGV methylation"));
         }
+        return prefetchExecutor;
+    }
 
-        // Convert start to 1-based coordinates
-        int start = tiles.get(0).start + 1;
-        int end = tiles.get(tiles.size() - 1).end;
-        Iterator<MethylScore> iter = null;
+    /**
+     * Decode the scores starting in the bin, unless already done.  A caller requesting a bin which is being
+     * prefetched waits for the prefetch to finish.
+     */
+    private void load(String seq, Bin bin) {
 
-        //log.debug("Loading : " + start + " - " + end);
-        int featureCount = 0;
-        long t0 = System.currentTimeMillis();
-        try {
+        synchronized (bin) {
+            if (bin.isLoaded()) return;
 
+            long t0 = System.currentTimeMillis();
 
-            iter = reader.query(seq, start, end);
+            IntArrayList starts = new IntArrayList(1000);
+            IntArrayList ends = new IntArrayList(1000);
+            FloatArrayList percents = new FloatArrayList(1000);
+            IntArrayList counts = new IntArrayList(1000);
+            IntArrayList strands = new IntArrayList(1000);
 
+            // Convert start to 1-based coordinates
+            Iterator<MethylScore> iter = reader.query(seq, bin.start + 1, bin.end);
             while (iter != null && iter.hasNext()) {
                 MethylScore record = iter.next();
-
-                // Range of tile indeces that this alignment contributes to.
-                int aStart = record.getStart();
-                int aEnd = record.getEnd();
-                int idx0 = 0;
-                int idx1 = 0;
-                if (binSize > 0) {
-                    idx0 = Math.max(0, (aStart - start) / binSize);
-                    idx1 = Math.min(tiles.size() - 1, (aEnd - start) / binSize);
-                }
-
-                // Loop over tiles this read overlaps
-                for (int i = idx0; i <= idx1; i++) {
-                    Bin t = tiles.get(i);
-
-                    // A bin size == 0 means use a single bin for the entire chromosome.  This is a confusing convention.
-                    if (binSize == 0 || ((aStart >= t.start) && (aStart < t.end))) {
-                        t.containedRecords.add(record);
-                    }
-                }
+                if (record == null) continue;
+                // Scores are assigned to the bin containing their start
+                int start = record.getStart();
+                if (binSize > 0 && (start < bin.start || start >= bin.end)) continue;
+                starts.add(start);
+                ends.add(record.getEnd());
+                percents.add(record.getScore());
+                counts.add(record.getCount());
+                strands.add(record.getStrand() == null ? Strand.NONE.ordinal() : record.getStrand().ordinal());
             }
 
-            for (Bin t : tiles) {
-                t.setLoaded(true);
+            int n = starts.size();
+            byte[] strandArray = new byte[n];
+            for (int i = 0; i < n; i++) {
+                strandArray[i] = (byte) strands.get(i);
             }
+            bin.setScores(starts.toArray(), ends.toArray(), percents.toArray(), counts.toArray(), strandArray);
+
             if (log.isDebugEnabled()) {
                 long dt = System.currentTimeMillis() - t0;
-                long rate = dt == 0 ? Long.MAX_VALUE : featureCount / dt;
-                log.debug("Loaded " + featureCount + " reads in " + dt + "ms.  (" + rate + " reads/ms)");
+                log.debug("Loaded " + n + " scores in " + dt + "ms");
             }
-            return true;
+        }
+
+        synchronized (cache) {
+            // The bin may have been evicted, or the cache cleared, while loading
+            if (cache.get(seq + "_" + bin.getBinNumber()) == bin) {
+                memoryUsed += bin.getMemory();
+                evict(bin);
+            }
+        }
+    }
 
-        } finally {
-            if (iter != null) {
-                //iter.close();
+    /**
+     * Remove least recently used bins, other than {@code keep}, until the cache is within budget.  Called holding
+     * the cache lock.
+     */
+    private void evict(Bin keep) {
+        Iterator<Bin> iter = cache.values().iterator();
+        while (memoryUsed > memoryBudget && iter.hasNext()) {
+            Bin bin = iter.next();
+            if (bin == keep) continue;
+            if (bin.isLoaded()) {
+                memoryUsed -= bin.getMemory();
             }
-            //IGV.getInstance().resetStatusMessage();
+            iter.remove();
+        }
+    }
+
+    long getMemoryUsed() {
+        synchronized (cache) {
+            return memoryUsed;
+        }
+    }
+
+    boolean isCached(String chr, int binNumber) {
+        synchronized (cache) {
+            Bin bin = cache.get(chr + "_" + binNumber);
+            return bin != null && bin.isLoaded();
         }
     }
 
 
     static class Bin {
 
-        private boolean loaded = false;
+        private volatile boolean loaded = false;
         private int start;
         private int end;
         private int binNumber;
-        private List<MethylScore> containedRecords;
+
+        private int[] starts;
+        private int[] ends;
+        private float[] percents;
+        private int[] counts;
+        private byte[] strands;
 
         Bin(int binNumber, int start, int end) {
             this.binNumber = binNumber;
             this.start = start;
             this.end = end;
-            containedRecords = new ArrayList(1000);
         }
 
         public int getBinNumber() {
             return binNumber;
         }
 
-
         public int getStart() {
             return start;
         }
 
-        public void setStart(int start) {
-            this.start = start;
+        void setScores(int[] starts, int[] ends, float[] percents, int[] counts, byte[] strands) {
+            this.starts = starts;
+            this.ends = ends;
+            this.percents = percents;
+            this.counts = counts;
+            this.strands = strands;
+            this.loaded = true;
         }
 
-        public List<MethylScore> getContainedRecords() {
-            return containedRecords;
+        public int getSize() {
+            return starts == null ? 0 : starts.length;
         }
 
+        long getMemory() {
+            return (long) getSize() * BYTES_PER_SCORE;
+        }
 
         public boolean isLoaded() {
             return loaded;
         }
 
-        public void setLoaded(boolean loaded) {
-            this.loaded = loaded;
-        }
-
     }
 
     /**
-     * TODO -- this is a pointeless class.  It would make sense if it actually took tiles, instead of the collection
-     * TODO -- of alignments.
+     * Iterates over the scores of consecutive bins overlapping start-end, creating a {@link MethylScore} for each
+     * as it is returned.
      */
     public class BinIterator implements Iterator<MethylScore> {
 
-        Iterator<MethylScore> currentSamIterator;
-        int end;
-        MethylScore nextRecord;
+        String chr;
         int start;
-        List<MethylScore> alignments;
+        int end;
+        List<Bin> bins;
+        int binIndex = 0;
+        int index = -1;
+        boolean done = false;
 
-        BinIterator(int start, int end, List<MethylScore> alignments) {
-            this.alignments = alignments;
+        BinIterator(String chr, int start, int end, List<Bin> bins) {
+            this.chr = chr;
             this.start = start;
             this.end = end;
-            currentSamIterator = alignments.iterator();
-            advanceToFirstRecord();
-        }
-
-        public void close() {
-            // No-op
+            this.bins = bins;
+            advance();
         }
 
         public boolean hasNext() {
-            return nextRecord != null;
+            return !done;
         }
 
         public MethylScore next() {
-            MethylScore ret = nextRecord;
-
-            advanceToNextRecord();
-
-            return ret;
+            if (done) throw new NoSuchElementException();
+            Bin b = bins.get(binIndex);
+            int i = index;
+            MethylScore score = new MethylScore(chr, b.starts[i], b.ends[i], STRANDS[b.strands[i]], b.percents[i],
+                    b.counts[i]);
+            advance();
+            return score;
         }
 
         public void remove() {
             // ignored
         }
 
-        private void advanceToFirstRecord() {
-            advanceToNextRecord();
-        }
-
-        private void advanceToNextRecord() {
-            advance();
-
-            while ((nextRecord != null) && (nextRecord.getEnd() < start)) {
-                advance();
-            }
-        }
-
         private void advance() {
-            if (currentSamIterator.hasNext()) {
-                nextRecord = currentSamIterator.next();
-                if (nextRecord.getStart() > end) {
-                    nextRecord = null;
+            while (binIndex < bins.size()) {
+                Bin b = bins.get(binIndex);
+                index++;
+                if (index >= b.getSize()) {
+                    binIndex++;
+                    index = -1;
+                    continue;
+                }
+                if (b.starts[index] > end) {
+                    break;
+                }
+                if (b.ends[index] >= start) {
+                    return;
                 }
-            } else {
-                nextRecord = null;
             }
-        }
-
-        public Iterator iterator() {
-            return this;
+            done = true;
         }
     }
 }
-
@@ -52,6 +52,7 @@ public class ContinuousColorScale extends AbstractColorScale {
     private Color midColor = Color.white;
     private Color maxColor;
     private Color[] colors;
+    private int[] rgbs;
     private boolean defaultCS = false;
 
 
@@ -260,6 +261,12 @@ public class ContinuousColorScale extends AbstractColorScale {
                 colors[i] = cs.getColor(x);
             }
         }
+
+        int[] rgbs = new int[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            rgbs[i] = colors[i].getRGB();
+        }
+        this.rgbs = rgbs;
     }
 
     /**
@@ -291,6 +298,32 @@ public class ContinuousColorScale extends AbstractColorScale {
         }
     }
 
+    /**
+     * Return the color of {@code val} as packed ARGB, from a lookup table parallel to the one used by
+     * {@link #getColor(float)}.
+     *
+     * @param val
+     * @return
+     */
+    public int getRGB(float val) {
+
+        if (colors == null) {
+            initColors();
+        }
+
+        if (Float.isNaN(val)) {
+            return UIConstants.NO_DATA_COLOR.getRGB();
+        }
+
+        if ((val >= 1.0001 * negStart) && (val <= 1.0001 * posStart)) {
+            return midColor.getRGB();
+        } else {
+            int index = (int) Math.round((val - negEnd) / delta);
+            index = Math.max(0, Math.min(index, rgbs.length - 1));
+            return rgbs[index];
+        }
+    }
+
     /**
      * Method description
      *
@@ -417,10 +450,8 @@ public class ContinuousColorScale extends AbstractColorScale {
          */
         private BufferedImage createGradientImage(Color color1, Color color2) {
 
-            BufferedImage image =
-                    (BufferedImage) java.awt.GraphicsEnvironment.getLocalGraphicsEnvironment()
-                            .getDefaultScreenDevice().getDefaultConfiguration()
-                            .createCompatibleImage(256, 1);
+            // Not a screen compatible image, which is unavailable in headless mode.  Only colors are read from it.
+            BufferedImage image = new BufferedImage(256, 1, BufferedImage.TYPE_INT_RGB);
             Graphics2D graphics = image.createGraphics();
             GradientPaint gp = new GradientPaint(0, 0, color1, 255, 0, color2);
 
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.renderer;
+
+import org.broad.igv.PreferenceManager;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Packed ARGB pixels shared by the heatmap tracks of a panel.  Rather than a fillRect per score, the
+ * {@link HeatmapRenderer} composes one row of pixels per track and copies it to the rows of the track.  The
+ * painter draws the raster with a single drawImage at the end of each track group, or before anything else is
+ * drawn over it.
+ * <p/>
+ * Pixels which have not been written are transparent, so tracks painted with the graphics in the same region are
+ * not covered.
+ */
+public class HeatmapRaster {
+
+    /**
+     * True while the current thread paints to vector output, see {@link #setVectorOutput(boolean)}
+     */
+    private static final ThreadLocal<Boolean> vectorOutput = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return Boolean.FALSE;
+        }
+    };
+
+    private final Rectangle bounds;
+    private final BufferedImage image;
+    private final int[] pixels;
+    private final int[] rowBuffer;
+
+    /**
+     * Range of rows written since the last flush, relative to bounds.y
+     */
+    private int dirtyMin = Integer.MAX_VALUE;
+    private int dirtyMax = -1;
+
+    /**
+     * @param bounds region covered by the raster, in the coordinates of the graphics it is drawn to
+     */
+    public HeatmapRaster(Rectangle bounds) {
+        this.bounds = new Rectangle(bounds);
+        image = new BufferedImage(Math.max(1, bounds.width), Math.max(1, bounds.height), BufferedImage.TYPE_INT_ARGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        rowBuffer = new int[bounds.width];
+    }
+
+    /**
+     * Mark painting on the current thread as vector output (SVG, EPS), where rectangles are preferable to an
+     * embedded image.  Set by {@link org.broad.igv.ui.util.SnapshotUtilities} for the duration of a vector export,
+     * vector graphics do not reliably identify themselves through their device configuration or rendering hints.
+     */
+    public static void setVectorOutput(boolean value) {
+        vectorOutput.set(value);
+    }
+
+    /**
+     * Return true if heatmaps painted to {@code g} should use a raster.  The raster is disabled by preference,
+     * for vector output (see {@link #setVectorOutput(boolean)}), and for graphics which do not paint to a screen
+     * or image.
+     */
+    public static boolean isSupported(Graphics2D g) {
+        if (g == null || vectorOutput.get() ||
+                !PreferenceManager.getInstance().getAsBoolean(PreferenceManager.CHART_HEATMAP_RASTER)) {
+            return false;
+        }
+        GraphicsConfiguration gc = g.getDeviceConfiguration();
+        if (gc == null) {
+            return false;
+        }
+        int type = gc.getDevice().getType();
+        return type == GraphicsDevice.TYPE_RASTER_SCREEN || type == GraphicsDevice.TYPE_IMAGE_BUFFER;
+    }
+
+    public Rectangle getBounds() {
+        return bounds;
+    }
+
+    /**
+     * @return a cleared scratch row spanning the raster, for composing the pixels of a track.  See
+     * {@link #fillRow(int[], int, int, int)} and {@link #setRows(int[], int, int)}
+     */
+    public int[] getRowBuffer() {
+        Arrays.fill(rowBuffer, 0);
+        return rowBuffer;
+    }
+
+    /**
+     * Set pixels x to x + width - 1 of {@code row}, clipped to the raster
+     */
+    public void fillRow(int[] row, int x, int width, int argb) {
+        int from = Math.max(x, bounds.x) - bounds.x;
+        int to = Math.min(x + width, bounds.x + bounds.width) - bounds.x;
+        if (to > from) {
+            Arrays.fill(row, from, to, argb);
+        }
+    }
+
+    /**
+     * Copy {@code row} to rows y to y + height - 1, clipped to the raster
+     */
+    public void setRows(int[] row, int y, int height) {
+        int from = Math.max(y, bounds.y) - bounds.y;
+        int to = Math.min(y + height, bounds.y + bounds.height) - bounds.y;
+        int width = bounds.width;
+        for (int r = from; r < to; r++) {
+            System.arraycopy(row, 0, pixels, r * width, width);
+        }
+        if (to > from) {
+            dirtyMin = Math.min(dirtyMin, from);
+            dirtyMax = Math.max(dirtyMax, to - 1);
+        }
+    }
+
+    /**
+     * Draw the rows written since the last flush, and clear them.
+     */
+    public void flush(Graphics2D g) {
+        if (dirtyMax < dirtyMin) {
+            return;
+        }
+        int width = bounds.width;
+        g.drawImage(image,
+                bounds.x, bounds.y + dirtyMin, bounds.x + width, bounds.y + dirtyMax + 1,
+                0, dirtyMin, width, dirtyMax + 1, null);
+        Arrays.fill(pixels, dirtyMin * width, (dirtyMax + 1) * width, 0);
+        dirtyMin = Integer.MAX_VALUE;
+        dirtyMax = -1;
+    }
+}
@@ -17,8 +17,10 @@
  */
 package org.broad.igv.renderer;
 
+import org.broad.igv.Globals;
 import org.broad.igv.PreferenceManager;
 import org.broad.igv.data.rnai.RNAIGeneScore;
+import org.broad.igv.data.LocusScoreList;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.track.RenderContext;
 import org.broad.igv.track.Track;
@@ -44,13 +46,16 @@ public class HeatmapRenderer extends DataRenderer {
      * <p/>
      * This method has gotten quite complicated,  most of it from the option to join adjacent
      * copy number segments.
+     * <p/>
+     * If the context has a {@link HeatmapRaster} one row of pixels is composed and copied to the rows of
+     * the track, otherwise each score is filled with the graphics.
      *
      * @param track
      * @param scores
      * @param context
      * @param rect
      */
-    public void renderScores(Track track, List<LocusScore> scores, RenderContext context, Rectangle rect) {
+    public void renderScores(Track track, List<LocusScore> locusScores, RenderContext context, Rectangle rect) {
 
         ContinuousColorScale colorScale = track.getColorScale();
 
@@ -59,7 +64,14 @@ public class HeatmapRenderer extends DataRenderer {
         double locScale = context.getScale();
 
         Color bgColor = colorScale.getNoDataColor();
-        context.getGraphic2DForColor(bgColor).fill(rect);
+        HeatmapRaster raster = context.getHeatmapRaster();
+        int[] row = null;
+        if (raster != null) {
+            row = raster.getRowBuffer();
+            raster.fillRow(row, rect.x, rect.width, bgColor.getRGB());
+        } else {
+            context.getGraphic2DForColor(bgColor).fill(rect);
+        }
         boolean showAllFeatures = PreferenceManager.getInstance().getAsBoolean(PreferenceManager.CHART_SHOW_ALL_HEATMAP);
 
         double maxX = rect.getMaxX();
@@ -69,15 +81,17 @@ public class HeatmapRenderer extends DataRenderer {
         int lastPStart = 0;
         int lastW = 0;
 
-        for (LocusScore score : scores) {
+        LocusScoreList scores = LocusScoreList.asLocusScoreList(locusScores);
+        int nScores = scores.size();
+        for (int i = 0; i < nScores; i++) {
             if (lastPStart > maxX) {
                 break;
             }
 
             // Note -- don't cast these to an int until the range is checked,
             // otherwise could get an overflow.
-            float fStart = (float) ((score.getStart() - origin) / locScale);
-            float fEnd = (float) ((score.getEnd() - origin) / locScale);
+            float fStart = (float) ((scores.getStart(i) - origin) / locScale);
+            float fEnd = (float) ((scores.getEnd(i) - origin) / locScale);
             // float fw = fEnd - fStart;
             int pStart = (int) fStart;
             int pEnd = (int) fEnd;
@@ -91,8 +105,7 @@ public class HeatmapRenderer extends DataRenderer {
 
             int w = Math.max(min, pEnd - pStart);
 
-            float dataY = track.logScaleData(score.getScore());
-            Color graphColor = colorScale.getColor(dataY);
+            float dataY = track.logScaleData(scores.getScore(i));
 
             if ((pStart + w) >= 0 && (lastPStart <= maxX)) {
 
@@ -115,20 +128,27 @@ public class HeatmapRenderer extends DataRenderer {
                 // TODo The instanceof test is very very ugly.   Special RNAi treatment
                 // Refactor  to generalize "confidence" for all datasets
                 if (!Float.isNaN(dataY)) {
+                    LocusScore score = scores.getObject(i);
+                    boolean lowConfidence = false;
                     if (score instanceof RNAIGeneScore) {
                         RNAIGeneScore rnaiScore = (RNAIGeneScore) score;
-                        if (rnaiScore.getConfidence() < 2) {
-                            graphColor = getLowConfColor(context.getZoom());
-                        }
+                        lowConfidence = rnaiScore.getConfidence() < 2;
                     }
 
-                    Graphics2D g2D = context.getGraphic2DForColor(graphColor);
                     if (pStart < maxX) {
                         // Clip at edges
                         int pLeft = Math.max(rect.x, pStart);
                         int pRight = Math.min(rect.x + rect.width, pStart + w);
                         int adjustedW = pRight - pLeft;
-                        g2D.fillRect(pLeft, minY, adjustedW, height);
+                        if (row != null) {
+                            int rgb = lowConfidence ? getLowConfColor(context.getZoom()).getRGB() :
+                                    colorScale.getRGB(dataY);
+                            raster.fillRow(row, pLeft, adjustedW, rgb);
+                        } else {
+                            Color graphColor = lowConfidence ? getLowConfColor(context.getZoom()) :
+                                    colorScale.getColor(dataY);
+                            context.getGraphic2DForColor(graphColor).fillRect(pLeft, minY, adjustedW, height);
+                        }
                     }
                 } // End special RNAi treagment
             }
@@ -136,6 +156,23 @@ public class HeatmapRenderer extends DataRenderer {
             lastPEnd = pStart + w;
             lastW = w;
         }
+
+        if (row != null) {
+            raster.setRows(row, minY, height);
+        }
+    }
+
+    /**
+     * The axis is drawn over the scores, so draw any pending raster first.
+     */
+    @Override
+    public void renderAxis(Track track, RenderContext context, Rectangle rect) {
+        HeatmapRaster raster = context.getHeatmapRaster();
+        if (raster != null && !context.getChr().equals(Globals.CHR_ALL) &&
+                PreferenceManager.getInstance().getAsBoolean(PreferenceManager.CHART_DRAW_Y_AXIS)) {
+            raster.flush(context.getGraphics());
+        }
+        super.renderAxis(track, context, rect);
     }
 
 
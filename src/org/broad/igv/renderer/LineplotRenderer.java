@@ -27,6 +27,7 @@
 package org.broad.igv.renderer;
 
 import org.broad.igv.PreferenceManager;
+import org.broad.igv.data.LocusScoreList;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.track.RenderContext;
 import org.broad.igv.track.Track;
@@ -81,13 +82,16 @@ public class LineplotRenderer extends XYPlotRenderer {
 
         int lastPx = 0;
         int lastPy = Integer.MIN_VALUE;
-        for (LocusScore score : locusScores) {
+        LocusScoreList scores = LocusScoreList.asLocusScoreList(locusScores);
+        int nScores = scores.size();
+        for (int i = 0; i < nScores; i++) {
+            int start = scores.getStart(i);
             // Note -- don't cast these to an int until the range is checked.
             // could get an overflow.
-            double x = ((score.getStart() - origin) / locScale);
-            double dx = (score.getEnd() - score.getStart()) / locScale;
+            double x = ((start - origin) / locScale);
+            double dx = (scores.getEnd(i) - start) / locScale;
 
-            float dataY = score.getScore();
+            float dataY = scores.getScore(i);
 
             // Compute the pixel y location.  
             double y = adjustedRect.getY() + (maxValue - dataY) * yScaleFactor;
@@ -19,6 +19,7 @@ package org.broad.igv.renderer;
 //~--- non-JDK imports --------------------------------------------------------
 
 import org.broad.igv.Globals;
+import org.broad.igv.data.LocusScoreList;
 import org.broad.igv.PreferenceManager;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.track.RenderContext;
@@ -96,20 +97,27 @@ public abstract class XYPlotRenderer extends DataRenderer {
             baseY = adjustedRect.y + adjustedRect.height;
         }
 
+        // Read positions and values from columns rather than score objects
+        LocusScoreList scores = LocusScoreList.asLocusScoreList(locusScores);
+        int nScores = scores.size();
+
         int lastPx = 0;
-        for (LocusScore score : locusScores) {
+        for (int i = 0; i < nScores; i++) {
+
+            int start = scores.getStart(i);
+            int end = scores.getEnd(i);
 
             // Note -- don't cast these to an int until the range is checked.
             // could get an overflow.
-            double pX = ((score.getStart() - origin) / locScale);
-            double dx = Math.ceil((Math.max(1, score.getEnd() - score.getStart())) / locScale) + 1;
+            double pX = ((start - origin) / locScale);
+            double dx = Math.ceil((Math.max(1, end - start)) / locScale) + 1;
             if ((pX + dx < 0)) {
                 continue;
             } else if (pX > adjustedRect.getMaxX()) {
                 break;
             }
 
-            float dataY = score.getScore();
+            float dataY = scores.getScore(i);
             if (isLog && dataY <= 0) {
                 continue;
             }
@@ -43,6 +43,11 @@ public class AlignmentDataManager implements IAlignmentDataManager {
     private PositionCache<AlignmentInterval> loadedIntervalCache = new PositionCache<AlignmentInterval>();
     private PositionCache<PackedAlignments> packedAlignmentsCache = new PositionCache<PackedAlignments>();
 
+    /**
+     * Keeps the sort order of loaded intervals between repacks
+     */
+    private final AlignmentPacker alignmentPacker = new AlignmentPacker();
+
     private HashMap<String, String> chrMappings = new HashMap();
     private volatile boolean isLoading = false;
     private AlignmentTileLoader reader;
@@ -208,7 +213,6 @@ public class AlignmentDataManager implements IAlignmentDataManager {
                 return false;
             }
 
-            final AlignmentPacker alignmentPacker = new AlignmentPacker();
             PackedAlignments packedAlignments = alignmentPacker.packAlignments(interval, renderOptions);
 
             //We cache by the interval range because this will generally be buffered/expanded, whereas the frame
@@ -18,13 +18,17 @@ package org.broad.igv.sam;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import org.apache.log4j.Logger;
-import org.broad.igv.feature.Range;
 import org.broad.igv.feature.Strand;
 
 import java.util.*;
 
 /**
- * Packs alignments such that there is no overlap
+ * Packs alignments such that there is no overlap.
+ * <p/>
+ * Alignments are sorted by start once per interval, longest first for equal starts, and the order is reused by
+ * later repacks of the same interval (e.g. when the group option changes).  Each alignment is then assigned to the
+ * lowest numbered row free at its start, using heaps of free rows and of busy rows by end position.  This gives the
+ * same layout as filling rows one at a time from the left, in O(n log r) for n alignments and r rows.
  *
  * @author jrobinso
  */
@@ -36,18 +40,15 @@ public class AlignmentPacker {
      * Minimum gap between the end of one alignment and start of another.
      */
     public static final int MIN_ALIGNMENT_SPACING = 5;
-    private static final Comparator<Alignment> lengthComparator = new Comparator<Alignment>() {
-        public int compare(Alignment row1, Alignment row2) {
-            return (row2.getEnd() - row2.getStart()) -
-                    (row1.getEnd() - row2.getStart());
-
-        }
-    };
 
     private static final String NULL_GROUP_VALUE = "Because google-guava tables don't support a null key, we use a special value" +
             " for null keys. It doesn't matter much what it is, but we want to avoid collisions. I find it unlikely that " +
             " this sentence will ever be used as a group value";
-    public static final int tenMB = 10000000;
+
+    /**
+     * Mapped alignments of packed intervals, in packing order
+     */
+    private final Map<AlignmentInterval, Alignment[]> sortedAlignments = new WeakHashMap<AlignmentInterval, Alignment[]>();
 
     /**
      * Allocates each alignment to row such that there is no overlap.
@@ -63,17 +64,17 @@ public class AlignmentPacker {
         boolean isPairedAlignments = renderOptions.isViewPairs() || renderOptions.isPairedArcView();
 
 
+        Alignment[] alignments = getSortedAlignments(interval);
+
         if (renderOptions.groupByOption == null) {
             List<Row> alignmentRows = new ArrayList<Row>(10000);
-            pack(interval.getAlignments(), isPairedAlignments, alignmentRows);
+            pack(Arrays.asList(alignments), isPairedAlignments, alignmentRows);
             packedAlignments.put("", alignmentRows);
         } else {
 
-            // Separate alignments into groups.
+            // Separate alignments into groups, preserving the sort order
             Map<String, List<Alignment>> groupedAlignments = new HashMap<String, List<Alignment>>();
-            Iterator<Alignment> iter = interval.getAlignmentIterator();
-            while (iter.hasNext()) {
-                Alignment alignment = iter.next();
+            for (Alignment alignment : alignments) {
                 String groupKey = getGroupValue(alignment, renderOptions);
                 if (groupKey == null) {
                     groupKey = NULL_GROUP_VALUE;
@@ -113,152 +114,168 @@ public class AlignmentPacker {
     }
 
 
-    private void pack(List<Alignment> alList, boolean pairAlignments, List<Row> alignmentRows) {
+    /**
+     * Return the mapped alignments of {@code interval} sorted by start, and by decreasing end for equal starts.  The
+     * result is cached until the interval is released.
+     */
+    private synchronized Alignment[] getSortedAlignments(AlignmentInterval interval) {
 
-        Map<String, PairedAlignment> pairs = null;
-        if (pairAlignments) {
-            pairs = new HashMap<String, PairedAlignment>(1000);
+        List<Alignment> alList = interval.getAlignments();
+        Alignment[] cached = sortedAlignments.get(interval);
+        if (cached != null) {
+            return cached;
         }
 
-        // Allocate alignemnts to buckets for each range.
-        // We use priority queues to keep the buckets sorted by alignment length.  However this  is probably a needless
-        // complication,  any collection type would do.
-
-        int totalCount = 0;
-
+        List<Alignment> mapped = new ArrayList<Alignment>(alList.size());
+        for (Alignment al : alList) {
+            if (al.isMapped()) mapped.add(al);
+        }
+        int n = mapped.size();
 
-        if (alList == null || alList.size() == 0) return;
+        // Sort on (start, index) keys, alignment lists are usually sorted already
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ((long) mapped.get(i).getStart() << 32) | i;
+        }
+        Arrays.sort(keys);
 
-        Range curRange = getAlignmentListRange(alList);
+        Alignment[] sorted = new Alignment[n];
+        int[] ends = new int[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = mapped.get((int) keys[i]);
+            ends[i] = sorted[i].getEnd();
+        }
 
-        BucketCollection bucketCollection;
+        // Longest first for equal starts.  Runs are short, insertion sort them.
+        for (int i = 1; i < n; i++) {
+            int start = sorted[i].getStart();
+            Alignment al = sorted[i];
+            int end = ends[i];
+            int j = i - 1;
+            while (j >= 0 && sorted[j].getStart() == start && ends[j] < end) {
+                sorted[j + 1] = sorted[j];
+                ends[j + 1] = ends[j];
+                j--;
+            }
+            sorted[j + 1] = al;
+            ends[j + 1] = end;
+        }
 
-        // Use dense buckets for < 10,000,000 bp windows sparse otherwise
-        int bpLength = curRange.getLength();
+        sortedAlignments.put(interval, sorted);
+        return sorted;
+    }
 
-        if (bpLength < tenMB) {
-            bucketCollection = new DenseBucketCollection(bpLength, curRange);
-        } else {
-            bucketCollection = new SparseBucketCollection(curRange);
-        }
+    /**
+     * Pack alignments, which must be mapped and sorted by start, into rows.
+     */
+    private void pack(List<Alignment> alList, boolean pairAlignments, List<Row> alignmentRows) {
 
+        if (alList == null || alList.size() == 0) return;
 
-        int curRangeStart = curRange.getStart();
-        for (Alignment al : alList) {
+        long t0 = System.currentTimeMillis();
 
-            if (al.isMapped()) {
-                Alignment alignment = al;
-                if (pairAlignments && al.isPaired() && al.getMate().isMapped() && al.getMate().getChr().equals(al.getChr())) {
+        // Pair mates.  A pair takes the position of its first mate, so the list stays sorted by start.
+        List<Alignment> items = alList;
+        if (pairAlignments) {
+            items = new ArrayList<Alignment>(alList.size());
+            Map<String, PairedAlignment> pairs = new HashMap<String, PairedAlignment>(alList.size());
+            for (Alignment al : alList) {
+                if (al.isPaired() && al.getMate().isMapped() && al.getMate().getChr().equals(al.getChr())) {
                     String readName = al.getReadName();
-                    PairedAlignment pair = pairs.get(readName);
+                    PairedAlignment pair = pairs.remove(readName);
                     if (pair == null) {
                         pair = new PairedAlignment(al);
                         pairs.put(readName, pair);
-                        alignment = pair;
+                        items.add(pair);
                     } else {
-                        // Add second alignment to pair.
                         pair.setSecondAlignment(al);
-                        pairs.remove(readName);
-                        continue;
-
-                    }
-                }
-
-                // Negative "bucketNumbers" can arise with soft clips at the left edge of the chromosome. Allocate
-                // these alignments to the first bucket.
-                int bucketNumber = Math.max(0, al.getStart() - curRangeStart);
-                if (bucketNumber < bucketCollection.getBucketCount()) {
-                    PriorityQueue<Alignment> bucket = bucketCollection.get(bucketNumber);
-                    if (bucket == null) {
-                        bucket = new PriorityQueue<Alignment>(5, lengthComparator);
-                        bucketCollection.set(bucketNumber, bucket);
                     }
-                    bucket.add(alignment);
-                    totalCount++;
                 } else {
-                    log.debug("Alignment out of bounds. name: " + alignment.getReadName() + " startPos:" + alignment.getStart());
+                    items.add(al);
                 }
             }
         }
-        bucketCollection.finishedAdding();
 
-
-        // Now allocate alignments to rows.
-        long t0 = System.currentTimeMillis();
-        int allocatedCount = 0;
-        Row currentRow = new Row();
-
-        while (allocatedCount < totalCount) {
-
-
-            curRange = bucketCollection.getRange();
-
-            curRangeStart = curRange.getStart();
-            int nextStart = curRangeStart;
-            List<Integer> emptyBuckets = new ArrayList<Integer>(100);
-
-            while (true) {
-                int bucketNumber = nextStart - curRangeStart;
-                PriorityQueue<Alignment> bucket = bucketCollection.getNextBucket(bucketNumber, emptyBuckets);
-
-                // Pull the next alignment out of the bucket and add to the current row
-                if (bucket != null) {
-                    Alignment alignment = bucket.remove();
-                    currentRow.addAlignment(alignment);
-                    allocatedCount++;
-
-                    nextStart = alignment.getEnd() + MIN_ALIGNMENT_SPACING;
-
-                }
-
-                //Reached the end of this range, move to the next
-                if (bucket == null || nextStart > curRange.getEnd()) {
-                    //Remove empty buckets.  This has no affect on the dense implementation,
-                    //they are removed on the fly, but is needed for the sparse implementation
-                    bucketCollection.removeBuckets(emptyBuckets);
-                    emptyBuckets.clear();
-                    break;
-                }
+        // Assign each alignment to the lowest numbered row free at its start.  Busy rows are keyed by the position
+        // at which they become free, in the high word, and row number.
+        int n = items.size();
+        LongHeap busyRows = new LongHeap(64);
+        LongHeap freeRows = new LongHeap(64);
+        for (int i = 0; i < n; i++) {
+            Alignment alignment = items.get(i);
+            int start = alignment.getStart();
+            while (busyRows.size() > 0 && (int) (busyRows.peek() >> 32) <= start) {
+                freeRows.add(busyRows.poll() & 0xFFFFFFFFL);
             }
 
-
-            // We've reached the end of the interval,  start a new row
-            if (currentRow.alignments.size() > 0) {
-                alignmentRows.add(currentRow);
+            int rowNumber;
+            if (freeRows.size() > 0) {
+                rowNumber = (int) freeRows.poll();
+            } else {
+                rowNumber = alignmentRows.size();
+                alignmentRows.add(new Row());
             }
-            currentRow = new Row();
+            alignmentRows.get(rowNumber).addAlignment(alignment);
+
+            long nextStart = (long) alignment.getEnd() + MIN_ALIGNMENT_SPACING;
+            busyRows.add((nextStart << 32) | rowNumber);
         }
+
         if (log.isDebugEnabled()) {
             long dt = System.currentTimeMillis() - t0;
             log.debug("Packed alignments in " + dt);
         }
+    }
+
+    /**
+     * Binary min heap of longs
+     */
+    static class LongHeap {
+
+        private long[] values;
+        private int size;
 
-        // Add the last row
-        if (currentRow != null && currentRow.alignments.size() > 0) {
-            alignmentRows.add(currentRow);
+        LongHeap(int capacity) {
+            values = new long[capacity];
         }
 
+        int size() {
+            return size;
+        }
 
-    }
+        long peek() {
+            return values[0];
+        }
 
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (values[parent] <= value) break;
+                values[i] = values[parent];
+                i = parent;
+            }
+            values[i] = value;
+        }
 
-    /**
-     * Gets the range over which alignmentsList spans. Asssumes all on same chr, and sorted
-     *
-     * @param alignmentsList
-     * @return
-     */
-    private Range getAlignmentListRange(List<Alignment> alignmentsList) {
-        if (alignmentsList == null || alignmentsList.size() == 0) return null;
-        Alignment firstAlignment = alignmentsList.get(0);
-
-        int minStart = firstAlignment.getStart();
-        int maxEnd = firstAlignment.getEnd();
-        for (Alignment alignment : alignmentsList) {
-            maxEnd = Math.max(maxEnd, alignment.getEnd());
+        long poll() {
+            long result = values[0];
+            long last = values[--size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && values[child + 1] < values[child]) child++;
+                if (last <= values[child]) break;
+                values[i] = values[child];
+                i = child;
+            }
+            values[i] = last;
+            return result;
         }
-        return new Range(firstAlignment.getChr(), minStart,
-                maxEnd);
     }
 
     private Comparator<String> getGroupComparator(AlignmentTrack.GroupOption groupByOption) {
@@ -321,193 +338,6 @@ public class AlignmentPacker {
         return null;
     }
 
-    static interface BucketCollection {
-
-        Range getRange();
-
-        void set(int idx, PriorityQueue<Alignment> bucket);
-
-        PriorityQueue<Alignment> get(int idx);
-
-        PriorityQueue<Alignment> getNextBucket(int bucketNumber, Collection<Integer> emptyBuckets);
-
-        void removeBuckets(Collection<Integer> emptyBuckets);
-
-        void finishedAdding();
-
-        int getBucketCount();
-    }
-
-    /**
-     * Dense array implementation of BucketCollection.  Assumption is all or nearly all the genome region is covered
-     * with reads.
-     */
-    static class DenseBucketCollection implements BucketCollection {
-
-        Range range;
-        int lastBucketNumber = -1;
-        final PriorityQueue[] bucketArray;
-
-        DenseBucketCollection(int bucketCount, Range range) {
-            this.bucketArray = new PriorityQueue[bucketCount];
-            this.range = range;
-        }
-
-        public void set(int idx, PriorityQueue<Alignment> bucket) {
-            bucketArray[idx] = bucket;
-        }
-
-        public PriorityQueue<Alignment> get(int idx) {
-            return bucketArray[idx];
-        }
-
-        public int getBucketCount() {
-            return this.bucketArray.length;
-        }
-
-        public Range getRange() {
-            return range;
-        }
-
-        /**
-         * Return the next occupied bucket after bucketNumber
-         *
-         * @param bucketNumber
-         * @param emptyBuckets ignored
-         * @return
-         */
-        public PriorityQueue<Alignment> getNextBucket(int bucketNumber, Collection<Integer> emptyBuckets) {
-
-            if (bucketNumber == lastBucketNumber) {
-                // TODO -- detect inf loop here
-            }
-
-            PriorityQueue<Alignment> bucket = null;
-            while (bucketNumber < bucketArray.length) {
-
-                if (bucketNumber < 0) {
-                    System.out.println();
-                }
-
-                bucket = bucketArray[bucketNumber];
-                if (bucket != null) {
-                    if (bucket.isEmpty()) {
-                        bucketArray[bucketNumber] = null;
-                        bucket = null;
-                    } else {
-                        return bucket;
-                    }
-                }
-                bucketNumber++;
-            }
-            return null;
-        }
-
-        public void removeBuckets(Collection<Integer> emptyBuckets) {
-            // Nothing to do, empty buckets are removed "on the fly"
-        }
-
-        public void finishedAdding() {
-            // nothing to do
-        }
-    }
-
-
-    /**
-     * "Sparse" implementation of an alignment BucketCollection.  Assumption is there are small clusters of alignments
-     * along the genome, with mostly "white space".
-     */
-    static class SparseBucketCollection implements BucketCollection {
-
-        Range range;
-        boolean finished = false;
-        List<Integer> keys;
-        final HashMap<Integer, PriorityQueue<Alignment>> buckets;
-
-        SparseBucketCollection(Range range) {
-            this.range = range;
-            this.buckets = new HashMap(1000);
-        }
-
-        public void set(int idx, PriorityQueue<Alignment> bucket) {
-            if (finished) {
-                log.error("Error: bucket added after finishAdding() called");
-            }
-            buckets.put(idx, bucket);
-        }
-
-        public PriorityQueue<Alignment> get(int idx) {
-            return buckets.get(idx);
-        }
-
-        public Range getRange() {
-            return range;
-        }
-
-        /**
-         * Return the next occupied bucket at or after after bucketNumber.
-         *
-         * @param bucketNumber -- the hash bucket index for the alignments, essential the position relative to the start
-         *                     of this packing interval
-         * @return the next occupied bucket at or after bucketNumber, or null if there are none.
-         */
-        public PriorityQueue<Alignment> getNextBucket(int bucketNumber, Collection<Integer> emptyBuckets) {
-
-            PriorityQueue<Alignment> bucket = null;
-            int min = 0;
-            int max = keys.size() - 1;
-
-            // Get close to the right index, rather than scan from the beginning
-            while ((max - min) > 5) {
-                int mid = (max + min) / 2;
-                Integer key = keys.get(mid);
-                if (key > bucketNumber) {
-                    max = mid;
-                } else {
-                    min = mid;
-                }
-            }
-
-            // Now march from min to max until we cross bucketNumber
-            for (int i = min; i < keys.size(); i++) {
-                Integer key = keys.get(i);
-                if (key >= bucketNumber) {
-                    bucket = buckets.get(key);
-                    if (bucket.isEmpty()) {
-                        emptyBuckets.add(key);
-                        bucket = null;
-                    } else {
-                        return bucket;
-                    }
-                }
-            }
-            return null;     // No bucket found
-        }
-
-        public void removeBuckets(Collection<Integer> emptyBuckets) {
-
-            if (emptyBuckets.isEmpty()) {
-                return;
-            }
-
-            for (Integer i : emptyBuckets) {
-                buckets.remove(i);
-            }
-            keys = new ArrayList<Integer>(buckets.keySet());
-            Collections.sort(keys);
-        }
-
-        public void finishedAdding() {
-            finished = true;
-            keys = new ArrayList<Integer>(buckets.keySet());
-            Collections.sort(keys);
-        }
-
-        public int getBucketCount() {
-            return Integer.MAX_VALUE;
-        }
-    }
-
     private class PairOrientationComparator implements Comparator<String> {
         private final List<AlignmentTrack.OrientationType> orientationTypes;
         //private final Set<String> orientationNames = new HashSet<String>(AlignmentTrack.OrientationType.values().length);
@@ -20,13 +20,9 @@
 
 package org.broad.igv.sam;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
 import org.apache.log4j.Logger;
 import org.broad.igv.PreferenceManager;
-import org.broad.igv.feature.FeatureUtils;
 import org.broad.igv.feature.SpliceJunctionFeature;
-import org.broad.igv.feature.Strand;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -34,7 +30,8 @@ import java.util.List;
 /**
  * A helper class for computing splice junctions from alignments.
  * Junctions are filtered based on minimum flanking width on loading, so data
- * needs to be
+ * needs to be reloaded if that changes.  Evidence is accumulated in a {@link SpliceJunctionTable}, features are
+ * created on first request and filtered by coverage from the cached features.
  *
  * @author dhmay, jrobinso
  * @date Jul 3, 2011
@@ -43,12 +40,12 @@ public class SpliceJunctionHelper {
 
     static Logger log = Logger.getLogger(SpliceJunctionHelper.class);
 
-    List<SpliceJunctionFeature> allSpliceJunctionFeatures = new ArrayList<SpliceJunctionFeature>();
-    List<SpliceJunctionFeature> filteredSpliceJunctionFeatures = null;
-    List<SpliceJunctionFeature> filteredCombinedFeatures = null;
+    private final SpliceJunctionTable junctions = new SpliceJunctionTable();
 
-    Table<Integer, Integer, SpliceJunctionFeature> posStartEndJunctionsMap = HashBasedTable.create();
-    Table<Integer, Integer, SpliceJunctionFeature> negStartEndJunctionsMap = HashBasedTable.create();
+    private List<SpliceJunctionFeature> allFeatures = null;
+    private List<SpliceJunctionFeature> allCombinedFeatures = null;
+    private List<SpliceJunctionFeature> filteredFeatures = null;
+    private List<SpliceJunctionFeature> filteredCombinedFeatures = null;
 
     private LoadOptions loadOptions;
 
@@ -56,23 +53,30 @@ public class SpliceJunctionHelper {
         this.loadOptions = loadOptions;
     }
 
-    public List<SpliceJunctionFeature> getFilteredJunctions() {
-        if (filteredSpliceJunctionFeatures == null) {
-            filteredSpliceJunctionFeatures = filterJunctionList(this.loadOptions, allSpliceJunctionFeatures);
+    public synchronized List<SpliceJunctionFeature> getFilteredJunctions() {
+        if (filteredFeatures == null) {
+            if (allFeatures == null) {
+                allFeatures = junctions.createFeatures();
+            }
+            filteredFeatures = filterJunctionList(this.loadOptions, allFeatures);
         }
-        return filteredSpliceJunctionFeatures;
+        return filteredFeatures;
 
     }
 
-    public List<SpliceJunctionFeature> getFilteredJunctionsIgnoreStrand() {
+    public synchronized List<SpliceJunctionFeature> getFilteredJunctionsIgnoreStrand() {
         if (filteredCombinedFeatures == null) {
-            combineStrandJunctionsMaps();
-            filteredCombinedFeatures = filterJunctionList(this.loadOptions, filteredCombinedFeatures);
+            if (allCombinedFeatures == null) {
+                SpliceJunctionTable combined = new SpliceJunctionTable();
+                combined.merge(junctions, true);
+                allCombinedFeatures = combined.createFeatures();
+            }
+            filteredCombinedFeatures = filterJunctionList(this.loadOptions, allCombinedFeatures);
         }
         return filteredCombinedFeatures;
     }
 
-    public void addAlignment(Alignment alignment) {
+    public synchronized void addAlignment(Alignment alignment) {
 
         AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
         if (blocks == null || blocks.length < 2) {
@@ -88,9 +92,6 @@ public class SpliceJunctionHelper {
             isNegativeStrand = alignment.isNegativeStrand(); // <= TODO -- this isn't correct for all libraries.
         }
 
-        Table<Integer, Integer, SpliceJunctionFeature> startEndJunctionsTableThisStrand =
-                isNegativeStrand ? negStartEndJunctionsMap : posStartEndJunctionsMap;
-
         int flankingStart = -1;
         int junctionStart = -1;
         int gapCount = -1;
@@ -106,14 +107,9 @@ public class SpliceJunctionHelper {
                         ((junctionStart - flankingStart >= loadOptions.minReadFlankingWidth) &&
                                 (flankingEnd - junctionEnd >= loadOptions.minReadFlankingWidth))) {
 
-                    SpliceJunctionFeature junction = startEndJunctionsTableThisStrand.get(junctionStart, junctionEnd);
-                    if (junction == null) {
-                        junction = new SpliceJunctionFeature(alignment.getChr(), junctionStart, junctionEnd,
-                                isNegativeStrand ? Strand.NEGATIVE : Strand.POSITIVE);
-                        startEndJunctionsTableThisStrand.put(junctionStart, junctionEnd, junction);
-                        allSpliceJunctionFeatures.add(junction);
-                    }
-                    junction.addRead(flankingStart, flankingEnd);
+                    junctions.addRead(alignment.getChr(), junctionStart, junctionEnd, isNegativeStrand,
+                            flankingStart, flankingEnd);
+                    clearFeatures();
                 }
 
             }
@@ -123,6 +119,13 @@ public class SpliceJunctionHelper {
         }
     }
 
+    private void clearFeatures() {
+        allFeatures = null;
+        allCombinedFeatures = null;
+        filteredFeatures = null;
+        filteredCombinedFeatures = null;
+    }
+
     private static List<SpliceJunctionFeature> filterJunctionList(LoadOptions loadOptions, List<SpliceJunctionFeature> unfiltered) {
         if (loadOptions.minJunctionCoverage > 1) {
             List<SpliceJunctionFeature> coveredFeatures = new ArrayList<SpliceJunctionFeature>(unfiltered.size());
@@ -137,30 +140,7 @@ public class SpliceJunctionHelper {
         }
     }
 
-    /**
-     * Apply filters to any currently non-null filtered lists.
-     * It may not be necessary to create a given filtered list, we use it being non-null as an indicator
-     * of usefulness. If a filtered list is null, it will be generated and properly filtered later by
-     * the appropriate getter.
-     *
-     * @param checkFilteredOnly
-     */
-    private void filterJunctionsByCoverage(boolean checkFilteredOnly) {
-
-        if (filteredSpliceJunctionFeatures != null) {
-            List<SpliceJunctionFeature> unfiltered = checkFilteredOnly ? filteredSpliceJunctionFeatures : allSpliceJunctionFeatures;
-            filteredSpliceJunctionFeatures = filterJunctionList(this.loadOptions, unfiltered);
-        }
-
-        if (filteredCombinedFeatures != null) {
-            if (!checkFilteredOnly) {
-                combineStrandJunctionsMaps();
-            }
-            filteredCombinedFeatures = filterJunctionList(this.loadOptions, filteredCombinedFeatures);
-        }
-    }
-
-    void setLoadOptions(LoadOptions loadOptions) {
+    synchronized void setLoadOptions(LoadOptions loadOptions) {
         int oldMinJunctionCoverage = this.loadOptions.minJunctionCoverage;
         //Can't change this, need to reload everything
         assert this.loadOptions.minReadFlankingWidth == loadOptions.minReadFlankingWidth;
@@ -168,43 +148,19 @@ public class SpliceJunctionHelper {
 
 
         if (oldMinJunctionCoverage == loadOptions.minJunctionCoverage) return;
+
+        // Filtered lists are recomputed from the cached features on next request.  A higher threshold can
+        // start from the current filtered lists.
         boolean increasing = oldMinJunctionCoverage < loadOptions.minJunctionCoverage;
-        filterJunctionsByCoverage(increasing);
+        filteredFeatures = increasing && filteredFeatures != null ?
+                filterJunctionList(loadOptions, filteredFeatures) : null;
+        filteredCombinedFeatures = increasing && filteredCombinedFeatures != null ?
+                filterJunctionList(loadOptions, filteredCombinedFeatures) : null;
     }
 
 
     public void finish() {
-        //Sort by increasing beginning of start flanking region, as required by the renderer
-        //We sort first so filteredSpliceJunctionFeatures will also be sorted
-        FeatureUtils.sortFeatureList(allSpliceJunctionFeatures);
-    }
-
-    /**
-     * We keep separate splice junction information by strand.
-     * This combines both strand information
-     */
-    private void combineStrandJunctionsMaps() {
-        Table<Integer, Integer, SpliceJunctionFeature> combinedStartEndJunctionsMap = HashBasedTable.create(posStartEndJunctionsMap);
-
-        for (Table.Cell<Integer, Integer, SpliceJunctionFeature> negJunctionCell : negStartEndJunctionsMap.cellSet()) {
-            int junctionStart = negJunctionCell.getRowKey();
-            int junctionEnd = negJunctionCell.getColumnKey();
-            SpliceJunctionFeature negFeat = negJunctionCell.getValue();
-
-            SpliceJunctionFeature junction = combinedStartEndJunctionsMap.get(junctionStart, junctionEnd);
-
-            if (junction == null) {
-                junction = new SpliceJunctionFeature(negFeat.getChr(), junctionStart, junctionEnd, Strand.POSITIVE);
-                combinedStartEndJunctionsMap.put(junctionStart, junctionEnd, junction);
-            }
-
-            int newJunctionDepth = junction.getJunctionDepth() + negFeat.getJunctionDepth();
-            junction.addRead(negFeat.getStart(), negFeat.getEnd());
-            junction.setJunctionDepth(newJunctionDepth);
-        }
-
-        filteredCombinedFeatures = new ArrayList<SpliceJunctionFeature>(combinedStartEndJunctionsMap.values());
-        FeatureUtils.sortFeatureList(filteredCombinedFeatures);
+        // Features are created, sorted, on first request
     }
 
     public static class LoadOptions {
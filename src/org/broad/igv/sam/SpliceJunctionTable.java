@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.feature.FeatureUtils;
+import org.broad.igv.feature.SpliceJunctionFeature;
+import org.broad.igv.feature.Strand;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splice junction evidence keyed by (junction start, junction end, strand), packed into a long and stored in an
+ * open addressing hash table.  Junction depth and the distribution of flanking widths are kept in arrays, one
+ * entry per junction, so adding a read is a lookup and a few increments.
+ * <p/>
+ * Flanking widths are stored as counts of reads by width.  The per base flanking depth arrays of
+ * {@link SpliceJunctionFeature} are the suffix sums of these counts, computed when features are created.
+ */
+class SpliceJunctionTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Entry index + 1 for each hash slot, 0 for empty
+     */
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private String[] chrs = new String[INITIAL_CAPACITY];
+    private int[] depths = new int[INITIAL_CAPACITY];
+    private int[][] startFlankCounts = new int[INITIAL_CAPACITY][];
+    private int[][] endFlankCounts = new int[INITIAL_CAPACITY][];
+    private int size;
+
+    static long key(int junctionStart, int junctionEnd, boolean negativeStrand) {
+        return ((long) junctionStart << 32) | ((long) junctionEnd << 1) | (negativeStrand ? 1 : 0);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Add a read spanning the junction.  The read extends from {@code readStart} to {@code readEnd}.
+     */
+    void addRead(String chr, int junctionStart, int junctionEnd, boolean negativeStrand, int readStart, int readEnd) {
+        int idx = getOrCreate(chr, key(junctionStart, junctionEnd, negativeStrand));
+        depths[idx]++;
+        int startWidth = junctionStart - readStart;
+        if (startWidth > 0) {
+            startFlankCounts[idx] = increment(startFlankCounts[idx], startWidth - 1, 1);
+        }
+        int endWidth = readEnd - junctionEnd;
+        if (endWidth > 0) {
+            endFlankCounts[idx] = increment(endFlankCounts[idx], endWidth - 1, 1);
+        }
+    }
+
+    /**
+     * Add all junctions of {@code other} to this table.  If {@code ignoreStrand} is true junctions are merged
+     * across strands, and recorded as positive strand.
+     */
+    void merge(SpliceJunctionTable other, boolean ignoreStrand) {
+        for (int i = 0; i < other.size; i++) {
+            long key = ignoreStrand ? other.keys[i] & ~1L : other.keys[i];
+            int idx = getOrCreate(other.chrs[i], key);
+            depths[idx] += other.depths[i];
+            startFlankCounts[idx] = add(startFlankCounts[idx], other.startFlankCounts[i]);
+            endFlankCounts[idx] = add(endFlankCounts[idx], other.endFlankCounts[i]);
+        }
+    }
+
+    /**
+     * Create a feature for each junction, sorted by start of the start flanking region.
+     */
+    List<SpliceJunctionFeature> createFeatures() {
+        List<SpliceJunctionFeature> features = new ArrayList<SpliceJunctionFeature>(size);
+        for (int i = 0; i < size; i++) {
+            long key = keys[i];
+            int junctionStart = (int) (key >>> 32);
+            int junctionEnd = (int) ((key & 0xFFFFFFFFL) >>> 1);
+            Strand strand = (key & 1) == 1 ? Strand.NEGATIVE : Strand.POSITIVE;
+            SpliceJunctionFeature feature = new SpliceJunctionFeature(chrs[i], junctionStart, junctionEnd, strand);
+            feature.setFlankingRegionDepthArrays(toStartDepths(startFlankCounts[i]), toEndDepths(endFlankCounts[i]));
+            feature.setJunctionDepth(depths[i]);
+            features.add(feature);
+        }
+        FeatureUtils.sortFeatureList(features);
+        return features;
+    }
+
+    /**
+     * Start flank depth at offset j (position junctionStart - length + j) is the number of reads at least
+     * length - j wide
+     */
+    private static int[] toStartDepths(int[] counts) {
+        int length = getWidth(counts);
+        if (length == 0) return null;
+        int[] depths = new int[length];
+        int sum = 0;
+        for (int w = length; w >= 1; w--) {
+            sum += counts[w - 1];
+            depths[length - w] = sum;
+        }
+        return depths;
+    }
+
+    /**
+     * End flank depth at offset j (position junctionEnd + j) is the number of reads more than j wide
+     */
+    private static int[] toEndDepths(int[] counts) {
+        int length = getWidth(counts);
+        if (length == 0) return null;
+        int[] depths = new int[length];
+        int sum = 0;
+        for (int j = length - 1; j >= 0; j--) {
+            sum += counts[j];
+            depths[j] = sum;
+        }
+        return depths;
+    }
+
+    /**
+     * @return the widest flank recorded in {@code counts}.  Count arrays grow in steps, so may have trailing zeros.
+     */
+    private static int getWidth(int[] counts) {
+        if (counts == null) return 0;
+        int width = counts.length;
+        while (width > 0 && counts[width - 1] == 0) width--;
+        return width;
+    }
+
+    private int getOrCreate(String chr, long key) {
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        while (slots[slot] != 0) {
+            int idx = slots[slot] - 1;
+            if (keys[idx] == key) {
+                return idx;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == keys.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            chrs = Arrays.copyOf(chrs, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            startFlankCounts = Arrays.copyOf(startFlankCounts, capacity);
+            endFlankCounts = Arrays.copyOf(endFlankCounts, capacity);
+        }
+        int idx = size++;
+        keys[idx] = key;
+        chrs[idx] = chr;
+        slots[slot] = idx + 1;
+
+        // Keep the load factor at or below 1/2
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return idx;
+    }
+
+    private void rehash(int nSlots) {
+        slots = new int[nSlots];
+        int mask = nSlots - 1;
+        for (int idx = 0; idx < size; idx++) {
+            int slot = hash(keys[idx]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = idx + 1;
+        }
+    }
+
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    private static int[] increment(int[] counts, int index, int n) {
+        if (counts == null) {
+            counts = new int[index + 1];
+        } else if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length * 2));
+        }
+        counts[index] += n;
+        return counts;
+    }
+
+    private static int[] add(int[] counts, int[] other) {
+        if (other == null) return counts;
+        for (int i = other.length - 1; i >= 0; i--) {
+            if (other[i] != 0) counts = increment(counts, i, other[i]);
+        }
+        return counts;
+    }
+}
@@ -16,15 +16,19 @@
 package org.broad.igv.sam.reader;
 
 import htsjdk.samtools.SAMFileHeader;
-import htsjdk.samtools.SAMFileReader;
-import htsjdk.samtools.ValidationStringency;
 import htsjdk.samtools.SAMRecordIterator;
 import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamInputResource;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.samtools.util.CloseableIterator;
 import org.apache.log4j.Logger;
 import org.broad.igv.sam.EmptyAlignmentIterator;
 import org.broad.igv.sam.PicardAlignment;
 import org.broad.igv.ui.util.MessageUtils;
+import org.broad.igv.util.stream.IGVSeekableStreamFactory;
 
 import java.io.File;
 import java.io.IOException;
@@ -38,14 +42,21 @@ import java.util.Set;
 public class BAMFileReader implements AlignmentReader<PicardAlignment> {
 
     private static Logger log = Logger.getLogger(BAMFileReader.class);
-    SAMFileReader reader;
+    SamReader reader;
     SAMFileHeader header;
 
     public BAMFileReader(File bamFile) {
         try {
             File indexFile = findIndexFile(bamFile);
-            reader = new SAMFileReader(bamFile, indexFile);
-            reader.setValidationStringency(ValidationStringency.SILENT);
+            // Blocks of the file are shared with other readers through the BGZF block cache
+            IGVSeekableStreamFactory factory = IGVSeekableStreamFactory.getInstance();
+            String path = bamFile.getAbsolutePath();
+            SeekableStream stream = factory.getCachingStream(factory.getStreamFor(path), path);
+            SamInputResource resource = SamInputResource.of(stream);
+            if (indexFile != null) {
+                resource = resource.index(indexFile);
+            }
+            reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(resource);
             loadHeader();
         } catch (Exception e) {
             MessageUtils.showMessage("Error loading SAM header: " + e.getMessage());
@@ -31,10 +31,12 @@ import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.ui.panel.TrackPanel;
 import org.broad.igv.ui.panel.TrackPanelScrollPane;
 import org.broad.igv.ui.util.MessageUtils;
+import org.broad.igv.ui.util.UIUtilities;
 import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.FilterElement.BooleanOperator;
 import org.broad.igv.util.FilterElement.Operator;
 import org.broad.igv.util.ParsingUtils;
+import org.broad.igv.util.ResourceLoadScheduler;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.Utilities;
 import org.broad.igv.util.collections.CollUtils;
@@ -104,6 +106,11 @@ public class IGVSessionReader implements SessionReader {
     private Track seqTrack = null;
     private boolean hasTrackElments;
 
+    /**
+     * Ids of visible tracks, in session (screen) order.  Used to load resources of the first tracks first.
+     */
+    private List<String> visibleTrackIds = new ArrayList<String>();
+
     //Temporary holder for generating tracks
     protected static AbstractTrack nextTrack;
 
@@ -294,6 +301,12 @@ public class IGVSessionReader implements SessionReader {
 
         NodeList tracks = document.getElementsByTagName("Track");
         hasTrackElments = tracks.getLength() > 0;
+        for (int i = 0; i < tracks.getLength(); i++) {
+            Element trackElement = (Element) tracks.item(i);
+            if (!"false".equalsIgnoreCase(trackElement.getAttribute(SessionAttribute.VISIBLE.getText()))) {
+                visibleTrackIds.add(trackElement.getAttribute(SessionAttribute.ID.getText()));
+            }
+        }
 
         HashMap additionalInformation = new HashMap();
         additionalInformation.put(INPUT_FILE_KEY, sessionPath);
@@ -563,10 +576,22 @@ public class IGVSessionReader implements SessionReader {
         }
         if (dataFiles.size() > 0) {
 
-            final List<String> errors = new ArrayList<String>();
-
-            // Load files concurrently -- TODO, put a limit on # of threads?
-            List<Thread> threads = new ArrayList(dataFiles.size());
+            final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+
+            // Load files concurrently, limited per storage backend, visible tracks first
+            ResourceLoadScheduler.Batch batch = ResourceLoadScheduler.getInstance().newBatch(
+                    new ResourceLoadScheduler.ProgressListener() {
+                        public void loadFinished(ResourceLocator locator, Throwable error, int completed, int total) {
+                            if (igv != null) {
+                                final String message = "Loading session: " + completed + " of " + total + " files";
+                                UIUtilities.invokeOnEventThread(new Runnable() {
+                                    public void run() {
+                                        igv.setStatusBarMessage(message);
+                                    }
+                                });
+                            }
+                        }
+                    });
             long t0 = System.currentTimeMillis();
             int i = 0;
             List<Runnable> synchronousLoads = new ArrayList<Runnable>();
@@ -612,34 +637,24 @@ public class IGVSessionReader implements SessionReader {
                     }
                 };
 
-                boolean isAlignment = locator.getPath().endsWith(".bam") || locator.getPath().endsWith(".entries") ||
-                        locator.getPath().endsWith(".sam");
-
-
-                // Run synchronously if in batch mode or if there are no "track" elments, or if this is an alignment file
-                // EVERYTHING IS RUN SYNCHRONOUSLY FOR NOW UNTIL WE CAN FIGURE OUT WHAT TO DO TO PREVENT MULTIPLE
-                // AUTHENTICATION DIALOGS
-                if (isAlignment || Globals.isBatch() || !hasTrackElments) {
+                // Run synchronously if in batch mode or if there are no "track" elments, or if this is an alignment
+                // or remote file.  Remote files are run synchronously to prevent multiple authentication dialogs.
+                // Other resources are loaded concurrently, in order of their position on the screen.
+                if (Globals.isBatch() || !hasTrackElments || !ResourceLoadScheduler.isConcurrentLoad(locator)) {
                     synchronousLoads.add(runnable);
                 } else {
-                    Thread t = new Thread(runnable);
-                    threads.add(t);
-                    t.start();
+                    batch.submit(locator, getLoadPriority(suppliedPath, relPath), runnable);
                 }
                 i++;
             }
-            // Wait for all threads to complete
-            for (Thread t : threads) {
-                try {
-                    t.join();
-                } catch (InterruptedException ignore) {
+            // Wait for all loads to complete
+            if (batch.await()) {
+                // Now load data that must be loaded synchronously
+                for (Runnable runnable : synchronousLoads) {
+                    runnable.run();
                 }
-            }
-
-
-            // Now load data that must be loaded synchronously
-            for (Runnable runnable : synchronousLoads) {
-                runnable.run();
+            } else {
+                log.info("Session load cancelled");
             }
 
             long dt = System.currentTimeMillis() - t0;
@@ -658,6 +673,36 @@ public class IGVSessionReader implements SessionReader {
         dataFiles = null;
     }
 
+    /**
+     * Return the position of the first visible track of the resource at {@code path}.  Track ids are the resource
+     * path, optionally followed by a separator and the track name.
+     */
+    private int getLoadPriority(String path, String relPath) {
+        for (int i = 0; i < visibleTrackIds.size(); i++) {
+            String id = visibleTrackIds.get(i);
+            if (isTrackOf(id, path) || (relPath != null && isTrackOf(id, relPath))) {
+                return i;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Package private for unit testing
+     *
+     * @return true if {@code trackId} is the id of a track loaded from {@code path}
+     */
+    static boolean isTrackOf(String trackId, String path) {
+        if (!trackId.startsWith(path)) {
+            return false;
+        }
+        if (trackId.length() == path.length()) {
+            return true;
+        }
+        char separator = trackId.charAt(path.length());
+        return separator == '_' || separator == ' ';
+    }
+
     /**
      * Load a single resource.
      * <p/>
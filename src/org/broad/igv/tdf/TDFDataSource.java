@@ -18,10 +18,9 @@ package org.broad.igv.tdf;
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 import org.broad.igv.PreferenceManager;
-import org.broad.igv.data.BasicScore;
 import org.broad.igv.data.CompositeScore;
 import org.broad.igv.data.CoverageDataSource;
-import org.broad.igv.data.NamedScore;
+import org.broad.igv.data.LocusScoreList;
 import org.broad.igv.feature.Chromosome;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
@@ -184,7 +183,8 @@ public class TDFDataSource implements CoverageDataSource {
                 }
             }
 
-            scores = new ArrayList(1000);
+            LocusScoreList tileScores = new LocusScoreList(1000);
+            scores = tileScores;
             if (tiles != null && tiles.size() > 0) {
                 for (TDFTile tile : tiles) {
 
@@ -193,7 +193,7 @@ public class TDFDataSource implements CoverageDataSource {
                             float v = tile.getValue(trackNumber, i);
                             if (!Float.isNaN(v)) {
                                 v *= normalizationFactor;
-                                scores.add(new BasicScore(tile.getStartPosition(i), tile.getEndPosition(i), v));
+                                tileScores.add(tile.getStartPosition(i), tile.getEndPosition(i), v);
                             }
                         }
                     }
@@ -231,7 +231,8 @@ public class TDFDataSource implements CoverageDataSource {
 
     private List<LocusScore> computeSummaryScores(String chr, int startLocation, int endLocation, double scale) {
 
-        List<LocusScore> scores = new ArrayList(1000);
+        // Raw scores are unnamed, windowed scores carry the probe name
+        LocusScoreList scores = new LocusScoreList(1000, windowFunction != WindowFunction.none);
 
         String dsName = "/" + chr + "/raw";
 
@@ -258,7 +259,7 @@ public class TDFDataSource implements CoverageDataSource {
                                 if (!Float.isNaN(v)) {
                                     v *= normalizationFactor;
                                 }
-                                scores.add(new BasicScore(s, e, v));
+                                scores.add(s, e, v);
                             }
                         }
                     }
@@ -306,13 +307,13 @@ public class TDFDataSource implements CoverageDataSource {
                                 // If this feature spans multiple bins, or extends beyond last end bin, record
                                 if (endBin > lastEndBin || endBin > startBin) {
                                     if (accumulator.hasData()) {
-                                        scores.add(getCompositeScore(accumulator, accumulatedStart, accumulatedEnd));
+                                        addCompositeScore(scores, accumulator, accumulatedStart, accumulatedEnd);
                                         accumulator = new Accumulator(windowFunction, 5);
                                     }
                                 }
 
                                 if (endBin > startBin) {
-                                    scores.add(new NamedScore(s, e, v, probeName));
+                                    scores.add(s, e, v, probeName);
                                 } else {
                                     if (!accumulator.hasData()) {
                                         accumulatedStart = s;
@@ -327,7 +328,7 @@ public class TDFDataSource implements CoverageDataSource {
 
                             // End of loop cleanup
                             if (accumulator.hasData()) {
-                                scores.add(getCompositeScore(accumulator, accumulatedStart, accumulatedEnd));
+                                addCompositeScore(scores, accumulator, accumulatedStart, accumulatedEnd);
                             }
                         }
                     }
@@ -338,17 +339,14 @@ public class TDFDataSource implements CoverageDataSource {
     }
 
 
-    private LocusScore getCompositeScore(Accumulator accumulator, int accumulatedStart, int accumulatedEnd) {
-        LocusScore ls;
+    private void addCompositeScore(LocusScoreList scores, Accumulator accumulator, int accumulatedStart, int accumulatedEnd) {
         if (accumulator.getNpts() == 1) {
-            ls = new NamedScore(accumulatedStart, accumulatedEnd, accumulator.getRepData()[0], accumulator.getRepProbes()[0]);
+            scores.add(accumulatedStart, accumulatedEnd, accumulator.getRepData()[0], accumulator.getRepProbes()[0]);
         } else {
             float value = accumulator.getValue();
-            ls = new CompositeScore(accumulatedStart, accumulatedEnd, value, accumulator.getRepData(),
-                    accumulator.getRepProbes(), windowFunction);
+            scores.add(new CompositeScore(accumulatedStart, accumulatedEnd, value, accumulator.getRepData(),
+                    accumulator.getRepProbes(), windowFunction));
         }
-        return ls;
-
     }
 
     public List<LocusScore> getSummaryScoresForRange(String chr, int startLocation, int endLocation, int zoom) {
@@ -363,7 +361,7 @@ public class TDFDataSource implements CoverageDataSource {
             return getSummaryScores(querySeq, startLocation, endLocation, zoom);
         } else {
 
-            ArrayList scores = new ArrayList();
+            LocusScoreList scores = null;
 
             // TODO -- this whole section could be computed once and stored,  it is only a function of the genome, chr, and zoom level.
             double tileWidth = 0;
@@ -382,12 +380,16 @@ public class TDFDataSource implements CoverageDataSource {
             int startTile = (int) (startLocation / tileWidth);
             int endTile = (int) (endLocation / tileWidth);
             for (int t = startTile; t <= endTile; t++) {
-                List<LocusScore> cachedScores = getCachedSummaryScores(querySeq, zoom, t, tileWidth);
-                if (cachedScores != null) {
-                    for (LocusScore s : cachedScores) {
-                        if (s.getEnd() >= startLocation) {
-                            scores.add(s);
-                        } else if (s.getStart() > endLocation) {
+                List<LocusScore> cached = getCachedSummaryScores(querySeq, zoom, t, tileWidth);
+                if (cached != null) {
+                    LocusScoreList cachedScores = LocusScoreList.asLocusScoreList(cached);
+                    if (scores == null) {
+                        scores = new LocusScoreList(1000, cachedScores.isNamed());
+                    }
+                    for (int i = 0; i < cachedScores.size(); i++) {
+                        if (cachedScores.getEnd(i) >= startLocation) {
+                            scores.add(cachedScores, i);
+                        } else if (cachedScores.getStart(i) > endLocation) {
                             break;
                         }
                     }
@@ -395,7 +397,7 @@ public class TDFDataSource implements CoverageDataSource {
 
             }
 
-            return scores;
+            return scores == null ? new LocusScoreList(0) : scores;
         }
     }
 
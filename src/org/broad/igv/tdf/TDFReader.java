@@ -27,6 +27,7 @@ import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.StringUtils;
 import org.broad.igv.util.collections.LRUCache;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+import org.broad.igv.util.stream.MappedSeekableStream;
 
 import java.io.IOException;
 import java.nio.BufferUnderflowException;
@@ -418,10 +419,17 @@ public class TDFReader {
     }
 
 
-    public synchronized byte[] readBytes(long position, int nBytes) throws IOException {
-        seekableStream.seek(position);
+    public byte[] readBytes(long position, int nBytes) throws IOException {
         byte[] buffer = new byte[nBytes];
-        int read = seekableStream.read(buffer, 0, nBytes);
+        if (seekableStream instanceof MappedSeekableStream) {
+            // Positional read, concurrent tile loads don't contend for the stream
+            ((MappedSeekableStream) seekableStream).read(position, buffer, 0, nBytes);
+        } else {
+            synchronized (this) {
+                seekableStream.seek(position);
+                seekableStream.read(buffer, 0, nBytes);
+            }
+        }
         return buffer;
     }
 
@@ -29,9 +29,12 @@ import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.feature.tribble.CodecFactory;
 import org.broad.igv.feature.tribble.GFFCodec;
 import org.broad.igv.feature.tribble.IGVBEDCodec;
+import org.broad.igv.gwas.GWASBinaryReader;
+import org.broad.igv.gwas.GWASBinaryWriter;
 import org.broad.igv.sam.reader.AlignmentIndexer;
 import org.broad.igv.tdf.TDFUtils;
 import org.broad.igv.tools.converters.BamToBed;
+import org.broad.igv.tools.converters.BamToJunctions;
 import org.broad.igv.tools.converters.ExpressionFormatter;
 import org.broad.igv.tools.converters.GCTtoIGVConverter;
 import org.broad.igv.tools.converters.WigToBed;
@@ -74,6 +77,8 @@ public class IgvTools {
     static final String CMD_GUI = "gui";
     static final String CMD_HELP = "help";
     static final String CMD_BAMTOBED = "bamtobed";
+    static final String CMD_GWASTOBIN = "gwastobin";
+    static final String CMD_JUNCTIONS = "junctions";
 
     /**
      * Stream for writing messages to the user, which we
@@ -101,6 +106,8 @@ public class IgvTools {
             "toTDF    convert an input file (cn, gct, wig) to tiled data format (tdf)",
             "count   compute coverage density for an alignment file",
             "formatexp  center, scale, and log2 normalize an expression file",
+            "gwastobin  convert a GWAS result file to an indexed binary file (.gwas.bin)",
+            "junctions  write the splice junctions of an alignment file to an indexed junctions.bed file",
             "gui      Start the gui",
             "help <command>     display this help message, or help on a specific command",
             "See http://www.broadinstitute.org/software/igv/igvtools_commandline for more detailed help"
@@ -146,6 +153,10 @@ public class IgvTools {
     private static CmdLineParser.Option binSizeOption = null;
     private static CmdLineParser.Option outputDirOption = null;
 
+    // options for junctions
+    private static CmdLineParser.Option minFlankingWidthOption = null;
+    private static CmdLineParser.Option threadsOption = null;
+
     // Trackline
     private static CmdLineParser.Option colorOption = null;
 
@@ -425,6 +436,30 @@ public class IgvTools {
                     DensitiesToBedGraph.convert(inputDir, outputDir);
                 }
 
+            } else if (command.equals(CMD_GWASTOBIN)) {
+                validateArgsLength(nonOptionArgs, 3, basic_syntax + " [genomeId]");
+                String ofile = nonOptionArgs[2];
+                if (!GWASBinaryReader.isBinaryGWASFile(ofile)) {
+                    ofile = ofile + GWASBinaryReader.EXTENSION;
+                }
+                Genome genome = null;
+                if (nonOptionArgs.length > 3) {
+                    genome = loadGenome(nonOptionArgs[3]);
+                }
+                userMessageWriter.println("gwas -> gwas.bin: " + ifile + " -> " + ofile);
+                GWASBinaryWriter.convert(ifile, ofile, genome);
+            } else if (command.equals(CMD_JUNCTIONS)) {
+                validateArgsLength(nonOptionArgs, 3, basic_syntax);
+                String ofile = nonOptionArgs[2];
+                if (!ofile.endsWith("junctions.bed")) {
+                    ofile = ofile + ".junctions.bed";
+                }
+                int minFlankingWidth = (Integer) parser.getOptionValue(minFlankingWidthOption, 0);
+                int minMapQuality = (Integer) parser.getOptionValue(minMapQualityOpt, 0);
+                int nThreads = (Integer) parser.getOptionValue(threadsOption, Runtime.getRuntime().availableProcessors());
+                userMessageWriter.println("junctions: " + ifile + " -> " + ofile);
+                BamToJunctions.convert(new File(ifile), new File(ofile), minFlankingWidth, minMapQuality, nThreads);
+                doIndex(ofile, null, LINEAR_INDEX, LINEAR_BIN_SIZE);
             } else if (command.equals(CMD_BAMTOBED)) {
                 validateArgsLength(nonOptionArgs, 3, basic_syntax);
                 String ofile = nonOptionArgs[2];
@@ -552,6 +587,12 @@ public class IgvTools {
             outputDirOption = parser.addStringOption("outputDir");
         }
 
+        if (command.equals(CMD_JUNCTIONS)) {
+            minFlankingWidthOption = parser.addIntegerOption("minFlankingWidth");
+            minMapQualityOpt = parser.addIntegerOption("minMapQuality");
+            threadsOption = parser.addIntegerOption("threads");
+        }
+
         return parser;
     }
 
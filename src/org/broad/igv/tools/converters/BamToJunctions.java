@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools.converters;
+
+import htsjdk.samtools.util.CloseableIterator;
+import org.apache.log4j.Logger;
+import org.broad.igv.feature.SpliceJunctionFeature;
+import org.broad.igv.feature.Strand;
+import org.broad.igv.sam.Alignment;
+import org.broad.igv.sam.SpliceJunctionHelper;
+import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+import org.broad.igv.util.NamedThreadFactory;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Scans an alignment file once and writes its splice junctions as a junctions bed file, in the TopHat format
+ * IGV reads with the splice junction renderer.  Each record is one junction and strand.  The score is the junction
+ * depth and the two blocks are the widest flanking regions of the supporting reads.
+ * <p/>
+ * Indexed files are scanned in parallel, one chromosome per task.  Output is in the order of the sequence
+ * dictionary and sorted by start within a chromosome, so it can be indexed with "igvtools index".
+ */
+public class BamToJunctions {
+
+    private static Logger log = Logger.getLogger(BamToJunctions.class);
+
+    public static void convert(File inputBam, File outputBed, int minFlankingWidth, int minMapQuality, int nThreads)
+            throws IOException {
+
+        final String path = inputBam.getAbsolutePath();
+        final SpliceJunctionHelper.LoadOptions loadOptions = new SpliceJunctionHelper.LoadOptions(1, minFlankingWidth);
+
+        List<List<SpliceJunctionFeature>> junctions = new ArrayList<List<SpliceJunctionFeature>>();
+        AlignmentReader<?> reader = AlignmentReaderFactory.getReader(path, false);
+        try {
+            if (reader.hasIndex()) {
+                List<String> chromosomes = reader.getSequenceNames();
+                reader.close();
+                reader = null;
+                junctions = scanByChromosome(path, chromosomes, loadOptions, minMapQuality, nThreads);
+            } else {
+                CloseableIterator<? extends Alignment> iter = reader.iterator();
+                try {
+                    junctions = scan(iter, loadOptions, minMapQuality);
+                } finally {
+                    iter.close();
+                }
+            }
+        } finally {
+            if (reader != null) reader.close();
+        }
+
+        PrintWriter bedWriter = null;
+        try {
+            bedWriter = new PrintWriter(new BufferedWriter(new FileWriter(outputBed)));
+            bedWriter.println("track name=\"" + inputBam.getName() + " junctions\"");
+            int n = 0;
+            for (List<SpliceJunctionFeature> features : junctions) {
+                for (SpliceJunctionFeature f : features) {
+                    writeJunction(bedWriter, f, ++n);
+                }
+            }
+        } finally {
+            if (bedWriter != null) bedWriter.close();
+        }
+    }
+
+    private static List<List<SpliceJunctionFeature>> scanByChromosome(
+            final String path, List<String> chromosomes, final SpliceJunctionHelper.LoadOptions loadOptions,
+            final int minMapQuality, int nThreads) throws IOException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, nThreads),
+                new NamedThreadFactory("igvtools junctions"));
+        try {
+            List<Future<List<List<SpliceJunctionFeature>>>> futures =
+                    new ArrayList<Future<List<List<SpliceJunctionFeature>>>>(chromosomes.size());
+            for (final String chr : chromosomes) {
+                futures.add(executor.submit(new Callable<List<List<SpliceJunctionFeature>>>() {
+                    public List<List<SpliceJunctionFeature>> call() throws Exception {
+                        // Readers are not thread safe, each task opens its own
+                        AlignmentReader<?> reader = AlignmentReaderFactory.getReader(path, true);
+                        CloseableIterator<? extends Alignment> iter = null;
+                        try {
+                            iter = reader.query(chr, 0, Integer.MAX_VALUE, false);
+                            return scan(iter, loadOptions, minMapQuality);
+                        } finally {
+                            if (iter != null) iter.close();
+                            reader.close();
+                        }
+                    }
+                }));
+            }
+
+            List<List<SpliceJunctionFeature>> junctions = new ArrayList<List<SpliceJunctionFeature>>();
+            for (Future<List<List<SpliceJunctionFeature>>> future : futures) {
+                junctions.addAll(future.get());
+            }
+            return junctions;
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted while scanning " + path, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new RuntimeException("Error scanning " + path, cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Accumulate junctions from {@code iter}, which may span chromosomes if they are contiguous.
+     *
+     * @return sorted junctions of each chromosome, in the order encountered
+     */
+    static List<List<SpliceJunctionFeature>> scan(CloseableIterator<? extends Alignment> iter,
+                                                            SpliceJunctionHelper.LoadOptions loadOptions,
+                                                            int minMapQuality) {
+
+        List<List<SpliceJunctionFeature>> junctions = new ArrayList<List<SpliceJunctionFeature>>();
+        SpliceJunctionHelper helper = null;
+        String lastChr = null;
+        while (iter.hasNext()) {
+            Alignment a = iter.next();
+            if (!a.isMapped() || a.isDuplicate() || a.isVendorFailedRead() || !a.isPrimary() ||
+                    a.getMappingQuality() < minMapQuality) {
+                continue;
+            }
+            if (!a.getChr().equals(lastChr)) {
+                if (helper != null) junctions.add(helper.getFilteredJunctions());
+                helper = new SpliceJunctionHelper(loadOptions);
+                lastChr = a.getChr();
+            }
+            helper.addAlignment(a);
+        }
+        if (helper != null) junctions.add(helper.getFilteredJunctions());
+        return junctions;
+    }
+
+    private static void writeJunction(PrintWriter out, SpliceJunctionFeature f, int n) {
+        int start = f.getStart();
+        int end = f.getEnd();
+        out.print(f.getChr());
+        out.print("\t" + start);
+        out.print("\t" + end);
+        out.print("\tJUNC" + n);
+        out.print("\t" + f.getJunctionDepth());
+        out.print("\t" + (f.getStrand() == Strand.NEGATIVE ? "-" : "+"));
+        out.print("\t" + start);
+        out.print("\t" + end);
+        out.print("\t.");
+        out.print("\t2");
+        out.print("\t" + f.getStartFlankingRegionLength() + "," + f.getEndFlankingRegionLength());
+        out.println("\t0," + (f.getJunctionEnd() - start));
+    }
+}
@@ -16,12 +16,11 @@
 package org.broad.igv.tools.parsers;
 
 import org.apache.log4j.Logger;
-import org.broad.igv.Globals;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackType;
+import org.broad.igv.util.LineTokenizer;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
-import htsjdk.tribble.readers.AsciiLineReader;
 
 import java.io.IOException;
 import java.util.Set;
@@ -120,12 +119,12 @@ public class CNParser extends AbstractParser {
      */
     public void parse() throws IOException {
 
-        AsciiLineReader reader = null;
+        LineTokenizer reader = null;
         try {
 
             lastPosition = 0;
 
-            reader = ParsingUtils.openAsciiReader(resourceLocator);
+            reader = new LineTokenizer(ParsingUtils.openInputStreamGZ(resourceLocator), true);
             String nextLine = null;
 
 
@@ -152,45 +151,43 @@ public class CNParser extends AbstractParser {
             float[] dataArray = new float[getHeadings().length];
 
 
-            while ((nextLine = reader.readLine()) != null && (nextLine.trim().length() > 0)) {
-                String[] tokens = Globals.singleTabMultiSpacePattern.split(nextLine);
-                int nTokens = tokens.length;
-                if (nTokens == 0) {
-                    continue;
-                }
+            // Chromosome name as it appears in the file
+            String fileChr = null;
+
+            while (reader.nextLine() && !reader.isBlank()) {
+                int nTokens = reader.getTokenCount();
 
                 try {
 
-                    chr = (genome == null ? tokens[chrColumn] : genome.getChromosomeAlias(tokens[chrColumn]));
+                    if (!reader.tokenEquals(chrColumn, fileChr)) {
+                        fileChr = reader.getString(chrColumn);
+                        chr = (genome == null ? fileChr : genome.getChromosomeAlias(fileChr));
+                    }
                     if (!chr.equals(lastChr)) {
                         newChromosome();
                     }
                     lastChr = chr;
 
-                    int startPosition = ParsingUtils.parseInt(tokens[startColumn].trim());
+                    int startPosition = reader.getInt(startColumn);
                     if (startPosition < lastPosition) {
                         throw new UnsortedException("Error: unsorted file.  .cn files must be sorted by genomic position.");
                     }
                     lastPosition = startPosition;
 
-                    int endPosition = hasEndLocations ? ParsingUtils.parseInt(tokens[endColumn].trim()) : startPosition + 1;
+                    int endPosition = hasEndLocations ? reader.getInt(endColumn) : startPosition + 1;
 
                     // TODO -- compare nTokens with expected number
                     for (int i = firstDataColumn; i < nTokens; i += skipColumns) {
                         int idx = (i - firstDataColumn) / skipColumns;
-                        try {
-                            dataArray[idx] = Float.parseFloat(tokens[i].trim());
-                        } catch (NumberFormatException numberFormatException) {
-                            dataArray[idx] = Float.NaN;
-                        }
+                        dataArray[idx] = reader.getFloat(i, Float.NaN);
                     }
 
-                    String probe = tokens[probeColumn];
+                    String probe = reader.getString(probeColumn);
 
                     getDataConsumer().addData(chr, startPosition, endPosition, dataArray, probe);
 
                 } catch (NumberFormatException e) {
-                    log.error("Error parsing number in: " + nextLine + "\n" + e.getMessage(), e);
+                    log.error("Error parsing number in: " + reader.getLine() + "\n" + e.getMessage(), e);
                 }
 
             }
@@ -18,6 +18,8 @@ import org.broad.igv.Globals;
 import org.broad.igv.data.CombinedDataSource;
 import org.broad.igv.data.CoverageDataSource;
 import org.broad.igv.data.DataSource;
+import org.broad.igv.data.WholeGenomeSummaryService;
+import org.broad.igv.data.seg.SegmentedDataSource;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.renderer.DataRange;
 import org.broad.igv.session.IGVSessionReader;
@@ -114,6 +116,14 @@ public class DataSourceTrack extends DataTrack {
     }
 
 
+    @Override
+    protected boolean isWholeGenomeSummaryPending() {
+        // Segmented summaries belong to the dataset, shared by the tracks of all samples
+        Object owner = dataSource instanceof SegmentedDataSource ? ((SegmentedDataSource) dataSource).getDataset() :
+                dataSource;
+        return owner != null && WholeGenomeSummaryService.getInstance().isComputing(owner);
+    }
+
     @Override
     public void setWindowFunction(WindowFunction statType) {
         clearCaches();
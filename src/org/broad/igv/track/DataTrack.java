@@ -21,6 +21,8 @@ package org.broad.igv.track;
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 import org.broad.igv.PreferenceManager;
+import org.broad.igv.data.LocusScoreList;
+import org.broad.igv.data.WholeGenomeSummaryService;
 import org.broad.igv.feature.Chromosome;
 import org.broad.igv.feature.FeatureUtils;
 import org.broad.igv.feature.LocusScore;
@@ -40,8 +42,9 @@ import javax.xml.bind.annotation.XmlType;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 import java.awt.*;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Map;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a track of numeric data
@@ -56,7 +59,7 @@ public abstract class DataTrack extends AbstractTrack {
     private DataRenderer renderer;
 
     // TODO -- memory leak.  This needs to get cleared when the gene list changes
-    private HashMap<String, LoadedDataInterval> loadedIntervalCache = new HashMap(200);
+    private Map<String, LoadedDataInterval> loadedIntervalCache = new ConcurrentHashMap<String, LoadedDataInterval>(200);
     private boolean featuresLoading = false;
 
 
@@ -90,6 +93,7 @@ public abstract class DataTrack extends AbstractTrack {
         List<LocusScore> inViewScores = getInViewScores(context, rect);
 
         if ((inViewScores == null || inViewScores.size() == 0) && Globals.CHR_ALL.equals(context.getChr())) {
+            if (isWholeGenomeSummaryPending()) return;
             Graphics2D g = context.getGraphic2DForColor(Color.gray);
             GraphicUtils.drawCenteredText("Data not available for whole genome view; zoom in to see data", rect, g);
         }else{
@@ -132,14 +136,16 @@ public abstract class DataTrack extends AbstractTrack {
 
         //Not all data sources support whole genome views, tell user if CHR_ALL not available
         if ((inViewScores == null || inViewScores.size() == 0) && Globals.CHR_ALL.equals(chr)) {
+            if (isWholeGenomeSummaryPending()) return inViewScores;
             Graphics2D g = context.getGraphic2DForColor(Color.gray);
             GraphicUtils.drawCenteredText("Data not available for whole genome view; zoom in to see data", rect, g);
         } else {
             if (autoScale && !FrameManager.isGeneListMode()) {
 
-                InViewInterval inter = computeScale(start, end, inViewScores);
+                LocusScoreList scoreList = LocusScoreList.asLocusScoreList(inViewScores);
+                InViewInterval inter = computeScale(start, end, scoreList);
                 if (inter.endIdx > inter.startIdx) {
-                    inViewScores = inViewScores.subList(inter.startIdx, inter.endIdx);
+                    inViewScores = scoreList.subList(inter.startIdx, inter.endIdx);
 
                     DataRange dr = getDataRange();
                     float min = Math.min(0, inter.dataMin);
@@ -197,9 +203,13 @@ public abstract class DataTrack extends AbstractTrack {
             int delta = multiLocus ? 1 : (end - start) / 2;
             int expandedStart = Math.max(0, start - delta);
             int expandedEnd = Math.min(maxEnd, end + delta);
+            // Whole genome summaries are served incrementally, don't cache them until complete
+            boolean partial = Globals.CHR_ALL.equals(chr) && isWholeGenomeSummaryPending();
             List<LocusScore> inViewScores = getSummaryScores(queryChr, expandedStart, expandedEnd, zoom);
-            LoadedDataInterval interval = new LoadedDataInterval(chr, start, end, zoom, inViewScores);
-            loadedIntervalCache.put(context.getReferenceFrame().getName(), interval);
+            if (!partial) {
+                LoadedDataInterval interval = new LoadedDataInterval(chr, start, end, zoom, inViewScores);
+                loadedIntervalCache.put(context.getReferenceFrame().getName(), interval);
+            }
             return inViewScores;
 
         } finally {
@@ -213,6 +223,14 @@ public abstract class DataTrack extends AbstractTrack {
         loadedIntervalCache.clear();
     }
 
+    /**
+     * @return true if the whole genome summary of this track is still being computed, see
+     * {@link WholeGenomeSummaryService#isComputing(Object)}
+     */
+    protected boolean isWholeGenomeSummaryPending() {
+        return false;
+    }
+
     public void setRendererClass(Class rc) {
         try {
             renderer = (DataRenderer) rc.newInstance();
@@ -283,30 +301,29 @@ public abstract class DataTrack extends AbstractTrack {
 
     abstract public List<LocusScore> getSummaryScores(String chr, int startLocation, int endLocation, int zoom);
 
-    private InViewInterval computeScale(double origin, double end, List<LocusScore> scores) {
+    private InViewInterval computeScale(double origin, double end, LocusScoreList scores) {
 
         InViewInterval interval = new InViewInterval();
 
         if (scores.size() == 1) {
-            interval.dataMax = Math.max(0, scores.get(0).getScore());
-            interval.dataMin = Math.min(0, scores.get(0).getScore());
+            interval.dataMax = Math.max(0, scores.getScore(0));
+            interval.dataMin = Math.min(0, scores.getScore(0));
         } else {
             interval.startIdx = 0;
             interval.endIdx = scores.size();
             for (int i = 1; i < scores.size(); i++) {
-                if (scores.get(i).getEnd() >= origin) {
+                if (scores.getEnd(i) >= origin) {
                     interval.startIdx = i - 1;
                     break;
                 }
             }
 
             for (int i = interval.startIdx + 1; i < scores.size(); i++) {
-                LocusScore locusScore = scores.get(i);
-                float value = locusScore.getScore();
+                float value = scores.getScore(i);
                 if (Float.isNaN(value)) value = 0;
                 interval.dataMax = Math.max(interval.dataMax, value);
                 interval.dataMin = Math.min(interval.dataMin, value);
-                if (locusScore.getStart() > end) {
+                if (scores.getStart(i) > end) {
                     interval.endIdx = i;
                     break;
                 }
@@ -51,6 +51,7 @@ import java.awt.event.MouseEvent;
 import java.io.IOException;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Track which displays features, typically showing regions of the genome
@@ -89,9 +90,10 @@ public class FeatureTrack extends AbstractTrack {
 
     // TODO -- this is a memory leak, this cache needs cleared when the reference frame collection (gene list) changes
     /**
-     * Map of reference frame name -> packed features
+     * Map of reference frame name -> packed features.  Loaders replace the entry for a frame with a fully packed
+     * instance, so painting reads it without locking.
      */
-    protected Map<String, PackedFeatures<IGVFeature>> packedFeaturesMap = Collections.synchronizedMap(new HashMap<String, PackedFeatures<IGVFeature>>());
+    protected Map<String, PackedFeatures<IGVFeature>> packedFeaturesMap = new ConcurrentHashMap<String, PackedFeatures<IGVFeature>>();
 
     private FeatureRenderer renderer;
 
@@ -214,8 +216,13 @@ public class FeatureTrack extends AbstractTrack {
             }
         }
 
-        this.renderer = path != null && path.endsWith("junctions.bed") ?
-                new SpliceJunctionRenderer() : new IGVFeatureRenderer();
+        boolean isJunctions = path != null && path.endsWith("junctions.bed");
+        this.renderer = isJunctions ? new SpliceJunctionRenderer() : new IGVFeatureRenderer();
+
+        // Junction files, e.g. from "igvtools junctions", hold one record per junction and are shown at any zoom
+        if (isJunctions && sourceFeatureWindowSize > 0) {
+            setVisibilityWindow(0);
+        }
 
     }
 
@@ -291,14 +298,8 @@ public class FeatureTrack extends AbstractTrack {
     public int getNumberOfFeatureLevels() {
         if (areFeaturesStacked() && packedFeaturesMap.size() > 0) {
             int n = 0;
-            synchronized (packedFeaturesMap) {
-                for (PackedFeatures pf : packedFeaturesMap.values()) {
-                    //dhmay adding null check.  To my mind this shouldn't be necessary, but we're encountering
-                    //it intermittently.  Food for future thought
-                    if (pf != null) {
-                        n = Math.max(n, pf.getRowCount());
-                    }
-                }
+            for (PackedFeatures pf : packedFeaturesMap.values()) {
+                n = Math.max(n, pf.getRowCount());
             }
             return n;
         }
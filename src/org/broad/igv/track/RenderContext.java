@@ -1,5 +1,6 @@
 package org.broad.igv.track;
 
+import org.broad.igv.renderer.HeatmapRaster;
 import org.broad.igv.ui.panel.ReferenceFrame;
 
 import javax.swing.*;
@@ -33,6 +34,12 @@ public interface RenderContext {
 
     int bpToScreenPixel(double location);
 
+    /**
+     * @return pixels shared by the heatmap tracks painted in this context, or null if heatmaps are filled with the
+     * graphics
+     */
+    HeatmapRaster getHeatmapRaster();
+
     void dispose();
 
 }
@@ -23,6 +23,7 @@
 package org.broad.igv.track;
 
 import org.broad.igv.PreferenceManager;
+import org.broad.igv.renderer.HeatmapRaster;
 import org.broad.igv.ui.panel.ReferenceFrame;
 
 import javax.swing.*;
@@ -40,6 +41,7 @@ public class RenderContextImpl implements RenderContext {
     private ReferenceFrame referenceFrame;
     private JComponent panel;
     private Rectangle visibleRect;
+    private HeatmapRaster heatmapRaster;
 
 
     public RenderContextImpl(JComponent panel, Graphics2D graphics, ReferenceFrame referenceFrame, Rectangle visibleRect) {
@@ -111,6 +113,14 @@ public class RenderContextImpl implements RenderContext {
 
     }
 
+    public HeatmapRaster getHeatmapRaster() {
+        return heatmapRaster;
+    }
+
+    public void setHeatmapRaster(HeatmapRaster heatmapRaster) {
+        this.heatmapRaster = heatmapRaster;
+    }
+
     /**
      * Release graphics objects
      *
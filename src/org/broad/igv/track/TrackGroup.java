@@ -44,7 +44,11 @@ public class TrackGroup {
 
     private boolean drawBorder = true;
 
-    private List<Track> tracks;
+    /**
+     * The tracks, an immutable list which is replaced on every change.  Readers, painting in particular, iterate
+     * the current list without locking.  Changes are made to a copy while holding the lock of the group.
+     */
+    private volatile List<Track> tracks;
 
     private boolean selected;
 
@@ -56,7 +60,7 @@ public class TrackGroup {
 
     public TrackGroup(String name) {
         this.name = name;
-        tracks = Collections.synchronizedList(new ArrayList<Track>());
+        tracks = Collections.emptyList();
     }
 
 
@@ -64,10 +68,17 @@ public class TrackGroup {
         return tracks.contains(track);
     }
 
+    /**
+     * @return an unmodifiable snapshot of the tracks
+     */
     public List<Track> getTracks() {
         return tracks;
     }
 
+    private void setTracks(List<Track> newTracks) {
+        tracks = Collections.unmodifiableList(newTracks);
+    }
+
 
     public int indexOf(Track track) {
         return tracks.indexOf(track);
@@ -79,33 +90,46 @@ public class TrackGroup {
     }
 
 
-    public void add(Track track) {
+    public synchronized void add(Track track) {
         if (track == null) {
             log.info("Attempt to add null track");
         } else {
             log.debug("Adding track " + track.getName());
-            tracks.add(track);
+            List<Track> newTracks = new ArrayList<Track>(tracks);
+            newTracks.add(track);
+            setTracks(newTracks);
         }
     }
 
-    public void add(int pos, Track track) {
+    public synchronized void add(int pos, Track track) {
         if (track == null) {
             log.info("Attempt to add null track");
         } else {
-            tracks.add(pos, track);
+            List<Track> newTracks = new ArrayList<Track>(tracks);
+            newTracks.add(pos, track);
+            setTracks(newTracks);
         }
     }
 
-    public void addAll(Collection<Track> trackList) {
-        tracks.addAll(trackList);
+    public void addAll(Collection<? extends Track> trackList) {
+        addAll(-1, trackList);
     }
 
-    public void addAll(int index, Collection<Track> trackList) {
-        tracks.addAll(index, trackList);
+    /**
+     * @param index position of the first added track, or -1 to add at the end
+     */
+    public synchronized void addAll(int index, Collection<? extends Track> trackList) {
+        List<Track> newTracks = new ArrayList<Track>(tracks.size() + trackList.size());
+        newTracks.addAll(tracks);
+        newTracks.addAll(index < 0 ? newTracks.size() : index, trackList);
+        setTracks(newTracks);
     }
 
-    public void remove(Track track) {
-        tracks.remove(track);
+    public synchronized void remove(Track track) {
+        List<Track> newTracks = new ArrayList<Track>(tracks);
+        if (newTracks.remove(track)) {
+            setTracks(newTracks);
+        }
     }
 
     /**
@@ -185,12 +209,13 @@ public class TrackGroup {
      * @param ascending
      */
 
-    public void sortByAttributes(final String[] attributeNames,
-                                 final boolean[] ascending) {
+    public synchronized void sortByAttributes(final String[] attributeNames,
+                                              final boolean[] ascending) {
 
 
-        if ((tracks != null) && !tracks.isEmpty()) {
-            List<Track> allTracks = new ArrayList<Track>(tracks);
+        if ((this.tracks != null) && !this.tracks.isEmpty()) {
+            List<Track> allTracks = this.tracks;
+            List<Track> tracks = new ArrayList<Track>(allTracks);
             try {
                 Comparator<Track> comparator = new TrackAttributeComparator(attributeNames, ascending);
 
@@ -225,9 +250,9 @@ public class TrackGroup {
                         tracks.add(index, t);
                     }
                 }
+                setTracks(tracks);
             } catch (Exception e) {
                 log.error("Error sorting tracks by attribute", e);
-                tracks = allTracks;
             }
         }
 
@@ -238,8 +263,10 @@ public class TrackGroup {
      * Sorts the entire group, including tracks for the given score type as well as other tracks, by
      * the specified sample order
      */
-    public void sortGroup(final RegionScoreType type,
-                          List<String> sortedSamples) {
+    public synchronized void sortGroup(final RegionScoreType type,
+                                       List<String> sortedSamples) {
+
+        List<Track> tracks = new ArrayList<Track>(this.tracks);
 
         // Step 1,  remove non-sortable tracks and remember position
         List<Track> unsortableTracks = new ArrayList();
@@ -253,9 +280,9 @@ public class TrackGroup {
             }
         }
 
-        List<Track> tracksWithScore = new ArrayList(getTracks().size());
-        List<Track> otherTracks = new ArrayList(getTracks().size());
-        for (Track t : getTracks()) {
+        List<Track> tracksWithScore = new ArrayList(tracks.size());
+        List<Track> otherTracks = new ArrayList(tracks.size());
+        for (Track t : tracks) {
             if (t.isRegionScoreType(type)) {
                 tracksWithScore.add(t);
             } else {
@@ -278,6 +305,7 @@ public class TrackGroup {
                 tracks.add(index, t);
             }
         }
+        setTracks(tracks);
 
     }
 
@@ -323,7 +351,7 @@ public class TrackGroup {
     /**
      * @param trackIds
      */
-    public void sortByList(List<String> trackIds) {
+    public synchronized void sortByList(List<String> trackIds) {
 
         final Map<String, Integer> trackPositions = new HashMap();
         for (int i = 0; i < trackIds.size(); i++) {
@@ -338,11 +366,16 @@ public class TrackGroup {
                 return p1 - p2;
             }
         };
-        Collections.sort(tracks, c);
+        List<Track> sorted = new ArrayList<Track>(tracks);
+        Collections.sort(sorted, c);
+        setTracks(sorted);
     }
 
-    public void removeTracks(Collection<? extends Track> tracksToRemove) {
-        tracks.removeAll(tracksToRemove);
+    public synchronized void removeTracks(Collection<? extends Track> tracksToRemove) {
+        List<Track> newTracks = new ArrayList<Track>(tracks);
+        if (newTracks.removeAll(tracksToRemove)) {
+            setTracks(newTracks);
+        }
     }
 
 
@@ -354,10 +387,11 @@ public class TrackGroup {
      * @param targetTrack
      * @param before
      */
-    public boolean moveSelectedTracksTo(Collection<? extends Track> selectedTracks,
-                                        Track targetTrack,
-                                        boolean before) {
+    public synchronized boolean moveSelectedTracksTo(Collection<? extends Track> selectedTracks,
+                                                     Track targetTrack,
+                                                     boolean before) {
 
+        List<Track> tracks = this.tracks;
         int index = (targetTrack == null ? tracks.size() : tracks.indexOf(targetTrack));
         if (index < 0) {
             return false;
@@ -376,10 +410,11 @@ public class TrackGroup {
         afterList.removeAll(selectedTracks);
 
         // 3. Now insert the selected tracks
-        tracks.clear();
-        tracks.addAll(beforeList);
-        tracks.addAll(selectedTracks);
-        tracks.addAll(afterList);
+        List<Track> newTracks = new ArrayList<Track>(tracks.size());
+        newTracks.addAll(beforeList);
+        newTracks.addAll(selectedTracks);
+        newTracks.addAll(afterList);
+        setTracks(newTracks);
 
         return true;
 
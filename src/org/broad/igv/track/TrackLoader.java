@@ -43,6 +43,7 @@ import org.broad.igv.feature.tribble.TribbleIndexNotFoundException;
 import org.broad.igv.ga4gh.Ga4ghAPIHelper;
 import org.broad.igv.goby.GobyAlignmentQueryReader;
 import org.broad.igv.goby.GobyCountArchiveDataSource;
+import org.broad.igv.gwas.GWASBinaryReader;
 import org.broad.igv.gwas.GWASData;
 import org.broad.igv.gwas.GWASParser;
 import org.broad.igv.gwas.GWASTrack;
@@ -403,8 +404,15 @@ public class TrackLoader {
 
     private void loadGWASFile(ResourceLocator locator, List<Track> newTracks, Genome genome) throws IOException {
 
-        GWASParser gwasParser = new GWASParser(locator, genome);
-        GWASData gwasData = gwasParser.parse();
+        GWASParser gwasParser = null;
+        GWASData gwasData;
+        if (GWASBinaryReader.isBinaryGWASFile(locator.getTypeString())) {
+            // Indexed binary file, see igvtools gwastobin
+            gwasData = new GWASData(new GWASBinaryReader(locator.getPath(), genome));
+        } else {
+            gwasParser = new GWASParser(locator, genome);
+            gwasData = gwasParser.parse();
+        }
 
         GWASTrack gwasTrack = new GWASTrack(locator, locator.getPath(), locator.getFileName(), gwasData, gwasParser);
         newTracks.add(gwasTrack);
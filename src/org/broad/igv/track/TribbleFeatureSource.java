@@ -13,8 +13,11 @@ package org.broad.igv.track;
 
 import org.broad.igv.Globals;
 import org.broad.igv.data.AbstractDataSource;
+import org.broad.igv.data.BasicScore;
 import org.broad.igv.data.DataSource;
 import org.broad.igv.data.DataTile;
+import org.broad.igv.data.WholeGenomeSummaryFile;
+import org.broad.igv.data.WholeGenomeSummaryService;
 import org.broad.igv.feature.BasicFeature;
 import org.broad.igv.feature.*;
 import org.broad.igv.feature.genome.Genome;
@@ -33,6 +36,8 @@ import org.broad.igv.variant.VariantTrack;
 import htsjdk.tribble.*;
 import htsjdk.tribble.index.Index;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
@@ -290,6 +295,15 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
 
         CoverageDataSource coverageData;
 
+        WholeGenomeSummaryService.Summary<List<Feature>> genomeFeatures;
+
+        volatile List<Feature> chrAllFeatures;
+
+        /**
+         * Path of the local file, whole genome summaries of which are persisted
+         */
+        String summaryPath;
+
         private NonIndexedFeatureSource(AbstractFeatureReader basicReader, FeatureCodec codec, ResourceLocator locator, Genome genome) throws IOException {
 
             super(locator, basicReader, codec, genome, false);
@@ -317,6 +331,7 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
             }
 
             if (genome != null) {
+                summaryPath = locator.isLocal() ? locator.getPath() : null;
                 coverageData = new CoverageDataSource(genome);
                 coverageData.computeGenomeCoverage();
                 sampleGenomeFeatures();
@@ -336,7 +351,7 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
 
         @Override
         public Iterator getFeatures(String chr, int start, int end) throws IOException {
-            List<Feature> features = featureMap.get(chr);
+            List<Feature> features = chr.equals(Globals.CHR_ALL) ? getGenomeFeatures() : featureMap.get(chr);
             if (features == null) {
                 return Collections.<Feature>emptyList().iterator();
             }
@@ -355,37 +370,91 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
             return 0;
         }
 
+        /**
+         * Start sampling features for the whole genome view, one chromosome per task
+         */
         protected void sampleGenomeFeatures() {
-            List<Feature> chrAllFeatures = new ArrayList(1000);
-            int sampleLength = (int) ((double) genome.getNominalLength() / (1000 * 700));
+            final int sampleLength = (int) ((double) genome.getNominalLength() / (1000 * 700));
+            genomeFeatures = WholeGenomeSummaryService.getInstance().getSummary(this, "features", genome,
+                    new WholeGenomeSummaryService.ChromosomeSummarizer<List<Feature>>() {
+                        public List<Feature> summarize(String chr) {
+                            return sampleGenomeFeatures(chr, sampleLength);
+                        }
+                    },
+                    WholeGenomeSummaryFile.forPath(summaryPath, "features", genome, SAMPLED_FEATURE_CODEC));
+        }
+
+        private static final WholeGenomeSummaryFile.Codec<List<Feature>> SAMPLED_FEATURE_CODEC =
+                new WholeGenomeSummaryFile.Codec<List<Feature>>() {
+                    public void write(List<Feature> features, DataOutputStream out) throws IOException {
+                        out.writeInt(features.size());
+                        for (Feature feature : features) {
+                            BasicFeature f = (BasicFeature) feature;
+                            out.writeInt(f.getStart());
+                            out.writeInt(f.getEnd());
+                            out.writeInt(f.getThickStart());
+                            out.writeInt(f.getThickEnd());
+                            String name = f.getName();
+                            out.writeBoolean(name != null);
+                            if (name != null) out.writeUTF(name);
+                        }
+                    }
+
+                    public List<Feature> read(DataInputStream in) throws IOException {
+                        int n = in.readInt();
+                        List<Feature> features = new ArrayList<Feature>(n);
+                        for (int i = 0; i < n; i++) {
+                            BasicFeature f = new BasicFeature(Globals.CHR_ALL, in.readInt(), in.readInt());
+                            f.setThickStart(in.readInt());
+                            f.setThickEnd(in.readInt());
+                            if (in.readBoolean()) f.setName(in.readUTF());
+                            features.add(f);
+                        }
+                        return features;
+                    }
+                };
+
+        private List<Feature> sampleGenomeFeatures(String chr, int sampleLength) {
+            List<Feature> features = featureMap.get(chr);
+            if (features == null) {
+                return Collections.emptyList();
+            }
+            List<Feature> chrAllFeatures = new ArrayList<Feature>();
             int lastFeaturePosition = -1;
-            for (String chr : genome.getLongChromosomeNames()) {
-                List<Feature> features = featureMap.get(chr);
-                if (features != null) {
-                    long offset = genome.getCumulativeOffset(chr);
-                    for (Feature feature : features) {
-                        if (feature instanceof IGVFeature) {
-                            IGVFeature f = (IGVFeature) feature;
-                            int genStart = (int) ((offset + f.getStart()) / 1000);
-                            int genEnd = (int) ((offset + f.getEnd()) / 1000);
-                            if (genEnd > lastFeaturePosition + sampleLength) {
-                                BasicFeature f2 = new BasicFeature(Globals.CHR_ALL, genStart, genEnd);
-                                if (f instanceof BasicFeature) {
-                                    BasicFeature bf = (BasicFeature) f;
-                                    f2.setThickEnd((int) ((offset + bf.getThickEnd()) / 1000));
-                                    f2.setThickStart((int) ((offset + bf.getThickStart()) / 1000));
-                                    f2.setName(f.getName());
-                                }
-                                chrAllFeatures.add(f2);
-
-                                lastFeaturePosition = genEnd;
-                            }
+            long offset = genome.getCumulativeOffset(chr);
+            for (Feature feature : features) {
+                if (feature instanceof IGVFeature) {
+                    IGVFeature f = (IGVFeature) feature;
+                    int genStart = (int) ((offset + f.getStart()) / 1000);
+                    int genEnd = (int) ((offset + f.getEnd()) / 1000);
+                    if (genEnd > lastFeaturePosition + sampleLength) {
+                        BasicFeature f2 = new BasicFeature(Globals.CHR_ALL, genStart, genEnd);
+                        if (f instanceof BasicFeature) {
+                            BasicFeature bf = (BasicFeature) f;
+                            f2.setThickEnd((int) ((offset + bf.getThickEnd()) / 1000));
+                            f2.setThickStart((int) ((offset + bf.getThickStart()) / 1000));
+                            f2.setName(f.getName());
                         }
+                        chrAllFeatures.add(f2);
+
+                        lastFeaturePosition = genEnd;
                     }
                 }
             }
+            return chrAllFeatures;
+        }
 
-            featureMap.put(Globals.CHR_ALL, chrAllFeatures);
+        /**
+         * Feature tracks cache the features they load, so wait for all chromosomes to be sampled
+         */
+        private List<Feature> getGenomeFeatures() {
+            if (genomeFeatures == null) {
+                return null;
+            }
+            if (chrAllFeatures == null) {
+                chrAllFeatures = WholeGenomeSummaryService.concatenate(genomeFeatures.waitForResults());
+            }
+            return chrAllFeatures;
         }
 
         class CoverageDataSource extends AbstractDataSource {
@@ -394,7 +463,11 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
             double dataMin = 0;
             double dataMax = 0;
 
-            Map<String, DataTile> dataCache = new HashMap();
+            Map<String, DataTile> dataCache = Collections.synchronizedMap(new HashMap<String, DataTile>());
+
+            static final int GENOME_BINS = 1000;
+
+            WholeGenomeSummaryService.Summary<float[]> genomeCoverage;
 
             CoverageDataSource(Genome genome) {
                 super(genome);
@@ -402,6 +475,9 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
 
             protected DataTile getRawData(String chr, int startLocation, int endLocation) {
 
+                if (chr.equals(Globals.CHR_ALL) && genomeCoverage != null && !dataCache.containsKey(chr)) {
+                    return getGenomeCoverage();
+                }
 
                 DataTile coverageData = dataCache.get(chr);
                 if (coverageData == null) {
@@ -414,7 +490,21 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
 
             @Override
             protected List<LocusScore> getPrecomputedSummaryScores(String chr, int startLocation, int endLocation, int zoom) {
-                return null;  //To change body of implemented methods use File | Settings | File Templates.
+                // Summary tiles are cached, bypass them until the genome coverage is complete
+                if (chr.equals(Globals.CHR_ALL) && genomeCoverage != null && !genomeCoverage.isComplete()) {
+                    DataTile tile = getGenomeCoverage();
+                    int[] starts = tile.getStartLocations();
+                    int[] ends = tile.getEndLocations();
+                    float[] values = tile.getValues();
+                    List<LocusScore> scores = new ArrayList<LocusScore>(values.length);
+                    for (int i = 0; i < values.length; i++) {
+                        if (values[i] > 0) {
+                            scores.add(new BasicScore(starts[i], ends[i], values[i]));
+                        }
+                    }
+                    return scores;
+                }
+                return null;
             }
 
             @Override
@@ -461,40 +551,73 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
 
             }
 
+            /**
+             * Start computing coverage for the whole genome view, one chromosome per task
+             */
             protected void computeGenomeCoverage() {
-                int nBins = 1000;
-                int[] starts = new int[nBins];
-                int[] ends = new int[nBins];
-                float[] values = new float[nBins];
-                Arrays.fill(values, 0);
+                genomeCoverage = WholeGenomeSummaryService.getInstance().getSummary(this, "coverage", genome,
+                        new WholeGenomeSummaryService.ChromosomeSummarizer<float[]>() {
+                            public float[] summarize(String chr) {
+                                return computeGenomeCoverage(chr);
+                            }
+                        },
+                        WholeGenomeSummaryFile.forPath(summaryPath, "coverage", genome,
+                                WholeGenomeSummaryFile.FLOAT_ARRAY_CODEC));
+            }
 
+            private double getGenomeBinSize() {
+                return ((double) genome.getNominalLength() / 1000) / GENOME_BINS;
+            }
 
-                double step = ((double) genome.getNominalLength() / 1000) / nBins;
-                for (int i = 0; i < nBins; i++) {
+            private float[] computeGenomeCoverage(String chr) {
+                List<Feature> features = featureMap.get(chr);
+                if (features == null) {
+                    return null;
+                }
+                float[] values = new float[GENOME_BINS];
+                double step = getGenomeBinSize();
+                long offset = genome.getCumulativeOffset(chr);
+                for (Feature f : features) {
+                    int genStart = (int) ((offset + f.getStart()) / 1000);
+                    int genEnd = (int) ((offset + f.getEnd()) / 1000);
+                    int binStart = Math.min(values.length - 1, (int) (genStart / step));
+                    int binEnd = Math.min(values.length - 1, (int) (genEnd / step));
+                    for (int i = binStart; i <= binEnd; i++) {
+                        values[i] = values[i] + 1;
+                    }
+                }
+                return values;
+            }
+
+            /**
+             * Sum the coverage of the chromosomes completed so far.  Cached once all are complete.
+             */
+            private DataTile getGenomeCoverage() {
+                boolean complete = genomeCoverage.isComplete();
+                int[] starts = new int[GENOME_BINS];
+                int[] ends = new int[GENOME_BINS];
+                float[] values = new float[GENOME_BINS];
+
+                double step = getGenomeBinSize();
+                for (int i = 0; i < GENOME_BINS; i++) {
                     starts[i] = (int) (i * step);
                     ends[i] = (int) ((i + 1) * step);
                 }
 
-
-                for (String chr : genome.getLongChromosomeNames()) {
-                    List<Feature> features = featureMap.get(chr);
-                    if (features != null) {
-                        long offset = genome.getCumulativeOffset(chr);
-                        for (Feature f : features) {
-                            int genStart = (int) ((offset + f.getStart()) / 1000);
-                            int genEnd = (int) ((offset + f.getEnd()) / 1000);
-                            int binStart = Math.min(values.length - 1, (int) (genStart / step));
-                            int binEnd = Math.min(values.length - 1, (int) (genEnd / step));
-                            for (int i = binStart; i <= binEnd; i++) {
-                                values[i] = values[i] + 1;
-                                dataMax = Math.max(dataMax, values[i]);
-                            }
-
-                        }
+                for (float[] chrValues : genomeCoverage.getResults()) {
+                    for (int i = 0; i < GENOME_BINS; i++) {
+                        values[i] += chrValues[i];
                     }
                 }
+                for (float v : values) {
+                    dataMax = Math.max(dataMax, v);
+                }
 
-                dataCache.put(Globals.CHR_ALL, new DataTile(starts, ends, values, null));
+                DataTile tile = new DataTile(starts, ends, values, null);
+                if (complete) {
+                    dataCache.put(Globals.CHR_ALL, tile);
+                }
+                return tile;
             }
 
 
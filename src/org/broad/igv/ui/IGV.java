@@ -1640,8 +1640,11 @@ public class IGV {
         final MessageCollection messages = new MessageCollection();
 
 
-        // Load files concurrently -- TODO, put a limit on # of threads?
-        List<Thread> threads = new ArrayList<Thread>(locators.size());
+        // Load files concurrently, limited per storage backend.  Tracks are added in the order of the locators.
+        ResourceLoadScheduler.Batch batch = ResourceLoadScheduler.getInstance().newBatch(null);
+        final Map<ResourceLocator, List<Track>> loadedTracks =
+                Collections.synchronizedMap(new HashMap<ResourceLocator, List<Track>>());
+        List<ResourceLocator> loadOrder = new ArrayList<ResourceLocator>(locators.size());
 
         for (final ResourceLocator locator : locators) {
 
@@ -1659,7 +1662,7 @@ public class IGV {
                     try {
                         List<Track> tracks = load(locator);
                         log.debug(tracks.size() + " new tracks loaded");
-                        addTracks(tracks, locator);
+                        loadedTracks.put(locator, tracks);
                     } catch (Exception e) {
                         log.error("Error loading track", e);
                         messages.append("Error loading " + locator + ": " + e.getMessage());
@@ -1667,19 +1670,23 @@ public class IGV {
                 }
             };
 
-            //Thread thread = new Thread(runnable);
-            //thread.start();
-            //threads.add(thread);
-            runnable.run();
+            // Remote resources and alignments run on this thread, to prevent multiple authentication dialogs.
+            // Batch loads also run on this thread.
+            if (Globals.isBatch() || !ResourceLoadScheduler.isConcurrentLoad(locator)) {
+                runnable.run();
+            } else {
+                batch.submit(locator, loadOrder.size(), runnable);
+            }
+            loadOrder.add(locator);
         }
 
-        // Wait for all threads to complete
-        for (Thread t : threads) {
-            try {
-                t.join();
-            } catch (InterruptedException ignore) {
-                log.error(ignore.getMessage(), ignore);
-                messages.append("Thread interrupted: " + ignore.getMessage());
+        if (!batch.await()) {
+            messages.append("Loading cancelled");
+        }
+        for (ResourceLocator locator : loadOrder) {
+            List<Track> tracks = loadedTracks.get(locator);
+            if (tracks != null) {
+                addTracks(tracks, locator);
             }
         }
 
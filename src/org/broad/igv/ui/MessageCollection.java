@@ -41,11 +41,11 @@ public class MessageCollection {
         return header;
     }
 
-    public void append(String message) {
+    public synchronized void append(String message) {
         messages.add(message);
     }
 
-    public void prepend(String message) {
+    public synchronized void prepend(String message) {
         messages.add(0, message);
     }
 
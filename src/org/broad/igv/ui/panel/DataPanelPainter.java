@@ -22,6 +22,8 @@ import org.apache.log4j.Logger;
 import org.broad.igv.feature.FeatureUtils;
 import org.broad.igv.feature.exome.ExomeBlock;
 import org.broad.igv.feature.exome.ExomeReferenceFrame;
+import org.broad.igv.renderer.HeatmapRaster;
+import org.broad.igv.renderer.HeatmapRenderer;
 import org.broad.igv.track.RenderContext;
 import org.broad.igv.track.RenderContextImpl;
 import org.broad.igv.track.Track;
@@ -42,6 +44,11 @@ public class DataPanelPainter {
 
     private static Color exomeBorderColor = new Color(190, 190, 255);
 
+    /**
+     * Raster for heatmap tracks, kept between paints of the same area
+     */
+    private HeatmapRaster heatmapRaster;
+
     public synchronized void paint(Collection<TrackGroup> groups,
                                    RenderContext context,
                                    int width,
@@ -157,6 +164,20 @@ public class DataPanelPainter {
                 while ((pStart < visibleRect.x + visibleRect.width) && idx < genes.size());
 
 
+            } else if (HeatmapRaster.isSupported(context.getGraphics()) && !visibleRect.isEmpty()) {
+
+                if (heatmapRaster == null || !heatmapRaster.getBounds().equals(visibleRect)) {
+                    heatmapRaster = new HeatmapRaster(visibleRect);
+                }
+                RenderContextImpl rasterContext = new RenderContextImpl(context.getPanel(), context.getGraphics(),
+                        frame, visibleRect);
+                rasterContext.setHeatmapRaster(heatmapRaster);
+                try {
+                    paintFrame(groups, rasterContext, width, visibleRect);
+                } finally {
+                    rasterContext.dispose();
+                }
+
             } else {
                 paintFrame(groups, context, width, visibleRect);
             }
@@ -175,6 +196,7 @@ public class DataPanelPainter {
 
         int trackX = 0;
         int trackY = 0;
+        HeatmapRaster raster = context.getHeatmapRaster();
 
         for (Iterator<TrackGroup> groupIter = groups.iterator(); groupIter.hasNext(); ) {
             TrackGroup group = groupIter.next();
@@ -196,31 +218,37 @@ public class DataPanelPainter {
                     graphics2D.drawLine(0, trackY - 1, width, trackY - 1);
                 }
 
-                List<Track> trackList = group.getTracks();
-                synchronized (trackList) {
-                    for (Track track : trackList) {
-                        if (track == null) continue;
-                        int trackHeight = track.getHeight();
-                        if (visibleRect != null) {
-                            if (trackY > visibleRect.y + visibleRect.height) {
-                                break;
-                            } else if (trackY + trackHeight < visibleRect.y) {
-                                if (track.isVisible()) {
-                                    trackY += trackHeight;
-                                }
-                                continue;
+                // An immutable snapshot, tracks added or removed while painting appear on the next paint
+                for (Track track : group.getTracks()) {
+                    if (track == null) continue;
+                    int trackHeight = track.getHeight();
+                    if (visibleRect != null) {
+                        if (trackY > visibleRect.y + visibleRect.height) {
+                            break;
+                        } else if (trackY + trackHeight < visibleRect.y) {
+                            if (track.isVisible()) {
+                                trackY += trackHeight;
                             }
+                            continue;
                         }
+                    }
 
 
-                        if (track.isVisible()) {
-                            Rectangle rect = new Rectangle(trackX, trackY, width, trackHeight);
-                            draw(track, rect, context);
-                            trackY += trackHeight;
+                    if (track.isVisible()) {
+                        // Other tracks are drawn with the graphics, and may draw over their neighbors
+                        if (raster != null && !(track.getRenderer() instanceof HeatmapRenderer)) {
+                            raster.flush(context.getGraphics());
                         }
+                        Rectangle rect = new Rectangle(trackX, trackY, width, trackHeight);
+                        draw(track, rect, context);
+                        trackY += trackHeight;
                     }
                 }
 
+                if (raster != null) {
+                    raster.flush(context.getGraphics());
+                }
+
                 // Draw a line just below group.
                 if (group.isDrawBorder()) {
                     Graphics2D graphics2D = context.getGraphic2DForColor(Color.black);
@@ -246,6 +274,9 @@ public class DataPanelPainter {
 
         List<Track> overlayTracks = IGV.getInstance().getOverlayTracks(track);
         if (overlayTracks != null) {
+            if (context.getHeatmapRaster() != null) {
+                context.getHeatmapRaster().flush(context.getGraphics());
+            }
             for (Track overlayTrack : overlayTracks) {
 
                 // Don't overlay on self
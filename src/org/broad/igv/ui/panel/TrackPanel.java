@@ -38,7 +38,11 @@ public class TrackPanel extends IGVPanel {
     private String groupAttribute;
     int trackCountEstimate = 0;  // <= used to size array list, not neccesarily precise
 
-    List<TrackGroup> trackGroups;
+    /**
+     * Immutable list of groups, replaced on every change so that painting can iterate it without locking.  See
+     * {@link TrackGroup#getTracks()}.
+     */
+    private volatile List<TrackGroup> trackGroups;
 
     /**
      * Constructs ...
@@ -50,8 +54,7 @@ public class TrackPanel extends IGVPanel {
         this.name = name;
         TrackGroup nullGroup = new TrackGroup();
         nullGroup.setDrawBorder(false);
-        trackGroups = Collections.synchronizedList(new LinkedList<TrackGroup>());
-        trackGroups.add(nullGroup);
+        trackGroups = Collections.singletonList(nullGroup);
         init();
     }
 
@@ -113,6 +116,10 @@ public class TrackPanel extends IGVPanel {
         return trackGroups;
     }
 
+    private void setGroups(List<TrackGroup> groups) {
+        trackGroups = Collections.unmodifiableList(groups);
+    }
+
     /**
      * Method description
      *
@@ -148,8 +155,8 @@ public class TrackPanel extends IGVPanel {
         return tracks;
     }
 
-    public void clearTracks() {
-        trackGroups.clear();
+    public synchronized void clearTracks() {
+        setGroups(new ArrayList<TrackGroup>());
         trackCountEstimate = 0;
     }
 
@@ -158,7 +165,7 @@ public class TrackPanel extends IGVPanel {
      *
      * @param track
      */
-    public void addTrack(Track track) {
+    public synchronized void addTrack(Track track) {
         log.debug("Adding track " + track.getName() + " to panel " + getName());
         String groupName = (groupAttribute == null ? null : track.getAttributeValue(groupAttribute));
         boolean foundGroup = false;
@@ -175,7 +182,9 @@ public class TrackPanel extends IGVPanel {
             if (groupAttribute == null) {
                 newGroup.setDrawBorder(false);
             }
-            trackGroups.add(newGroup);
+            List<TrackGroup> groups = new ArrayList<TrackGroup>(trackGroups);
+            groups.add(newGroup);
+            setGroups(groups);
         }
         log.debug("Done adding track to TrackPanel");
         trackCountEstimate++;
@@ -187,23 +196,25 @@ public class TrackPanel extends IGVPanel {
         }
     }
 
-    public void moveGroup(TrackGroup group, int index) {
+    public synchronized void moveGroup(TrackGroup group, int index) {
 
-        if (index > trackGroups.indexOf(group)) {
+        List<TrackGroup> groups = new ArrayList<TrackGroup>(trackGroups);
+        if (index > groups.indexOf(group)) {
             index--;
         }
-        trackGroups.remove(group);
-        if (index >= trackGroups.size()) {
-            trackGroups.add(group);
+        groups.remove(group);
+        if (index >= groups.size()) {
+            groups.add(group);
         } else {
-            trackGroups.add(index, group);
+            groups.add(index, group);
         }
+        setGroups(groups);
     }
 
 
-    public void reset() {
+    public synchronized void reset() {
         this.groupAttribute = null;
-        trackGroups.clear();
+        setGroups(new ArrayList<TrackGroup>());
     }
 
     /**
@@ -211,11 +222,11 @@ public class TrackPanel extends IGVPanel {
      *
      * @param attribute
      */
-    public void groupTracksByAttribute(String attribute) {
+    public synchronized void groupTracksByAttribute(String attribute) {
 
         this.groupAttribute = attribute;
         List<Track> tracks = getTracks();
-        trackGroups.clear();
+        List<TrackGroup> trackGroups = new ArrayList<TrackGroup>();
 
         if (attribute == null || attribute.length() == 0) {
             TrackGroup nullGroup = new TrackGroup();
@@ -241,6 +252,7 @@ public class TrackPanel extends IGVPanel {
                 group.add(track);
             }
         }
+        setGroups(trackGroups);
     }
 
     public void sortTracksByAttributes(final String attributeNames[], final boolean[] ascending) {
@@ -272,7 +284,11 @@ public class TrackPanel extends IGVPanel {
     public void sortByRegionsScore(final RegionOfInterest region, final RegionScoreType type,
                                    final ReferenceFrame frame, List<String> sortedSamples) {
 
-        sortGroupsByRegionScore(trackGroups, region, type, frame.getZoom(), frame.getName());
+        synchronized (this) {
+            List<TrackGroup> groups = new ArrayList<TrackGroup>(trackGroups);
+            sortGroupsByRegionScore(groups, region, type, frame.getZoom(), frame.getName());
+            setGroups(groups);
+        }
 
         for (TrackGroup group : trackGroups) {
             // If there is a non-null linking attribute
@@ -383,16 +399,12 @@ public class TrackPanel extends IGVPanel {
             height += UIConstants.groupGap;
         }
 
-        synchronized (groups) {
-
-            for (Iterator<TrackGroup> groupIter = groups.iterator(); groupIter.hasNext(); ) {
-                TrackGroup group = groupIter.next();
-                if (group != null && group.isVisible()) {
-                    if (groups.size() > 1) {
-                        height += UIConstants.groupGap;
-                    }
-                    height += group.getHeight();
+        for (TrackGroup group : groups) {
+            if (group != null && group.isVisible()) {
+                if (groups.size() > 1) {
+                    height += UIConstants.groupGap;
                 }
+                height += group.getHeight();
             }
         }
 
@@ -442,8 +454,10 @@ public class TrackPanel extends IGVPanel {
 
     }
 
-    public void addTrackGroup(TrackGroup trackGroup) {
-        trackGroups.add(trackGroup);
+    public synchronized void addTrackGroup(TrackGroup trackGroup) {
+        List<TrackGroup> groups = new ArrayList<TrackGroup>(trackGroups);
+        groups.add(trackGroup);
+        setGroups(groups);
     }
 
     public static TrackPanel getParentPanel(Track track) {
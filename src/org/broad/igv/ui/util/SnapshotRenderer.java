@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.ui.util;
+
+import org.apache.batik.dom.GenericDOMImplementation;
+import org.apache.batik.svggen.SVGGraphics2D;
+import org.apache.log4j.Logger;
+import org.broad.igv.feature.Locus;
+import org.broad.igv.feature.NamedFeature;
+import org.broad.igv.feature.FeatureDB;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.feature.genome.GenomeManager;
+import org.broad.igv.renderer.HeatmapRaster;
+import org.broad.igv.track.RenderContext;
+import org.broad.igv.track.RenderContextImpl;
+import org.broad.igv.track.Track;
+import org.broad.igv.track.TrackGroup;
+import org.broad.igv.ui.IGV;
+import org.broad.igv.ui.UIConstants;
+import org.broad.igv.ui.panel.DataPanelPainter;
+import org.broad.igv.ui.panel.ReferenceFrame;
+import org.broad.igv.ui.panel.TrackPanel;
+import org.broad.igv.util.NamedThreadFactory;
+import org.w3c.dom.Document;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Renders snapshots of many loci without going through the Swing component tree.  Each worker thread owns a private
+ * {@link ReferenceFrame}, so data for different loci is loaded concurrently into the tracks' per-frame caches.
+ * Tracks are painted with the same {@link DataPanelPainter} used by the data panels' paintOffscreen.
+ * <p/>
+ * Tracks keep mutable render state (autoscaled data ranges, packed rows, last y positions), so the paint step
+ * itself is serialized.  Loading, which dominates for indexed files, and image encoding run in parallel.
+ */
+public class SnapshotRenderer {
+
+    private static Logger log = Logger.getLogger(SnapshotRenderer.class);
+
+    private static final Object paintLock = new Object();
+
+    private final List<List<TrackGroup>> panels;
+    private final int namePanelWidth;
+    private final int dataPanelWidth;
+    private final int nThreads;
+    private final int maxPanelHeight;
+
+    private final ThreadLocal<ReferenceFrame> frames = new ThreadLocal<ReferenceFrame>() {
+        @Override
+        protected ReferenceFrame initialValue() {
+            // Name the frame after the worker so track caches hold at most one entry per worker
+            ReferenceFrame frame = new ReferenceFrame(Thread.currentThread().getName());
+            if (IGV.hasInstance()) {
+                frame.getEventBus().unregister(IGV.getInstance());
+            }
+            frame.setBounds(0, dataPanelWidth);
+            return frame;
+        }
+    };
+
+    /**
+     * @param panels         track groups of each track panel, in display order
+     * @param namePanelWidth width of the track name column, 0 for none
+     * @param dataPanelWidth width of the data panel in pixels
+     * @param nThreads       number of loci loaded and rendered concurrently
+     */
+    public SnapshotRenderer(List<List<TrackGroup>> panels, int namePanelWidth, int dataPanelWidth, int nThreads) {
+        this.panels = panels;
+        this.namePanelWidth = namePanelWidth;
+        this.dataPanelWidth = dataPanelWidth;
+        this.nThreads = Math.max(1, nThreads);
+        // Max panel height is thread local, capture the caller's setting for the workers
+        this.maxPanelHeight = SnapshotUtilities.getMaxPanelHeight();
+    }
+
+    /**
+     * Create a renderer for the tracks of the current session, using the current panel dimensions.
+     */
+    public static SnapshotRenderer forCurrentSession(int nThreads) {
+        IGV igv = IGV.getInstance();
+        List<List<TrackGroup>> panels = new ArrayList<List<TrackGroup>>();
+        for (TrackPanel tp : igv.getTrackPanels()) {
+            panels.add(new ArrayList<TrackGroup>(tp.getGroups()));
+        }
+        int namePanelWidth = igv.getMainPanel().getNamePanelWidth();
+        int dataPanelWidth = igv.getMainPanel().getDataPanelWidth();
+        return new SnapshotRenderer(panels, namePanelWidth, dataPanelWidth, nThreads);
+    }
+
+    /**
+     * Snapshot each locus to the corresponding file.  The format is chosen from the file extension, PNG unless
+     * the file ends with .svg
+     *
+     * @return a message for each locus, "OK" on success, in the order of {@code loci}
+     */
+    public List<String> render(List<String> loci, List<File> files) {
+
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads, new NamedThreadFactory("IGV snapshot"));
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>(loci.size());
+            for (int i = 0; i < loci.size(); i++) {
+                final String locus = loci.get(i);
+                final File file = files.get(i);
+                futures.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return renderLocus(locus, file);
+                    }
+                }));
+            }
+
+            List<String> results = new ArrayList<String>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    log.error("Error creating snapshot of " + loci.get(i), e.getCause());
+                    results.add("Error: " + e.getCause().getMessage());
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted while creating snapshots", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    String renderLocus(String locusString, File file) throws IOException {
+
+        Locus locus = parseLocus(locusString);
+        if (locus == null) {
+            return "Error: cannot find locus " + locusString;
+        }
+        // ReferenceFrame.jumpTo ignores unknown chromosomes, which would snapshot the previous locus
+        Genome genome = GenomeManager.getInstance().getCurrentGenome();
+        if (genome == null || genome.getChromosome(locus.getChr()) == null) {
+            return "Error: unknown chromosome " + locus.getChr() + " in locus " + locusString;
+        }
+
+        ReferenceFrame frame = frames.get();
+        frame.jumpTo(locus);
+
+        List<Track> tracks = getVisibleTracks();
+        Rectangle loadRect = new Rectangle(0, 0, dataPanelWidth, 1);
+        RenderContext loadContext = new RenderContextImpl(null, null, frame, loadRect);
+        for (Track track : tracks) {
+            track.load(loadContext);
+        }
+
+        boolean svg = file.getName().toLowerCase().endsWith(SnapshotFileChooser.SnapshotFileType.SVG.getExtension());
+        if (svg) {
+            Document document = GenericDOMImplementation.getDOMImplementation().
+                    createDocument("http://www.w3.org/2000/svg", "svg", null);
+            SVGGraphics2D svgGenerator = new SVGGraphics2D(document);
+            synchronized (paintLock) {
+                HeatmapRaster.setVectorOutput(true);
+                try {
+                    paint(svgGenerator, frame, getImageHeight());
+                } finally {
+                    HeatmapRaster.setVectorOutput(false);
+                }
+            }
+            Writer out = null;
+            try {
+                out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+                svgGenerator.stream(out, true);
+            } finally {
+                if (out != null) out.close();
+            }
+        } else {
+            BufferedImage image;
+            synchronized (paintLock) {
+                int height = getImageHeight();
+                image = new BufferedImage(namePanelWidth + dataPanelWidth, height, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = image.createGraphics();
+                paint(g, frame, height);
+                g.dispose();
+            }
+            ImageIO.write(image, "png", file);
+        }
+        return "OK";
+    }
+
+    private void paint(Graphics2D g, ReferenceFrame frame, int height) {
+
+        g.setColor(Color.white);
+        g.fillRect(0, 0, namePanelWidth + dataPanelWidth, height);
+
+        DataPanelPainter painter = new DataPanelPainter();
+        int y = 0;
+        for (List<TrackGroup> groups : panels) {
+            int panelHeight = getPanelHeight(groups);
+            if (panelHeight == 0) continue;
+
+            if (namePanelWidth > 0) {
+                Graphics2D nameGraphics = (Graphics2D) g.create();
+                nameGraphics.translate(0, y);
+                paintNames(nameGraphics, groups, panelHeight);
+                nameGraphics.dispose();
+            }
+
+            Graphics2D dataGraphics = (Graphics2D) g.create();
+            dataGraphics.translate(namePanelWidth, y);
+            Rectangle rect = new Rectangle(0, 0, dataPanelWidth, panelHeight);
+            dataGraphics.setClip(rect);
+            RenderContext context = new RenderContextImpl(null, dataGraphics, frame, rect);
+            try {
+                painter.paint(groups, context, dataPanelWidth, Color.white, rect);
+            } finally {
+                context.dispose();
+                dataGraphics.dispose();
+            }
+
+            y += panelHeight;
+        }
+    }
+
+    private void paintNames(Graphics2D g, List<TrackGroup> groups, int panelHeight) {
+        Rectangle visibleRect = new Rectangle(0, 0, namePanelWidth, panelHeight);
+        g.setColor(Color.black);
+        int y = 0;
+        for (TrackGroup group : groups) {
+            if (!group.isVisible()) continue;
+            if (groups.size() > 1) y += UIConstants.groupGap;
+            for (Track track : group.getTracks()) {
+                if (track == null || !track.isVisible()) continue;
+                Rectangle rect = new Rectangle(0, y, namePanelWidth, track.getHeight());
+                track.renderName(g, rect, visibleRect);
+                y += track.getHeight();
+            }
+        }
+    }
+
+    private int getImageHeight() {
+        int height = 0;
+        for (List<TrackGroup> groups : panels) {
+            height += getPanelHeight(groups);
+        }
+        return Math.max(1, height);
+    }
+
+    private int getPanelHeight(List<TrackGroup> groups) {
+        int height = 0;
+        for (TrackGroup group : groups) {
+            if (!group.isVisible()) continue;
+            if (groups.size() > 1) height += UIConstants.groupGap;
+            height += group.getHeight();
+        }
+        return Math.min(height, maxPanelHeight);
+    }
+
+    private List<Track> getVisibleTracks() {
+        List<Track> tracks = new ArrayList<Track>();
+        for (List<TrackGroup> groups : panels) {
+            for (TrackGroup group : groups) {
+                for (Track track : new ArrayList<Track>(group.getTracks())) {
+                    if (track != null && track.isVisible()) {
+                        tracks.add(track);
+                    }
+                }
+            }
+        }
+        return tracks;
+    }
+
+    private static Locus parseLocus(String locusString) {
+        Locus locus = Locus.fromString(locusString);
+        if (locus != null) {
+            // Locus strings are 1-based
+            locus = new Locus(locus.getChr(), Math.max(0, locus.getStart() - 1), locus.getEnd());
+        } else {
+            NamedFeature feature = FeatureDB.getFeature(locusString.trim());
+            if (feature == null) return null;
+            locus = new Locus(feature.getChr(), feature.getStart(), feature.getEnd());
+        }
+        return locus;
+    }
+}
@@ -21,6 +21,7 @@ package org.broad.igv.ui.util;
 import org.apache.batik.dom.GenericDOMImplementation;
 import org.apache.batik.svggen.SVGGraphics2D;
 import org.apache.log4j.Logger;
+import org.broad.igv.renderer.HeatmapRaster;
 import org.broad.igv.ui.panel.MainPanel;
 import org.broad.igv.ui.panel.Paintable;
 import org.broad.igv.util.RuntimeUtils;
@@ -183,7 +184,7 @@ public class SnapshotUtilities {
             fos = new FileOutputStream(selectedFile);
             g = (Graphics2D) constructor.newInstance("eps", fos, 0, 0, target.getWidth(), target.getHeight(), colorModeValue);
 
-            choosePaint(target, g, paintOffscreen);
+            chooseVectorPaint(target, g, paintOffscreen);
 
             graphicsClass.getMethod("close").invoke(g);
 
@@ -242,7 +243,7 @@ public class SnapshotUtilities {
         // Write image data into document
         SVGGraphics2D svgGenerator = new SVGGraphics2D(document);
 
-        choosePaint(target, svgGenerator, paintOffscreen);
+        chooseVectorPaint(target, svgGenerator, paintOffscreen);
 
         Writer out = null;
         try {
@@ -261,6 +262,18 @@ public class SnapshotUtilities {
 
     }
 
+    /**
+     * Paint to vector output, heatmaps are painted as rectangles rather than an image
+     */
+    private static void chooseVectorPaint(Component target, Graphics2D g, boolean paintOffscreen){
+        HeatmapRaster.setVectorOutput(true);
+        try {
+            choosePaint(target, g, paintOffscreen);
+        } finally {
+            HeatmapRaster.setVectorOutput(false);
+        }
+    }
+
     private static void choosePaint(Component target, Graphics2D g, boolean paintOffscreen){
         log.debug("Painting to target " + target + " , offscreen " + paintOffscreen);
         if(paintOffscreen){
@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util;
+
+import htsjdk.tribble.readers.LineReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Reads delimited text a line at a time from a byte buffer, locating token boundaries without creating a String
+ * per token.  Numeric tokens are parsed directly from the buffered bytes; strings are only created on request.
+ * Intended for the large numeric matrices (.igv, .cn, .gct, wig) where splitting every line into a String[]
+ * dominates load time.
+ * <p/>
+ * Lines are terminated by "\n", "\r\n" or a bare "\r", as with {@code BufferedReader.readLine()}.
+ * <p/>
+ * Tokens are separated by tabs, as with {@code Globals.tabPattern.split(line, -1)}, or for whitespace delimited
+ * files by a tab or a run of spaces, as with {@code Globals.singleTabMultiSpacePattern.split(line)}.
+ * <p/>
+ * Integers and simple decimals are parsed from the bytes.  Anything else (large exponents, mantissas above 2^24,
+ * "NaN", "Infinity", surrounding whitespace) falls back to the JDK parsers, so results are identical to
+ * {@code Float.parseFloat} and {@code ParsingUtils.parseInt}.
+ */
+public class LineTokenizer implements LineReader {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int MAX_FAST_MANTISSA = 1 << 24;
+
+    // Powers of ten exactly representable as floats
+    private static final float[] POW10 = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    private final InputStream is;
+    private final boolean spaceDelimited;
+
+    private byte[] buffer;
+    private int bufferEnd;             // Number of valid bytes in the buffer
+    private int pos;                   // Next unread byte
+    private long bufferPosition;       // Stream position of buffer[0]
+    private boolean eof;
+
+    private int lineStart;
+    private int lineEnd;
+
+    private int[] tokenStarts = new int[64];
+    private int[] tokenEnds = new int[64];
+    private int nTokens = -1;          // -1 => current line not yet tokenized
+
+    public LineTokenizer(InputStream is) {
+        this(is, false);
+    }
+
+    /**
+     * @param is             the stream, positioned at the start of a line
+     * @param spaceDelimited true to treat runs of spaces, as well as tabs, as delimiters
+     */
+    public LineTokenizer(InputStream is, boolean spaceDelimited) {
+        this(is, spaceDelimited, 64 * 1024);
+    }
+
+    LineTokenizer(InputStream is, boolean spaceDelimited, int bufferSize) {
+        this.is = is;
+        this.spaceDelimited = spaceDelimited;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Advance to the next line.
+     *
+     * @return false at the end of the stream
+     */
+    public boolean nextLine() throws IOException {
+
+        nTokens = -1;
+        int scan = pos;
+        while (true) {
+            while (scan < bufferEnd && buffer[scan] != '\n' && buffer[scan] != '\r') scan++;
+            // A CR at the end of the buffered bytes may be followed by a LF, read on to find out
+            if (eof || (scan < bufferEnd && (buffer[scan] == '\n' || scan + 1 < bufferEnd))) break;
+
+            // Line continues past the buffered bytes.  Move it to the front, growing the buffer if it is full.
+            int offset = scan - pos;
+            if (pos > 0) {
+                System.arraycopy(buffer, pos, buffer, 0, bufferEnd - pos);
+                bufferPosition += pos;
+                bufferEnd -= pos;
+                pos = 0;
+            } else if (bufferEnd == buffer.length) {
+                byte[] tmp = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, tmp, 0, bufferEnd);
+                buffer = tmp;
+            }
+            scan = offset;
+            int n = is.read(buffer, bufferEnd, buffer.length - bufferEnd);
+            if (n < 0) {
+                eof = true;
+            } else {
+                bufferEnd += n;
+            }
+        }
+
+        if (pos == bufferEnd) {
+            return false;
+        }
+
+        lineStart = pos;
+        lineEnd = scan;
+        if (scan < bufferEnd) {
+            pos = scan + 1;
+            if (buffer[scan] == '\r' && pos < bufferEnd && buffer[pos] == '\n') pos++;
+        } else {
+            pos = scan;
+        }
+        return true;
+    }
+
+    /**
+     * Advance to, and return, the next line.  Provided for header parsing, data rows should use
+     * {@link #nextLine()} and the token accessors.
+     *
+     * @return the line, or null at the end of the stream
+     */
+    public String readLine() throws IOException {
+        return nextLine() ? getLine() : null;
+    }
+
+    /**
+     * @return the current line, without the line terminator
+     */
+    public String getLine() {
+        return new String(buffer, lineStart, lineEnd - lineStart, UTF8);
+    }
+
+    /**
+     * @return the stream position of the start of the current line
+     */
+    public long getLineStartPosition() {
+        return bufferPosition + lineStart;
+    }
+
+    /**
+     * @return the stream position following the current line, equivalent to AsciiLineReader.getPosition()
+     */
+    public long getPosition() {
+        return bufferPosition + pos;
+    }
+
+    public boolean startsWith(String prefix) {
+        int len = prefix.length();
+        if (lineEnd - lineStart < len) return false;
+        for (int i = 0; i < len; i++) {
+            if (buffer[lineStart + i] != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the current line is empty or contains only whitespace
+     */
+    public boolean isBlank() {
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (buffer[i] > ' ') return false;
+        }
+        return true;
+    }
+
+    public int getTokenCount() {
+        if (nTokens < 0) tokenize();
+        return nTokens;
+    }
+
+    private void tokenize() {
+        nTokens = 0;
+        int start = lineStart;
+        int i = lineStart;
+        while (i < lineEnd) {
+            byte b = buffer[i];
+            if (b == '\t') {
+                addToken(start, i);
+                start = ++i;
+            } else if (b == ' ' && spaceDelimited) {
+                addToken(start, i);
+                while (i < lineEnd && buffer[i] == ' ') i++;
+                start = i;
+            } else {
+                i++;
+            }
+        }
+        addToken(start, lineEnd);
+
+        if (spaceDelimited) {
+            // Trailing empty tokens are dropped, as by String.split
+            while (nTokens > 1 && tokenStarts[nTokens - 1] == tokenEnds[nTokens - 1]) nTokens--;
+        }
+    }
+
+    private void addToken(int start, int end) {
+        if (nTokens == tokenStarts.length) {
+            int[] tmp = new int[nTokens * 2];
+            System.arraycopy(tokenStarts, 0, tmp, 0, nTokens);
+            tokenStarts = tmp;
+            tmp = new int[nTokens * 2];
+            System.arraycopy(tokenEnds, 0, tmp, 0, nTokens);
+            tokenEnds = tmp;
+        }
+        tokenStarts[nTokens] = start;
+        tokenEnds[nTokens] = end;
+        nTokens++;
+    }
+
+    private void checkToken(int i) {
+        if (i < 0 || i >= getTokenCount()) {
+            throw new ArrayIndexOutOfBoundsException(i);
+        }
+    }
+
+    public int getTokenLength(int i) {
+        checkToken(i);
+        return tokenEnds[i] - tokenStarts[i];
+    }
+
+    public String getString(int i) {
+        checkToken(i);
+        return new String(buffer, tokenStarts[i], tokenEnds[i] - tokenStarts[i], UTF8);
+    }
+
+    /**
+     * @return true if token {@code i} equals {@code s}.  Intended for ASCII strings such as chromosome names,
+     * avoiding a String per line when consecutive lines share a value.
+     */
+    public boolean tokenEquals(int i, String s) {
+        checkToken(i);
+        int start = tokenStarts[i];
+        int len = tokenEnds[i] - start;
+        if (s == null || s.length() != len) return false;
+        for (int j = 0; j < len; j++) {
+            if (buffer[start + j] != s.charAt(j)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parse token {@code i} as an integer, with the semantics of {@link ParsingUtils#parseInt(String)}
+     *
+     * @throws NumberFormatException
+     */
+    public int getInt(int i) {
+        checkToken(i);
+        int start = tokenStarts[i];
+        int end = tokenEnds[i];
+        int p = start;
+        boolean negative = false;
+        if (p < end && (buffer[p] == '-' || buffer[p] == '+')) {
+            negative = buffer[p] == '-';
+            p++;
+        }
+        if (p < end && end - p <= 9) {
+            int value = 0;
+            while (p < end) {
+                int d = buffer[p] - '0';
+                if (d < 0 || d > 9) break;
+                value = value * 10 + d;
+                p++;
+            }
+            if (p == end) return negative ? -value : value;
+        }
+        return ParsingUtils.parseInt(getString(i).trim());
+    }
+
+    /**
+     * Parse token {@code i} as a float, with the semantics of {@link Float#parseFloat(String)}
+     *
+     * @throws NumberFormatException
+     */
+    public float getFloat(int i) {
+        checkToken(i);
+        float value = parseFloat(tokenStarts[i], tokenEnds[i]);
+        return value == value ? value : Float.parseFloat(getString(i));
+    }
+
+    /**
+     * Parse token {@code i} as a float, returning {@code missingValue} if the token is empty or not a number.
+     */
+    public float getFloat(int i, float missingValue) {
+        checkToken(i);
+        if (tokenEnds[i] == tokenStarts[i]) return missingValue;
+        float value = parseFloat(tokenStarts[i], tokenEnds[i]);
+        if (value == value) return value;
+        try {
+            return Float.parseFloat(getString(i));
+        } catch (NumberFormatException e) {
+            return missingValue;
+        }
+    }
+
+    /**
+     * Parse the tokens at {@code columns} into {@code values}.  Columns which are missing from the current line,
+     * empty, or not numbers are assigned {@code missingValue}.
+     */
+    public void getFloats(int[] columns, float[] values, float missingValue) {
+        int n = getTokenCount();
+        for (int j = 0; j < columns.length; j++) {
+            int col = columns[j];
+            values[j] = col < n ? getFloat(col, missingValue) : missingValue;
+        }
+    }
+
+    /**
+     * Parse a decimal of the form [+-]digits[.digits][(e|E)[+-]digits] whose value can be computed exactly in
+     * float arithmetic, which then equals the correctly rounded result of Float.parseFloat.
+     *
+     * @return the value, or NaN if the fast path does not apply
+     */
+    private float parseFloat(int start, int end) {
+        int p = start;
+        boolean negative = false;
+        if (p < end && (buffer[p] == '-' || buffer[p] == '+')) {
+            negative = buffer[p] == '-';
+            p++;
+        }
+
+        int mantissa = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        boolean point = false;
+        for (; p < end; p++) {
+            byte b = buffer[p];
+            if (b >= '0' && b <= '9') {
+                hasDigits = true;
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa > MAX_FAST_MANTISSA) return Float.NaN;
+                if (point) exponent--;
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (!hasDigits) return Float.NaN;
+
+        if (p < end && (buffer[p] == 'e' || buffer[p] == 'E')) {
+            p++;
+            boolean negativeExp = false;
+            if (p < end && (buffer[p] == '-' || buffer[p] == '+')) {
+                negativeExp = buffer[p] == '-';
+                p++;
+            }
+            if (p == end || end - p > 2) return Float.NaN;
+            int e = 0;
+            for (; p < end; p++) {
+                int d = buffer[p] - '0';
+                if (d < 0 || d > 9) return Float.NaN;
+                e = e * 10 + d;
+            }
+            exponent += negativeExp ? -e : e;
+        }
+        if (p != end) return Float.NaN;
+
+        float value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (exponent == 0) {
+            value = mantissa;
+        } else if (exponent > 0 && exponent < POW10.length) {
+            value = mantissa * POW10[exponent];
+        } else if (exponent < 0 && -exponent < POW10.length) {
+            value = mantissa / POW10[-exponent];
+        } else {
+            return Float.NaN;
+        }
+        return negative ? -value : value;
+    }
+
+    public void close() {
+        try {
+            is.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+}
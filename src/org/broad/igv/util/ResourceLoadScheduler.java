@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.PreferenceManager;
+
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules resource loads on a bounded pool per storage backend, one for local files and one per remote host,
+ * so that large sessions do not start a thread per file.  Pool sizes are set by the LOAD_THREADS_LOCAL and
+ * LOAD_THREADS_REMOTE preferences.
+ * <p/>
+ * Loads are grouped in a {@link Batch}.  Within a backend, queued loads with a lower priority value run first, ties
+ * in submission order.  A batch reports progress to an optional {@link ProgressListener}.  Interrupting the thread
+ * waiting on a batch skips the loads that have not started.
+ * <p/>
+ * Only local resources other than alignments are loaded concurrently, see {@link #isConcurrentLoad(ResourceLocator)}.
+ */
+public class ResourceLoadScheduler {
+
+    private static Logger log = Logger.getLogger(ResourceLoadScheduler.class);
+
+    private static final String LOCAL = "local";
+
+    private static ResourceLoadScheduler instance;
+
+    private final Map<String, ThreadPoolExecutor> executors = new HashMap<String, ThreadPoolExecutor>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public static synchronized ResourceLoadScheduler getInstance() {
+        if (instance == null) {
+            instance = new ResourceLoadScheduler();
+        }
+        return instance;
+    }
+
+    ResourceLoadScheduler() {
+    }
+
+    public Batch newBatch(ProgressListener listener) {
+        return new Batch(listener);
+    }
+
+    /**
+     * Remote resources may prompt for credentials, and loading them concurrently would open several authentication
+     * dialogs at once.  Alignments are loaded on the calling thread as before.
+     *
+     * @return true if {@code locator} can be loaded on a pool thread, false if it must be loaded on the calling thread
+     */
+    public static boolean isConcurrentLoad(ResourceLocator locator) {
+        return locator.isLocal() && !isAlignment(locator);
+    }
+
+    static boolean isAlignment(ResourceLocator locator) {
+        if (locator.getPath().toLowerCase().contains("htsget")) {
+            return true;
+        }
+        // The type string is the explicit format, e.g. "bam", or the path without .txt or .gz extension
+        String typeString = "." + locator.getTypeString().toLowerCase();
+        int idx = typeString.indexOf('?');
+        if (idx > 0) {
+            typeString = typeString.substring(0, idx);
+        }
+        return typeString.endsWith(".bam") || typeString.endsWith(".cram") || typeString.endsWith(".sam") ||
+                typeString.endsWith(".entries");
+    }
+
+    /**
+     * @return the storage backend of {@code locator}, "local" or the remote host name
+     */
+    static String getBackend(ResourceLocator locator) {
+        if (locator.isLocal()) {
+            return LOCAL;
+        }
+        String url = locator.getDBUrl() != null ? locator.getDBUrl() : locator.getPath();
+        try {
+            String host = new URL(url).getHost();
+            return host == null || host.length() == 0 ? url : host;
+        } catch (Exception e) {
+            return url;
+        }
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor(String backend) {
+        ThreadPoolExecutor executor = executors.get(backend);
+        if (executor == null) {
+            PreferenceManager prefs = PreferenceManager.getInstance();
+            int nThreads = Math.max(1, prefs.getAsInt(backend.equals(LOCAL) ?
+                    PreferenceManager.LOAD_THREADS_LOCAL : PreferenceManager.LOAD_THREADS_REMOTE));
+            executor = new ThreadPoolExecutor(nThreads, nThreads, 0, TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<Runnable>(), new NamedThreadFactory("IGV load " + backend));
+            // With all core threads running every load goes through the priority queue.  A thread started by
+            // execute() would run its first load directly, whatever the priority.
+            executor.prestartAllCoreThreads();
+            executors.put(backend, executor);
+        }
+        return executor;
+    }
+
+
+    public interface ProgressListener {
+
+        /**
+         * Called when a load finishes, successfully or not.  Called on the loading thread.
+         *
+         * @param locator   the resource
+         * @param error     the exception thrown by the load, or null
+         * @param completed number of loads of the batch finished so far
+         * @param total     number of loads in the batch
+         */
+        void loadFinished(ResourceLocator locator, Throwable error, int completed, int total);
+    }
+
+
+    /**
+     * A group of loads which can be waited for together
+     */
+    public class Batch {
+
+        private final ProgressListener listener;
+        private final List<LoadTask> tasks = new ArrayList<LoadTask>();
+        private final AtomicInteger completed = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        private Batch(ProgressListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Schedule a load.  Exceptions thrown by {@code load} are logged and reported to the listener.
+         *
+         * @param locator  resource to load, used to select the backend
+         * @param priority lower values load first, e.g. the screen order of the resource's first track
+         * @param load     the load
+         */
+        public synchronized void submit(ResourceLocator locator, int priority, Runnable load) {
+            LoadTask task = new LoadTask(this, locator, priority, load);
+            tasks.add(task);
+            getExecutor(getBackend(locator)).execute(task);
+        }
+
+        /**
+         * Wait for all loads to finish or be skipped.  If the waiting thread is interrupted the batch is cancelled.
+         *
+         * @return true if all loads ran, false if the batch was cancelled
+         */
+        public boolean await() {
+            List<LoadTask> pending;
+            synchronized (this) {
+                pending = new ArrayList<LoadTask>(tasks);
+            }
+            try {
+                for (LoadTask task : pending) {
+                    task.done.await();
+                }
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+            }
+            return !cancelled;
+        }
+
+        /**
+         * Skip loads which have not started.  Loads in progress run to completion.
+         */
+        private void cancel() {
+            cancelled = true;
+            List<LoadTask> pending;
+            synchronized (this) {
+                pending = new ArrayList<LoadTask>(tasks);
+            }
+            for (LoadTask task : pending) {
+                if (getExecutor(getBackend(task.locator)).remove(task)) {
+                    task.done.countDown();
+                }
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public synchronized int getTotal() {
+            return tasks.size();
+        }
+
+        public int getCompleted() {
+            return completed.get();
+        }
+
+        private void finished(LoadTask task, Throwable error) {
+            int n = completed.incrementAndGet();
+            if (listener != null) {
+                try {
+                    listener.loadFinished(task.locator, error, n, getTotal());
+                } catch (Exception e) {
+                    log.error("Error reporting load progress", e);
+                }
+            }
+        }
+    }
+
+
+    private class LoadTask implements Runnable, Comparable<LoadTask> {
+
+        final Batch batch;
+        final ResourceLocator locator;
+        final int priority;
+        final long seq;
+        final Runnable load;
+        final CountDownLatch done = new CountDownLatch(1);
+
+        LoadTask(Batch batch, ResourceLocator locator, int priority, Runnable load) {
+            this.batch = batch;
+            this.locator = locator;
+            this.priority = priority;
+            this.load = load;
+            this.seq = sequence.getAndIncrement();
+        }
+
+        public void run() {
+            try {
+                if (batch.cancelled) return;
+                Throwable error = null;
+                try {
+                    load.run();
+                } catch (Throwable e) {
+                    log.error("Error loading resource " + locator.getPath(), e);
+                    error = e;
+                }
+                batch.finished(this, error);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        public int compareTo(LoadTask o) {
+            if (priority != o.priority) {
+                return priority < o.priority ? -1 : 1;
+            }
+            return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+        }
+    }
+}
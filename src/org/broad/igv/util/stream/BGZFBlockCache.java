@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util.stream;
+
+import org.broad.igv.PreferenceManager;
+
+import java.util.*;
+
+/**
+ * Process wide cache of compressed BGZF blocks, keyed by file and block offset, shared by all BAM and tabix
+ * readers, see {@link CachingSeekableStream}.  Total size is bounded by the {@link PreferenceManager#BGZF_CACHE_SIZE}
+ * preference, in MB; least recently used blocks are evicted first.
+ */
+public class BGZFBlockCache {
+
+    static final int HEADER_SIZE = 18;
+    static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+    private static BGZFBlockCache instance;
+
+    private final long maxBytes;
+    private long bytes;
+    private final LinkedHashMap<Key, byte[]> blocks = new LinkedHashMap<Key, byte[]>(256, 0.75f, true);
+
+    public static synchronized BGZFBlockCache getInstance() {
+        if (instance == null) {
+            int mb = PreferenceManager.getInstance().getAsInt(PreferenceManager.BGZF_CACHE_SIZE);
+            instance = new BGZFBlockCache(mb * 1024L * 1024L);
+        }
+        return instance;
+    }
+
+    BGZFBlockCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * @return the complete block, header and footer included, starting at {@code address}, or null
+     */
+    public synchronized byte[] get(String file, long address) {
+        return blocks.get(new Key(file, address));
+    }
+
+    public synchronized void put(String file, long address, byte[] block) {
+        if (maxBytes <= 0) return;
+        byte[] old = blocks.put(new Key(file, address), block);
+        if (old != null) {
+            bytes -= getMemory(old);
+        }
+        bytes += getMemory(block);
+        Iterator<byte[]> iter = blocks.values().iterator();
+        while (bytes > maxBytes && iter.hasNext()) {
+            bytes -= getMemory(iter.next());
+            iter.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        blocks.clear();
+        bytes = 0;
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    private static long getMemory(byte[] block) {
+        return block.length + 32;
+    }
+
+    /**
+     * @return the total size of the BGZF block starting at {@code offset}, read from its header, or -1 if
+     * {@code buffer} does not hold a BGZF block header at {@code offset}
+     */
+    static int getBlockSize(byte[] buffer, int offset) {
+        if ((buffer[offset] & 0xFF) != 31 || (buffer[offset + 1] & 0xFF) != 139 ||
+                buffer[offset + 10] != 6 || buffer[offset + 12] != 'B' || buffer[offset + 13] != 'C') {
+            return -1;
+        }
+        return ((buffer[offset + 16] & 0xFF) | ((buffer[offset + 17] & 0xFF) << 8)) + 1;
+    }
+
+    private static class Key {
+
+        final String file;
+        final long address;
+
+        Key(String file, long address) {
+            this.file = file;
+            this.address = address;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return address == k.address && file.equals(k.file);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * file.hashCode() + (int) (address ^ (address >>> 32));
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A seekable stream over a BGZF file which takes compressed blocks from the shared {@link BGZFBlockCache}, so BAM
+ * and tabix readers of the same file share I/O.  When reading runs sequentially past a block, the following blocks
+ * are read in one request.
+ * <p/>
+ * Reads which do not start in a block boundary known to the stream, and all reads of files which are not BGZF
+ * compressed, go directly to the underlying stream.
+ */
+public class CachingSeekableStream extends SeekableStream {
+
+    static final int READ_AHEAD_BLOCKS = 8;
+
+    private final SeekableStream stream;
+    private final String fileKey;
+    private final BGZFBlockCache cache;
+
+    private long position = 0;
+    private long blockAddress = -1;
+    private byte[] block = null;
+    private long lastLoadedAddress = -1;
+    private boolean bgzf = true;
+
+    public CachingSeekableStream(SeekableStream stream, String fileKey) {
+        this(stream, fileKey, BGZFBlockCache.getInstance());
+    }
+
+    CachingSeekableStream(SeekableStream stream, String fileKey, BGZFBlockCache cache) {
+        this.stream = stream;
+        this.fileKey = fileKey;
+        this.cache = cache;
+    }
+
+    /**
+     * @return a key identifying the current contents of the file at {@code path}
+     */
+    public static String getFileKey(String path) {
+        File file = new File(path);
+        if (file.exists()) {
+            return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+        }
+        return path;
+    }
+
+    @Override
+    public long length() {
+        return stream.length();
+    }
+
+    @Override
+    public long position() throws IOException {
+        return position;
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        this.position = position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == 1 ? (b[0] & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!findBlock()) {
+            stream.seek(position);
+            int n = stream.read(buffer, offset, length);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+        int blockOffset = (int) (position - blockAddress);
+        int n = Math.min(length, block.length - blockOffset);
+        System.arraycopy(block, blockOffset, buffer, offset, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public boolean eof() throws IOException {
+        long length = stream.length();
+        if (length > 0) {
+            return position >= length;
+        }
+        stream.seek(position);
+        return stream.eof();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+        block = null;
+    }
+
+    @Override
+    public String getSource() {
+        return stream.getSource();
+    }
+
+    /**
+     * Make the block containing the current position current, from the cache or the underlying stream
+     *
+     * @return false if the position is not in a known block, or at end of file
+     */
+    private boolean findBlock() throws IOException {
+        if (block != null && position >= blockAddress && position < blockAddress + block.length) {
+            return true;
+        }
+        if (!bgzf) {
+            return false;
+        }
+        byte[] b = cache.get(fileKey, position);
+        if (b == null) {
+            boolean sequential = position == lastLoadedAddress ||
+                    (block != null && position == blockAddress + block.length);
+            b = load(position, sequential ? READ_AHEAD_BLOCKS : 1);
+        }
+        if (b == null) {
+            return false;
+        }
+        blockAddress = position;
+        block = b;
+        return true;
+    }
+
+    /**
+     * Read up to {@code nBlocks} blocks starting at {@code address} and add them to the cache
+     *
+     * @return the first block, or null at end of file or if there is no BGZF block at {@code address}
+     */
+    private byte[] load(long address, int nBlocks) throws IOException {
+
+        long length = stream.length();
+        long maxBytes = (long) nBlocks * BGZFBlockCache.MAX_BLOCK_SIZE;
+        if (length > 0) {
+            maxBytes = Math.min(maxBytes, length - address);
+        }
+        if (maxBytes < BGZFBlockCache.HEADER_SIZE) return null;
+
+        byte[] buffer = new byte[(int) maxBytes];
+        stream.seek(address);
+        int n = nBlocks == 1 ?
+                readFully(buffer, 0, BGZFBlockCache.HEADER_SIZE) :
+                readFully(buffer, 0, buffer.length);
+        if (n < BGZFBlockCache.HEADER_SIZE) return null;
+
+        int blockSize = BGZFBlockCache.getBlockSize(buffer, 0);
+        if (blockSize < 0) {
+            if (address == 0) {
+                // Not a BGZF file, stop looking for blocks
+                bgzf = false;
+            }
+            return null;
+        }
+        if (nBlocks == 1) {
+            if (blockSize > buffer.length) return null;
+            n += readFully(buffer, n, blockSize - n);
+        }
+
+        byte[] first = null;
+        int pos = 0;
+        while (pos + BGZFBlockCache.HEADER_SIZE <= n) {
+            int size = BGZFBlockCache.getBlockSize(buffer, pos);
+            if (size < 0 || pos + size > n) break;
+            byte[] b = new byte[size];
+            System.arraycopy(buffer, pos, b, 0, size);
+            cache.put(fileKey, address + pos, b);
+            if (first == null) {
+                first = b;
+            }
+            pos += size;
+        }
+        lastLoadedAddress = address + pos;
+        return first;
+    }
+
+    private int readFully(byte[] buffer, int offset, int length) throws IOException {
+        int n = 0;
+        while (n < length) {
+            int count = stream.read(buffer, offset + n, length - n);
+            if (count < 0) break;
+            n += count;
+        }
+        return n;
+    }
+}
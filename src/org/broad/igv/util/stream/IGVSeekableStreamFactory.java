@@ -14,6 +14,8 @@ package org.broad.igv.util.stream;
 import htsjdk.samtools.seekablestream.ISeekableStreamFactory;
 import htsjdk.samtools.seekablestream.SeekableFileStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
+import org.apache.log4j.Logger;
+import org.broad.igv.PreferenceManager;
 import org.broad.igv.util.HttpUtils;
 
 import java.io.File;
@@ -21,10 +23,16 @@ import java.io.IOException;
 import java.net.URL;
 
 /**
+ * Local files are memory mapped, see {@link MappedSeekableStream}, unless disabled with the
+ * {@link PreferenceManager#MEMORY_MAP_LOCAL_FILES} preference.  Streams over ".gz" and ".bgz" files, which include
+ * tabix indexed files, share BGZF blocks through the {@link BGZFBlockCache}.
+ *
  * @author Jim Robinson
  */
 public class IGVSeekableStreamFactory implements ISeekableStreamFactory {
 
+    private static Logger log = Logger.getLogger(IGVSeekableStreamFactory.class);
+
     private static IGVSeekableStreamFactory instance;
     static{
         instance = new IGVSeekableStreamFactory();
@@ -59,17 +67,52 @@ public class IGVSeekableStreamFactory implements ISeekableStreamFactory {
                 final URL url = new URL(path);
                 is = new IGVSeekableFTPStream(url);
             } else {
-                is = new SeekableFileStream(new File(path));
+                is = getFileStream(new File(path));
+            }
+            String lowerPath = path.toLowerCase();
+            if (lowerPath.endsWith(".gz") || lowerPath.endsWith(".bgz")) {
+                is = getCachingStream(is, path);
             }
             return is;
         }
     }
 
+    private SeekableStream getFileStream(File file) throws IOException {
+        if (file.isFile() && file.length() > 0 &&
+                PreferenceManager.getInstance().getAsBoolean(PreferenceManager.MEMORY_MAP_LOCAL_FILES)) {
+            try {
+                return new MappedSeekableStream(file);
+            } catch (IOException e) {
+                // Mapping can fail for lack of address space, e.g. on 32-bit JVMs
+                log.info("Could not memory map " + file + ", reading through a file stream. " + e.getMessage());
+            }
+        }
+        return new SeekableFileStream(file);
+    }
+
+    /**
+     * Wrap a stream over the BGZF file at {@code path} so its blocks are shared through the {@link BGZFBlockCache}.
+     * The stream is returned as is if the cache is disabled.
+     */
+    public SeekableStream getCachingStream(SeekableStream stream, String path) {
+        if (!BGZFBlockCache.getInstance().isEnabled()) {
+            return stream;
+        }
+        return new CachingSeekableStream(stream, CachingSeekableStream.getFileKey(path));
+    }
+
     public SeekableStream getBufferedStream(SeekableStream stream){
         return getBufferedStream(stream, IGVSeekableBufferedStream.DEFAULT_BUFFER_SIZE);
     }
 
+    /**
+     * Wrap the stream in a buffer.  Memory mapped and caching streams are returned as is, copying into a buffer
+     * would only add overhead.
+     */
     public SeekableStream getBufferedStream(SeekableStream stream, int bufferSize){
+        if (stream instanceof MappedSeekableStream || stream instanceof CachingSeekableStream) {
+            return stream;
+        }
         return new IGVSeekableBufferedStream(stream, bufferSize);
     }
 
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A seekable stream over a memory-mapped local file.  Files larger than {@link #CHUNK_SIZE} are mapped in several
+ * chunks, so files over 2 GB are supported.
+ * <p/>
+ * Reads through the {@link SeekableStream} methods use this stream's position, like any other stream.
+ * {@link #read(long, byte[], int, int)} reads at an absolute position without touching the position and may be
+ * called concurrently from any number of threads, so readers sharing one stream need not synchronize seek/read
+ * pairs.  No buffering is needed on top of this stream, see {@link IGVSeekableStreamFactory#getBufferedStream}.
+ */
+public class MappedSeekableStream extends SeekableStream {
+
+    /**
+     * Size of each mapping, must be a power of 2
+     */
+    static final int CHUNK_SIZE = 1 << 30;
+
+    private final File file;
+    private final long length;
+    private final int chunkShift;
+    private volatile ByteBuffer[] chunks;
+    private long position;
+
+    public MappedSeekableStream(File file) throws IOException {
+        this(file, CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize size of each mapping, a power of 2.  Tests use small chunks to exercise reads across
+     *                  mapping boundaries.
+     */
+    MappedSeekableStream(File file, int chunkSize) throws IOException {
+        if (Integer.bitCount(chunkSize) != 1) {
+            throw new IllegalArgumentException("Chunk size must be a power of 2: " + chunkSize);
+        }
+        this.file = file;
+        this.chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            length = channel.size();
+            int nChunks = (int) ((length + chunkSize - 1) >> chunkShift);
+            ByteBuffer[] mapped = new ByteBuffer[nChunks];
+            for (int i = 0; i < nChunks; i++) {
+                long start = (long) i << chunkShift;
+                long size = Math.min(chunkSize, length - start);
+                mapped[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            }
+            chunks = mapped;
+        } finally {
+            // Mappings remain valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Read up to {@code len} bytes starting at the absolute file position {@code pos}.  Thread safe, and does not
+     * change the stream position.
+     *
+     * @return the number of bytes read, or -1 if {@code pos} is at or beyond the end of the file
+     */
+    public int read(long pos, byte[] b, int off, int len) throws IOException {
+        ByteBuffer[] chunks = this.chunks;
+        if (chunks == null) {
+            throw new IOException("Stream closed: " + file);
+        }
+        if (pos < 0) {
+            throw new IllegalArgumentException("Negative position: " + pos);
+        }
+        if (len == 0) return 0;
+        if (pos >= length) return -1;
+
+        int n = (int) Math.min(len, length - pos);
+        int done = 0;
+        while (done < n) {
+            long p = pos + done;
+            int chunk = (int) (p >> chunkShift);
+            int chunkOffset = (int) (p - ((long) chunk << chunkShift));
+            // Duplicates share content but have their own position, so concurrent reads don't interfere
+            ByteBuffer buffer = chunks[chunk].duplicate();
+            int count = Math.min(n - done, buffer.limit() - chunkOffset);
+            buffer.position(chunkOffset);
+            buffer.get(b, off + done, count);
+            done += count;
+        }
+        return n;
+    }
+
+    /**
+     * Read exactly {@code len} bytes at the absolute position {@code pos}.  Thread safe.
+     */
+    public void readFully(long pos, byte[] b, int off, int len) throws IOException {
+        int n = read(pos, b, off, len);
+        if (n < len) {
+            throw new EOFException("Premature end of file " + file + " at " + pos);
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long position() throws IOException {
+        return position;
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        this.position = position;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int n = read(position, buffer, offset, length);
+        if (n > 0) {
+            position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n < 1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, length - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, length - position));
+    }
+
+    /**
+     * Releases the mappings.  The memory is unmapped when the buffers are garbage collected, there is no
+     * supported way to unmap earlier.
+     */
+    @Override
+    public void close() throws IOException {
+        chunks = null;
+    }
+
+    @Override
+    public boolean eof() throws IOException {
+        return position >= length;
+    }
+
+    @Override
+    public String getSource() {
+        return file.getAbsolutePath();
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.variant;
+
+import htsjdk.tribble.Feature;
+import htsjdk.variant.variantcontext.GenotypeType;
+import org.broad.igv.variant.vcf.VCFVariant;
+
+import java.util.*;
+
+/**
+ * Packed genotype calls for a set of variants and samples, 2 bits per call, with optional genotype quality (GQ)
+ * and read depth (DP) columns.  Built once per loaded interval so that rendering, coloring and sorting of
+ * multi-sample tracks do not need a {@link Genotype} object per call.
+ * <p/>
+ * Rows are variants, columns are samples in file order.  GQ is stored as an unsigned byte and DP as an unsigned
+ * 16 bit value, both saturating.
+ * <p/>
+ * A matrix created with {@link #createDeferred(java.util.List, java.util.List)} decodes columns on request, see
+ * {@link #ensureColumns(int[])}.  For BCF2 files only the requested samples are decoded.
+ */
+public class GenotypeMatrix {
+
+    public static final int NO_CALL = 0;
+    public static final int HOM_REF = 1;
+    public static final int HET = 2;
+    public static final int HOM_VAR = 3;
+
+    private static final int CALLS_PER_WORD = 32;
+    private static final int MAX_GQ = 0xFE;
+    private static final int GQ_MISSING = 0xFF;
+    private static final int MAX_DP = 0xFFFE;
+    private static final int DP_MISSING = 0xFFFF;
+
+    private final List<String> samples;
+    private final Map<String, Integer> sampleColumns;
+    private final Map<Variant, Integer> variantRows;
+    private final Variant[] rowVariants;
+    private final int nSamples;
+    private final int wordsPerRow;
+    private final long[] calls;
+    private final byte[] gq;
+    private final char[] dp;
+
+    /**
+     * For deferred matrices, the columns decoded so far and the rows which have been decoded completely
+     */
+    private BitSet decodedColumns;
+    private BitSet decodedRows;
+
+    private GenotypeMatrix(List<String> samples, int nVariants, boolean includeQuality) {
+        this.samples = new ArrayList<String>(samples);
+        nSamples = samples.size();
+        sampleColumns = new HashMap<String, Integer>(nSamples * 2);
+        for (int i = 0; i < nSamples; i++) {
+            sampleColumns.put(samples.get(i), i);
+        }
+        variantRows = new IdentityHashMap<Variant, Integer>(nVariants);
+        rowVariants = new Variant[nVariants];
+        wordsPerRow = (nSamples + CALLS_PER_WORD - 1) / CALLS_PER_WORD;
+        calls = new long[nVariants * wordsPerRow];
+        gq = includeQuality ? new byte[nVariants * nSamples] : null;
+        dp = includeQuality ? new char[nVariants * nSamples] : null;
+    }
+
+    /**
+     * Decode the genotypes of {@code features} for {@code samples}.  Features which are not variants are ignored.
+     *
+     * @param features       variants, typically the contents of a loaded interval
+     * @param samples        sample names, defining the matrix columns
+     * @param includeQuality true to store GQ and DP in addition to the calls
+     */
+    public static GenotypeMatrix create(List<? extends Feature> features, List<String> samples, boolean includeQuality) {
+        GenotypeMatrix matrix = allocate(features, samples, includeQuality);
+        for (int row = 0; row < matrix.rowVariants.length; row++) {
+            matrix.fillRow(row, matrix.rowVariants[row]);
+        }
+        return matrix;
+    }
+
+    /**
+     * Create a matrix of genotype calls, without quality, whose columns are decoded by {@link #ensureColumns(int[])}.
+     * All calls read NO_CALL until then.
+     */
+    public static GenotypeMatrix createDeferred(List<? extends Feature> features, List<String> samples) {
+        GenotypeMatrix matrix = allocate(features, samples, false);
+        matrix.decodedColumns = new BitSet(matrix.nSamples);
+        matrix.decodedRows = new BitSet(matrix.rowVariants.length);
+        return matrix;
+    }
+
+    private static GenotypeMatrix allocate(List<? extends Feature> features, List<String> samples, boolean includeQuality) {
+        int nVariants = 0;
+        for (Feature f : features) {
+            if (f instanceof Variant) nVariants++;
+        }
+        GenotypeMatrix matrix = new GenotypeMatrix(samples, nVariants, includeQuality);
+        int row = 0;
+        for (Feature f : features) {
+            if (f instanceof Variant) {
+                matrix.variantRows.put((Variant) f, row);
+                matrix.rowVariants[row++] = (Variant) f;
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Decode the given columns of a deferred matrix, if not already decoded.  Rows which cannot be decoded by
+     * sample are decoded completely on the first request.  Negative columns are ignored.
+     */
+    public synchronized void ensureColumns(int[] columns) {
+        if (decodedColumns == null) return;
+
+        List<String> pending = new ArrayList<String>();
+        List<Integer> pendingColumns = new ArrayList<Integer>();
+        for (int col : columns) {
+            if (col >= 0 && !decodedColumns.get(col)) {
+                decodedColumns.set(col);
+                pending.add(samples.get(col));
+                pendingColumns.add(col);
+            }
+        }
+        if (pending.isEmpty()) return;
+
+        GenotypeType[] types = new GenotypeType[pending.size()];
+        for (int row = 0; row < rowVariants.length; row++) {
+            if (decodedRows.get(row)) continue;
+            Variant variant = rowVariants[row];
+            if (variant instanceof VCFVariant && ((VCFVariant) variant).decodeGenotypeTypes(pending, types)) {
+                for (int i = 0; i < types.length; i++) {
+                    setCall(row, pendingColumns.get(i), encode(types[i]));
+                }
+            } else {
+                fillRow(row, variant);
+                decodedRows.set(row);
+            }
+        }
+    }
+
+    private void fillRow(int row, Variant variant) {
+        if (gq != null) {
+            Arrays.fill(gq, row * nSamples, (row + 1) * nSamples, (byte) GQ_MISSING);
+            Arrays.fill(dp, row * nSamples, (row + 1) * nSamples, (char) DP_MISSING);
+        }
+
+        if (variant instanceof VCFVariant) {
+            // Read the htsjdk genotypes directly, avoiding the IGV wrappers
+            for (htsjdk.variant.variantcontext.Genotype g : ((VCFVariant) variant).getGenotypes()) {
+                Integer col = sampleColumns.get(g.getSampleName());
+                if (col == null) continue;
+                setCall(row, col, encode(g.getType()));
+                if (gq != null) {
+                    if (g.hasGQ()) setGQ(row, col, g.getGQ());
+                    if (g.hasDP()) setDP(row, col, g.getDP());
+                }
+            }
+        } else {
+            for (Map.Entry<String, Integer> entry : sampleColumns.entrySet()) {
+                Genotype g = variant.getGenotype(entry.getKey());
+                if (g == null) continue;
+                int col = entry.getValue();
+                setCall(row, col, encode(g.getType()));
+                if (gq != null) {
+                    double q = g.getPhredScaledQual();
+                    if (!Double.isNaN(q) && q >= 0) setGQ(row, col, (int) q);
+                    double d = g.getAttributeAsDouble("DP");
+                    if (!Double.isNaN(d) && d >= 0) setDP(row, col, (int) d);
+                }
+            }
+        }
+    }
+
+    public static int encode(GenotypeType type) {
+        if (type == null) return NO_CALL;
+        switch (type) {
+            case HOM_REF:
+                return HOM_REF;
+            case HET:
+                return HET;
+            case HOM_VAR:
+                return HOM_VAR;
+            default:
+                return NO_CALL;
+        }
+    }
+
+    private void setCall(int row, int col, int code) {
+        int word = row * wordsPerRow + col / CALLS_PER_WORD;
+        int shift = (col % CALLS_PER_WORD) * 2;
+        calls[word] = (calls[word] & ~(3L << shift)) | (((long) code) << shift);
+    }
+
+    private void setGQ(int row, int col, int value) {
+        gq[row * nSamples + col] = (byte) Math.max(0, Math.min(MAX_GQ, value));
+    }
+
+    private void setDP(int row, int col, int value) {
+        dp[row * nSamples + col] = (char) Math.max(0, Math.min(MAX_DP, value));
+    }
+
+    /**
+     * @return the row of {@code variant}, or -1 if it is not in this matrix
+     */
+    public int getRow(Variant variant) {
+        Integer row = variantRows.get(variant);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * @return the column of {@code sample}, or -1 if it is not in this matrix
+     */
+    public int getColumn(String sample) {
+        Integer col = sampleColumns.get(sample);
+        return col == null ? -1 : col;
+    }
+
+    /**
+     * @return the columns of {@code samples}, in order.  Unknown samples map to -1.
+     */
+    public int[] getColumns(Collection<String> samples) {
+        int[] columns = new int[samples.size()];
+        int i = 0;
+        for (String s : samples) {
+            columns[i++] = getColumn(s);
+        }
+        return columns;
+    }
+
+    public int getVariantCount() {
+        return variantRows.size();
+    }
+
+    public int getSampleCount() {
+        return nSamples;
+    }
+
+    /**
+     * @return one of NO_CALL, HOM_REF, HET, HOM_VAR
+     */
+    public int getCall(int row, int col) {
+        long word = calls[row * wordsPerRow + col / CALLS_PER_WORD];
+        return (int) (word >>> ((col % CALLS_PER_WORD) * 2)) & 3;
+    }
+
+    public boolean hasQuality() {
+        return gq != null;
+    }
+
+    /**
+     * @return genotype quality, or -1 if missing or not stored
+     */
+    public int getGQ(int row, int col) {
+        if (gq == null) return -1;
+        int v = gq[row * nSamples + col] & 0xFF;
+        return v == GQ_MISSING ? -1 : v;
+    }
+
+    /**
+     * @return read depth, or -1 if missing or not stored
+     */
+    public int getDP(int row, int col) {
+        if (dp == null) return -1;
+        int v = dp[row * nSamples + col];
+        return v == DP_MISSING ? -1 : v;
+    }
+}
@@ -188,7 +188,7 @@ public class VariantMenu extends IGVPopupMenu {
         if (variant != null) {
             item.addActionListener(new ActionListener() {
                 public void actionPerformed(ActionEvent evt) {
-                    GenotypeComparator compare = new GenotypeComparator(variant);
+                    GenotypeComparator compare = new GenotypeComparator(track.createGenotypeMatrix(variant));
                     genotypeSortingDirection = !genotypeSortingDirection;
                     track.sortSamples(compare);
                     IGV.getInstance().getContentPane().repaint();
@@ -240,7 +240,7 @@ public class VariantMenu extends IGVPopupMenu {
         if (variant != null) {
             item.addActionListener(new ActionListener() {
                 public void actionPerformed(ActionEvent evt) {
-                    DepthComparator compare = new DepthComparator(variant);
+                    DepthComparator compare = new DepthComparator(track.createGenotypeMatrix(variant));
                     depthSortingDirection = !depthSortingDirection;
                     track.sortSamples(compare);
                     IGV.getInstance().getContentPane().repaint();
@@ -258,7 +258,7 @@ public class VariantMenu extends IGVPopupMenu {
             if (quality > -1) {
                 item.addActionListener(new ActionListener() {
                     public void actionPerformed(ActionEvent evt) {
-                        QualityComparator compare = new QualityComparator(variant);
+                        QualityComparator compare = new QualityComparator(track.createGenotypeMatrix(variant));
                         qualitySortingDirection = !qualitySortingDirection;
                         track.sortSamples(compare);
                         IGV.getInstance().getContentPane().repaint();
@@ -349,18 +349,21 @@ public class VariantMenu extends IGVPopupMenu {
     }
 
 
+    /**
+     * Compares samples by their call at a single variant, read from a one row {@link GenotypeMatrix}.
+     */
     static class GenotypeComparator implements Comparator<String> {
 
-        Variant variant;
+        GenotypeMatrix matrix;
 
-        GenotypeComparator(Variant variant) {
-            this.variant = variant;
+        GenotypeComparator(GenotypeMatrix matrix) {
+            this.matrix = matrix;
         }
 
         public int compare(String e1, String e2) {
 
-            int genotype1 = classifyGenotype(variant.getGenotype(e1));
-            int genotype2 = classifyGenotype(variant.getGenotype(e2));
+            int genotype1 = classifyGenotype(getCall(e1));
+            int genotype2 = classifyGenotype(getCall(e2));
 
             if (genotype2 == genotype1) {
                 return 0;
@@ -371,17 +374,22 @@ public class VariantMenu extends IGVPopupMenu {
             }
         }
 
+        private int getCall(String sample) {
+            int col = matrix.getColumn(sample);
+            return col < 0 ? -1 : matrix.getCall(0, col);
+        }
 
-        private int classifyGenotype(Genotype genotype) {
-
-            if (genotype.isNoCall()) {
-                return genotypeSortingDirection ? 1 : 10;
-            } else if (genotype.isHomVar()) {
-                return 4;
-            } else if (genotype.isHet()) {
-                return 3;
-            } else if (genotype.isHomRef()) {
-                return genotypeSortingDirection ? 2 : 9;
+        private int classifyGenotype(int call) {
+
+            switch (call) {
+                case GenotypeMatrix.NO_CALL:
+                    return genotypeSortingDirection ? 1 : 10;
+                case GenotypeMatrix.HOM_VAR:
+                    return 4;
+                case GenotypeMatrix.HET:
+                    return 3;
+                case GenotypeMatrix.HOM_REF:
+                    return genotypeSortingDirection ? 2 : 9;
             }
             return -1; //Unknown
         }
@@ -390,41 +398,51 @@ public class VariantMenu extends IGVPopupMenu {
 
     static class DepthComparator implements Comparator<String> {
 
-        Variant variant;
+        GenotypeMatrix matrix;
 
-        DepthComparator(Variant variant) {
-            this.variant = variant;
+        DepthComparator(GenotypeMatrix matrix) {
+            this.matrix = matrix;
         }
 
         public int compare(String s1, String s2) {
 
-
-            double readDepth1 = variant.getGenotype(s1).getAttributeAsDouble("DP");
-            double readDepth2 = variant.getGenotype(s2).getAttributeAsDouble("DP");
+            double readDepth1 = getDepth(s1);
+            double readDepth2 = getDepth(s2);
 
             int sign = depthSortingDirection ? -1 : 1;
             return sign * Double.compare(readDepth1, readDepth2);
 
         }
+
+        private double getDepth(String sample) {
+            int col = matrix.getColumn(sample);
+            int dp = col < 0 ? -1 : matrix.getDP(0, col);
+            return dp < 0 ? Double.NaN : dp;
+        }
     }
 
     static class QualityComparator implements Comparator<String> {
 
-        Variant variant;
+        GenotypeMatrix matrix;
 
-        QualityComparator(Variant variant) {
-            this.variant = variant;
+        QualityComparator(GenotypeMatrix matrix) {
+            this.matrix = matrix;
         }
 
         public int compare(String s1, String s2) {
 
-            double qual1 = variant.getGenotype(s1).getPhredScaledQual();
-            double qual2 = variant.getGenotype(s2).getPhredScaledQual();
+            double qual1 = getQuality(s1);
+            double qual2 = getQuality(s2);
 
             int sign = qualitySortingDirection ? -1 : 1;
             return sign * Double.compare(qual1, qual2);
 
         }
+
+        private double getQuality(String sample) {
+            int col = matrix.getColumn(sample);
+            return col < 0 ? -1 : matrix.getGQ(0, col);
+        }
     }
 
 
@@ -178,10 +178,6 @@ public class VariantRenderer { //extends FeatureRenderer {
 
         Genotype genotype = variant.getGenotype(sampleName);
 
-        if(sampleName.equals("CYP26B1-B12")) {
-            System.out.println(genotype.getTypeString() + "   " +  genotype.getGenotypeString() + "  " + isFiltered);
-        }
-
 
         if (genotype == null) {
             log.error("Genotype not found for sample " + sampleName);
@@ -267,6 +263,59 @@ public class VariantRenderer { //extends FeatureRenderer {
         g.dispose();
     }
 
+    /**
+     * Render the genotype bands of one variant for a list of samples, colored by genotype, reading the calls from
+     * {@code matrix}.  Samples are drawn top to bottom starting at {@code bandRectangle}.  When bands are contiguous
+     * (squished mode) consecutive samples with the same call are drawn with a single fill.
+     *
+     * @param columns matrix column of each sample, in display order.  Samples with column -1 are skipped.
+     */
+    public void renderGenotypeBands(Variant variant, RenderContext context, GenotypeMatrix matrix, int row,
+                                    int[] columns, Rectangle bandRectangle, Rectangle visibleRectangle,
+                                    int pX0, int dX, boolean hideFiltered) {
+
+        final int dY = (int) bandRectangle.getHeight();
+        if (dY <= 0 || columns.length == 0) return;
+
+        final boolean isFiltered = variant.isFiltered() && hideFiltered;
+        final boolean expanded = track.getDisplayMode() == Track.DisplayMode.EXPANDED;
+        final int inset = expanded ? 1 : 0;
+        final int h = Math.max(1, expanded ? dY - 2 : dY);
+
+        int top = bandRectangle.y;
+        int first = Math.max(0, (visibleRectangle.y - top) / dY);
+        int last = Math.min(columns.length, (int) ((visibleRectangle.getMaxY() - top) / dY) + 1);
+
+        Graphics2D g = (Graphics2D) context.getGraphics().create();
+        int runStart = -1;
+        int runCall = -1;
+        for (int i = first; i <= last; i++) {
+            int call = (i < last && columns[i] >= 0) ? matrix.getCall(row, columns[i]) : -1;
+            if (expanded || call != runCall) {
+                if (runCall >= 0) {
+                    g.setColor(getGenotypeColor(runCall, isFiltered));
+                    g.fillRect(pX0, top + runStart * dY + inset, dX, expanded ? h : (i - runStart) * dY);
+                }
+                runStart = i;
+                runCall = call;
+            }
+        }
+        g.dispose();
+    }
+
+    public Color getGenotypeColor(int call, boolean isFiltered) {
+        switch (call) {
+            case GenotypeMatrix.HOM_REF:
+                return isFiltered ? colorHomRefAlpha : colorHomRef;
+            case GenotypeMatrix.HOM_VAR:
+                return isFiltered ? colorHomVarAlpha : colorHomVar;
+            case GenotypeMatrix.HET:
+                return isFiltered ? colorHetAlpha : colorHet;
+            default:
+                return isFiltered ? colorNoCallAlpha : colorNoCall;
+        }
+    }
+
     private Color convertMethylationRateToColor(float mr) {
         Color color;
         /*
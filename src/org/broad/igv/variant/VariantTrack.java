@@ -162,6 +162,13 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
      */
     Map<String, String> alignmentFiles;
 
+    /**
+     * Packed genotype calls for each loaded interval, built on first render.  Weakly keyed so a matrix is released
+     * along with its interval.
+     */
+    private final Map<PackedFeatures, GenotypeMatrix> genotypeMatrices =
+            Collections.synchronizedMap(new WeakHashMap<PackedFeatures, GenotypeMatrix>());
+
     public void setRenderer(VariantRenderer renderer) {
         this.renderer = renderer;
     }
@@ -436,6 +443,22 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
 
         int curRowTop = top;
 
+        // Genotype coloring reads calls from the packed matrix rather than from per-sample genotype objects
+        GenotypeMatrix matrix = null;
+        int[] sampleColumns = null;
+        if (coloring == ColorMode.GENOTYPE && getGenotypeBandHeight() > 0 && allSamples.size() > 0) {
+            matrix = getGenotypeMatrix(packedFeatures);
+            sampleColumns = matrix.getColumns(getDisplayedSamples());
+
+            // Decode only the samples in view
+            int bandHeight = getGenotypeBandHeight();
+            int first = Math.max(0, (visibleRectangle.y - overallSampleRect.y) / bandHeight);
+            int last = Math.min(sampleColumns.length, (int) ((visibleRectangle.getMaxY() - overallSampleRect.y) / bandHeight) + 1);
+            if (first < last) {
+                matrix.ensureColumns(Arrays.copyOfRange(sampleColumns, first, last));
+            }
+        }
+
         if (rows.size() > 0) {
             final double locScale = context.getScale();
             final double origin = context.getOrigin();
@@ -488,7 +511,15 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
                         lastEndX = x + w - 1;
                     }
 
-                    renderSamples(g2D, visibleRectangle, variant, context, overallSampleRect, x, w);
+                    int matrixRow = matrix == null ? -1 : matrix.getRow(variant);
+                    if (matrixRow >= 0) {
+                        Rectangle sampleRect = new Rectangle(overallSampleRect);
+                        sampleRect.height = getGenotypeBandHeight();
+                        renderer.renderGenotypeBands(variant, context, matrix, matrixRow, sampleColumns, sampleRect,
+                                visibleRectangle, x, w, hideFiltered);
+                    } else {
+                        renderSamples(g2D, visibleRectangle, variant, context, overallSampleRect, x, w);
+                    }
                     boolean isSelected = selectedVariant != null && selectedVariant == variant;
                     if (isSelected) {
                         Graphics2D selectionGraphics = context.getGraphic2DForColor(Color.black);
@@ -525,6 +556,41 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
         }
     }
 
+    /**
+     * Return the genotype matrix for a loaded interval.  Columns are decoded as samples come into view.
+     */
+    GenotypeMatrix getGenotypeMatrix(PackedFeatures packedFeatures) {
+        GenotypeMatrix matrix = genotypeMatrices.get(packedFeatures);
+        if (matrix == null) {
+            matrix = GenotypeMatrix.createDeferred(packedFeatures.getFeatures(), allSamples);
+            genotypeMatrices.put(packedFeatures, matrix);
+        }
+        return matrix;
+    }
+
+    /**
+     * Return a single row genotype matrix for {@code variant}, including genotype quality and depth.  Used to sort
+     * samples.
+     */
+    GenotypeMatrix createGenotypeMatrix(Variant variant) {
+        return GenotypeMatrix.create(Collections.singletonList(variant), allSamples, true);
+    }
+
+    /**
+     * @return the samples in the order they are drawn, that is group by group if grouped
+     */
+    private List<String> getDisplayedSamples() {
+        if (grouped) {
+            List<String> samples = new ArrayList<String>(allSamples.size());
+            for (List<String> groupSamples : samplesByGroups.values()) {
+                samples.addAll(groupSamples);
+            }
+            return samples;
+        } else {
+            return allSamples;
+        }
+    }
+
     private void renderSamples(Graphics2D g2D, Rectangle visibleRectangle, Variant variant, RenderContext context, Rectangle overallSampleRect, int x, int w) {
 
         Rectangle tmpRect = new Rectangle(overallSampleRect);
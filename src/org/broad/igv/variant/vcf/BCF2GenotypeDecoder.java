@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.variant.vcf;
+
+import htsjdk.variant.bcf2.BCF2Codec;
+import htsjdk.variant.bcf2.BCF2Utils;
+import htsjdk.variant.variantcontext.GenotypeType;
+import htsjdk.variant.variantcontext.GenotypesContext;
+import htsjdk.variant.variantcontext.LazyGenotypesContext;
+import htsjdk.variant.vcf.VCFConstants;
+import htsjdk.variant.vcf.VCFHeader;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Reads genotype calls for selected samples straight from the undecoded genotype block of a BCF2 record, without
+ * creating htsjdk Genotype objects.  The block stores each FORMAT field as a typed vector for every sample in turn,
+ * so the GT values of a sample are found at a fixed offset and all other samples and fields are skipped.
+ */
+public class BCF2GenotypeDecoder {
+
+    private static final int TYPE_MISSING = 0;
+    private static final int TYPE_INT8 = 1;
+    private static final int TYPE_INT16 = 2;
+    private static final int TYPE_INT32 = 3;
+    private static final int TYPE_FLOAT = 5;
+    private static final int TYPE_CHAR = 7;
+
+    /**
+     * Dictionary offset of the GT key, by header
+     */
+    private static final Map<VCFHeader, Integer> gtKeys =
+            Collections.synchronizedMap(new WeakHashMap<VCFHeader, Integer>());
+
+    /**
+     * @return the undecoded BCF2 genotype data of {@code genotypes}, or null if they are not from a BCF2 file
+     * or have already been decoded
+     */
+    static BCF2Codec.LazyData getLazyData(GenotypesContext genotypes) {
+        if (genotypes instanceof LazyGenotypesContext) {
+            Object data = ((LazyGenotypesContext) genotypes).getUnparsedGenotypeData();
+            if (data instanceof BCF2Codec.LazyData) {
+                return (BCF2Codec.LazyData) data;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decode the genotype types of {@code samples} into {@code types}.  Samples not in the file are NO_CALL.
+     */
+    static void decodeTypes(BCF2Codec.LazyData data, List<String> samples, GenotypeType[] types) {
+        Map<String, Integer> offsets = data.header.getSampleNameToOffset();
+        int[] sampleIndexes = new int[samples.size()];
+        for (int i = 0; i < sampleIndexes.length; i++) {
+            Integer idx = offsets.get(samples.get(i));
+            sampleIndexes[i] = idx == null ? -1 : idx;
+        }
+        decodeTypes(data, sampleIndexes, types);
+    }
+
+    /**
+     * Decode the genotype types of the samples at {@code sampleIndexes} (header order, -1 for none) into
+     * {@code types}.  If {@code sampleIndexes} is null the first types.length samples are decoded.
+     */
+    static void decodeTypes(BCF2Codec.LazyData data, int[] sampleIndexes, GenotypeType[] types) {
+
+        int gtField = getGTKey(data.header);
+        int nSamples = data.header.getNGenotypeSamples();
+        byte[] bytes = data.bytes;
+
+        for (int i = 0; i < types.length; i++) {
+            types[i] = GenotypeType.NO_CALL;
+        }
+
+        int pos = 0;
+        for (int f = 0; f < data.nGenotypeFields; f++) {
+            // Key, a typed int referencing the string dictionary
+            int keyType = bytes[pos] & 0x0F;
+            pos++;
+            int key = readInt(bytes, pos, keyType);
+            pos += sizeOf(keyType);
+
+            // Type and number of values per sample
+            int type = bytes[pos] & 0x0F;
+            int count = (bytes[pos] >> 4) & 0x0F;
+            pos++;
+            if (count == 15) {
+                int countType = bytes[pos] & 0x0F;
+                pos++;
+                count = readInt(bytes, pos, countType);
+                pos += sizeOf(countType);
+            }
+            int typeSize = sizeOf(type);
+            int sampleSize = count * typeSize;
+
+            if (key == gtField && count > 0 && typeSize > 0 && type != TYPE_FLOAT && type != TYPE_CHAR) {
+                for (int i = 0; i < types.length; i++) {
+                    int s = sampleIndexes == null ? i : sampleIndexes[i];
+                    if (s >= 0 && s < nSamples) {
+                        types[i] = getType(bytes, pos + s * sampleSize, type, count);
+                    }
+                }
+                return;
+            }
+            pos += nSamples * sampleSize;
+        }
+    }
+
+    /**
+     * Classify a GT vector the way htsjdk does.  Each value is (allele index + 1) << 1 | phased, 0 for a missing
+     * allele.  Vectors of ploidy below the maximum are padded with the type's missing value.
+     */
+    private static GenotypeType getType(byte[] bytes, int pos, int type, int count) {
+        int size = sizeOf(type);
+        int missing = missingValue(type);
+        int firstAllele = -2;
+        boolean hasCall = false;
+        boolean hasNoCall = false;
+        boolean same = true;
+        for (int j = 0; j < count; j++) {
+            int v = readInt(bytes, pos + j * size, type);
+            if (v == missing || v == missing + 1) break;     // padding (missing or end of vector)
+            int allele = (v >> 1) - 1;
+            if (allele < 0) {
+                hasNoCall = true;
+            } else {
+                if (hasCall && allele != firstAllele) same = false;
+                if (!hasCall) firstAllele = allele;
+                hasCall = true;
+            }
+        }
+        if (!hasCall) {
+            return GenotypeType.NO_CALL;
+        } else if (hasNoCall) {
+            return GenotypeType.MIXED;
+        } else if (!same) {
+            return GenotypeType.HET;
+        } else {
+            return firstAllele == 0 ? GenotypeType.HOM_REF : GenotypeType.HOM_VAR;
+        }
+    }
+
+    private static int getGTKey(VCFHeader header) {
+        Integer key = gtKeys.get(header);
+        if (key == null) {
+            key = BCF2Utils.makeDictionary(header).indexOf(VCFConstants.GENOTYPE_KEY);
+            gtKeys.put(header, key);
+        }
+        return key;
+    }
+
+    private static int sizeOf(int type) {
+        switch (type) {
+            case TYPE_INT8:
+            case TYPE_CHAR:
+                return 1;
+            case TYPE_INT16:
+                return 2;
+            case TYPE_INT32:
+            case TYPE_FLOAT:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    private static int missingValue(int type) {
+        switch (type) {
+            case TYPE_INT8:
+                return Byte.MIN_VALUE;
+            case TYPE_INT16:
+                return Short.MIN_VALUE;
+            default:
+                return Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Read a little endian signed integer of the given BCF2 type
+     */
+    private static int readInt(byte[] bytes, int pos, int type) {
+        switch (type) {
+            case TYPE_INT8:
+                return bytes[pos];
+            case TYPE_INT16:
+                return (short) ((bytes[pos] & 0xFF) | (bytes[pos + 1] << 8));
+            case TYPE_INT32:
+                return (bytes[pos] & 0xFF) | ((bytes[pos + 1] & 0xFF) << 8) |
+                        ((bytes[pos + 2] & 0xFF) << 16) | (bytes[pos + 3] << 24);
+            case TYPE_MISSING:
+            default:
+                return 0;
+        }
+    }
+}
@@ -33,44 +33,43 @@ public class VCFGenotype implements org.broad.igv.variant.Genotype {
 
     public VCFGenotype(Genotype wrappedGenotype) {
         vcfGenotype = wrappedGenotype;
-        attributes = new HashMap<String, Object>();
-
+    }
 
-        if (vcfGenotype.hasDP()) {
-            attributes.put("DP", vcfGenotype.getDP());
-        }
+    /**
+     * The attribute map is only needed for popup text, so it is built on first use.
+     */
+    public synchronized Map<String, Object> getAttributes() {
+        if (attributes == null) {
+            attributes = new HashMap<String, Object>();
 
-        if (vcfGenotype.hasAD()) {
-            String adString = "";
-            int[] ad = vcfGenotype.getAD();
-            for (int i = 0; i < ad.length; i++) {
-                if (i != 0) adString += ",";
-                adString += String.valueOf(ad[i]);
+            if (vcfGenotype.hasDP()) {
+                attributes.put("DP", vcfGenotype.getDP());
             }
-            attributes.put("AD", adString);
-        }
 
-        if (vcfGenotype.hasGQ()) {
-            attributes.put("GQ", vcfGenotype.getGQ());
-        }
-
-        if (vcfGenotype.hasPL()) {
-            String plString = "";
-            int[] pl = vcfGenotype.getPL();
-            for (int i = 0; i < pl.length; i++) {
-                if (i != 0) plString += ",";
-                plString += String.valueOf(pl[i]);
+            if (vcfGenotype.hasAD()) {
+                attributes.put("AD", join(vcfGenotype.getAD()));
+            }
 
+            if (vcfGenotype.hasGQ()) {
+                attributes.put("GQ", vcfGenotype.getGQ());
             }
-            attributes.put("PL", plString);
-        }
 
+            if (vcfGenotype.hasPL()) {
+                attributes.put("PL", join(vcfGenotype.getPL()));
+            }
 
-        attributes.putAll(vcfGenotype.getExtendedAttributes());
+            attributes.putAll(vcfGenotype.getExtendedAttributes());
+        }
+        return attributes;
     }
 
-    public Map<String, Object> getAttributes() {
-        return attributes;
+    private static String join(int[] values) {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i != 0) buffer.append(',');
+            buffer.append(values[i]);
+        }
+        return buffer.toString();
     }
 
     public String getGenotypeString() {
@@ -16,6 +16,9 @@ import org.broad.igv.variant.Allele;
 import org.broad.igv.variant.Genotype;
 import org.broad.igv.variant.Variant;
 import org.broad.igv.variant.VariantTrack;
+import htsjdk.variant.bcf2.BCF2Codec;
+import htsjdk.variant.variantcontext.GenotypeType;
+import htsjdk.variant.variantcontext.GenotypesContext;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
 
@@ -40,35 +43,36 @@ public class VCFVariant implements Variant {
 
     Map<String, VCFGenotype> genotypeMap;
 
+    /**
+     * Unparsed INFO column, if decoding of the INFO attributes has been deferred.  See {@link #getVariantContext()}
+     */
+    private String deferredInfo;
+
     private int start = -1;
 
     public VCFVariant(VariantContext variantContext, String chr) {
+        this(variantContext, chr, null);
+    }
+
+    /**
+     * @param variantContext the site, with genotypes possibly not yet decoded
+     * @param chr            chromosome name, as known to the genome
+     * @param deferredInfo   raw INFO column not yet decoded into {@code variantContext}, or null
+     */
+    public VCFVariant(VariantContext variantContext, String chr, String deferredInfo) {
         this.variantContext = variantContext;
         this.chr = chr;
+        this.deferredInfo = deferredInfo;
         init();
     }
 
     private void init() {
 
-        // Copy the genotype map.  Calls to variantContext.getGenotype() are expensive
-        genotypeMap = new HashMap<String, VCFGenotype>();
-        for (String sample : getSampleNames()) {
-            htsjdk.variant.variantcontext.Genotype genotype = variantContext.getGenotype(sample);
-            VCFGenotype vcfGenotype = genotype == null ? null : new VCFGenotype(genotype);
-            genotypeMap.put(sample, vcfGenotype);
-        }
-
-        zygosityCount = new ZygosityCount();
-        for (String sample : getSampleNames()) {
-            Genotype genotype = getGenotype(sample);
-            zygosityCount.incrementCount(genotype);
-        }
-
         String afString = null;
         String[] alleleFreqKeys = {"AF", "GMAF"};
         try {
             for (String alleleFreqKey : alleleFreqKeys) {
-                afString = variantContext.getAttributeAsString(alleleFreqKey, "-1");
+                afString = getInfoValue(alleleFreqKey, "-1");
                 alleleFreqs = parseAFString(afString);
                 if (alleleFreqs[0] >= 0) break;
             }
@@ -79,6 +83,106 @@ public class VCFVariant implements Variant {
 
     }
 
+    /**
+     * Return the value of an INFO attribute as a string, scanning the raw INFO column if it has not been decoded.
+     */
+    private synchronized String getInfoValue(String key, String defaultValue) {
+        if (deferredInfo == null) {
+            return variantContext.getAttributeAsString(key, defaultValue);
+        }
+        int idx = 0;
+        int len = deferredInfo.length();
+        while (idx < len) {
+            int end = deferredInfo.indexOf(';', idx);
+            if (end < 0) end = len;
+            if (deferredInfo.startsWith(key, idx)) {
+                int keyEnd = idx + key.length();
+                if (keyEnd == end) {
+                    return "true";  // Flag
+                } else if (deferredInfo.charAt(keyEnd) == '=') {
+                    return deferredInfo.substring(keyEnd + 1, end);
+                }
+            }
+            idx = end + 1;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Decode a raw INFO column as htsjdk would: lists for comma separated values, Boolean.TRUE for flags.
+     */
+    static Map<String, Object> parseInfo(String info) {
+        Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+        if (info == null || info.length() == 0 || info.equals(".")) return attributes;
+        for (String token : info.split(";")) {
+            if (token.length() == 0) continue;
+            int eq = token.indexOf('=');
+            if (eq < 0) {
+                attributes.put(token, Boolean.TRUE);
+            } else {
+                String key = token.substring(0, eq);
+                String value = token.substring(eq + 1);
+                if (value.indexOf(',') >= 0) {
+                    attributes.put(key, Arrays.asList(value.split(",")));
+                } else {
+                    attributes.put(key, value);
+                }
+            }
+        }
+        return attributes;
+    }
+
+    private synchronized ZygosityCount getZygosityCount() {
+        // Counted on first use, this is the first thing to decode genotypes when rendering sites only
+        if (zygosityCount == null) {
+            ZygosityCount count = new ZygosityCount();
+            BCF2Codec.LazyData bcfData = BCF2GenotypeDecoder.getLazyData(variantContext.getGenotypes());
+            if (bcfData != null) {
+                GenotypeType[] types = new GenotypeType[bcfData.header.getNGenotypeSamples()];
+                BCF2GenotypeDecoder.decodeTypes(bcfData, (int[]) null, types);
+                for (GenotypeType type : types) {
+                    count.incrementCount(type);
+                }
+            } else {
+                for (htsjdk.variant.variantcontext.Genotype genotype : getGenotypes()) {
+                    count.incrementCount(genotype.getType());
+                }
+            }
+            zygosityCount = count;
+        }
+        return zygosityCount;
+    }
+
+    /**
+     * Decode the genotype types of {@code samples} into {@code types} without decoding the genotypes of other
+     * samples.  This is only possible for BCF2 records whose genotypes have not been decoded yet.
+     *
+     * @return true if the types were decoded, false if the caller should use {@link #getGenotypes()}
+     */
+    public synchronized boolean decodeGenotypeTypes(List<String> samples, GenotypeType[] types) {
+        BCF2Codec.LazyData bcfData = BCF2GenotypeDecoder.getLazyData(variantContext.getGenotypes());
+        if (bcfData == null) {
+            return false;
+        }
+        BCF2GenotypeDecoder.decodeTypes(bcfData, samples, types);
+        return true;
+    }
+
+    /**
+     * Return the htsjdk genotypes of this site, decoding them if neccessary.  Unlike {@link #getVariantContext()}
+     * this does not decode deferred INFO attributes.
+     */
+    public synchronized GenotypesContext getGenotypes() {
+        try {
+            return variantContext.getGenotypes();
+        } catch (NumberFormatException e) {
+            // Genotypes are decoded lazily, after the codec's chance to repair the line
+            log.error("Error parsing genotypes of " + this + ": " + e.getMessage());
+            variantContext = new VariantContextBuilder(variantContext).noGenotypes().make();
+            return variantContext.getGenotypes();
+        }
+    }
+
     /**
      * Allele frequency is a comma separated list of doubles
      * We strip away brackets and parentheses
@@ -129,7 +233,7 @@ public class VCFVariant implements Variant {
     }
 
     public String getAttributeAsString(String key) {
-        return variantContext.getAttributeAsString(key, null);
+        return getVariantContext().getAttributeAsString(key, null);
     }
 
     public String getReference() {
@@ -195,16 +299,29 @@ public class VCFVariant implements Variant {
     }
 
     public Collection<String> getSampleNames() {
-        return variantContext.getSampleNames();
+        return getGenotypes().getSampleNames();
     }
 
     public Map<String, Object> getAttributes() {
-        return variantContext.getAttributes();
+        return getVariantContext().getAttributes();
     }
 
+    /**
+     * Return the genotype for the given sample, wrapping the htsjdk genotype on first access.  Multi-sample
+     * rendering uses {@link org.broad.igv.variant.GenotypeMatrix} instead, this is for popup text and the like.
+     */
     @Override
-    public Genotype getGenotype(String sample) {
-        return genotypeMap.get(sample);
+    public synchronized Genotype getGenotype(String sample) {
+        if (genotypeMap == null) {
+            genotypeMap = new HashMap<String, VCFGenotype>();
+        }
+        VCFGenotype vcfGenotype = genotypeMap.get(sample);
+        if (vcfGenotype == null && !genotypeMap.containsKey(sample)) {
+            htsjdk.variant.variantcontext.Genotype genotype = getGenotypes().get(sample);
+            vcfGenotype = genotype == null ? null : new VCFGenotype(genotype);
+            genotypeMap.put(sample, vcfGenotype);
+        }
+        return vcfGenotype;
     }
 
     public Collection<String> getFilters() {
@@ -213,22 +330,22 @@ public class VCFVariant implements Variant {
 
     @Override
     public int getHomVarCount() {
-        return zygosityCount.getHomVar();
+        return getZygosityCount().getHomVar();
     }
 
     @Override
     public int getHetCount() {
-        return zygosityCount.getHet();
+        return getZygosityCount().getHet();
     }
 
     @Override
     public int getHomRefCount() {
-        return zygosityCount.getHomRef();
+        return getZygosityCount().getHomRef();
     }
 
     @Override
     public int getNoCallCount() {
-        return zygosityCount.getNoCall();
+        return getZygosityCount().getNoCall();
     }
 
     @Override
@@ -268,7 +385,14 @@ public class VCFVariant implements Variant {
         return variantContext.getSource();
     }
 
-    public VariantContext getVariantContext() {
+    /**
+     * Return the htsjdk variant context, decoding deferred INFO attributes first.
+     */
+    public synchronized VariantContext getVariantContext() {
+        if (deferredInfo != null) {
+            variantContext = new VariantContextBuilder(variantContext).attributes(parseInfo(deferredInfo)).make();
+            deferredInfo = null;
+        }
         return variantContext;
     }
 
@@ -298,15 +422,23 @@ public class VCFVariant implements Variant {
 
         public void incrementCount(Genotype genotype) {
             if (genotype != null) {
-                if (genotype.isHomVar()) {
+                incrementCount(genotype.getType());
+            }
+        }
+
+        public void incrementCount(GenotypeType type) {
+            switch (type) {
+                case HOM_VAR:
                     homVar++;
-                } else if (genotype.isHet()) {
+                    break;
+                case HET:
                     het++;
-                } else if (genotype.isHomRef()) {
+                    break;
+                case HOM_REF:
                     homRef++;
-                } else {
+                    break;
+                default:
                     noCall++;
-                }
             }
         }
 
@@ -37,6 +37,7 @@ import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.PrintWriter;
 import java.util.*;
 import java.util.List;
 
@@ -250,6 +251,43 @@ public class CommandExecutorTest extends AbstractHeadedTest {
     }
 
 
+    @Test
+    public void testSnapshots() throws Exception {
+        igv.loadResources(Arrays.asList(new ResourceLocator(TestUtils.DATA_DIR + "bed/test.bed")));
+
+        File lociFile = new File(snapshotDir, "snapshot_loci.txt");
+        PrintWriter pw = new PrintWriter(lociFile);
+        pw.println("# locus and optional file name");
+        pw.println("chr1:1-1000");
+        pw.println("chr1:99000-101000\tsecond.svg");
+        pw.close();
+
+        String result = exec.execute("snapshots " + lociFile.getPath() + " 2");
+        assertEquals("OK", result);
+
+        BufferedImage image = ImageIO.read(new File(snapshotDir, "chr1_1_1000.png"));
+        assertEquals(igv.getMainPanel().getNamePanelWidth() + igv.getMainPanel().getDataPanelWidth(), image.getWidth());
+        assertTrue(image.getHeight() > 0);
+        assertTrue(new File(snapshotDir, "second.svg").length() > 0);
+
+        // The main view does not move
+        assertFalse(FrameManager.getDefaultFrame().getFormattedLocusString().startsWith("chr1:99"));
+    }
+
+    @Test
+    public void testSnapshotsUnknownChromosome() throws Exception {
+        File lociFile = new File(snapshotDir, "snapshot_loci_bad.txt");
+        PrintWriter pw = new PrintWriter(lociFile);
+        pw.println("chr1:1-1000");
+        pw.println("chrZ:1-1000");
+        pw.close();
+
+        String result = exec.execute("snapshots " + lociFile.getPath());
+        assertEquals("Error: 1 of 2 snapshots failed", result);
+        assertTrue(new File(snapshotDir, "chr1_1_1000.png").exists());
+        assertFalse(new File(snapshotDir, "chrZ_1_1000.png").exists());
+    }
+
     public File tstSnapshot(String outFileName) throws Exception {
         return tstSnapshot(outFileName, true, null);
     }
@@ -12,6 +12,8 @@
 package org.broad.igv.batch;
 
 import biz.source_code.base64Coder.Base64Coder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.broad.igv.PreferenceManager;
 import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.ui.AbstractHeadedTest;
@@ -30,8 +32,12 @@ import java.io.PrintWriter;
 import java.net.HttpURLConnection;
 import java.net.Socket;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author jacob
@@ -177,6 +183,81 @@ public class CommandListenerTest extends AbstractHeadedTest {
         return conn;
     }
 
+    @Test
+    public void testPipelinedSocketCommands() throws Exception {
+        int nCommands = 50;
+        Socket socket = new Socket("localhost", port);
+        try {
+            List<JsonObject> results = sendPipelined(socket, nCommands);
+            assertEquals(nCommands + 1, results.size());
+            checkResults(results);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentSocketClients() throws Exception {
+        final int nCommands = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<List<JsonObject>>> futures = new ArrayList<Future<List<JsonObject>>>();
+            for (int c = 0; c < 2; c++) {
+                futures.add(executor.submit(new Callable<List<JsonObject>>() {
+                    public List<JsonObject> call() throws Exception {
+                        Socket socket = new Socket("localhost", port);
+                        try {
+                            return sendPipelined(socket, nCommands);
+                        } finally {
+                            socket.close();
+                        }
+                    }
+                }));
+            }
+
+            // Each client receives the responses to its own commands, in order
+            List<JsonObject> first = futures.get(0).get(60, TimeUnit.SECONDS);
+            List<JsonObject> second = futures.get(1).get(60, TimeUnit.SECONDS);
+            checkResults(first);
+            checkResults(second);
+            assertTrue(first.get(0).get("session").getAsInt() != second.get(0).get("session").getAsInt());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Write "responseFormat json" followed by {@code nCommands} echo commands in one flush, then read a response
+     * per command
+     */
+    private static List<JsonObject> sendPipelined(Socket socket, int nCommands) throws Exception {
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), false);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        out.println("responseFormat json");
+        for (int i = 1; i <= nCommands; i++) {
+            out.println("echo " + i);
+        }
+        out.flush();
+
+        JsonParser parser = new JsonParser();
+        List<JsonObject> results = new ArrayList<JsonObject>();
+        for (int i = 0; i <= nCommands; i++) {
+            results.add(parser.parse(in.readLine()).getAsJsonObject());
+        }
+        return results;
+    }
+
+    private static void checkResults(List<JsonObject> results) {
+        int session = results.get(0).get("session").getAsInt();
+        for (int i = 0; i < results.size(); i++) {
+            JsonObject result = results.get(i);
+            assertEquals(session, result.get("session").getAsInt());
+            assertEquals(i + 1, result.get("sequence").getAsInt());
+            assertEquals(i == 0 ? "responseFormat json" : "echo " + i, result.get("command").getAsString());
+            assertEquals(i == 0 ? CommandListener.OK : "echo", result.get("response").getAsString());
+        }
+    }
+
     @Test
     public void testSHA1() throws Exception {
 
@@ -26,6 +26,8 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 
+import static junit.framework.Assert.assertEquals;
+
 /**
  * User: jacob
  * Date: 2012-Aug-10
@@ -74,4 +76,48 @@ public class PluginFeatureSourceTest extends AbstractHeadlessTest {
         TestUtils.assertFeatureListsEqual(featuresExp, featuresAct);
 
     }
+
+    @Test
+    public void testContainedQueryUsesCache() throws Exception {
+
+        Assume.assumeTrue(!Globals.IS_WINDOWS);
+
+        PluginSpecReader reader = AbstractPluginTest.getCatReader();
+        PluginSpecReader.Tool tool = reader.getTools().get(0);
+        PluginSpecReader.Command command = tool.commandList.get(0);
+        List<Argument> argumentList = command.argumentList;
+
+        LinkedHashMap<Argument, Object> arguments = new LinkedHashMap<Argument, Object>(argumentList.size());
+        arguments.put(argumentList.get(0), "");
+        String path = TestUtils.DATA_DIR + "bed/testAlternateColor.bed";
+        TestUtils.createIndex(path);
+        FeatureTrack track = (FeatureTrack) new TrackLoader().load(new ResourceLocator(path), genome).get(0);
+        arguments.put(argumentList.get(1), track);
+        arguments.put(argumentList.get(2), track);
+
+        List<String> cmd = Arrays.asList(reader.getToolPath(tool), command.cmd);
+        PluginFeatureSource cachedSource = new PluginFeatureSource(cmd, arguments, command.outputList.get(0), reader.getSpecPath());
+        cachedSource.setPrefetchAdjacent(false);
+        PluginFeatureSource directSource = new PluginFeatureSource(cmd, arguments, command.outputList.get(0), reader.getSpecPath());
+        directSource.setPrefetchAdjacent(false);
+
+        int start = 178707289 - 1;
+        int end = 179714478;
+        cachedSource.getFeatures("chr2", start, end);
+        assertEquals(1, cachedSource.getRunCount());
+
+        // Repeated and contained queries are answered from the first run
+        cachedSource.getFeatures("chr2", start, end);
+        int subStart = start + 100000;
+        int subEnd = end - 100000;
+        Iterator<Feature> featuresAct = cachedSource.getFeatures("chr2", subStart, subEnd);
+        assertEquals(1, cachedSource.getRunCount());
+
+        Iterator<Feature> featuresExp = directSource.getFeatures("chr2", subStart, subEnd);
+        TestUtils.assertFeatureListsEqual(featuresExp, featuresAct);
+
+        // A region outside the cached one runs the plugin again
+        cachedSource.getFeatures("chr2", end, end + 1000);
+        assertEquals(2, cachedSource.getRunCount());
+    }
 }
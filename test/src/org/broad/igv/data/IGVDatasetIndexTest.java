@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IGVDatasetIndexTest extends AbstractHeadlessTest {
+
+    private static final String PATH = TestUtils.DATA_DIR + "cn/HindForGISTIC.hg16.cn";
+
+    @Test
+    public void testIndexReused() throws Exception {
+
+        File indexFile = IGVDatasetIndex.forPath(PATH, genome).getFile();
+        indexFile.delete();
+
+        try {
+            IGVDataset scanned = new IGVDataset(new ResourceLocator(PATH), genome);
+            assertTrue(indexFile.exists());
+
+            IGVDataset indexed = new IGVDataset(new ResourceLocator(PATH), genome);
+
+            assertArrayEquals(scanned.getChromosomes(), indexed.getChromosomes());
+            assertArrayEquals(scanned.getTrackNames(), indexed.getTrackNames());
+            assertEquals(scanned.getDataMin(), indexed.getDataMin(), 0);
+            assertEquals(scanned.getDataMax(), indexed.getDataMax(), 0);
+            assertEquals(scanned.isLogNormalized(), indexed.isLogNormalized());
+            assertEquals(scanned.getType(), indexed.getType());
+            for (String chr : scanned.getChromosomes()) {
+                assertEquals(scanned.getLongestFeature(chr), indexed.getLongestFeature(chr));
+            }
+
+            assertNotNull(scanned.getGenomeSummary());
+            assertArrayEquals(scanned.getGenomeSummary().getLocations(), indexed.getGenomeSummary().getLocations());
+            for (String sample : scanned.getTrackNames()) {
+                assertArrayEquals(scanned.getGenomeSummary().getData(sample),
+                        indexed.getGenomeSummary().getData(sample), 0);
+            }
+
+            String chr = scanned.getChromosomes()[1];
+            assertArrayEquals(scanned.getStartLocations(chr), indexed.getStartLocations(chr));
+            assertArrayEquals(scanned.getFeatureNames(chr), indexed.getFeatureNames(chr));
+            for (String sample : scanned.getTrackNames()) {
+                assertArrayEquals(scanned.getData(sample, chr), indexed.getData(sample, chr), 0);
+            }
+        } finally {
+            indexFile.delete();
+        }
+    }
+
+    @Test
+    public void testChunkedLoad() throws Exception {
+
+        IGVDatasetIndex.forPath(PATH, genome).getFile().delete();
+        IGVDataset dataset = new IGVDataset(new ResourceLocator(PATH), genome);
+        IGVDatasetIndex.forPath(PATH, genome).getFile().delete();
+
+        IGVDatasetParser parser = new IGVDatasetParser(new ResourceLocator(PATH), genome);
+        List<ChromosomeSummary> summaries = parser.scan(dataset);
+        String[] headings = dataset.getTrackNames();
+
+        long minChunkSize = IGVDatasetParser.minChunkSize;
+        int maxChunks = IGVDatasetParser.maxChunks;
+        try {
+            IGVDatasetParser.minChunkSize = 1000;
+            IGVDatasetParser.maxChunks = 7;
+            for (ChromosomeSummary summary : summaries) {
+                assertTrue(summary.getEndPosition() > summary.getStartPosition());
+
+                ChromosomeData chunked = parser.loadChromosomeData(summary, headings);
+
+                // Sequential load, reading until the chromosome changes
+                ChromosomeSummary open = new ChromosomeSummary(summary.getName(), summary.getStartPosition());
+                ChromosomeData sequential = parser.loadChromosomeData(open, headings);
+
+                assertEquals(summary.getNDataPts(), chunked.getStartLocations().length);
+                assertArrayEquals(sequential.getStartLocations(), chunked.getStartLocations());
+                assertArrayEquals(sequential.getProbes(), chunked.getProbes());
+                for (String h : headings) {
+                    assertArrayEquals(sequential.getData(h), chunked.getData(h), 0);
+                }
+            }
+        } finally {
+            IGVDatasetParser.minChunkSize = minChunkSize;
+            IGVDatasetParser.maxChunks = maxChunks;
+            IGVDatasetIndex.forPath(PATH, genome).getFile().delete();
+        }
+    }
+}
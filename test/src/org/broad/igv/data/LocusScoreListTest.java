@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.track.WindowFunction;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LocusScoreListTest {
+
+    @Test
+    public void testColumns() throws Exception {
+
+        LocusScoreList scores = new LocusScoreList(2, true);
+        for (int i = 0; i < 10; i++) {
+            scores.add(i * 10, i * 10 + 5, i, "probe" + i);
+        }
+        CompositeScore composite = new CompositeScore(100, 110, 7, new float[]{6, 8}, new String[]{"a", "b"},
+                WindowFunction.mean);
+        scores.add(composite);
+
+        assertEquals(11, scores.size());
+        assertEquals(30, scores.getStart(3));
+        assertEquals(35, scores.getEnd(3));
+        assertEquals(3, scores.getScore(3), 0);
+        assertEquals("probe3", scores.getName(3));
+        assertNull(scores.getObject(3));
+
+        LocusScore score = scores.get(3);
+        assertTrue(score instanceof NamedScore);
+        assertEquals(30, score.getStart());
+        assertEquals(3, score.getScore(), 0);
+
+        assertSame(composite, scores.get(10));
+        assertSame(composite, scores.getObject(10));
+        assertEquals(100, scores.getStart(10));
+        assertEquals(7, scores.getScore(10), 0);
+    }
+
+    @Test
+    public void testSubListAndAddAll() throws Exception {
+
+        LocusScoreList scores = new LocusScoreList(10);
+        for (int i = 0; i < 10; i++) {
+            scores.add(i * 10, i * 10 + 5, i);
+        }
+        assertTrue(scores.get(0) instanceof BasicScore);
+        assertFalse(scores.get(0) instanceof NamedScore);
+
+        LocusScoreList sub = scores.subList(2, 5);
+        assertEquals(3, sub.size());
+        assertEquals(20, sub.getStart(0));
+        assertEquals(4, sub.getScore(2), 0);
+        assertEquals(40, sub.get(2).getStart());
+
+        // Appending unnamed scores to a named list keeps them as basic scores
+        LocusScoreList named = new LocusScoreList(1, true);
+        named.add(0, 1, 1, "p");
+        named.addAll(sub);
+        assertEquals(4, named.size());
+        assertEquals(20, named.getStart(1));
+        assertFalse(named.get(1) instanceof NamedScore);
+
+        List<LocusScore> objects = new ArrayList<LocusScore>(sub);
+        LocusScoreList copy = LocusScoreList.asLocusScoreList(objects);
+        assertEquals(sub.size(), copy.size());
+        for (int i = 0; i < copy.size(); i++) {
+            assertSame(objects.get(i), copy.get(i));
+            assertEquals(sub.getStart(i), copy.getStart(i));
+        }
+        assertSame(scores, LocusScoreList.asLocusScoreList(scores));
+    }
+
+    @Test
+    public void testSubListReadOnly() throws Exception {
+
+        LocusScoreList scores = new LocusScoreList(20);
+        for (int i = 0; i < 10; i++) {
+            scores.add(i * 10, i * 10 + 5, i);
+        }
+
+        // Sub lists at the start and in the middle, both with spare capacity in the shared columns
+        for (LocusScoreList sub : new LocusScoreList[]{scores.subList(0, 10), scores.subList(2, 5)}) {
+            try {
+                sub.add(1000, 1005, 1);
+                fail("Expected UnsupportedOperationException");
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+            try {
+                sub.add(new BasicScore(1000, 1005, 1));
+                fail("Expected UnsupportedOperationException");
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+            try {
+                sub.addAll(scores.subList(0, 1));
+                fail("Expected UnsupportedOperationException");
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+        }
+        assertEquals(10, scores.size());
+        assertEquals(50, scores.getStart(5));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data;
+
+import org.apache.commons.io.FileUtils;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+public class SummaryFileTest extends AbstractHeadlessTest {
+
+    private File directory;
+    private File dataFile;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        directory = new File(TestUtils.TMP_OUTPUT_DIR, "summaries");
+        FileUtils.deleteDirectory(directory);
+        directory.mkdirs();
+        dataFile = new File(TestUtils.TMP_OUTPUT_DIR, "summary_file_test.txt");
+        FileUtils.writeStringToFile(dataFile, "data");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+        dataFile.delete();
+        super.tearDown();
+    }
+
+    @Test
+    public void testReadHeader() throws Exception {
+        SummaryFile summaryFile = new SummaryFile(dataFile, directory, ".test", 1, 1, "genome");
+        summaryFile.write(new SummaryFile.Body() {
+            public void write(DataOutputStream out) throws IOException {
+                out.writeInt(42);
+            }
+        });
+        assertTrue(summaryFile.exists());
+        assertEquals(0, directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".tmp");
+            }
+        }).length);
+
+        assertTrue(readHeader(summaryFile));
+        assertFalse(readHeader(new SummaryFile(dataFile, directory, ".test", 1, 2, "genome")));
+        assertFalse(readHeader(new SummaryFile(dataFile, directory, ".test", 2, 1, "genome")));
+
+        // A file for other keys has another name
+        assertFalse(summaryFile.getFile().equals(new SummaryFile(dataFile, directory, ".test", 1, 1, "other").getFile()));
+
+        // Stale once the data file changes
+        FileUtils.writeStringToFile(dataFile, "changed data");
+        assertFalse(readHeader(summaryFile));
+    }
+
+    private static boolean readHeader(SummaryFile summaryFile) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(summaryFile.getFile()));
+        try {
+            return summaryFile.readHeader(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testPrune() throws Exception {
+        long now = System.currentTimeMillis();
+        File[] files = new File[5];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File(directory, "summary" + i);
+            FileUtils.writeByteArrayToFile(files[i], new byte[1000]);
+            files[i].setLastModified(now - (files.length - i) * 60000L);
+        }
+
+        // Oldest first, except for the file kept
+        SummaryFile.prune(directory, 2500, files[0]);
+        assertTrue(files[0].exists());
+        assertFalse(files[1].exists());
+        assertFalse(files[2].exists());
+        assertFalse(files[3].exists());
+        assertTrue(files[4].exists());
+
+        SummaryFile.prune(directory, 2500, null);
+        assertTrue(files[0].exists());
+        assertTrue(files[4].exists());
+    }
+}
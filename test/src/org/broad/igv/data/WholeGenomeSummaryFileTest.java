@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class WholeGenomeSummaryFileTest extends AbstractHeadlessTest {
+
+    private File createDataFile(String content) throws Exception {
+        File dataFile = new File(TestUtils.TMP_OUTPUT_DIR, "summary_test.bed");
+        FileWriter writer = new FileWriter(dataFile);
+        writer.write(content);
+        writer.close();
+        return dataFile;
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+
+        File dataFile = createDataFile("chr1\t1\t100\n");
+        File dir = new File(TestUtils.TMP_OUTPUT_DIR);
+        WholeGenomeSummaryFile<float[]> summaryFile = new WholeGenomeSummaryFile<float[]>(dataFile, "coverage",
+                genome.getId(), WholeGenomeSummaryFile.FLOAT_ARRAY_CODEC, dir);
+        assertNull(summaryFile.read());
+
+        List<float[]> results = new ArrayList<float[]>();
+        results.add(new float[]{1, 2, 3});
+        results.add(null);
+        summaryFile.write(Arrays.asList("chr1", "chr2"), results);
+        assertTrue(summaryFile.getFile().exists());
+
+        Map<String, float[]> stored = summaryFile.read();
+        assertEquals(2, stored.size());
+        assertArrayEquals(new float[]{1, 2, 3}, stored.get("chr1"), 0);
+        assertTrue(stored.containsKey("chr2"));
+        assertNull(stored.get("chr2"));
+
+        // A different key has its own section of the same file
+        WholeGenomeSummaryFile<float[]> otherKey = new WholeGenomeSummaryFile<float[]>(dataFile, "features",
+                genome.getId(), WholeGenomeSummaryFile.FLOAT_ARRAY_CODEC, dir);
+        assertEquals(summaryFile.getFile(), otherKey.getFile());
+        assertNull(otherKey.read());
+        otherKey.write(Arrays.asList("chr1"), Arrays.asList(new float[]{4}));
+        assertArrayEquals(new float[]{4}, otherKey.read().get("chr1"), 0);
+        assertArrayEquals(new float[]{1, 2, 3}, summaryFile.read().get("chr1"), 0);
+
+        // A different genome has its own file
+        WholeGenomeSummaryFile<float[]> otherGenome = new WholeGenomeSummaryFile<float[]>(dataFile, "coverage",
+                "otherGenome", WholeGenomeSummaryFile.FLOAT_ARRAY_CODEC, dir);
+        assertFalse(summaryFile.getFile().equals(otherGenome.getFile()));
+        assertNull(otherGenome.read());
+
+        // Stale once the data file changes
+        createDataFile("chr1\t1\t100\nchr1\t200\t300\n");
+        assertNull(summaryFile.read());
+    }
+
+    @Test
+    public void testServiceUsesSummaryFile() throws Exception {
+
+        File dataFile = createDataFile("chr1\t1\t100\n");
+        WholeGenomeSummaryFile<float[]> summaryFile = new WholeGenomeSummaryFile<float[]>(dataFile, "test",
+                genome.getId(), WholeGenomeSummaryFile.FLOAT_ARRAY_CODEC, new File(TestUtils.TMP_OUTPUT_DIR));
+        summaryFile.getFile().delete();
+
+        final AtomicInteger count = new AtomicInteger();
+        WholeGenomeSummaryService.ChromosomeSummarizer<float[]> summarizer =
+                new WholeGenomeSummaryService.ChromosomeSummarizer<float[]>() {
+                    public float[] summarize(String chr) {
+                        count.incrementAndGet();
+                        return new float[]{chr.length()};
+                    }
+                };
+
+        WholeGenomeSummaryService service = new WholeGenomeSummaryService(2);
+        List<float[]> computed = service.getSummary(new Object(), "test", genome, summarizer, summaryFile).waitForResults();
+        int nChromosomes = genome.getLongChromosomeNames().size();
+        assertEquals(nChromosomes, count.get());
+
+        // The file is written by the task completing the summary, after results become available
+        long deadline = System.currentTimeMillis() + 10000;
+        while (summaryFile.read() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // A new owner reads the persisted summary rather than computing it
+        WholeGenomeSummaryService.Summary<float[]> summary =
+                service.getSummary(new Object(), "test", genome, summarizer, summaryFile);
+        assertTrue(summary.isComplete());
+        assertEquals(nChromosomes, count.get());
+        List<float[]> stored = summary.getResults();
+        assertEquals(computed.size(), stored.size());
+        for (int i = 0; i < computed.size(); i++) {
+            assertArrayEquals(computed.get(i), stored.get(i), 0);
+        }
+    }
+
+    @Test
+    public void testFailureNotPersisted() throws Exception {
+
+        File dataFile = createDataFile("chr1\t1\t100\n");
+        WholeGenomeSummaryFile<float[]> summaryFile = new WholeGenomeSummaryFile<float[]>(dataFile, "failed",
+                genome.getId(), WholeGenomeSummaryFile.FLOAT_ARRAY_CODEC, new File(TestUtils.TMP_OUTPUT_DIR));
+        summaryFile.getFile().delete();
+
+        final String failedChr = genome.getLongChromosomeNames().get(0);
+        WholeGenomeSummaryService service = new WholeGenomeSummaryService(2);
+        WholeGenomeSummaryService.Summary<float[]> summary = service.getSummary(new Object(), "failed", genome,
+                new WholeGenomeSummaryService.ChromosomeSummarizer<float[]>() {
+                    public float[] summarize(String chr) throws Exception {
+                        if (chr.equals(failedChr)) {
+                            throw new IOException("Simulated failure");
+                        }
+                        return new float[]{chr.length()};
+                    }
+                }, summaryFile);
+
+        assertEquals(genome.getLongChromosomeNames().size() - 1, summary.waitForResults().size());
+        Thread.sleep(100);
+        assertFalse(summaryFile.getFile().exists());
+    }
+}
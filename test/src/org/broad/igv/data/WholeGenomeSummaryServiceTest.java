@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.data.seg.SegmentedAsciiDataSet;
+import org.broad.igv.feature.LocusScore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class WholeGenomeSummaryServiceTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testSummaryInGenomeOrder() throws Exception {
+
+        WholeGenomeSummaryService service = new WholeGenomeSummaryService(4);
+        final AtomicInteger count = new AtomicInteger();
+        WholeGenomeSummaryService.ChromosomeSummarizer<String> summarizer =
+                new WholeGenomeSummaryService.ChromosomeSummarizer<String>() {
+                    public String summarize(String chr) {
+                        count.incrementAndGet();
+                        return chr;
+                    }
+                };
+
+        Object owner = new Object();
+        WholeGenomeSummaryService.Summary<String> summary = service.getSummary(owner, "test", genome, summarizer);
+        assertEquals(genome.getLongChromosomeNames(), summary.waitForResults());
+        assertTrue(summary.isComplete());
+        assertFalse(service.isComputing(owner));
+
+        // Cached per owner and key
+        assertSame(summary, service.getSummary(owner, "test", genome, summarizer));
+        assertEquals(genome.getLongChromosomeNames().size(), count.get());
+        assertNotSame(summary, service.getSummary(owner, "other", genome, summarizer));
+    }
+
+    @Test
+    public void testFailedSummaryRecomputed() throws Exception {
+
+        WholeGenomeSummaryService service = new WholeGenomeSummaryService(4);
+        final String failedChr = genome.getLongChromosomeNames().get(0);
+        final AtomicInteger failures = new AtomicInteger(1);
+        WholeGenomeSummaryService.ChromosomeSummarizer<String> summarizer =
+                new WholeGenomeSummaryService.ChromosomeSummarizer<String>() {
+                    public String summarize(String chr) throws Exception {
+                        if (chr.equals(failedChr) && failures.getAndDecrement() > 0) {
+                            throw new Exception("test failure");
+                        }
+                        return chr;
+                    }
+                };
+
+        Object owner = new Object();
+        WholeGenomeSummaryService.Summary<String> failed = service.getSummary(owner, "test", genome, summarizer);
+        assertFalse(failed.waitForResults().contains(failedChr));
+
+        // The failed summary is not cached
+        WholeGenomeSummaryService.Summary<String> summary = service.getSummary(owner, "test", genome, summarizer);
+        assertNotSame(failed, summary);
+        assertEquals(genome.getLongChromosomeNames(), summary.waitForResults());
+        assertSame(summary, service.getSummary(owner, "test", genome, summarizer));
+    }
+
+    @Test
+    public void testPartialResults() throws Exception {
+
+        WholeGenomeSummaryService service = new WholeGenomeSummaryService(4);
+        final String blockedChr = genome.getLongChromosomeNames().get(0);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        WholeGenomeSummaryService.Summary<String> summary = service.getSummary(this, null, genome,
+                new WholeGenomeSummaryService.ChromosomeSummarizer<String>() {
+                    public String summarize(String chr) throws Exception {
+                        if (chr.equals(blockedChr)) {
+                            release.await(10, TimeUnit.SECONDS);
+                        }
+                        return chr;
+                    }
+                });
+
+        int nChromosomes = genome.getLongChromosomeNames().size();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (summary.getResults().size() < nChromosomes - 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        List<String> partial = summary.getResults();
+        assertEquals(nChromosomes - 1, partial.size());
+        assertFalse(partial.contains(blockedChr));
+        assertFalse(summary.isComplete());
+        assertTrue(service.isComputing(this));
+        assertFalse(service.isComputing(new Object()));
+
+        release.countDown();
+        assertEquals(genome.getLongChromosomeNames(), summary.waitForResults());
+        assertFalse(service.isComputing(this));
+    }
+
+    @Test
+    public void testSegmentedWholeGenomeScores() throws Exception {
+
+        SegmentedAsciiDataSet dataSet = new SegmentedAsciiDataSet(genome);
+        List<String> chrNames = genome.getLongChromosomeNames();
+        for (String chr : chrNames) {
+            dataSet.addSegment("sample", chr, 1000, 2000000, 1.5f, null);
+            dataSet.addSegment("sample", chr, 3000000, 4000000, -0.5f, null);
+        }
+
+        List<LocusScore> scores = dataSet.getWholeGenomeScores("sample");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (scores.size() < 2 * chrNames.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            scores = dataSet.getWholeGenomeScores("sample");
+        }
+        assertEquals(2 * chrNames.size(), scores.size());
+
+        // In genome coordinates, in order
+        List<LocusScore> expected = new ArrayList<LocusScore>();
+        int lastStart = -1;
+        for (int i = 0; i < scores.size(); i++) {
+            LocusScore score = scores.get(i);
+            String chr = chrNames.get(i / 2);
+            assertEquals(genome.getGenomeCoordinate(chr, i % 2 == 0 ? 1000 : 3000000), score.getStart());
+            assertTrue(score.getStart() >= lastStart);
+            lastStart = score.getStart();
+        }
+
+        // Complete results are cached
+        assertSame(scores, dataSet.getWholeGenomeScores("sample"));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data.expression;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.data.GenomeSummaryData;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ExpressionDatasetCacheTest extends AbstractHeadlessTest {
+
+    private static final String[] SAMPLES = {"A", "B", "C"};
+
+    private File gctFile;
+    private File cacheFile;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        File dir = new File(TestUtils.DATA_DIR, "out");
+        dir.mkdirs();
+        gctFile = new File(dir, "cache_test.gct");
+
+        Random random = new Random(17);
+        PrintWriter pw = new PrintWriter(gctFile);
+        pw.println("#1.2");
+        pw.println("300\t" + SAMPLES.length);
+        pw.println("Name\tDescription\t" + SAMPLES[0] + "\t" + SAMPLES[1] + "\t" + SAMPLES[2]);
+        for (int i = 0; i < 300; i++) {
+            String chr = "chr" + (1 + i % 3);
+            int start = 1000 + random.nextInt(100000000);
+            pw.print("probe" + (i % 250) + "\t|@" + chr + ":" + start + "-" + (start + 50 + i) + "|");
+            for (int s = 0; s < SAMPLES.length; s++) {
+                pw.print("\t" + (i % 17 == s ? "NA" : String.valueOf(random.nextGaussian())));
+            }
+            pw.println();
+        }
+        pw.close();
+
+        cacheFile = ExpressionDatasetCache.forPath(gctFile.getAbsolutePath(), genome, null).getFile();
+        cacheFile.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+        cacheFile.delete();
+        gctFile.delete();
+    }
+
+    @Test
+    public void testCacheReused() throws Exception {
+
+        ExpressionDataset parsed = new ExpressionDataset(genome);
+        new ExpressionFileParser(new ResourceLocator(gctFile.getAbsolutePath()), null, genome).parse(parsed);
+
+        createDataset();
+        assertTrue(cacheFile.exists());
+        ExpressionDataset cached = createDataset();
+        assertNotSame(ExpressionDataset.class, cached.getClass());
+
+        assertEquals(parsed.getType(), cached.getType());
+        assertArrayEquals(parsed.getTrackNames(), cached.getTrackNames());
+        assertEquals(new HashSet<String>(Arrays.asList(parsed.getChromosomes())),
+                new HashSet<String>(Arrays.asList(cached.getChromosomes())));
+
+        for (String chr : parsed.getChromosomes()) {
+            assertArrayEquals(parsed.getStartLocations(chr), cached.getStartLocations(chr));
+            assertArrayEquals(parsed.getEndLocations(chr), cached.getEndLocations(chr));
+            assertArrayEquals(parsed.getFeatureNames(chr), cached.getFeatureNames(chr));
+            assertEquals(parsed.getLongestFeature(chr), cached.getLongestFeature(chr));
+            for (String sample : SAMPLES) {
+                assertArrayEquals(parsed.getData(sample, chr), cached.getData(sample, chr), 0);
+            }
+        }
+
+        for (String sample : SAMPLES) {
+            GenomeSummaryData expected = new GenomeSummaryData(genome, new String[]{sample});
+            for (String chr : parsed.getChromosomes()) {
+                expected.addData(chr, parsed.getStartLocations(chr),
+                        Collections.singletonMap(sample, parsed.getData(sample, chr)));
+            }
+            GenomeSummaryData summary = cached.getGenomeSummary(sample);
+            assertNotNull(summary);
+            assertArrayEquals(expected.getLocations(), summary.getLocations());
+            assertArrayEquals(expected.getData(sample), summary.getData(sample), 0);
+        }
+    }
+
+    @Test
+    public void testModifiedFileInvalidatesCache() throws Exception {
+
+        createDataset();
+        ExpressionDatasetCache cache = ExpressionDatasetCache.forPath(gctFile.getAbsolutePath(), genome, null);
+        assertNotNull(cache.read(genome));
+
+        gctFile.setLastModified(gctFile.lastModified() - 10000);
+        assertNull(cache.read(genome));
+    }
+
+    @Test
+    public void testAnnotationMappedNotCached() throws Exception {
+
+        // Gene names are mapped with the annotations loaded for the session, which the cache key does not cover
+        PrintWriter pw = new PrintWriter(gctFile);
+        pw.println("#1.2");
+        pw.println("2\t1");
+        pw.println("Name\tDescription\tA");
+        pw.println("probe1\t|@chr1:1000-2000|\t1.0");
+        pw.println("EGFR\tna\t2.0");
+        pw.close();
+
+        createDataset();
+        assertFalse(cacheFile.exists());
+    }
+
+    private ExpressionDataset createDataset() throws Exception {
+        return new ExpressionFileParser(new ResourceLocator(gctFile.getAbsolutePath()), null, genome).createDataset();
+    }
+}
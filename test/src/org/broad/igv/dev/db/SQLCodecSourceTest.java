@@ -22,10 +22,19 @@ import htsjdk.tribble.Feature;
 import org.junit.Test;
 
 import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
 
 public class SQLCodecSourceTest {
 
@@ -158,4 +167,77 @@ public class SQLCodecSourceTest {
         assertEquals(1, count);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testQueryReusesStatements() throws Exception {
+        SQLCodecSource reader = getUnigene("sql/Unigene.unsorted.db");
+        reader.setFeatureWindowSize(Integer.MAX_VALUE / 2);
+        DBConnectionPool pool = DBManager.getPool(reader.locator);
+        int connections = pool.getConnectionCount();
+        int prepared = pool.getPrepareCount();
+
+        int count0 = TestUtils.assertFeatureIteratorSorted(reader.getFeatures("chr2", 0, Integer.MAX_VALUE / 4));
+        int count1 = TestUtils.assertFeatureIteratorSorted(reader.getFeatures("chr2", 0, Integer.MAX_VALUE / 4));
+        assertEquals(71, count0);
+        assertEquals(count0, count1);
+
+        // At most one new connection and statement for both queries
+        assertTrue(pool.getConnectionCount() - connections <= 1);
+        assertTrue(pool.getPrepareCount() - prepared <= 1);
+    }
+
+    /**
+     * Range queries restricted by a UCSC bin column should return the same features as plain range queries
+     */
+    @Test
+    public void testQueryBinned() throws Exception {
+        new File(TestUtils.TMP_OUTPUT_DIR).mkdirs();
+        File dbFile = new File(TestUtils.TMP_OUTPUT_DIR, "binned.db");
+        dbFile.delete();
+        String url = DBManager.createConnectionURL("sqlite", dbFile.getParentFile().getAbsolutePath(), dbFile.getName(), null);
+
+        Connection conn = DriverManager.getConnection(url);
+        Statement st = conn.createStatement();
+        st.executeUpdate("CREATE TABLE features (bin INTEGER, chrom TEXT, chromStart INTEGER, chromEnd INTEGER, name TEXT)");
+        st.close();
+        PreparedStatement insert = conn.prepareStatement("INSERT INTO features VALUES (?, ?, ?, ?, ?)");
+        Random random = new Random(1234);
+        for (int i = 0; i < 500; i++) {
+            int start = random.nextInt(50000000);
+            int length = i % 10 == 0 ? random.nextInt(2000000) : 1 + random.nextInt(5000);
+            insert.setInt(1, SQLCodecSource.binFromRange(start, start + length));
+            insert.setString(2, "chr1");
+            insert.setInt(3, start);
+            insert.setInt(4, start + length);
+            insert.setString(5, "f" + i);
+            insert.executeUpdate();
+        }
+        insert.close();
+        conn.close();
+
+        ResourceLocator locator = new ResourceLocator(url);
+        SQLCodecSource binned = new SQLCodecSource(new DBProfile.DBTable(locator, "features", "bed", "bin", "chrom",
+                "chromStart", "chromEnd", 2, Integer.MAX_VALUE, null, null, null), new IGVBEDCodec());
+        SQLCodecSource plain = new SQLCodecSource(new DBProfile.DBTable(locator, "features", "bed", null, "chrom",
+                "chromStart", "chromEnd", 2, Integer.MAX_VALUE, null, null, null), new IGVBEDCodec());
+
+        for (int i = 0; i < 20; i++) {
+            int start = random.nextInt(50000000);
+            int end = start + random.nextInt(1000000);
+            List<String> expected = names(plain.getFeatures("chr1", start, end));
+            List<String> actual = names(binned.getFeatures("chr1", start, end));
+            assertEquals(expected, actual);
+        }
+        DBManager.shutdown();
+    }
+
+    private static List<String> names(Iterator<Feature> features) {
+        List<String> names = new ArrayList<String>();
+        while (features.hasNext()) {
+            Feature f = features.next();
+            names.add(f.getStart() + "-" + f.getEnd());
+        }
+        Collections.sort(names);
+        return names;
+    }
+}
@@ -16,8 +16,13 @@ import org.broad.igv.track.TribbleFeatureSource;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.TestUtils;
 import org.broad.igv.variant.vcf.VCFVariant;
+import htsjdk.tribble.readers.LineIterator;
+import htsjdk.tribble.readers.LineIteratorImpl;
+import htsjdk.tribble.readers.LineReaderUtil;
+import htsjdk.variant.vcf.VCFCodec;
 import org.junit.Test;
 
+import java.io.FileInputStream;
 import java.util.Iterator;
 
 import static org.junit.Assert.*;
@@ -65,4 +70,48 @@ public class VCFWrapperCodecTest extends AbstractHeadlessTest {
 
 
     }
+
+    /**
+     * Lazily decoded variants should be indistinguishable from eagerly decoded ones once their INFO and
+     * genotypes are requested.
+     */
+    @Test
+    public void testLazyDecoding() throws Exception {
+
+        String filePath = TestUtils.DATA_DIR + "vcf/missingFields.vcf";
+
+        VCFWrapperCodec eagerCodec = new VCFWrapperCodec(new VCFCodec(), genome, false);
+        VCFWrapperCodec lazyCodec = new VCFWrapperCodec(new VCFCodec(), genome, true);
+        LineIterator eagerIter = new LineIteratorImpl(LineReaderUtil.fromBufferedStream(new FileInputStream(filePath)));
+        LineIterator lazyIter = new LineIteratorImpl(LineReaderUtil.fromBufferedStream(new FileInputStream(filePath)));
+        eagerCodec.readActualHeader(eagerIter);
+        lazyCodec.readActualHeader(lazyIter);
+
+        int count = 0;
+        while (eagerIter.hasNext()) {
+            VCFVariant eager = eagerCodec.decode(eagerIter.next());
+            VCFVariant lazy = lazyCodec.decode(lazyIter.next());
+
+            assertEquals(eager.getStart(), lazy.getStart());
+            assertEquals(eager.getEnd(), lazy.getEnd());
+            assertArrayEquals(eager.getAlleleFreqs(), lazy.getAlleleFreqs(), 1.0e-6);
+            assertEquals(eager.getHetCount(), lazy.getHetCount());
+            assertEquals(eager.getHomVarCount(), lazy.getHomVarCount());
+            assertEquals(eager.getAttributes(), lazy.getAttributes());
+            assertEquals(eager.getSampleNames(), lazy.getSampleNames());
+            for (String sample : eager.getSampleNames()) {
+                assertEquals(eager.getGenotype(sample).getType(), lazy.getGenotype(sample).getType());
+                assertEquals(eager.getGenotype(sample).getPhredScaledQual(), lazy.getGenotype(sample).getPhredScaledQual(), 1.0e-6);
+            }
+            count++;
+        }
+        assertTrue(count > 0);
+    }
+
+    @Test
+    public void testRepairMissingListValues() throws Exception {
+        assertEquals("\tGT:GQ:PL\t1/1:99:63,127,0,0,0,0\t.\t./.:.:0,1",
+                VCFWrapperCodec.repairMissingListValues("\tGT:GQ:PL\t1/1:99:63,127,0,.,.,.\t.\t./.:.:.,1"));
+        assertEquals("\t0/1:0.5,.5", VCFWrapperCodec.repairMissingListValues("\t0/1:0.5,.5"));
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.gwas;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.Globals;
+import org.broad.igv.exceptions.ParserException;
+import org.broad.igv.track.Track;
+import org.broad.igv.track.TrackLoader;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.broad.igv.util.collections.DoubleArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.*;
+
+import static junit.framework.Assert.*;
+
+public class GWASBinaryReaderTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testConvert() throws Exception {
+
+        // Two chromosomes, enough rows and distinct SNP ids for 2 byte codes and stored summary levels
+        String textPath = TestUtils.TMP_OUTPUT_DIR + "test.gwas";
+        Random random = new Random(12345);
+        Map<String, String> lines = new HashMap<String, String>();
+        PrintWriter pw = new PrintWriter(textPath);
+        pw.println("SNP\tCHR\tBP\tP\tA1");
+        for (String chr : new String[]{"chr1", "chr2"}) {
+            int position = 1000;
+            for (int i = 0; i < 2000; i++) {
+                position += random.nextInt(20000);
+                String p = i % 100 == 0 ? "NA" : String.valueOf(random.nextDouble() / (1 + random.nextInt(100000)));
+                String line = "rs" + i + "\t" + chr + "\t" + position + "\t" + p + "\t" + (i % 2 == 0 ? "A" : "G");
+                pw.println(line);
+                lines.put(chr + ":" + position, line);
+            }
+        }
+        pw.close();
+
+        String binPath = TestUtils.TMP_OUTPUT_DIR + "test" + GWASBinaryReader.EXTENSION;
+        GWASBinaryWriter.convert(textPath, binPath, genome);
+
+        GWASData textData = new GWASParser(new ResourceLocator(textPath), genome).parse();
+        GWASBinaryReader reader = new GWASBinaryReader(binPath, genome);
+        GWASData binData = new GWASData(reader);
+
+        assertTrue(binData.isIndexed());
+        assertEquals(textData.getChromosomes(), binData.getChromosomes());
+        assertEquals((float) textData.getMaxValue(), (float) binData.getMaxValue());
+
+        for (String chr : textData.getChromosomes()) {
+
+            // Before the points are read the stored coarse levels are used
+            GWASPyramid summary = binData.getPyramid(chr);
+            assertNull(summary.getLevelForScale(GWASBinaryReader.STORED_MIN_BIN_SIZE - 1));
+            GWASPyramid.Level stored = summary.getLevelForScale(GWASBinaryReader.STORED_MIN_BIN_SIZE);
+            GWASPyramid.Level full = textData.getPyramid(chr).getLevelForScale(GWASBinaryReader.STORED_MIN_BIN_SIZE);
+            assertEquals(full.size(), stored.size());
+            for (int i = 0; i < full.size(); i++) {
+                assertEquals(full.getStart(i), stored.getStart(i));
+                assertEquals(full.getMax(i), stored.getMax(i));
+                assertEquals(full.getCount(i), stored.getCount(i));
+            }
+
+            IntArrayList textLocations = textData.getLocations(chr);
+            DoubleArrayList textValues = textData.getValues(chr);
+            IntArrayList binLocations = binData.getLocations(chr);
+            DoubleArrayList binValues = binData.getValues(chr);
+            assertEquals(textLocations.size(), binLocations.size());
+            for (int i = 0; i < textLocations.size(); i++) {
+                assertEquals(textLocations.get(i), binLocations.get(i));
+                assertEquals((float) textValues.get(i), (float) binValues.get(i));
+            }
+
+            // Only one chromosome is held in memory
+            assertEquals(1, binData.getLocations().size());
+
+            for (int i = 0; i < binLocations.size(); i += 37) {
+                int location = binLocations.get(i);
+                assertEquals(textData.getNearestIndexByLocation(chr, location + 5, 0, 100, 1000),
+                        binData.getNearestIndexByLocation(chr, location + 5, 0, 100, 1000));
+
+                String expected = DescriptionCache.formatDescription(reader.getHeaderTokens(),
+                        Globals.singleTabMultiSpacePattern.split(lines.get(chr + ":" + location)));
+                assertEquals(expected, binData.getIndexedDescriptionString(chr, i));
+            }
+        }
+        reader.close();
+    }
+
+    @Test
+    public void testConvertUnsorted() throws Exception {
+        String textPath = TestUtils.TMP_OUTPUT_DIR + "unsorted.gwas";
+        PrintWriter pw = new PrintWriter(textPath);
+        pw.println("SNP\tCHR\tBP\tP");
+        pw.println("rs1\tchr1\t2000\t0.01");
+        pw.println("rs2\tchr1\t1000\t0.02");
+        pw.close();
+
+        File binFile = new File(TestUtils.TMP_OUTPUT_DIR, "unsorted" + GWASBinaryReader.EXTENSION);
+        binFile.delete();
+        try {
+            GWASBinaryWriter.convert(textPath, binFile.getAbsolutePath(), genome);
+            fail("Expected an exception for unsorted input");
+        } catch (ParserException e) {
+            // expected
+        }
+
+        // No partial output is left behind
+        assertFalse(binFile.exists());
+        assertFalse(new File(binFile.getAbsolutePath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testLoadTrack() throws Exception {
+        String binPath = TestUtils.TMP_OUTPUT_DIR + "smallp" + GWASBinaryReader.EXTENSION;
+        GWASBinaryWriter.convert(TestUtils.DATA_DIR + "gwas/smallp.gwas", binPath, genome);
+
+        List<Track> tracks = (new TrackLoader()).load(new ResourceLocator(binPath), genome);
+        GWASTrack track = (GWASTrack) tracks.get(0);
+        String desc = track.getDescription("chr6", 1);
+
+        String[] lines = desc.split("<br>");
+        String[] expTokens = new String[]{"rs29228", "6", "29623739", "0.931148124684"};
+        int offset = 3;
+        for (int tn = 0; tn < expTokens.length; tn++) {
+            String[] areas = lines[tn + offset].split("\\s");
+            assertEquals("Value for field " + areas[0] + " not equal", expTokens[tn], areas[1]);
+        }
+    }
+}
@@ -61,6 +61,42 @@ public class GWASParserTest extends AbstractHeadlessTest {
 
     }
 
+    @Test
+    public void testPyramid() throws Exception {
+        GWASParser parser = new GWASParser(new ResourceLocator(TestUtils.DATA_DIR + "gwas/smallp.gwas"), genome);
+        GWASData data = parser.parse();
+        IntArrayList locations = data.getLocations().get("chr6");
+        DoubleArrayList values = data.getValues().get("chr6");
+
+        GWASPyramid pyramid = data.getPyramid("chr6");
+        assertNotNull(pyramid);
+        assertNull(pyramid.getLevelForScale(GWASPyramid.BASE_BIN_SIZE - 1));
+
+        // Every level accounts for all points, and bin maxima match the raw data
+        for (int l = 0; l < pyramid.getLevelCount(); l++) {
+            GWASPyramid.Level level = pyramid.getLevel(l);
+            assertEquals(GWASPyramid.BASE_BIN_SIZE << l, level.getBinSize());
+            int total = 0;
+            for (int b = 0; b < level.size(); b++) {
+                int start = level.getStart(b);
+                int end = start + level.getBinSize();
+                double max = Double.NEGATIVE_INFINITY;
+                int count = 0;
+                for (int i = 0; i < locations.size(); i++) {
+                    if (locations.get(i) >= start && locations.get(i) < end) {
+                        max = Math.max(max, values.get(i));
+                        count++;
+                    }
+                }
+                assertEquals(count, level.getCount(b));
+                assertEquals((float) max, level.getMax(b));
+                total += count;
+            }
+            assertEquals(locations.size(), total);
+        }
+        assertEquals(1, pyramid.getLevel(pyramid.getLevelCount() - 1).size());
+    }
+
     @Test
     public void testBadPs() throws Exception {
         String[] finames = {"badp_neg.gwas", "badp_text.gwas", "badp_zero.gwas"};
@@ -11,14 +11,21 @@
 
 package org.broad.igv.maf;
 
+import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.TestUtils;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * @author jrobinso
@@ -72,6 +79,152 @@ public class MAFParserTest {
 
         String indexFile = mafFile + ".index";
         (new File(indexFile)).delete();
+        (new File(mafFile + MAFIndex.BINARY_INDEX_EXTENSION)).delete();
 
     }
+
+    @Test
+    public void testBinaryIndex() throws Exception {
+
+        String mafFile = TestUtils.DATA_DIR + "maf/ucscSample.maf";
+        String indexFile = TestUtils.TMP_OUTPUT_DIR + "ucscSample.maf" + MAFIndex.BINARY_INDEX_EXTENSION;
+        new File(TestUtils.TMP_OUTPUT_DIR).mkdirs();
+
+        MAFIndex.blockSize = 1;
+        MAFIndex index = MAFIndex.createIndex(mafFile);
+        MAFIndex.writeBinaryIndex(index, indexFile, mafFile);
+        MAFIndex loaded = MAFIndex.loadIndex(indexFile);
+
+        assertEquals(index.getSpecies(), loaded.getSpecies());
+        assertEquals(index.getChromosomes(), loaded.getChromosomes());
+        for (String chr : index.getChromosomes()) {
+            MAFIndex.ChrIndex expected = index.getChrIndex(chr);
+            MAFIndex.ChrIndex actual = loaded.getChrIndex(chr);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.getStart(i), actual.getStart(i));
+                assertEquals(expected.getEnd(i), actual.getEnd(i));
+                assertEquals(expected.getOffset(i), actual.getOffset(i));
+                for (int sp = 0; sp < index.getSpecies().size(); sp++) {
+                    assertEquals(expected.hasSpecies(i, sp), actual.hasSpecies(i, sp));
+                }
+            }
+        }
+
+        // The first alignment (40187-40242) has no cavPor3 sequence, the last one does
+        MAFIndex.ChrIndex chrIndex = loaded.getChrIndex("chr1");
+        int cavPor3 = loaded.getSpecies().indexOf("cavPor3");
+        int[] first = chrIndex.findOverlapping(40190, 40200);
+        assertEquals(1, first.length);
+        assertEquals(false, chrIndex.hasSpecies(first[0], cavPor3));
+        int[] last = chrIndex.findOverlapping(43220, 43230);
+        assertEquals(1, last.length);
+        assertEquals(true, chrIndex.hasSpecies(last[0], cavPor3));
+        assertEquals(0, chrIndex.findOverlapping(10000000, 10000100).length);
+    }
+
+    @Test
+    public void testInvalidBinaryIndex() throws Exception {
+
+        File dir = new File(TestUtils.TMP_OUTPUT_DIR);
+        dir.mkdirs();
+        File mafFile = new File(dir, "binaryIndexTest.maf");
+        FileUtils.copyFile(new File(TestUtils.DATA_DIR + "maf/ucscSample.maf"), mafFile);
+        File indexFile = new File(mafFile.getPath() + ".index");
+        File binaryIndexFile = new File(mafFile.getPath() + MAFIndex.BINARY_INDEX_EXTENSION);
+        indexFile.delete();
+        binaryIndexFile.delete();
+
+        try {
+            MAFIndex.blockSize = 1;
+            int expected = new MAFParser(mafFile.getPath()).loadAlignments("chr1", 0, 1000000).size();
+            assertTrue(indexFile.exists());
+            assertTrue(binaryIndexFile.exists());
+
+            // A truncated index is ignored and replaced
+            RandomAccessFile raf = new RandomAccessFile(binaryIndexFile, "rw");
+            raf.setLength(20);
+            raf.close();
+            assertEquals(expected, new MAFParser(mafFile.getPath()).loadAlignments("chr1", 0, 1000000).size());
+            assertTrue(binaryIndexFile.length() > 20);
+
+            // The index is stale once the MAF file changes
+            MAFIndex.loadBinaryIndex(binaryIndexFile.getPath(), mafFile.getPath());
+            mafFile.setLastModified(mafFile.lastModified() - 10000);
+            try {
+                MAFIndex.loadBinaryIndex(binaryIndexFile.getPath(), mafFile.getPath());
+                Assert.fail("Expected stale index to be rejected");
+            } catch (IOException e) {
+                // expected
+            }
+            assertEquals(expected, new MAFParser(mafFile.getPath()).loadAlignments("chr1", 0, 1000000).size());
+            MAFIndex.loadBinaryIndex(binaryIndexFile.getPath(), mafFile.getPath());
+        } finally {
+            mafFile.delete();
+            indexFile.delete();
+            binaryIndexFile.delete();
+        }
+    }
+
+    @Test
+    public void testReadOnlyDirectory() throws Exception {
+
+        File dir = new File(TestUtils.TMP_OUTPUT_DIR, "readOnlyMaf");
+        dir.mkdirs();
+        File mafFile = new File(dir, "ucscSample.maf");
+        FileUtils.copyFile(new File(TestUtils.DATA_DIR + "maf/ucscSample.maf"), mafFile);
+        File summaryIndexFile = new File(MAFParser.getSummaryIndexPath(mafFile.getPath()));
+        summaryIndexFile.delete();
+        dir.setWritable(false);
+
+        try {
+            // Permissions do not apply to root
+            Assume.assumeTrue(!dir.canWrite());
+
+            MAFIndex.blockSize = 1;
+            int expected = new MAFParser(mafFile.getPath()).loadAlignments("chr1", 0, 1000000).size();
+            assertFalse(new File(mafFile.getPath() + ".index").exists());
+            assertFalse(new File(mafFile.getPath() + MAFIndex.BINARY_INDEX_EXTENSION).exists());
+            assertTrue(summaryIndexFile.exists());
+
+            MAFIndex.loadBinaryIndex(summaryIndexFile.getPath(), mafFile.getPath());
+            assertEquals(expected, new MAFParser(mafFile.getPath()).loadAlignments("chr1", 0, 1000000).size());
+        } finally {
+            dir.setWritable(true);
+            mafFile.delete();
+            dir.delete();
+            summaryIndexFile.delete();
+        }
+    }
+
+    @Test
+    public void testSpeciesFilter() throws Exception {
+
+        String mafFile = TestUtils.DATA_DIR + "maf/ucscSample.maf";
+        MAFIndex.blockSize = 1;
+        MAFParser parser = new MAFParser(mafFile);
+
+        List<MultipleAlignmentBlock> all = parser.loadAlignments("chr1", 0, 1000000);
+        List<MultipleAlignmentBlock> filtered = parser.loadAlignments("chr1", 0, 1000000, Arrays.asList("panTro2", "cavPor3"));
+        assertEquals(all.size(), filtered.size());
+
+        for (int i = 0; i < all.size(); i++) {
+            MultipleAlignmentBlock ma = all.get(i);
+            MultipleAlignmentBlock fma = filtered.get(i);
+            assertEquals(ma.getStart(), fma.getStart());
+            assertEquals(ma.getRefSequence().getText(), fma.getRefSequence().getText());
+            assertEquals(ma.getGaps().size(), fma.getGaps().size());
+            for (MultipleAlignmentBlock.Sequence seq : fma.getSequences()) {
+                String sp = seq.getSpecies();
+                assertTrue(sp.equals("hg18") || sp.equals("panTro2") || sp.equals("cavPor3"));
+                assertEquals(ma.getSequence(sp).getText(), seq.getText());
+                assertEquals(ma.getSequence(sp).getStart(), seq.getStart());
+                assertEquals(ma.getSequence(sp).getStrand(), seq.getStrand());
+            }
+            assertEquals(ma.getSequence("panTro2") != null, fma.getSequence("panTro2") != null);
+        }
+
+        (new File(mafFile + ".index")).delete();
+        (new File(mafFile + MAFIndex.BINARY_INDEX_EXTENSION)).delete();
+    }
 }
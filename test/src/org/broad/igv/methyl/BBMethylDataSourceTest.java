@@ -117,10 +117,10 @@ public class BBMethylDataSourceTest {
             nonCachedScores.add(iter.next());
         }
 
-        int maxTileCount = 100000;
+        long memoryBudget = 100000000;
         int tileSize = 100;
         MethylDataSource cachedSource = new CachingMethylSource(new BBMethylDataSource(reader, BBMethylDataSource.Type.ZILLER, genome),
-                maxTileCount, tileSize);
+                memoryBudget, tileSize);
         Iterator<MethylScore> iter2 = cachedSource.query(chr, start, end);
         List<MethylScore> cachedScores = new ArrayList<MethylScore>();
         while (iter2.hasNext()) {
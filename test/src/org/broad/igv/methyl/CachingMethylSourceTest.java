@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not
+ * responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL), Version 2.1 which is
+ * available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.methyl;
+
+import org.broad.igv.feature.Strand;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CachingMethylSourceTest {
+
+    /**
+     * A score every 10 bp of chr1 up to 100,000, percent and count derived from the position
+     */
+    static class TestSource implements MethylDataSource {
+
+        int queryCount = 0;
+
+        public synchronized Iterator<MethylScore> query(String chr, int start, int end) {
+            queryCount++;
+            List<MethylScore> scores = new ArrayList<MethylScore>();
+            for (int pos = 0; pos < 100000; pos += 10) {
+                if (pos + 2 >= start && pos <= end) {
+                    Strand strand = (pos / 10) % 2 == 0 ? Strand.POSITIVE : Strand.NEGATIVE;
+                    scores.add(new MethylScore(chr, pos, pos + 2, strand, (pos % 1000) / 10f, pos % 7));
+                }
+            }
+            return scores.iterator();
+        }
+    }
+
+    @Test
+    public void testQueryMatchesSource() throws Exception {
+        TestSource reader = new TestSource();
+        CachingMethylSource source = new CachingMethylSource(reader, 1000);
+        source.setPrefetch(false);
+
+        int start = 2345;
+        int end = 5678;
+        List<MethylScore> expected = toList(reader.query("chr1", start, end));
+        List<MethylScore> actual = toList(source.query("chr1", start, end));
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            MethylScore e = expected.get(i);
+            MethylScore a = actual.get(i);
+            assertEquals(e.getChr(), a.getChr());
+            assertEquals(e.getStart(), a.getStart());
+            assertEquals(e.getEnd(), a.getEnd());
+            assertEquals(e.getStrand(), a.getStrand());
+            assertEquals(e.getScore(), a.getScore(), 1.0e-6);
+            assertEquals(e.getCount(), a.getCount());
+        }
+
+        // Cached bins are not read again
+        int queryCount = reader.queryCount;
+        toList(source.query("chr1", start + 100, end - 100));
+        assertEquals(queryCount, reader.queryCount);
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        CachingMethylSource source = new CachingMethylSource(new TestSource(), 1000);
+
+        toList(source.query("chr1", 5100, 5900));
+        assertTrue(source.isCached("chr1", 5));
+
+        long timeout = System.currentTimeMillis() + 10000;
+        while (!(source.isCached("chr1", 4) && source.isCached("chr1", 6)) && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertTrue(source.isCached("chr1", 4));
+        assertTrue(source.isCached("chr1", 6));
+    }
+
+    @Test
+    public void testMemoryBudget() throws Exception {
+        // 100 scores per bin, room for about 3 bins
+        long budget = 3 * 100 * CachingMethylSource.BYTES_PER_SCORE + 10;
+        CachingMethylSource source = new CachingMethylSource(new TestSource(), budget, 1000);
+        source.setPrefetch(false);
+
+        for (int b = 0; b < 20; b++) {
+            toList(source.query("chr1", b * 1000 + 10, b * 1000 + 900));
+            assertTrue(source.getMemoryUsed() <= budget);
+        }
+        assertTrue(source.isCached("chr1", 19));
+        assertFalse(source.isCached("chr1", 0));
+    }
+
+    private static List<MethylScore> toList(Iterator<MethylScore> iter) {
+        List<MethylScore> scores = new ArrayList<MethylScore>();
+        while (iter.hasNext()) {
+            scores.add(iter.next());
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.renderer;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.data.BasicScore;
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.track.DataTrack;
+import org.broad.igv.track.RenderContextImpl;
+import org.broad.igv.track.TrackType;
+import org.broad.igv.ui.panel.ReferenceFrame;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class HeatmapRendererTest extends AbstractHeadlessTest {
+
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 60;
+
+    @Test
+    public void testRasterMatchesGraphics() throws Exception {
+
+        ReferenceFrame frame = new ReferenceFrame("heatmap test");
+        frame.setBounds(0, WIDTH);
+        frame.jumpTo("chr1", 0, WIDTH * 10);
+
+        DataTrack track = new DataTrack(null, "heatmap", "heatmap") {
+            public List<LocusScore> getSummaryScores(String chr, int startLocation, int endLocation, int zoom) {
+                return null;
+            }
+        };
+        track.setTrackType(TrackType.GENE_EXPRESSION);
+        track.setColorScale(new ContinuousColorScale(-0.1, -1.5, 0.1, 1.5, Color.blue, Color.white, Color.red));
+
+        List<LocusScore> scores = new ArrayList<LocusScore>();
+        scores.add(new BasicScore(0, 95, -2f));
+        scores.add(new BasicScore(100, 130, 0.05f));
+        scores.add(new BasicScore(131, 135, 0.8f));
+        scores.add(new BasicScore(400, 900, Float.NaN));
+        scores.add(new BasicScore(1000, 1500, -0.7f));
+        scores.add(new BasicScore(1500, 3000, 1.4f));
+
+        // The visible area clips the last track
+        Rectangle visibleRect = new Rectangle(0, 0, WIDTH, HEIGHT - 10);
+        Rectangle[] trackRects = {new Rectangle(0, 0, WIDTH, 20), new Rectangle(0, 20, WIDTH, 1),
+                new Rectangle(0, 41, WIDTH, 19)};
+
+        BufferedImage expected = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = expected.createGraphics();
+        g.setClip(visibleRect);
+        RenderContextImpl context = new RenderContextImpl(null, g, frame, visibleRect);
+        for (Rectangle rect : trackRects) {
+            new HeatmapRenderer().renderScores(track, scores, context, rect);
+        }
+        context.dispose();
+        g.dispose();
+
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        g = image.createGraphics();
+        g.setClip(visibleRect);
+        assertTrue(HeatmapRaster.isSupported(g));
+        HeatmapRaster raster = new HeatmapRaster(visibleRect);
+        context = new RenderContextImpl(null, g, frame, visibleRect);
+        context.setHeatmapRaster(raster);
+        for (Rectangle rect : trackRects) {
+            new HeatmapRenderer().renderScores(track, scores, context, rect);
+        }
+        raster.flush(g);
+        context.dispose();
+        g.dispose();
+
+        Set<Integer> colors = new HashSet<Integer>();
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals("Pixel " + x + "," + y, expected.getRGB(x, y), image.getRGB(x, y));
+                colors.add(expected.getRGB(x, y));
+            }
+        }
+        // Background, no data, and at least 3 score colors
+        assertTrue(colors.size() >= 5);
+    }
+
+    @Test
+    public void testVectorOutputNotSupported() throws Exception {
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        assertTrue(HeatmapRaster.isSupported(g));
+        HeatmapRaster.setVectorOutput(true);
+        try {
+            assertFalse(HeatmapRaster.isSupported(g));
+        } finally {
+            HeatmapRaster.setVectorOutput(false);
+        }
+        assertTrue(HeatmapRaster.isSupported(g));
+        g.dispose();
+    }
+
+    @Test
+    public void testColorLookup() throws Exception {
+        ContinuousColorScale cs = new ContinuousColorScale(-0.1, -1.5, 0.1, 1.5, Color.blue, Color.white, Color.red);
+        for (float v = -3; v <= 3; v += 0.01f) {
+            assertEquals(cs.getColor(v).getRGB(), cs.getRGB(v));
+        }
+        assertEquals(cs.getColor(Float.NaN).getRGB(), cs.getRGB(Float.NaN));
+    }
+}
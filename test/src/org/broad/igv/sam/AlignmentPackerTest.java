@@ -104,4 +104,122 @@ public class AlignmentPackerTest extends AbstractHeadlessTest {
     }
 
 
-}
\ No newline at end of file
+
+    /**
+     * Alignments on chr1 of a small local file
+     */
+    private AlignmentInterval getLocalAlignmentInterval() throws Exception {
+        AlignmentReader reader = AlignmentReaderFactory.getReader(TestUtils.DATA_DIR + "bam/chr1_chr2.hg18.bam", false);
+        CloseableIterator<Alignment> iter = reader.iterator();
+        List<Alignment> list = new ArrayList<Alignment>();
+        int start = Integer.MAX_VALUE;
+        int end = 0;
+        while (iter.hasNext()) {
+            Alignment al = iter.next();
+            if (al.isMapped() && al.getChr().equals("chr1")) {
+                list.add(al);
+                start = Math.min(start, al.getStart());
+                end = Math.max(end, al.getEnd());
+            }
+        }
+        iter.close();
+        reader.close();
+        return new AlignmentInterval("chr1", start, end, list, null, null, null);
+    }
+
+    private static void checkRows(Collection<List<Row>> groups) {
+        for (List<Row> rows : groups) {
+            for (Row row : rows) {
+                assertTrue(row.alignments.size() > 0);
+                for (int ii = 1; ii < row.alignments.size(); ii++) {
+                    Alignment prev = row.alignments.get(ii - 1);
+                    assertTrue(row.alignments.get(ii).getStart() - prev.getEnd() >= AlignmentPacker.MIN_ALIGNMENT_SPACING);
+                }
+            }
+        }
+    }
+
+    private static int countAlignments(Collection<List<Row>> groups) {
+        int count = 0;
+        for (List<Row> rows : groups) {
+            for (Row row : rows) {
+                for (Alignment al : row.alignments) {
+                    count += (al instanceof PairedAlignment && ((PairedAlignment) al).secondAlignment != null) ? 2 : 1;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testPackLocal() throws Exception {
+
+        AlignmentInterval interval = getLocalAlignmentInterval();
+        int nAlignments = interval.getAlignments().size();
+        assertTrue(nAlignments > 0);
+
+        Map<String, List<Row>> result = (new AlignmentPacker()).packAlignments(interval, new AlignmentTrack.RenderOptions());
+        checkRows(result.values());
+        assertEquals(nAlignments, countAlignments(result.values()));
+
+        // The first row is the greedy chain from the left, taking the longest alignment at each start
+        List<Alignment> sorted = new ArrayList<Alignment>(interval.getAlignments());
+        Collections.sort(sorted, new Comparator<Alignment>() {
+            public int compare(Alignment a1, Alignment a2) {
+                return a1.getStart() != a2.getStart() ? a1.getStart() - a2.getStart() : a2.getEnd() - a1.getEnd();
+            }
+        });
+        List<Alignment> expectedRow = new ArrayList<Alignment>();
+        int nextStart = Integer.MIN_VALUE;
+        for (Alignment al : sorted) {
+            if (al.getStart() >= nextStart) {
+                expectedRow.add(al);
+                nextStart = al.getEnd() + AlignmentPacker.MIN_ALIGNMENT_SPACING;
+            }
+        }
+        Row firstRow = result.get("").get(0);
+        assertEquals(expectedRow.size(), firstRow.alignments.size());
+        for (int i = 0; i < expectedRow.size(); i++) {
+            assertEquals(expectedRow.get(i).getStart(), firstRow.alignments.get(i).getStart());
+            assertEquals(expectedRow.get(i).getEnd(), firstRow.alignments.get(i).getEnd());
+        }
+    }
+
+    @Test
+    public void testPackPairs() throws Exception {
+
+        AlignmentInterval interval = getLocalAlignmentInterval();
+        AlignmentTrack.RenderOptions renderOptions = new AlignmentTrack.RenderOptions();
+        renderOptions.setViewPairs(true);
+
+        Map<String, List<Row>> result = (new AlignmentPacker()).packAlignments(interval, renderOptions);
+        checkRows(result.values());
+        assertEquals(interval.getAlignments().size(), countAlignments(result.values()));
+    }
+
+    @Test
+    public void testRepackGroups() throws Exception {
+
+        AlignmentInterval interval = getLocalAlignmentInterval();
+        AlignmentPacker packer = new AlignmentPacker();
+
+        AlignmentTrack.RenderOptions renderOptions = new AlignmentTrack.RenderOptions();
+        packer.packAlignments(interval, renderOptions);
+        renderOptions.groupByOption = AlignmentTrack.GroupOption.STRAND;
+        Map<String, List<Row>> repacked = packer.packAlignments(interval, renderOptions);
+        Map<String, List<Row>> fresh = (new AlignmentPacker()).packAlignments(interval, renderOptions);
+
+        checkRows(repacked.values());
+        assertEquals(new ArrayList<String>(fresh.keySet()), new ArrayList<String>(repacked.keySet()));
+        for (String key : fresh.keySet()) {
+            List<Row> freshRows = fresh.get(key);
+            List<Row> repackedRows = repacked.get(key);
+            assertEquals(freshRows.size(), repackedRows.size());
+            for (int i = 0; i < freshRows.size(); i++) {
+                assertEquals(freshRows.get(i).alignments, repackedRows.get(i).alignments);
+            }
+        }
+        assertEquals(interval.getAlignments().size(), countAlignments(repacked.values()));
+    }
+
+}
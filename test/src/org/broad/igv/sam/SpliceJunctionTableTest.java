@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.feature.SpliceJunctionFeature;
+import org.broad.igv.feature.Strand;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SpliceJunctionTableTest {
+
+    @Test
+    public void testMatchesFeatureAddRead() throws Exception {
+
+        Random random = new Random(17);
+        SpliceJunctionTable table = new SpliceJunctionTable();
+        SpliceJunctionFeature[] expected = new SpliceJunctionFeature[200];
+        for (int i = 0; i < expected.length; i++) {
+            int junctionStart = 1000 + i * 500;
+            expected[i] = new SpliceJunctionFeature("chr1", junctionStart, junctionStart + 200,
+                    i % 2 == 0 ? Strand.POSITIVE : Strand.NEGATIVE);
+        }
+
+        for (int n = 0; n < 5000; n++) {
+            SpliceJunctionFeature f = expected[random.nextInt(expected.length)];
+            int readStart = f.getJunctionStart() - 1 - random.nextInt(50);
+            int readEnd = f.getJunctionEnd() + 1 + random.nextInt(50);
+            f.addRead(readStart, readEnd);
+            table.addRead("chr1", f.getJunctionStart(), f.getJunctionEnd(), f.getStrand() == Strand.NEGATIVE,
+                    readStart, readEnd);
+        }
+
+        List<SpliceJunctionFeature> features = table.createFeatures();
+        assertEquals(expected.length, features.size());
+        for (int i = 0; i < expected.length; i++) {
+            SpliceJunctionFeature e = expected[i];
+            SpliceJunctionFeature f = features.get(i);
+            assertEquals(e.getJunctionStart(), f.getJunctionStart());
+            assertEquals(e.getJunctionEnd(), f.getJunctionEnd());
+            assertEquals(e.getStrand(), f.getStrand());
+            assertEquals(e.getJunctionDepth(), f.getJunctionDepth());
+            assertEquals(e.getStart(), f.getStart());
+            assertEquals(e.getEnd(), f.getEnd());
+            assertArrayEquals(e.getStartFlankingRegionDepthArray(), f.getStartFlankingRegionDepthArray());
+            assertArrayEquals(e.getEndFlankingRegionDepthArray(), f.getEndFlankingRegionDepthArray());
+        }
+    }
+
+    @Test
+    public void testMergeIgnoreStrand() throws Exception {
+
+        SpliceJunctionTable table = new SpliceJunctionTable();
+        table.addRead("chr1", 100, 200, false, 90, 210);
+        table.addRead("chr1", 100, 200, true, 95, 220);
+        table.addRead("chr1", 100, 200, true, 95, 205);
+        table.addRead("chr1", 300, 400, true, 290, 410);
+
+        assertEquals(3, table.size());
+
+        SpliceJunctionTable combined = new SpliceJunctionTable();
+        combined.merge(table, true);
+        List<SpliceJunctionFeature> features = combined.createFeatures();
+        assertEquals(2, features.size());
+
+        SpliceJunctionFeature f = features.get(0);
+        assertEquals(Strand.POSITIVE, f.getStrand());
+        assertEquals(3, f.getJunctionDepth());
+        assertEquals(90, f.getStart());
+        assertEquals(220, f.getEnd());
+        assertArrayEquals(new int[]{1, 1, 1, 1, 1, 3, 3, 3, 3, 3}, f.getStartFlankingRegionDepthArray());
+        assertEquals(3, f.getEndFlankingRegionDepthArray()[0]);
+        assertEquals(1, f.getEndFlankingRegionDepthArray()[19]);
+
+        assertEquals(Strand.POSITIVE, features.get(1).getStrand());
+        assertEquals(1, features.get(1).getJunctionDepth());
+    }
+}
@@ -116,5 +116,13 @@ public class IGVSessionReaderTest extends AbstractHeadlessTest {
         @XmlAttribute public Renderer renderer;
     }
 
-
+    @Test
+    public void testIsTrackOf() throws Exception {
+        assertTrue(IGVSessionReader.isTrackOf("/data/a.bed", "/data/a.bed"));
+        assertTrue(IGVSessionReader.isTrackOf("/data/a.seg_sample1", "/data/a.seg"));
+        assertTrue(IGVSessionReader.isTrackOf("/data/a.bam Coverage", "/data/a.bam"));
+        assertFalse(IGVSessionReader.isTrackOf("/data/a.bed.gz", "/data/a.bed"));
+        assertFalse(IGVSessionReader.isTrackOf("/data/a.bed2", "/data/a.bed"));
+        assertFalse(IGVSessionReader.isTrackOf("/data/b.bed", "/data/a.bed"));
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools.converters;
+
+import htsjdk.samtools.util.CloseableIterator;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.feature.SpliceJunctionFeature;
+import org.broad.igv.feature.tribble.IGVBEDCodec;
+import org.broad.igv.sam.Alignment;
+import org.broad.igv.sam.SpliceJunctionHelper;
+import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+import org.apache.commons.io.FileUtils;
+import org.broad.igv.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BamToJunctionsTest extends AbstractHeadlessTest {
+
+    private File outputDir;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        outputDir = new File(TestUtils.TMP_OUTPUT_DIR, "junctions");
+        outputDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+        FileUtils.deleteDirectory(outputDir);
+    }
+
+    @Test
+    public void testConvert() throws Exception {
+
+        // Reading a sam file creates an index next to it, work on a copy
+        File inputFile = new File(outputDir, "test_2.sam");
+        FileUtils.copyFile(new File(TestUtils.DATA_DIR, "sam/test_2.sam"), inputFile);
+        File outputFile = new File(outputDir, "test_2.junctions.bed");
+
+        BamToJunctions.convert(inputFile, outputFile, 0, 0, 2);
+
+        // Expected junctions, computed directly from the alignments
+        List<SpliceJunctionFeature> expected = new ArrayList<SpliceJunctionFeature>();
+        AlignmentReader<?> reader = AlignmentReaderFactory.getReader(inputFile.getAbsolutePath(), false);
+        CloseableIterator<? extends Alignment> iter = reader.iterator();
+        for (List<SpliceJunctionFeature> features :
+                BamToJunctions.scan(iter, new SpliceJunctionHelper.LoadOptions(1, 0), 0)) {
+            expected.addAll(features);
+        }
+        iter.close();
+        reader.close();
+        assertTrue(expected.size() > 0);
+
+        IGVBEDCodec codec = new IGVBEDCodec();
+        codec.setSpliceJunctions(true);
+        List<SpliceJunctionFeature> junctions = new ArrayList<SpliceJunctionFeature>();
+        BufferedReader br = new BufferedReader(new FileReader(outputFile));
+        String nextLine;
+        while ((nextLine = br.readLine()) != null) {
+            SpliceJunctionFeature f = (SpliceJunctionFeature) codec.decode(nextLine);
+            if (f != null) junctions.add(f);
+        }
+        br.close();
+
+        assertEquals(expected.size(), junctions.size());
+        for (int i = 0; i < expected.size(); i++) {
+            SpliceJunctionFeature e = expected.get(i);
+            SpliceJunctionFeature f = junctions.get(i);
+            assertEquals(e.getChr(), f.getChr());
+            assertEquals(e.getStart(), f.getStart());
+            assertEquals(e.getEnd(), f.getEnd());
+            assertEquals(e.getJunctionStart(), f.getJunctionStart());
+            assertEquals(e.getJunctionEnd(), f.getJunctionEnd());
+            assertEquals(e.getJunctionDepth(), f.getJunctionDepth());
+            assertEquals(e.getStrand(), f.getStrand());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.feature.LocusScore;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TrackGroupTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testSnapshotUnchangedByEdits() throws Exception {
+
+        TrackGroup group = new TrackGroup("test");
+        Track a = createTrack("a");
+        Track b = createTrack("b");
+        Track c = createTrack("c");
+        group.add(c);
+        group.add(a);
+
+        List<Track> snapshot = group.getTracks();
+        Iterator<Track> iter = snapshot.iterator();
+        assertSame(c, iter.next());
+
+        group.add(b);
+        group.sortByList(Arrays.asList("a", "b", "c"));
+        group.removeTracks(Arrays.asList(c));
+
+        // The iterator and list obtained before the edits are unaffected
+        assertSame(a, iter.next());
+        assertFalse(iter.hasNext());
+        assertEquals(Arrays.asList(c, a), snapshot);
+        assertEquals(Arrays.asList(a, b), group.getTracks());
+
+        try {
+            group.getTracks().add(c);
+            fail("Track list should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConcurrentAdd() throws Exception {
+
+        final TrackGroup group = new TrackGroup("test");
+        final int nThreads = 4;
+        final int nTracks = 500;
+        Thread[] threads = new Thread[nThreads];
+        for (int t = 0; t < nThreads; t++) {
+            final int offset = t * nTracks;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < nTracks; i++) {
+                        group.add(createTrack("track" + (offset + i)));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        // Iterate while the tracks are added, as the painter does
+        boolean running = true;
+        while (running) {
+            int n = 0;
+            for (Track track : group.getTracks()) {
+                assertNotNull(track);
+                n++;
+            }
+            assertTrue(n <= nThreads * nTracks);
+            running = false;
+            for (Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(nThreads * nTracks, group.size());
+    }
+
+    private static Track createTrack(String id) {
+        return new DataTrack(null, id, id) {
+            public List<LocusScore> getSummaryScores(String chr, int startLocation, int endLocation, int zoom) {
+                return null;
+            }
+        };
+    }
+}
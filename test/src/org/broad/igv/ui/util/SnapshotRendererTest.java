@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.ui.util;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.track.Track;
+import org.broad.igv.track.TrackGroup;
+import org.broad.igv.track.TrackLoader;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Painting needs the IGV instance, rendered snapshots are tested with the "snapshots" batch command in
+ * {@link org.broad.igv.batch.CommandExecutorTest}
+ */
+public class SnapshotRendererTest extends AbstractHeadlessTest {
+
+    private SnapshotRenderer renderer;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        List<Track> tracks = new TrackLoader().load(new ResourceLocator(TestUtils.DATA_DIR + "bed/test.bed"), genome);
+        TrackGroup group = new TrackGroup();
+        for (Track track : tracks) {
+            group.add(track);
+        }
+        List<List<TrackGroup>> panels = new ArrayList<List<TrackGroup>>();
+        panels.add(Arrays.asList(group));
+        renderer = new SnapshotRenderer(panels, 0, 400, 2);
+    }
+
+    @Test
+    public void testRenderLocusUnknownChromosome() throws Exception {
+        File file = new File(TestUtils.TMP_OUTPUT_DIR, "snapshot_chrZ.png");
+        file.delete();
+
+        String result = renderer.renderLocus("chrZ:1-1000", file);
+        assertTrue(result, result.startsWith("Error"));
+        assertTrue(result, result.contains("chrZ"));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testRenderLocusUnknownFeature() throws Exception {
+        File file = new File(TestUtils.TMP_OUTPUT_DIR, "snapshot_unknown.png");
+        file.delete();
+
+        String result = renderer.renderLocus("notALocusOrGene", file);
+        assertTrue(result, result.startsWith("Error"));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testRenderResultOrder() throws Exception {
+        List<String> loci = Arrays.asList("chrZ:1-1000", "notALocusOrGene", "chrY_random:1-1000");
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < loci.size(); i++) {
+            files.add(new File(TestUtils.TMP_OUTPUT_DIR, "snapshots_" + i + ".png"));
+        }
+
+        List<String> results = renderer.render(loci, files);
+        assertEquals(loci.size(), results.size());
+        assertTrue(results.get(0).contains("chrZ"));
+        assertTrue(results.get(1).contains("notALocusOrGene"));
+        assertTrue(results.get(2).contains("chrY_random"));
+        for (File file : files) {
+            assertFalse(file.exists());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util;
+
+import org.broad.igv.Globals;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LineTokenizerTest {
+
+    private static LineTokenizer tokenizer(String text, boolean spaceDelimited, int bufferSize) {
+        return new LineTokenizer(new ByteArrayInputStream(text.getBytes()), spaceDelimited, bufferSize);
+    }
+
+    @Test
+    public void testTabTokens() throws Exception {
+        String[] lines = {"chr1\t100\t200\tprobe\t1.5", "a\t\tb\t", "\tleading", "", "single"};
+        String text = lines[0] + "\n" + lines[1] + "\r\n" + lines[2] + "\n" + lines[3] + "\n" + lines[4];
+
+        LineTokenizer tokenizer = tokenizer(text, false, 4);
+        for (String line : lines) {
+            assertTrue(tokenizer.nextLine());
+            assertEquals(line, tokenizer.getLine());
+            String[] expected = Globals.tabPattern.split(line, -1);
+            assertEquals(expected.length, tokenizer.getTokenCount());
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], tokenizer.getString(i));
+                assertTrue(tokenizer.tokenEquals(i, expected[i]));
+            }
+        }
+        assertFalse(tokenizer.nextLine());
+        assertNull(tokenizer.readLine());
+    }
+
+    @Test
+    public void testSpaceDelimitedTokens() throws Exception {
+        String[] lines = {"chr1 100   200\t1.5", "1   2  ", "  3\t4", "5\t\t6"};
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) text.append(line).append("\n");
+
+        LineTokenizer tokenizer = tokenizer(text.toString(), true, 64);
+        for (String line : lines) {
+            assertTrue(tokenizer.nextLine());
+            String[] expected = Globals.singleTabMultiSpacePattern.split(line);
+            assertEquals(line, expected.length, tokenizer.getTokenCount());
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], tokenizer.getString(i));
+            }
+        }
+    }
+
+    @Test
+    public void testLineTerminators() throws Exception {
+        // Old Mac line endings, mixed with others, as read by BufferedReader
+        String text = "#1.2\r2\t3\r\rName\tA\r\nx\t1\n\ry\t2\r";
+        for (int bufferSize : new int[]{1, 2, 3, 5, 64}) {
+            BufferedReader reader = new BufferedReader(new StringReader(text));
+            LineTokenizer tokenizer = tokenizer(text, false, bufferSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                assertEquals(line, tokenizer.readLine());
+            }
+            assertNull(tokenizer.readLine());
+            assertEquals(text.length(), tokenizer.getPosition());
+        }
+    }
+
+    @Test
+    public void testPosition() throws Exception {
+        String text = "#header\nchr1\t1\nchr2\t2\n";
+        LineTokenizer tokenizer = tokenizer(text, false, 3);
+        tokenizer.nextLine();
+        tokenizer.nextLine();
+        assertEquals(8, tokenizer.getLineStartPosition());
+        assertEquals(15, tokenizer.getPosition());
+        assertTrue(tokenizer.startsWith("chr"));
+        assertFalse(tokenizer.startsWith("#"));
+        tokenizer.nextLine();
+        assertEquals(15, tokenizer.getLineStartPosition());
+        assertEquals(text.length(), tokenizer.getPosition());
+    }
+
+    @Test
+    public void testNumbers() throws Exception {
+        String[] ints = {"0", "-12", "+7", "123456789", "2147483647", "1e6", "1.9", " 42 "};
+        String[] floats = {"0", "-0", "1.5", "-0.001", ".5", "5.", "1e3", "2.5E-3", "16777216", "16777217",
+                "0.1234567", "3.4028235E38", "1.0E-45", "NaN", "-Infinity", " 2.0 ", "1f"};
+
+        StringBuilder text = new StringBuilder();
+        for (String s : ints) text.append(s).append("\t");
+        for (String s : floats) text.append(s).append("\t");
+        text.append("NA\t");
+
+        LineTokenizer tokenizer = tokenizer(text.toString(), false, 16);
+        tokenizer.nextLine();
+        int t = 0;
+        for (String s : ints) {
+            assertEquals(s, ParsingUtils.parseInt(s.trim()), tokenizer.getInt(t++));
+        }
+        for (String s : floats) {
+            assertEquals(s, Float.floatToIntBits(Float.parseFloat(s)), Float.floatToIntBits(tokenizer.getFloat(t++)));
+        }
+        try {
+            tokenizer.getFloat(t);
+            fail("Expected NumberFormatException");
+        } catch (NumberFormatException e) {
+            // Expected
+        }
+        assertTrue(Float.isNaN(tokenizer.getFloat(t, Float.NaN)));
+        assertTrue(Float.isNaN(tokenizer.getFloat(t + 1, Float.NaN)));     // Empty trailing token
+    }
+
+    @Test
+    public void testRandomFloats() throws Exception {
+        Random random = new Random(1234);
+        String[] values = new String[10000];
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            switch (i % 3) {
+                case 0:
+                    values[i] = String.valueOf(random.nextFloat() * 100 - 50);
+                    break;
+                case 1:
+                    values[i] = String.format("%.4f", random.nextGaussian());
+                    break;
+                default:
+                    values[i] = String.valueOf(random.nextInt(2000000) / 1000.0);
+            }
+            text.append(values[i]).append(i % 10 == 9 ? "\n" : "\t");
+        }
+
+        LineTokenizer tokenizer = tokenizer(text.toString(), false, 128);
+        int[] columns = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        float[] row = new float[columns.length];
+        for (int i = 0; i < values.length; i += columns.length) {
+            assertTrue(tokenizer.nextLine());
+            tokenizer.getFloats(columns, row, Float.NaN);
+            for (int j = 0; j < columns.length; j++) {
+                assertEquals(values[i + j], Float.parseFloat(values[i + j]), row[j], 0);
+            }
+        }
+        assertFalse(tokenizer.nextLine());
+    }
+}
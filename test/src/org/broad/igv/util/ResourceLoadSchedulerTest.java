@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.PreferenceManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ResourceLoadSchedulerTest extends AbstractHeadlessTest {
+
+    private String remoteThreads;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        remoteThreads = PreferenceManager.getInstance().get(PreferenceManager.LOAD_THREADS_REMOTE);
+        PreferenceManager.getInstance().put(PreferenceManager.LOAD_THREADS_REMOTE, "1");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        PreferenceManager.getInstance().put(PreferenceManager.LOAD_THREADS_REMOTE, remoteThreads);
+        super.tearDown();
+    }
+
+    @Test
+    public void testGetBackend() throws Exception {
+        assertEquals("local", ResourceLoadScheduler.getBackend(new ResourceLocator(TestUtils.DATA_DIR + "bed/test.bed")));
+        assertEquals("some.server.org",
+                ResourceLoadScheduler.getBackend(new ResourceLocator("http://some.server.org/data/test.bed")));
+    }
+
+    @Test
+    public void testIsConcurrentLoad() throws Exception {
+        assertTrue(ResourceLoadScheduler.isConcurrentLoad(new ResourceLocator(TestUtils.DATA_DIR + "bed/test.bed")));
+        assertFalse(ResourceLoadScheduler.isConcurrentLoad(new ResourceLocator(TestUtils.DATA_DIR + "bam/NA12878.SLX.sample.bam")));
+        assertFalse(ResourceLoadScheduler.isConcurrentLoad(new ResourceLocator("http://some.server.org/data/test.bed")));
+
+        assertTrue(ResourceLoadScheduler.isAlignment(new ResourceLocator("http://some.server.org/data/test.cram?token=abc")));
+        assertTrue(ResourceLoadScheduler.isAlignment(new ResourceLocator("https://some.server.org/htsget/reads/NA12878")));
+        assertTrue(ResourceLoadScheduler.isAlignment(new ResourceLocator("/data/test.sam.gz")));
+        assertFalse(ResourceLoadScheduler.isAlignment(new ResourceLocator("/data/test.bed")));
+    }
+
+    @Test
+    public void testPriority() throws Exception {
+
+        ResourceLoadScheduler scheduler = new ResourceLoadScheduler();
+        ResourceLocator locator = new ResourceLocator("http://some.server.org/data/test.bed");
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger progress = new AtomicInteger();
+
+        ResourceLoadScheduler.Batch batch = scheduler.newBatch(new ResourceLoadScheduler.ProgressListener() {
+            public void loadFinished(ResourceLocator locator, Throwable error, int completed, int total) {
+                progress.set(completed);
+            }
+        });
+
+        // Occupy the single thread for the host, so the remaining loads queue up
+        batch.submit(locator, 0, new Runnable() {
+            public void run() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        });
+        for (final int priority : new int[]{5, 1, 3}) {
+            batch.submit(locator, priority, new Runnable() {
+                public void run() {
+                    order.add(priority);
+                }
+            });
+        }
+        release.countDown();
+
+        assertTrue(batch.await());
+        assertEquals(4, progress.get());
+        assertEquals(4, batch.getCompleted());
+        assertEquals(3, order.size());
+        assertEquals(1, (int) order.get(0));
+        assertEquals(3, (int) order.get(1));
+        assertEquals(5, (int) order.get(2));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+
+        ResourceLoadScheduler scheduler = new ResourceLoadScheduler();
+        ResourceLocator locator = new ResourceLocator("http://some.server.org/data/test.bed");
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger count = new AtomicInteger();
+
+        ResourceLoadScheduler.Batch batch = scheduler.newBatch(null);
+        batch.submit(locator, 0, new Runnable() {
+            public void run() {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        });
+        for (int i = 0; i < 5; i++) {
+            batch.submit(locator, 1, new Runnable() {
+                public void run() {
+                    count.incrementAndGet();
+                }
+            });
+        }
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // Interrupting the waiting thread cancels the batch
+        final ResourceLoadScheduler.Batch b = batch;
+        final AtomicBoolean result = new AtomicBoolean(true);
+        Thread waiter = new Thread(new Runnable() {
+            public void run() {
+                result.set(b.await());
+            }
+        });
+        waiter.start();
+        waiter.interrupt();
+        waiter.join(10000);
+        release.countDown();
+
+        assertFalse(result.get());
+        assertFalse(batch.await());
+        assertEquals(0, count.get());
+        assertEquals(1, batch.getCompleted());
+    }
+}
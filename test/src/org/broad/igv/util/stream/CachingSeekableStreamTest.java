@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.BAMIndexer;
+import htsjdk.samtools.SAMFileReader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.tribble.AbstractFeatureReader;
+import htsjdk.tribble.Feature;
+import htsjdk.tribble.bed.BEDCodec;
+import htsjdk.tribble.bed.SimpleBEDFeature;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.index.tabix.TabixIndexCreator;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.sam.PicardAlignment;
+import org.broad.igv.sam.reader.BAMFileReader;
+import org.broad.igv.util.FileUtils;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CachingSeekableStreamTest extends AbstractHeadlessTest {
+
+    private static final File BAM_FILE = new File(TestUtils.DATA_DIR + "samtools/index_test.bam");
+
+    @Test
+    public void testMatchesBlockCompressedInputStream() throws Exception {
+
+        BGZFBlockCache cache = new BGZFBlockCache(10 * 1024 * 1024);
+        BlockCompressedInputStream expected = new BlockCompressedInputStream(BAM_FILE);
+        BlockCompressedInputStream actual = new BlockCompressedInputStream(
+                new CachingSeekableStream(new SeekableFileStream(BAM_FILE), BAM_FILE.getAbsolutePath(), cache));
+
+        // Read the whole file in odd sized pieces, recording file pointers along the way
+        List<Long> pointers = new ArrayList<Long>();
+        byte[] b1 = new byte[3001];
+        byte[] b2 = new byte[3001];
+        while (true) {
+            int n1 = expected.read(b1, 0, b1.length);
+            int n2 = actual.read(b2, 0, b2.length);
+            assertEquals(n1, n2);
+            if (n1 < 0) break;
+            assertArrayEquals(Arrays.copyOf(b1, n1), Arrays.copyOf(b2, n2));
+            if (n1 < b1.length) break;
+            assertEquals(expected.getFilePointer(), actual.getFilePointer());
+            pointers.add(expected.getFilePointer());
+        }
+        assertTrue(cache.getBytes() > 0);
+
+        // Seek back to the recorded positions, now answered from the cache
+        for (int i = pointers.size() - 1; i >= 0; i -= 3) {
+            expected.seek(pointers.get(i));
+            actual.seek(pointers.get(i));
+            assertEquals(expected.read(), actual.read());
+            assertEquals(expected.getFilePointer(), actual.getFilePointer());
+        }
+        expected.close();
+        actual.close();
+    }
+
+    /**
+     * Reads which are not at a block boundary, and reads of files which are not BGZF, bypass the cache
+     */
+    @Test
+    public void testMatchesRawBytes() throws Exception {
+
+        File[] files = {BAM_FILE, new File(TestUtils.DATA_DIR + "gff/aliased.sorted.gff")};
+        for (File file : files) {
+            BGZFBlockCache cache = new BGZFBlockCache(10 * 1024 * 1024);
+            SeekableStream expected = new SeekableFileStream(file);
+            SeekableStream actual = new CachingSeekableStream(new SeekableFileStream(file), file.getPath(), cache);
+            long[] positions = {0, 17, 1000, file.length() - 10, 5};
+            for (long pos : positions) {
+                byte[] b1 = new byte[100];
+                byte[] b2 = new byte[100];
+                expected.seek(pos);
+                actual.seek(pos);
+                int n1 = expected.read(b1, 0, b1.length);
+                int n2 = actual.read(b2, 0, b2.length);
+                assertTrue(n2 > 0);
+                int n = Math.min(n1, n2);
+                assertArrayEquals(Arrays.copyOf(b1, n), Arrays.copyOf(b2, n));
+                assertEquals(pos + n2, actual.position());
+            }
+            expected.close();
+            actual.close();
+        }
+    }
+
+    @Test
+    public void testSAMReaderFactory() throws Exception {
+
+        SAMFileReader plainReader = new SAMFileReader(BAM_FILE);
+        plainReader.setValidationStringency(ValidationStringency.SILENT);
+        BAMFileReader igvReader = new BAMFileReader(BAM_FILE);
+
+        SAMRecordIterator iter1 = plainReader.iterator();
+        CloseableIterator<PicardAlignment> iter2 = igvReader.iterator();
+        int count = 0;
+        while (iter1.hasNext()) {
+            assertTrue(iter2.hasNext());
+            SAMRecord r1 = iter1.next();
+            PicardAlignment r2 = iter2.next();
+            assertEquals(r1.getReadName(), r2.getReadName());
+            assertEquals(r1.getAlignmentStart() - 1, r2.getStart());
+            assertEquals(r1.getCigarString(), r2.getCigarString());
+            count++;
+        }
+        assertFalse(iter2.hasNext());
+        assertTrue(count > 0);
+        plainReader.close();
+        igvReader.close();
+    }
+
+    /**
+     * Indexed queries through the IGV reader, which reads through the caching stream, match plain htsjdk queries
+     */
+    @Test
+    public void testIndexedQuery() throws Exception {
+
+        File bamFile = new File(TestUtils.TMP_OUTPUT_DIR, "index_test.bam");
+        FileUtils.copyFile(BAM_FILE, bamFile);
+        SAMFileReader indexingReader = new SAMFileReader(bamFile);
+        BAMIndexer.createIndex(indexingReader, new File(bamFile.getPath() + ".bai"));
+        indexingReader.close();
+
+        SAMFileReader plainReader = new SAMFileReader(bamFile, new File(bamFile.getPath() + ".bai"));
+        plainReader.setValidationStringency(ValidationStringency.SILENT);
+        BAMFileReader igvReader = new BAMFileReader(bamFile);
+        assertTrue(igvReader.hasIndex());
+
+        for (SAMSequenceRecord seq : plainReader.getFileHeader().getSequenceDictionary().getSequences()) {
+            String chr = seq.getSequenceName();
+            int[][] ranges = {{1, 100000}, {seq.getSequenceLength() / 2, seq.getSequenceLength()}, {1, 100000}};
+            for (int[] range : ranges) {
+                SAMRecordIterator expected = plainReader.queryOverlapping(chr, range[0], range[1]);
+                CloseableIterator<PicardAlignment> actual = igvReader.query(chr, range[0] - 1, range[1], false);
+                while (expected.hasNext()) {
+                    assertTrue(actual.hasNext());
+                    assertEquals(expected.next().getReadName(), actual.next().getReadName());
+                }
+                assertFalse(actual.hasNext());
+                expected.close();
+                actual.close();
+            }
+        }
+        plainReader.close();
+        igvReader.close();
+    }
+
+    @Test
+    public void testTabixQuery() throws Exception {
+
+        File bedFile = new File(TestUtils.TMP_OUTPUT_DIR, "blocks.bed.gz");
+        BlockCompressedOutputStream bgzf = new BlockCompressedOutputStream(bedFile);
+        TabixIndexCreator indexCreator = new TabixIndexCreator(TabixFormat.BED);
+        for (int i = 0; i < 50000; i++) {
+            long pointer = bgzf.getFilePointer();
+            bgzf.write(("chr1\t" + (i * 100) + "\t" + (i * 100 + 50) + "\tfeature" + i + "\n").getBytes());
+            indexCreator.addFeature(new SimpleBEDFeature(i * 100 + 1, i * 100 + 50, "chr1"), pointer);
+        }
+        long end = bgzf.getFilePointer();
+        bgzf.close();
+        indexCreator.finalizeIndex(end).writeBasedOnFeatureFile(bedFile);
+
+        // The expected reader reads the file directly, the other through the IGV stream factory
+        BlockCompressedInputStream expectedStream = new BlockCompressedInputStream(bedFile);
+        SeekableStream stream = IGVSeekableStreamFactory.getInstance().getStreamFor(bedFile.getPath());
+        assertTrue(stream instanceof CachingSeekableStream);
+        BlockCompressedInputStream actualStream = new BlockCompressedInputStream(stream);
+        String line;
+        while ((line = expectedStream.readLine()) != null) {
+            assertEquals(line, actualStream.readLine());
+        }
+        assertNull(actualStream.readLine());
+        expectedStream.close();
+        actualStream.close();
+
+        AbstractFeatureReader reader = AbstractFeatureReader.getFeatureReader(bedFile.getPath(), new BEDCodec(), true);
+        int[][] ranges = {{1000, 2000}, {100000, 1500000}, {4000000, 6000000}, {1000, 2000}};
+        for (int[] range : ranges) {
+            Iterator<Feature> iter = reader.query("chr1", range[0], range[1]);
+            int count = 0;
+            while (iter.hasNext()) {
+                Feature f = iter.next();
+                assertTrue(f.getEnd() >= range[0] && f.getStart() <= range[1]);
+                count++;
+            }
+            assertTrue(count > 0);
+        }
+        reader.close();
+    }
+
+    @Test
+    public void testMemoryBudget() throws Exception {
+        BGZFBlockCache cache = new BGZFBlockCache(200 * 1024);
+        BlockCompressedInputStream stream = new BlockCompressedInputStream(
+                new CachingSeekableStream(new SeekableFileStream(BAM_FILE), BAM_FILE.getAbsolutePath(), cache));
+        byte[] buffer = new byte[10000];
+        while (stream.read(buffer, 0, buffer.length) > 0) {
+            assertTrue(cache.getBytes() <= 200 * 1024);
+        }
+        stream.close();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util.stream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class MappedSeekableStreamTest {
+
+    static int fileSize = 10000;
+    static byte[] expectedBytes;
+    static File testFile;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        expectedBytes = new byte[fileSize];
+        new Random(17).nextBytes(expectedBytes);
+        testFile = File.createTempFile("mapped", ".dat");
+        testFile.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(testFile);
+        fos.write(expectedBytes);
+        fos.close();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        testFile.delete();
+    }
+
+    /**
+     * Sequential reads through small chunks, so many reads cross mapping boundaries
+     */
+    @Test
+    public void testSeekAndRead() throws Exception {
+        MappedSeekableStream stream = new MappedSeekableStream(testFile, 64);
+        assertEquals(fileSize, stream.length());
+
+        stream.seek(100);
+        byte[] buffer = new byte[1000];
+        assertEquals(1000, stream.read(buffer, 0, 1000));
+        assertArrayEquals(Arrays.copyOfRange(expectedBytes, 100, 1100), buffer);
+        assertEquals(1100, stream.position());
+        assertEquals(expectedBytes[1100] & 0xFF, stream.read());
+
+        // Short read at end of file, then EOF
+        stream.seek(fileSize - 10);
+        assertEquals(10, stream.read(buffer, 0, 1000));
+        assertTrue(stream.eof());
+        assertEquals(-1, stream.read(buffer, 0, 1000));
+        stream.close();
+    }
+
+    @Test
+    public void testConcurrentPositionalReads() throws Exception {
+        final MappedSeekableStream stream = new MappedSeekableStream(testFile, 128);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws IOException {
+                        Random random = new Random(seed);
+                        for (int i = 0; i < 1000; i++) {
+                            int pos = random.nextInt(fileSize - 500);
+                            int len = 1 + random.nextInt(500);
+                            byte[] buffer = new byte[len];
+                            stream.readFully(pos, buffer, 0, len);
+                            if (!Arrays.equals(Arrays.copyOfRange(expectedBytes, pos, pos + len), buffer)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> f : results) {
+                assertTrue(f.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // Positional reads don't move the stream
+        assertEquals(0, stream.position());
+    }
+
+    @Test
+    public void testFactory() throws Exception {
+        IGVSeekableStreamFactory factory = IGVSeekableStreamFactory.getInstance();
+        MappedSeekableStream stream = new MappedSeekableStream(testFile);
+        assertSame(stream, factory.getBufferedStream(stream));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2007-2013 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.variant;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import org.broad.igv.variant.vcf.VCFVariant;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class GenotypeMatrixTest {
+
+    private static final Allele REF = Allele.create("A", true);
+    private static final Allele ALT = Allele.create("G", false);
+
+    @Test
+    public void testCalls() throws Exception {
+
+        // More than 32 samples, so rows span several words
+        int nSamples = 70;
+        List<String> samples = new ArrayList<String>();
+        List<htsjdk.variant.variantcontext.Genotype> genotypes = new ArrayList<htsjdk.variant.variantcontext.Genotype>();
+        for (int i = 0; i < nSamples; i++) {
+            String sample = "S" + i;
+            samples.add(sample);
+            GenotypeBuilder gb = new GenotypeBuilder(sample, alleles(i % 4));
+            if (i % 5 != 0) gb.GQ(i).DP(100 * i);
+            genotypes.add(gb.make());
+        }
+
+        VariantContext vc1 = new VariantContextBuilder("test", "chr1", 100, 100, Arrays.asList(REF, ALT))
+                .genotypes(genotypes).make();
+        VariantContext vc2 = new VariantContextBuilder("test", "chr1", 200, 200, Arrays.asList(REF, ALT)).make();
+        VCFVariant v1 = new VCFVariant(vc1, "chr1");
+        VCFVariant v2 = new VCFVariant(vc2, "chr1");
+
+        GenotypeMatrix matrix = GenotypeMatrix.create(Arrays.asList(v1, v2), samples, true);
+        assertEquals(2, matrix.getVariantCount());
+        assertEquals(nSamples, matrix.getSampleCount());
+
+        int row = matrix.getRow(v1);
+        assertEquals(0, row);
+        for (int i = 0; i < nSamples; i++) {
+            int col = matrix.getColumn("S" + i);
+            assertEquals(i, col);
+            int expected = GenotypeMatrix.encode(v1.getGenotype("S" + i).getType());
+            assertEquals(expected, matrix.getCall(row, col));
+            assertEquals(i % 5 == 0 ? -1 : Math.min(i, 254), matrix.getGQ(row, col));
+            assertEquals(i % 5 == 0 ? -1 : 100 * i, matrix.getDP(row, col));
+        }
+
+        // A variant without genotypes reads as no-calls
+        row = matrix.getRow(v2);
+        for (int i = 0; i < nSamples; i++) {
+            assertEquals(GenotypeMatrix.NO_CALL, matrix.getCall(row, i));
+        }
+        assertEquals(-1, matrix.getColumn("unknown"));
+    }
+
+    @Test
+    public void testDeferred() throws Exception {
+        List<String> samples = Arrays.asList("S0", "S1", "S2");
+        List<htsjdk.variant.variantcontext.Genotype> genotypes = new ArrayList<htsjdk.variant.variantcontext.Genotype>();
+        for (int i = 0; i < samples.size(); i++) {
+            genotypes.add(new GenotypeBuilder(samples.get(i), alleles(i + 1)).make());
+        }
+        VariantContext vc = new VariantContextBuilder("test", "chr1", 100, 100, Arrays.asList(REF, ALT))
+                .genotypes(genotypes).make();
+        VCFVariant variant = new VCFVariant(vc, "chr1");
+
+        GenotypeMatrix matrix = GenotypeMatrix.createDeferred(Arrays.asList(variant), samples);
+        assertEquals(GenotypeMatrix.NO_CALL, matrix.getCall(0, 2));
+        matrix.ensureColumns(new int[]{2, -1});
+        assertEquals(GenotypeMatrix.HOM_REF, matrix.getCall(0, 0));
+        assertEquals(GenotypeMatrix.HET, matrix.getCall(0, 1));
+        assertEquals(GenotypeMatrix.HOM_VAR, matrix.getCall(0, 2));
+    }
+
+    private static List<Allele> alleles(int type) {
+        switch (type) {
+            case 0:
+                return Arrays.asList(Allele.NO_CALL, Allele.NO_CALL);
+            case 1:
+                return Arrays.asList(REF, REF);
+            case 2:
+                return Arrays.asList(REF, ALT);
+            default:
+                return Arrays.asList(ALT, ALT);
+        }
+    }
+}
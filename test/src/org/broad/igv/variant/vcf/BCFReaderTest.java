@@ -16,18 +16,23 @@ import org.broad.igv.track.FeatureSource;
 import org.broad.igv.track.TribbleFeatureSource;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.TestUtils;
+import org.broad.igv.variant.GenotypeMatrix;
 import htsjdk.tribble.Feature;
 import htsjdk.tribble.readers.PositionalBufferedStream;
 import htsjdk.variant.bcf2.BCF2Codec;
+import htsjdk.variant.variantcontext.GenotypeType;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.FileInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
+import static org.broad.igv.variant.GenotypeMatrix.NO_CALL;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -89,6 +94,45 @@ public class BCFReaderTest extends AbstractHeadlessTest {
         TestUtils.assertFeatureListsEqual(VCFList.iterator(), BCF2List.iterator());
     }
 
+    /**
+     * Decoding genotype types for a subset of samples directly from the BCF2 record should agree with htsjdk
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDecodeGenotypeSubset() throws Exception {
+        String path = TestUtils.DATA_DIR + "bcf/ex2.bcf";
+        FeatureSource source = TribbleFeatureSource.getFeatureSource(new ResourceLocator(path), genome);
+        Iterator<Feature> features = source.getFeatures("chr20", 14000, 1300000);
+
+        List<String> samples = Arrays.asList("NA00002", "unknown", "NA00001");
+        int count = 0;
+        while (features.hasNext()) {
+            VCFVariant variant = (VCFVariant) features.next();
+            GenotypeType[] types = new GenotypeType[samples.size()];
+            assertTrue(variant.decodeGenotypeTypes(samples, types));
+            int homRef = variant.getHomRefCount();
+            int het = variant.getHetCount();
+            int homVar = variant.getHomVarCount();
+
+            // Force htsjdk decoding
+            assertEquals(NO_CALL, GenotypeMatrix.encode(types[1]));
+            assertEquals(variant.getGenotype("NA00002").getType(), types[0]);
+            assertEquals(variant.getGenotype("NA00001").getType(), types[2]);
+            assertFalse(variant.decodeGenotypeTypes(samples, types));
+
+            VCFVariant.ZygosityCount zc = new VCFVariant.ZygosityCount();
+            for (String sample : variant.getSampleNames()) {
+                zc.incrementCount(variant.getGenotype(sample));
+            }
+            assertEquals(zc.getHomRef(), homRef);
+            assertEquals(zc.getHet(), het);
+            assertEquals(zc.getHomVar(), homVar);
+            count++;
+        }
+        assertTrue("No features read", count > 0);
+    }
+
     //Quick method for checking if a bcf file has the magic header
     @Ignore
     //@Test